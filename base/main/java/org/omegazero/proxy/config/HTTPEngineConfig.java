@@ -33,6 +33,10 @@ public class HTTPEngineConfig extends ConfigObject {
 	private transient int requestTimeout;
 	private transient int responseTimeout;
 	private transient int maxStreamsPerServer;
+	private transient int retryMaxAttempts;
+	private transient int retryMaxBodySize;
+	private transient int hedgePercentile;
+	private transient int hedgeMinDelay;
 
 	public HTTPEngineConfig(ConfigObject co) {
 		this(co.copyData());
@@ -53,6 +57,15 @@ public class HTTPEngineConfig extends ConfigObject {
 		this.requestTimeout = super.optInt("requestTimeout", 5) * 1000;
 		this.responseTimeout = super.optInt("responseTimeout", 60) * 1000;
 		this.maxStreamsPerServer = super.optInt("maxStreamsPerServer", 100);
+		this.retryMaxAttempts = super.optInt("retryMaxAttempts", 1);
+		this.retryMaxBodySize = super.optInt("retryMaxBodySize", 65536);
+		this.hedgePercentile = super.optInt("hedgePercentile", 0);
+		this.hedgeMinDelay = super.optInt("hedgeMinDelay", 10);
+
+		if(this.retryMaxAttempts < 1)
+			throw new IllegalArgumentException("retryMaxAttempts must be at least 1");
+		if(this.hedgePercentile < 0 || this.hedgePercentile >= 100)
+			throw new IllegalArgumentException("hedgePercentile must be at least 0 and less than 100");
 
 		if(this.upstreamConnectionTimeout == this.responseTimeout)
 			throw new IllegalArgumentException("responseTimeout must not equal upstreamConnectionTimeout");
@@ -124,6 +137,48 @@ public class HTTPEngineConfig extends ConfigObject {
 		return this.maxStreamsPerServer;
 	}
 
+	/**
+	 * Returns the maximum number of times an idempotent request is sent to upstream servers, including the first attempt. A request is retried if the upstream connection
+	 * or stream failed, or the response timed out, before a response was received.
+	 *
+	 * @return The maximum number of attempts. Retries are disabled if {@code 1}
+	 * @since 3.12.1
+	 */
+	public int getRetryMaxAttempts() {
+		return this.retryMaxAttempts;
+	}
+
+	/**
+	 * Returns the maximum size in bytes of a request body buffered to retry or hedge a request. Requests with larger bodies are not retried or hedged.
+	 *
+	 * @return The maximum request body size
+	 * @since 3.12.1
+	 */
+	public int getRetryMaxBodySize() {
+		return this.retryMaxBodySize;
+	}
+
+	/**
+	 * Returns the percentile of recent response latencies of an upstream server after which a second copy of an idempotent request is sent, if no response was received
+	 * yet.
+	 *
+	 * @return The hedging percentile. Hedging is disabled if {@code 0}
+	 * @since 3.12.1
+	 */
+	public int getHedgePercentile() {
+		return this.hedgePercentile;
+	}
+
+	/**
+	 * Returns the minimum time in milliseconds to wait for a response before sending a hedged request.
+	 *
+	 * @return The minimum hedging delay
+	 * @since 3.12.1
+	 */
+	public int getHedgeMinDelay() {
+		return this.hedgeMinDelay;
+	}
+
 
 	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
@@ -11,6 +11,7 @@
  */
 package org.omegazero.proxy.config;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.InetAddress;
@@ -19,8 +20,10 @@ import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -34,6 +37,9 @@ import org.omegazero.common.config.JSONConfiguration;
 import org.omegazero.common.logging.Logger;
 import org.omegazero.common.logging.LoggerUtil;
 import org.omegazero.net.util.SSLUtil;
+import org.omegazero.proxy.net.RoutingTable;
+import org.omegazero.proxy.net.UpstreamGroup;
+import org.omegazero.proxy.net.UpstreamHealthChecker;
 import org.omegazero.proxy.net.UpstreamServer;
 
 public class ProxyConfiguration extends JSONConfiguration {
@@ -41,6 +47,13 @@ public class ProxyConfiguration extends JSONConfiguration {
 	private static final Logger logger = LoggerUtil.createLogger();
 
 	public static final String TLS_AUTH_DEFAULT_NAME = "default";
+	/**
+	 * The character separating the server name from the index of an additional key/certificate pair in a TLS auth alias.
+	 *
+	 * @since 3.12.1
+	 * @see #getTlsAuthAlias(String, int)
+	 */
+	public static final char TLS_AUTH_ALIAS_SEPARATOR = '|';
 
 
 	@ConfigurationOption(description = "A list of local addresses the proxy server should bind to")
@@ -56,9 +69,39 @@ public class ProxyConfiguration extends JSONConfiguration {
 	@ConfigurationOption(description = "TLS key and certificate file names for different server names")
 	private final Map<String, Entry<String, String>> tlsAuth = new HashMap<>();
 	private final Map<String, Entry<PrivateKey, X509Certificate[]>> tlsAuthData = new HashMap<>();
+	private final Map<String, long[]> tlsAuthFileStates = new HashMap<>();
 
 	@ConfigurationOption(description = "The period in seconds for reloading TLS key and certificate data. Disabled if 0")
 	private int tlsAuthReloadInterval = 0;
+	@ConfigurationOption(description = "Whether TLS key and certificate data should only be loaded on the first handshake requesting it")
+	private boolean tlsAuthLazyLoad = false;
+	@ConfigurationOption(description = "The maximum number of lazily loaded TLS key and certificate pairs to keep in memory")
+	private int tlsAuthMaxLoaded = 1024;
+	@ConfigurationOption(description = "List of server names whose TLS data is loaded in the background after (re)loading, if lazy loading is enabled")
+	private List<String> tlsAuthPrefetch = Collections.emptyList();
+
+	@ConfigurationOption(description = "The maximum number of TLS handshakes started per second. Unlimited if 0")
+	private int tlsHandshakeRateLimit = 0;
+
+	@ConfigurationOption(description = "Whether stateless TLS session tickets should be issued to clients")
+	private boolean tlsSessionTickets = true;
+	@ConfigurationOption(description = "The time in seconds after which the JDK generates a new TLS session ticket key. Ticket keys are kept in memory and cannot be shared between instances")
+	private int tlsSessionTicketKeyLifetime = 3600;
+	@ConfigurationOption(description = "The time in seconds a TLS session may be resumed")
+	private int tlsSessionTimeout = 86400;
+	@ConfigurationOption(description = "The maximum number of TLS sessions kept in the server-side session cache")
+	private int tlsSessionCacheSize = 20480;
+
+	@ConfigurationOption(description = "Whether OCSP responses should be stapled to TLS handshakes")
+	private boolean tlsOcspStapling = false;
+	@ConfigurationOption(description = "The period in seconds for refreshing cached OCSP responses in the background")
+	private int tlsOcspRefreshInterval = 300;
+	@ConfigurationOption(description = "The maximum time in seconds an OCSP response is cached")
+	private int tlsOcspCacheLifetime = 3600;
+	@ConfigurationOption(description = "The time in milliseconds to wait for an OCSP response")
+	private int tlsOcspResponseTimeout = 1000;
+	@ConfigurationOption(description = "The OCSP responder URI to use instead of the URI in the certificates")
+	private String tlsOcspResponderOverride = null;
 
 	@ConfigurationOption(description = "The amount of time in seconds a connection with no traffic should persist before it is closed")
 	private int connectionIdleTimeout = 300;
@@ -86,6 +129,40 @@ public class ProxyConfiguration extends JSONConfiguration {
 	@ConfigurationOption
 	private String upstreamServerClientImplOverride = null;
 
+	@ConfigurationOption(description = "List of routes selecting the upstream server of a request by host name, path prefix and method")
+	private List<JSONObject> routes = Collections.emptyList();
+	@ConfigurationOption(description = "Named groups of upstream servers, which requests are balanced across, for use in routes")
+	private final Map<String, JSONObject> upstreamGroups = new java.util.LinkedHashMap<>();
+
+	@ConfigurationOption(description = "The maximum number of idle upstream connections to keep per upstream server for reuse by other client connections. Disabled if 0")
+	private int upstreamPoolMaxIdle = 0;
+	@ConfigurationOption(description = "The time in seconds an idle pooled upstream connection is kept before it is closed. Unlimited if 0")
+	private int upstreamPoolIdleTimeout = 60;
+	@ConfigurationOption(description = "The time in seconds after which an upstream connection is no longer reused. Unlimited if 0")
+	private int upstreamPoolMaxLifetime = 600;
+	@ConfigurationOption(description = "List of upstream protocol names whose connections are shared by multiple client connections")
+	private List<String> upstreamMultiplexProtocols = Collections.emptyList();
+	@ConfigurationOption(description = "The maximum number of shared upstream connections per upstream server")
+	private int upstreamMultiplexMaxConnections = 1;
+	@ConfigurationOption(description = "The number of consecutive failed requests after which an upstream server is ejected. Disabled if 0")
+	private int upstreamOutlierConsecutiveFailures = 0;
+	@ConfigurationOption(description = "The percentage of failed requests at which an upstream server is ejected. Disabled if 0")
+	private int upstreamOutlierErrorRate = 0;
+	@ConfigurationOption(description = "The minimum number of requests in the error rate interval to eject an upstream server based on its error rate")
+	private int upstreamOutlierErrorRateMinRequests = 20;
+	@ConfigurationOption(description = "The duration in seconds of the interval in which the error rate of an upstream server is measured")
+	private int upstreamOutlierErrorRateInterval = 10;
+	@ConfigurationOption(description = "The time in seconds an upstream server is ejected for the first time")
+	private int upstreamOutlierBaseEjectionTime = 30;
+	@ConfigurationOption(description = "The maximum time in seconds an upstream server is ejected")
+	private int upstreamOutlierMaxEjectionTime = 300;
+	@ConfigurationOption(description = "The percentage of upstream requests which may be retried or hedged in addition to the original requests")
+	private int upstreamRetryBudget = 20;
+	@ConfigurationOption(description = "The maximum number of TLS sessions with upstream servers kept for resumption. Disabled if 0")
+	private int upstreamTlsSessionCacheSize = 1024;
+	@ConfigurationOption(description = "The time in seconds a TLS session with an upstream server may be resumed")
+	private int upstreamTlsSessionTimeout = 3600;
+
 	@ConfigurationOption(description = "List of X509 certificate file names to trust in addition to the default installed certificates")
 	private List<String> trustedCertificates = Collections.emptyList();
 	@ConfigurationOption
@@ -123,20 +200,145 @@ public class ProxyConfiguration extends JSONConfiguration {
 			throw new IllegalArgumentException("Value in 'tlsAuth' is missing required argument 'key'");
 		if(!tlsEntry.has("cert"))
 			throw new IllegalArgumentException("Value in 'tlsAuth' is missing required argument 'cert'");
-		this.tlsAuth.put(servername, new SimpleEntry<>(tlsEntry.getString("key"), tlsEntry.getString("cert")));
+		int index = 0;
+		while(this.tlsAuth.containsKey(getTlsAuthAlias(servername, index)))
+			index++;
+		this.tlsAuth.put(getTlsAuthAlias(servername, index), new SimpleEntry<>(tlsEntry.getString("key"), tlsEntry.getString("cert")));
+	}
+
+	private void loadConfigurationRoute(JSONObject routeEntry) {
+		if(routeEntry.has("group")){
+			if(routeEntry.has("address"))
+				throw new IllegalArgumentException("Value in 'routes' must not have both 'address' and 'group'");
+			if(routeEntry.has("healthCheck"))
+				throw new IllegalArgumentException("'healthCheck' of a route to a group must be configured in the group");
+		}else{
+			checkUpstreamServerEntry(routeEntry, "routes");
+			checkHealthCheckEntry(routeEntry);
+		}
+		if(this.routes.isEmpty())
+			this.routes = new java.util.ArrayList<>();
+		this.routes.add(routeEntry);
+	}
+
+	private void loadConfigurationUpstreamGroup(String name, JSONObject groupEntry) {
+		Object members = groupEntry.opt("members");
+		if(!(members instanceof JSONArray) || ((JSONArray) members).isEmpty())
+			throw new IllegalArgumentException("'members' of upstream group '" + name + "' must be a non-empty array");
+		for(Object m : (JSONArray) members){
+			if(!(m instanceof JSONObject))
+				throw new IllegalArgumentException("Values in 'members' of upstream group '" + name + "' must be objects");
+			checkUpstreamServerEntry((JSONObject) m, "members");
+			if(((JSONObject) m).optInt("weight", 1) <= 0)
+				throw new IllegalArgumentException("'weight' in 'members' must be positive");
+		}
+		checkHealthCheckEntry(groupEntry);
+		this.upstreamGroups.put(name, groupEntry);
 	}
 
+	private static void checkHealthCheckEntry(JSONObject entry) {
+		Object hc = entry.opt("healthCheck");
+		if(hc == null)
+			return;
+		if(!(hc instanceof JSONObject))
+			throw new IllegalArgumentException("'healthCheck' must be an object");
+		createHealthCheck((JSONObject) hc, "localhost");
+	}
+
+	private static UpstreamHealthChecker.HealthCheck createHealthCheck(JSONObject hc, String defaultHost) {
+		return new UpstreamHealthChecker.HealthCheck(hc.optInt("interval", 10), hc.optInt("timeout", 2000), hc.optString("path", "/"), hc.optString("host", defaultHost),
+				hc.optInt("expectedStatus", 0), hc.optInt("rise", 2), hc.optInt("fall", 3), hc.optString("scheme", null));
+	}
+
+	private static void checkUpstreamServerEntry(JSONObject entry, String optionName) {
+		if(!entry.has("address"))
+			throw new IllegalArgumentException("Value in '" + optionName + "' is missing required argument 'address'");
+		Object protocols = entry.opt("protocols");
+		if(protocols != null && !(protocols instanceof JSONArray))
+			throw new IllegalArgumentException("'protocols' in '" + optionName + "' must be an array");
+	}
+
+	/**
+	 * Loads the key and certificate files of all configured server names into the map returned by {@link #getTlsAuthData()}.
+	 * <p>
+	 * If {@linkplain #isTlsAuthLazyLoad() lazy loading} is enabled, the map is only cleared, and the data of individual server names must be loaded using
+	 * {@link #loadTLSAuthEntry(String)} when needed.
+	 *
+	 * @throws GeneralSecurityException If a key or certificate is invalid
+	 * @throws IOException If a file could not be read
+	 */
 	public void reloadTLSAuthData() throws GeneralSecurityException, IOException {
 		synchronized(this.tlsAuthData){
 			logger.trace("Reloading TLS auth data");
 			this.tlsAuthData.clear(); // remove any possible temporary entries in the map
+			this.tlsAuthFileStates.clear();
 			for(Entry<String, Entry<String, String>> entry : this.tlsAuth.entrySet()){
-				this.tlsAuthData.put(entry.getKey(),
-						new SimpleEntry<>(SSLUtil.loadPrivateKeyFromPEM(entry.getValue().getKey()), SSLUtil.loadCertificatesFromPEM(entry.getValue().getValue())));
+				String alias = entry.getKey();
+				this.tlsAuthFileStates.put(alias, getFileState(entry.getValue()));
+				if(!this.tlsAuthLazyLoad)
+					this.tlsAuthData.put(alias, this.loadTLSAuthEntry(alias));
 			}
 		}
 	}
 
+	/**
+	 * Reloads only the key/certificate pairs whose key or certificate file was modified since the last call to this method or {@link #reloadTLSAuthData()}, as indicated by
+	 * the modification time and size of the files. If a modified file cannot be loaded, the existing data is kept and loading is retried on the next call.
+	 * <p>
+	 * If {@linkplain #isTlsAuthLazyLoad() lazy loading} is enabled, modified files are not loaded, and the caller is responsible for discarding previously loaded data of the
+	 * returned aliases.
+	 *
+	 * @return The aliases whose data was modified
+	 * @since 3.12.1
+	 */
+	public Set<String> reloadChangedTLSAuthData() {
+		Set<String> changed = new HashSet<>();
+		synchronized(this.tlsAuthData){
+			for(Entry<String, Entry<String, String>> entry : this.tlsAuth.entrySet()){
+				String alias = entry.getKey();
+				long[] state = getFileState(entry.getValue());
+				if(Arrays.equals(state, this.tlsAuthFileStates.get(alias)))
+					continue;
+				if(!this.tlsAuthLazyLoad){
+					try{
+						this.tlsAuthData.put(alias, this.loadTLSAuthEntry(alias));
+					}catch(GeneralSecurityException | IOException e){
+						logger.warn("Failed to reload TLS auth data for '", alias, "', keeping existing data: ", e.toString());
+						continue;
+					}
+				}
+				this.tlsAuthFileStates.put(alias, state);
+				changed.add(alias);
+			}
+		}
+		if(!changed.isEmpty())
+			logger.debug("Reloaded TLS auth data of ", changed.size(), " modified key/certificate pairs");
+		return changed;
+	}
+
+	private static long[] getFileState(Entry<String, String> files) {
+		File keyFile = new File(files.getKey());
+		File certFile = new File(files.getValue());
+		return new long[] { keyFile.lastModified(), keyFile.length(), certFile.lastModified(), certFile.length() };
+	}
+
+	/**
+	 * Loads the key and certificate files configured for the given alias.
+	 *
+	 * @param alias The TLS auth alias
+	 * @return The key and certificate chain, or {@code null} if no data was configured for the given alias
+	 * @throws GeneralSecurityException If the key or certificate is invalid
+	 * @throws IOException If a file could not be read
+	 * @since 3.12.1
+	 * @see #getTlsAuthAlias(String, int)
+	 */
+	public Entry<PrivateKey, X509Certificate[]> loadTLSAuthEntry(String alias) throws GeneralSecurityException, IOException {
+		Entry<String, String> files = this.tlsAuth.get(alias);
+		if(files == null)
+			return null;
+		return new SimpleEntry<>(SSLUtil.loadPrivateKeyFromPEM(files.getKey()), SSLUtil.loadCertificatesFromPEM(files.getValue()));
+	}
+
 
 	@Override
 	protected boolean setUnsupportedField(Field field, Object jsonObject) {
@@ -152,11 +354,24 @@ public class ProxyConfiguration extends JSONConfiguration {
 				this.loadConfigurationTLSAuth((JSONObject) jsonObject);
 			}else
 				throw new IllegalArgumentException("'tlsAuth' must be either an array or object");
-			try{
-				this.reloadTLSAuthData();
-			}catch(GeneralSecurityException | IOException e){
-				throw new RuntimeException("Failed to load TLS auth data: ", e);
-			}
+		}else if(field.getName().equals("routes")){
+			// JSONArray check already done because it is a list
+			((JSONArray) jsonObject).forEach((obj) -> {
+				if(obj instanceof JSONObject){
+					this.loadConfigurationRoute((JSONObject) obj);
+				}else
+					throw new IllegalArgumentException("Values in 'routes' must be objects");
+			});
+		}else if(field.getName().equals("upstreamGroups")){
+			if(jsonObject instanceof JSONObject){
+				JSONObject j = ((JSONObject) jsonObject);
+				for(String k : j.keySet()){
+					if(!(j.get(k) instanceof JSONObject))
+						throw new IllegalArgumentException("Values in 'upstreamGroups' must be objects");
+					this.loadConfigurationUpstreamGroup(k, j.getJSONObject(k));
+				}
+			}else
+				throw new IllegalArgumentException("'upstreamGroups' must be an object");
 		}else if(field.getName().equals("errdocFiles")){
 			if(jsonObject instanceof JSONObject){
 				JSONObject j = ((JSONObject) jsonObject);
@@ -227,7 +442,7 @@ public class ProxyConfiguration extends JSONConfiguration {
 
 
 	public void validateConfig() {
-		if(this.portsTls.size() > 0 && this.tlsAuthData.isEmpty()){
+		if(this.portsTls.size() > 0 && this.tlsAuth.isEmpty()){
 			logger.warn("TLS ports were configured but no valid TLS data (key/certificate) was provided");
 		}
 	}
@@ -253,10 +468,66 @@ public class ProxyConfiguration extends JSONConfiguration {
 		return this.tlsAuthData;
 	}
 
+	public Set<String> getTlsAuthAliases() {
+		return Collections.unmodifiableSet(this.tlsAuth.keySet());
+	}
+
 	public int getTlsAuthReloadInterval() {
 		return this.tlsAuthReloadInterval;
 	}
 
+	public boolean isTlsAuthLazyLoad() {
+		return this.tlsAuthLazyLoad;
+	}
+
+	public int getTlsAuthMaxLoaded() {
+		return this.tlsAuthMaxLoaded;
+	}
+
+	public List<String> getTlsAuthPrefetch() {
+		return this.tlsAuthPrefetch;
+	}
+
+	public int getTlsHandshakeRateLimit() {
+		return this.tlsHandshakeRateLimit;
+	}
+
+	public boolean isTlsSessionTickets() {
+		return this.tlsSessionTickets;
+	}
+
+	public int getTlsSessionTicketKeyLifetime() {
+		return this.tlsSessionTicketKeyLifetime;
+	}
+
+	public int getTlsSessionTimeout() {
+		return this.tlsSessionTimeout;
+	}
+
+	public int getTlsSessionCacheSize() {
+		return this.tlsSessionCacheSize;
+	}
+
+	public boolean isTlsOcspStapling() {
+		return this.tlsOcspStapling;
+	}
+
+	public int getTlsOcspRefreshInterval() {
+		return this.tlsOcspRefreshInterval;
+	}
+
+	public int getTlsOcspCacheLifetime() {
+		return this.tlsOcspCacheLifetime;
+	}
+
+	public int getTlsOcspResponseTimeout() {
+		return this.tlsOcspResponseTimeout;
+	}
+
+	public String getTlsOcspResponderOverride() {
+		return this.tlsOcspResponderOverride;
+	}
+
 	public int getConnectionIdleTimeout() {
 		return this.connectionIdleTimeout;
 	}
@@ -273,6 +544,35 @@ public class ProxyConfiguration extends JSONConfiguration {
 		return this.defaultOutboundLocalAddressV6;
 	}
 
+	/**
+	 * Returns the alias of a key/certificate pair configured in {@code tlsAuth}. Multiple pairs (for example, with different key types) may be configured for the same server
+	 * name. The alias of the first pair is the server name itself, the aliases of additional pairs are the server name followed by {@link #TLS_AUTH_ALIAS_SEPARATOR} and the
+	 * <b>index</b> of the pair.
+	 * <p>
+	 * The keys of the map returned by {@link #getTlsAuthData()} are aliases.
+	 *
+	 * @param servername The server name
+	 * @param index The index of the key/certificate pair for the server name
+	 * @return The alias
+	 * @since 3.12.1
+	 */
+	public static String getTlsAuthAlias(String servername, int index) {
+		return index == 0 ? servername : servername + TLS_AUTH_ALIAS_SEPARATOR + index;
+	}
+
+	/**
+	 * Returns the server name of the given alias.
+	 *
+	 * @param alias The alias
+	 * @return The server name
+	 * @since 3.12.1
+	 * @see #getTlsAuthAlias(String, int)
+	 */
+	public static String getTlsAuthServername(String alias) {
+		int i = alias.lastIndexOf(TLS_AUTH_ALIAS_SEPARATOR);
+		return i >= 0 ? alias.substring(0, i) : alias;
+	}
+
 	public UpstreamServer createDefaultUpstreamServerInstance() throws IOException {
 		if(this.upstreamServerAddress != null){
 			return new UpstreamServer(InetAddress.getByName(this.upstreamServerAddress), this.upstreamServerAddressTTL,
@@ -282,6 +582,160 @@ public class ProxyConfiguration extends JSONConfiguration {
 			return null;
 	}
 
+	private UpstreamServer createUpstreamServer(JSONObject entry) throws IOException {
+		Set<String> protocols = null;
+		if(entry.has("protocols")){
+			protocols = new HashSet<>();
+			for(Object p : entry.getJSONArray("protocols"))
+				protocols.add(String.valueOf(p));
+		}
+		String localAddress = entry.optString("localAddress", null);
+		return new UpstreamServer(InetAddress.getByName(entry.getString("address")), entry.optInt("addressTTL", -1),
+				localAddress != null ? InetAddress.getByName(localAddress) : null, entry.optInt("portPlain", this.upstreamServerPortPlain),
+				entry.optInt("portTLS", this.upstreamServerPortTLS), protocols, entry.optString("clientImplOverride", null));
+	}
+
+	/**
+	 * Creates the configured {@link UpstreamGroup}s.
+	 * <p>
+	 * If a group with the same name exists in the given map of <b>previous</b> groups, that instance is updated with the new configuration and returned instead of creating a
+	 * new one, so that members which remain in the group keep their state. Members added to existing groups start their slow start.
+	 *
+	 * @param previous The previously created groups, to be updated. May be {@code null}
+	 * @param healthChecks A map to which the members of groups with configured health checks and their {@code HealthCheck} are added. May be {@code null}
+	 * @return A map containing the configured groups by name
+	 * @throws IOException If the address of an upstream server could not be resolved
+	 * @since 3.12.1
+	 */
+	public Map<String, UpstreamGroup> createUpstreamGroups(Map<String, UpstreamGroup> previous, Map<UpstreamServer, UpstreamHealthChecker.HealthCheck> healthChecks)
+			throws IOException {
+		Map<String, UpstreamGroup> groups = new HashMap<>();
+		for(Entry<String, JSONObject> e : this.upstreamGroups.entrySet()){
+			JSONObject g = e.getValue();
+			List<UpstreamGroup.Member> members = new java.util.ArrayList<>();
+			for(Object m : g.getJSONArray("members"))
+				members.add(new UpstreamGroup.Member(this.createUpstreamServer((JSONObject) m), ((JSONObject) m).optInt("weight", 1)));
+			int slowStart = g.optInt("slowStart", 0);
+			UpstreamGroup group = previous != null ? previous.get(e.getKey()) : null;
+			if(group != null){
+				group.setSlowStart(slowStart);
+				group.setMembers(members);
+			}else
+				group = new UpstreamGroup(e.getKey(), members, slowStart);
+			groups.put(e.getKey(), group);
+			if(healthChecks != null && g.has("healthCheck")){
+				// members kept from the previous group have a different UpstreamServer instance than the one created above
+				JSONArray memberEntries = g.getJSONArray("members");
+				Map<UpstreamServer, String> addresses = new HashMap<>();
+				for(int i = 0; i < members.size(); i++)
+					addresses.put(members.get(i).getUpstreamServer(), memberEntries.getJSONObject(i).getString("address"));
+				for(UpstreamGroup.Member m : group.getMembers())
+					healthChecks.put(m.getUpstreamServer(), createHealthCheck(g.getJSONObject("healthCheck"), addresses.get(m.getUpstreamServer())));
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Creates a new {@link RoutingTable} containing the configured routes.
+	 * <p>
+	 * If a route of the <b>previous</b> table has an {@linkplain UpstreamServer#equals(Object) equal} upstream server, that instance is used instead of creating a new one,
+	 * so that its outlier detection state and response latencies are kept.
+	 *
+	 * @param previous The previously created routing table. May be {@code null}
+	 * @param groups The upstream groups routes may refer to, as returned by {@link #createUpstreamGroups(Map, Map)}
+	 * @param healthChecks A map to which the upstream servers of routes with configured health checks and their {@code HealthCheck} are added. May be {@code null}
+	 * @return The {@code RoutingTable}
+	 * @throws IOException If the address of an upstream server could not be resolved
+	 * @throws IllegalArgumentException If a route refers to a group that does not exist
+	 * @since 3.12.1
+	 */
+	public RoutingTable createRoutingTable(RoutingTable previous, Map<String, UpstreamGroup> groups, Map<UpstreamServer, UpstreamHealthChecker.HealthCheck> healthChecks)
+			throws IOException {
+		Map<UpstreamServer, UpstreamServer> previousServers = new HashMap<>();
+		if(previous != null){
+			for(RoutingTable.Route r : previous.getRoutes()){
+				if(r.getUpstreamServer() != null)
+					previousServers.put(r.getUpstreamServer(), r.getUpstreamServer());
+			}
+		}
+		List<RoutingTable.Route> list = new java.util.ArrayList<>(this.routes.size());
+		for(JSONObject r : this.routes){
+			String host = r.optString("host", null);
+			String path = r.optString("path", null);
+			String method = r.optString("method", null);
+			if(r.has("group")){
+				UpstreamGroup group = groups.get(r.getString("group"));
+				if(group == null)
+					throw new IllegalArgumentException("Route refers to undefined upstream group '" + r.getString("group") + "'");
+				list.add(new RoutingTable.Route(host, path, method, group));
+			}else{
+				UpstreamServer userver = this.createUpstreamServer(r);
+				userver = previousServers.getOrDefault(userver, userver);
+				if(healthChecks != null && r.has("healthCheck"))
+					healthChecks.put(userver, createHealthCheck(r.getJSONObject("healthCheck"), r.getString("address")));
+				list.add(new RoutingTable.Route(host, path, method, userver));
+			}
+		}
+		return new RoutingTable(list);
+	}
+
+	public int getUpstreamPoolMaxIdle() {
+		return this.upstreamPoolMaxIdle;
+	}
+
+	public int getUpstreamPoolIdleTimeout() {
+		return this.upstreamPoolIdleTimeout;
+	}
+
+	public int getUpstreamPoolMaxLifetime() {
+		return this.upstreamPoolMaxLifetime;
+	}
+
+	public List<String> getUpstreamMultiplexProtocols() {
+		return this.upstreamMultiplexProtocols;
+	}
+
+	public int getUpstreamMultiplexMaxConnections() {
+		return this.upstreamMultiplexMaxConnections;
+	}
+
+	public int getUpstreamOutlierConsecutiveFailures() {
+		return this.upstreamOutlierConsecutiveFailures;
+	}
+
+	public int getUpstreamOutlierErrorRate() {
+		return this.upstreamOutlierErrorRate;
+	}
+
+	public int getUpstreamOutlierErrorRateMinRequests() {
+		return this.upstreamOutlierErrorRateMinRequests;
+	}
+
+	public int getUpstreamOutlierErrorRateInterval() {
+		return this.upstreamOutlierErrorRateInterval;
+	}
+
+	public int getUpstreamOutlierBaseEjectionTime() {
+		return this.upstreamOutlierBaseEjectionTime;
+	}
+
+	public int getUpstreamOutlierMaxEjectionTime() {
+		return this.upstreamOutlierMaxEjectionTime;
+	}
+
+	public int getUpstreamRetryBudget() {
+		return this.upstreamRetryBudget;
+	}
+
+	public int getUpstreamTlsSessionCacheSize() {
+		return this.upstreamTlsSessionCacheSize;
+	}
+
+	public int getUpstreamTlsSessionTimeout() {
+		return this.upstreamTlsSessionTimeout;
+	}
+
 	public List<String> getTrustedCertificates() {
 		return this.trustedCertificates;
 	}
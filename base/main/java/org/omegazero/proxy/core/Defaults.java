@@ -25,6 +25,7 @@ import org.omegazero.net.common.NetworkApplicationBuilder;
 import org.omegazero.net.server.NetServer;
 import org.omegazero.net.util.TrustManagerUtil;
 import org.omegazero.proxy.config.ProxyConfiguration;
+import org.omegazero.proxy.net.UpstreamTLSSessionCache;
 import org.omegazero.proxy.util.FeatureSet;
 
 class Defaults {
@@ -71,6 +72,12 @@ class Defaults {
 					clientSslContext.init(null, TrustManagerUtil.getTrustAllManager(), null);
 				else
 					clientSslContext.init(null, TrustManagerUtil.getTrustManagersWithAdditionalCertificateFiles(config.getTrustedCertificates()), null);
+				if(config.getUpstreamTlsSessionCacheSize() > 0){
+					UpstreamTLSSessionCache sessionCache = new UpstreamTLSSessionCache(clientSslContext, config.getUpstreamTlsSessionCacheSize(),
+							config.getUpstreamTlsSessionTimeout());
+					proxy.setUpstreamTlsSessionCache(sessionCache);
+					clientSslContext = sessionCache.getSSLContext();
+				}
 				proxy.getRegistry().registerClientManager("tcp.client.tls", NetworkApplicationBuilder.newClientManager("nio").sslContext(clientSslContext).build());
 			}catch(GeneralSecurityException | IOException e){
 				throw new RuntimeException("Error while loading trusted certificates", e);
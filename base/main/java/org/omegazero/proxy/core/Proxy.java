@@ -18,13 +18,21 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 
 import org.omegazero.common.config.ConfigObject;
 import org.omegazero.common.event.DeferringTaskQueueExecutor;
@@ -41,6 +49,7 @@ import org.omegazero.common.plugins.PluginManager;
 import org.omegazero.common.runtime.Application;
 import org.omegazero.common.runtime.ApplicationWrapper;
 import org.omegazero.common.util.Args;
+import org.omegazero.common.util.PropertyUtil;
 import org.omegazero.net.client.NetClientManager;
 import org.omegazero.net.client.params.ConnectionParameters;
 import org.omegazero.net.common.NetworkApplication;
@@ -50,8 +59,18 @@ import org.omegazero.proxy.config.HTTPEngineConfig;
 import org.omegazero.proxy.config.ProxyConfiguration;
 import org.omegazero.proxy.http.HTTPEngine;
 import org.omegazero.proxy.http.HTTPErrdoc;
+import org.omegazero.proxy.http.RetryBudget;
+import org.omegazero.proxy.http.UpstreamClientPool;
+import org.omegazero.proxy.net.OCSPStaplingRefresher;
+import org.omegazero.proxy.net.RoutingTable;
+import org.omegazero.proxy.net.TLSHandshakeController;
+import org.omegazero.proxy.net.UpstreamGroup;
+import org.omegazero.proxy.net.UpstreamHealthChecker;
+import org.omegazero.proxy.net.UpstreamOutlierDetector;
+import org.omegazero.proxy.net.UpstreamTLSSessionCache;
 import org.omegazero.proxy.net.UpstreamServer;
 import org.omegazero.proxy.util.FeatureSet;
+import org.omegazero.proxy.util.TimingWheel;
 
 /**
  * The main class of <i>omz-proxy</i>.
@@ -67,6 +86,28 @@ public final class Proxy implements Application {
 	 */
 	public static final String VERSION = "$BUILDVERSION";
 
+	/**
+	 * The duration of a tick of the {@linkplain #getTimingWheel() timing wheel} in milliseconds. Set using the system property
+	 * {@code org.omegazero.proxy.timingWheel.tick} (default {@code 10}).
+	 *
+	 * @since 3.12.1
+	 */
+	public static final long timingWheelTick = Math.max(PropertyUtil.getLong("org.omegazero.proxy.timingWheel.tick", 10), 1);
+	/**
+	 * The number of buckets per shard of the {@linkplain #getTimingWheel() timing wheel}. Set using the system property {@code org.omegazero.proxy.timingWheel.size}
+	 * (default {@code 1024}).
+	 *
+	 * @since 3.12.1
+	 */
+	public static final int timingWheelSize = Math.max(PropertyUtil.getInt("org.omegazero.proxy.timingWheel.size", 1024), 1);
+	/**
+	 * The number of shards of the {@linkplain #getTimingWheel() timing wheel}. Set using the system property {@code org.omegazero.proxy.timingWheel.shards} (default:
+	 * the number of available processors).
+	 *
+	 * @since 3.12.1
+	 */
+	public static final int timingWheelShards = Math.max(PropertyUtil.getInt("org.omegazero.proxy.timingWheel.shards", Runtime.getRuntime().availableProcessors()), 1);
+
 
 	private static Proxy instance;
 
@@ -86,12 +127,26 @@ public final class Proxy implements Application {
 
 	private ProxyKeyManager keyManager;
 	private SSLContext sslContext;
+	private TLSHandshakeController tlsHandshakeController;
+	private OCSPStaplingRefresher ocspStaplingRefresher;
+	private Object ocspStaplingRefreshInterval;
 	private Object tlsDataReloadInterval;
 
 	private DelegatingTaskQueueExecutor serverWorker = new DelegatingTaskQueueExecutor(new DeferringTaskQueueExecutor());
 	private ApplicationWorkerProvider serverWorkerProvider;
 
 	private UpstreamServer defaultUpstreamServer;
+	private volatile RoutingTable routingTable = new RoutingTable(Collections.emptyList());
+	private volatile Map<String, UpstreamGroup> upstreamGroups = Collections.emptyMap();
+	private final UpstreamHealthChecker upstreamHealthChecker = new UpstreamHealthChecker(this);
+	private final UpstreamOutlierDetector upstreamOutlierDetector = new UpstreamOutlierDetector();
+	private final RetryBudget retryBudget = new RetryBudget();
+
+	private final UpstreamClientPool upstreamClientPool = new UpstreamClientPool();
+	private UpstreamTLSSessionCache upstreamTlsSessionCache;
+	private Object upstreamClientPoolSweepInterval;
+
+	private TimingWheel timingWheel;
 
 	private ProxyRegistry registry = new ProxyRegistry();
 
@@ -103,6 +158,20 @@ public final class Proxy implements Application {
 		instance = this;
 	}
 
+	/**
+	 * Creates a {@code Proxy} which is not initialized, but has the given configuration and event bus. This is used to exercise components requiring a {@code Proxy}
+	 * instance, such as {@link ProxyKeyManager}, without starting the proxy.
+	 *
+	 * @param config The configuration, which must be loaded
+	 * @param eventBus The event bus to dispatch events on
+	 * @since 3.12.1
+	 */
+	Proxy(ProxyConfiguration config, EventBus eventBus) {
+		this();
+		this.config = Objects.requireNonNull(config);
+		this.proxyEventBus = Objects.requireNonNull(eventBus);
+	}
+
 
 	@Override
 	public void start(Args args) throws Exception {
@@ -154,11 +223,12 @@ public final class Proxy implements Application {
 		this.registry.loadErrdocs(this.config);
 
 		this.updateState(State.INIT);
-		logger.info("Loading SSL context; ", this.config.getTlsAuthData().size(), " server names configured");
+		logger.info("Loading SSL context; ", this.config.getTlsAuthAliases().size(), " key/certificate pairs configured");
 		this.loadSSLContext();
 
 		int wtc = this.config.getWorkerThreadCount();
 		logger.info("Setting up worker threads (configured max: ", wtc, ")");
+		this.timingWheel = new TimingWheel("TimeoutThread", timingWheelTick, timingWheelSize, timingWheelShards);
 		this.serverWorker.setErrorHandler((e) -> {
 			logger.fatal("Error in server worker: ", e);
 			Proxy.this.shutdown();
@@ -204,9 +274,19 @@ public final class Proxy implements Application {
 			this.dispatchEvent(ProxyEvents.SHUTDOWN);
 
 		this.registry.forEachServerInstance(NetServer::close);
+		this.upstreamHealthChecker.close();
+		if(this.upstreamClientPoolSweepInterval != null)
+			Tasks.I.clear(this.upstreamClientPoolSweepInterval);
+		this.upstreamClientPool.closeAll();
 		this.registry.forEachClientManager(NetClientManager::close);
+		if(this.ocspStaplingRefreshInterval != null)
+			Tasks.I.clear(this.ocspStaplingRefreshInterval);
+		if(this.ocspStaplingRefresher != null)
+			this.ocspStaplingRefresher.close();
 		if(this.serverWorker != null)
 			this.serverWorker.exit();
+		if(this.timingWheel != null)
+			this.timingWheel.close();
 
 		this.updateState(State.STOPPED);
 
@@ -229,6 +309,11 @@ public final class Proxy implements Application {
 	private void loadConfiguration(byte[] data) throws IOException {
 		ProxyConfiguration config = new ProxyConfiguration(data);
 		config.load();
+		try{
+			config.reloadTLSAuthData();
+		}catch(GeneralSecurityException e){
+			throw new IOException("Failed to load TLS auth data", e);
+		}
 		this.config = config;
 
 		if(this.tlsDataReloadInterval != null)
@@ -236,15 +321,36 @@ public final class Proxy implements Application {
 		if(this.config.getTlsAuthReloadInterval() > 0){
 			this.tlsDataReloadInterval = Tasks.I.interval((args) -> {
 				try{
-					Proxy.this.config.reloadTLSAuthData();
-					Proxy.this.keyManager.tlsDataReload();
+					Set<String> changed = Proxy.this.config.reloadChangedTLSAuthData();
+					if(!changed.isEmpty())
+						Proxy.this.keyManager.tlsDataUpdate(changed);
 				}catch(Exception e){
 					logger.error("Error while reloading TLS auth data: ", e);
 				}
 			}, this.config.getTlsAuthReloadInterval() * 1000).daemon();
 		}
 
-		this.defaultUpstreamServer = this.config.createDefaultUpstreamServerInstance();
+		UpstreamServer defaultUpstreamServer = this.config.createDefaultUpstreamServerInstance();
+		// keep the previous instance and its state if it did not change
+		if(defaultUpstreamServer == null || !defaultUpstreamServer.equals(this.defaultUpstreamServer))
+			this.defaultUpstreamServer = defaultUpstreamServer;
+		Map<UpstreamServer, UpstreamHealthChecker.HealthCheck> healthChecks = new java.util.HashMap<>();
+		Map<String, UpstreamGroup> upstreamGroups = this.config.createUpstreamGroups(this.upstreamGroups, healthChecks);
+		this.routingTable = this.config.createRoutingTable(this.routingTable, upstreamGroups, healthChecks);
+		this.upstreamGroups = upstreamGroups;
+		this.upstreamHealthChecker.setTargets(healthChecks);
+		logger.debug("Loaded routing table with ", this.routingTable.size(), " routes and ", upstreamGroups.size(), " upstream groups");
+
+		this.upstreamClientPool.configure(this.config.getUpstreamPoolMaxIdle(), this.config.getUpstreamPoolIdleTimeout(), this.config.getUpstreamPoolMaxLifetime());
+		this.upstreamOutlierDetector.configure(this.config.getUpstreamOutlierConsecutiveFailures(), this.config.getUpstreamOutlierErrorRate(),
+				this.config.getUpstreamOutlierErrorRateMinRequests(), this.config.getUpstreamOutlierErrorRateInterval(), this.config.getUpstreamOutlierBaseEjectionTime(),
+				this.config.getUpstreamOutlierMaxEjectionTime());
+		this.retryBudget.configure(this.config.getUpstreamRetryBudget());
+		this.upstreamClientPool.setMaxSharedPerServer(this.config.getUpstreamMultiplexProtocols().isEmpty() ? 0 : this.config.getUpstreamMultiplexMaxConnections());
+		if(this.upstreamClientPoolSweepInterval == null && this.upstreamClientPool.isEnabled())
+			this.upstreamClientPoolSweepInterval = Tasks.I.interval((args) -> {
+				Proxy.this.upstreamClientPool.sweep();
+			}, 1000).daemon();
 	}
 
 
@@ -315,14 +421,100 @@ public final class Proxy implements Application {
 
 	private void loadSSLContext() {
 		try{
+			// these are read once by the JDK TLS implementation when it is first used
+			setDefaultSystemProperty("jdk.tls.server.enableSessionTicketExtension", String.valueOf(this.config.isTlsSessionTickets()));
+			setDefaultSystemProperty("jdk.tls.server.statelessKeyTimeout", String.valueOf(this.config.getTlsSessionTicketKeyLifetime()));
+			if(this.config.isTlsOcspStapling()){
+				setDefaultSystemProperty("jdk.tls.server.enableStatusRequestExtension", "true");
+				setDefaultSystemProperty("jdk.tls.stapling.cacheLifetime", String.valueOf(this.config.getTlsOcspCacheLifetime()));
+				setDefaultSystemProperty("jdk.tls.stapling.responseTimeout", String.valueOf(this.config.getTlsOcspResponseTimeout()));
+				if(this.config.getTlsOcspResponderOverride() != null){
+					setDefaultSystemProperty("jdk.tls.stapling.responderURI", this.config.getTlsOcspResponderOverride());
+					setDefaultSystemProperty("jdk.tls.stapling.responderOverride", "true");
+				}
+			}
+
 			this.keyManager = new ProxyKeyManager(this);
 			this.sslContext = SSLContext.getInstance("TLS");
 			this.sslContext.init(new KeyManager[] { this.keyManager }, null, new SecureRandom());
+			SSLSessionContext sessionContext = this.sslContext.getServerSessionContext();
+			sessionContext.setSessionTimeout(this.config.getTlsSessionTimeout());
+			sessionContext.setSessionCacheSize(this.config.getTlsSessionCacheSize());
+			logger.debug("TLS sessions: tickets=", this.config.isTlsSessionTickets(), " ticketKeyLifetime=", this.config.getTlsSessionTicketKeyLifetime(), " timeout=",
+					this.config.getTlsSessionTimeout(), " cacheSize=", this.config.getTlsSessionCacheSize());
+
+			if(this.config.isTlsOcspStapling()){
+				this.ocspStaplingRefresher = new OCSPStaplingRefresher(this.sslContext, this.keyManager);
+				this.keyManager.setLoadListener(this.ocspStaplingRefresher::warm);
+				this.ocspStaplingRefresher.refresh(this.getOcspStaplingAliases());
+				this.ocspStaplingRefreshInterval = Tasks.I.interval((args) -> {
+					Proxy.this.ocspStaplingRefresher.refresh(Proxy.this.getOcspStaplingAliases());
+				}, this.config.getTlsOcspRefreshInterval() * 1000).daemon();
+			}
+
+			// always installed, because it also counts full and resumed handshakes
+			logger.debug("TLS handshake control: rateLimit=", this.config.getTlsHandshakeRateLimit());
+			this.tlsHandshakeController = new TLSHandshakeController(this.config.getTlsHandshakeRateLimit());
+			this.sslContext = this.tlsHandshakeController.wrap(this.sslContext);
 		}catch(GeneralSecurityException e){
 			throw new RuntimeException("SSL context initialization failed", e);
 		}
 	}
 
+	/**
+	 * Logs a warning if any TLS setting which is only applied when the SSL context is created in {@link #loadSSLContext()} differs between the given configurations.
+	 * Some of these settings are passed to the JDK using process-wide system properties, which the JDK only reads once.
+	 */
+	private static void warnStartupOnlyChanges(ProxyConfiguration previous, ProxyConfiguration current) {
+		Collection<String> changed = new ArrayList<>();
+		if(previous.isTlsSessionTickets() != current.isTlsSessionTickets())
+			changed.add("tlsSessionTickets");
+		if(previous.getTlsSessionTicketKeyLifetime() != current.getTlsSessionTicketKeyLifetime())
+			changed.add("tlsSessionTicketKeyLifetime");
+		if(previous.getTlsSessionTimeout() != current.getTlsSessionTimeout())
+			changed.add("tlsSessionTimeout");
+		if(previous.getTlsSessionCacheSize() != current.getTlsSessionCacheSize())
+			changed.add("tlsSessionCacheSize");
+		if(previous.isTlsOcspStapling() != current.isTlsOcspStapling())
+			changed.add("tlsOcspStapling");
+		if(previous.getTlsOcspRefreshInterval() != current.getTlsOcspRefreshInterval())
+			changed.add("tlsOcspRefreshInterval");
+		if(previous.getTlsOcspCacheLifetime() != current.getTlsOcspCacheLifetime())
+			changed.add("tlsOcspCacheLifetime");
+		if(previous.getTlsOcspResponseTimeout() != current.getTlsOcspResponseTimeout())
+			changed.add("tlsOcspResponseTimeout");
+		if(!Objects.equals(previous.getTlsOcspResponderOverride(), current.getTlsOcspResponderOverride()))
+			changed.add("tlsOcspResponderOverride");
+		if(previous.getTlsHandshakeRateLimit() != current.getTlsHandshakeRateLimit())
+			changed.add("tlsHandshakeRateLimit");
+		if(!changed.isEmpty())
+			logger.warn("Configuration reload: Changes to ", String.join(", ", changed), " only take effect after a restart");
+	}
+
+	private Collection<String> getOcspStaplingAliases() {
+		Set<String> aliases = new LinkedHashSet<>();
+		if(!this.config.isTlsAuthLazyLoad()){
+			aliases.addAll(this.config.getTlsAuthAliases());
+		}else{
+			// only refresh the certificates which are expected to be used, instead of loading all of them
+			Set<String> prefetch = new HashSet<>(this.config.getTlsAuthPrefetch());
+			for(String alias : this.config.getTlsAuthAliases()){
+				if(prefetch.contains(ProxyConfiguration.getTlsAuthServername(alias)))
+					aliases.add(alias);
+			}
+		}
+		// certificates loaded on demand or provided by plugins are kept warm while they are loaded
+		aliases.addAll(this.keyManager.getLoadedAliases());
+		return aliases;
+	}
+
+	private static void setDefaultSystemProperty(String key, String value) {
+		if(System.getProperty(key) == null)
+			System.setProperty(key, value);
+		else if(!System.getProperty(key).equals(value))
+			logger.debug("System property '", key, "' is set explicitly, ignoring configured value ", value);
+	}
+
 
 	/**
 	 * Registers a new {@link NetServer} instance of the given type.
@@ -467,7 +659,9 @@ public final class Proxy implements Application {
 	public void reloadConfiguration() throws IOException {
 		if(this.configFile == null)
 			return;
+		ProxyConfiguration previous = this.config;
 		this.loadConfiguration(this.configFile);
+		warnStartupOnlyChanges(previous, this.config);
 		this.keyManager.tlsDataReload();
 		this.pushPluginConfig();
 	}
@@ -651,6 +845,36 @@ public final class Proxy implements Application {
 		return this.sslContext;
 	}
 
+	/**
+	 * Returns the {@link TLSHandshakeController} of the {@linkplain #getSslContext() SSL context}, which provides TLS handshake and session resumption metrics.
+	 *
+	 * @return The {@code TLSHandshakeController}, or {@code null} if the proxy is not initialized yet
+	 * @since 3.12.1
+	 */
+	public TLSHandshakeController getTlsHandshakeController() {
+		return this.tlsHandshakeController;
+	}
+
+	/**
+	 * Returns the {@link OCSPStaplingRefresher} of the {@linkplain #getSslContext() SSL context}, which provides OCSP stapling metrics.
+	 *
+	 * @return The {@code OCSPStaplingRefresher}, or {@code null} if OCSP stapling is not enabled in the configuration
+	 * @since 3.12.1
+	 */
+	public OCSPStaplingRefresher getOcspStaplingRefresher() {
+		return this.ocspStaplingRefresher;
+	}
+
+	/**
+	 * Returns the {@link TimingWheel} used for request, response and other short-lived timeouts of HTTP engines.
+	 *
+	 * @return The {@code TimingWheel}, or {@code null} if the proxy is not initialized yet
+	 * @since 3.12.1
+	 */
+	public TimingWheel getTimingWheel() {
+		return this.timingWheel;
+	}
+
 	/**
 	 * Returns the {@link ApplicationWorkerProvider} for use by plugins for long-running tasks.
 	 * 
@@ -734,6 +958,59 @@ public final class Proxy implements Application {
 		return this.defaultUpstreamServer;
 	}
 
+	/**
+	 * Returns the {@link RoutingTable} containing the routes configured in the proxy configuration. The returned table is replaced by a new instance when the
+	 * configuration is reloaded.
+	 *
+	 * @return The {@code RoutingTable}
+	 * @since 3.12.1
+	 */
+	public RoutingTable getRoutingTable() {
+		return this.routingTable;
+	}
+
+	/**
+	 * Returns the {@link UpstreamHealthChecker} performing the health checks configured in the proxy configuration.
+	 *
+	 * @return The {@code UpstreamHealthChecker}
+	 * @since 3.12.1
+	 */
+	public UpstreamHealthChecker getUpstreamHealthChecker() {
+		return this.upstreamHealthChecker;
+	}
+
+	/**
+	 * Returns the {@link UpstreamOutlierDetector}, which ejects upstream servers based on the outcome of proxied requests.
+	 *
+	 * @return The {@code UpstreamOutlierDetector}
+	 * @since 3.12.1
+	 */
+	public UpstreamOutlierDetector getUpstreamOutlierDetector() {
+		return this.upstreamOutlierDetector;
+	}
+
+	/**
+	 * Returns the {@link RetryBudget}, which limits the number of retried and hedged upstream requests.
+	 *
+	 * @return The {@code RetryBudget}
+	 * @since 3.12.1
+	 */
+	public RetryBudget getRetryBudget() {
+		return this.retryBudget;
+	}
+
+	/**
+	 * Returns the {@link UpstreamGroup} with the given name configured in the proxy configuration. The same instance is returned after a configuration reload, unless
+	 * the group was removed.
+	 *
+	 * @param name The name of the group
+	 * @return The {@code UpstreamGroup}, or {@code null} if no group with the given name exists
+	 * @since 3.12.1
+	 */
+	public UpstreamGroup getUpstreamGroup(String name) {
+		return this.upstreamGroups.get(name);
+	}
+
 	/**
 	 * Selects an upstream server based on the given hostname and path.
 	 * <p>
@@ -751,6 +1028,30 @@ public final class Proxy implements Application {
 		return this.getDefaultUpstreamServer();
 	}
 
+	/**
+	 * Returns the proxy-wide pool of idle upstream {@link org.omegazero.http.util.HTTPClient}s.
+	 *
+	 * @return The {@code UpstreamClientPool}
+	 * @since 3.12.1
+	 */
+	public UpstreamClientPool getUpstreamClientPool(){
+		return this.upstreamClientPool;
+	}
+
+	/**
+	 * Returns the {@link UpstreamTLSSessionCache} used by the default TLS client manager, which provides upstream TLS session resumption metrics.
+	 *
+	 * @return The {@code UpstreamTLSSessionCache}, or {@code null} if the default TLS client manager is not used or upstream TLS session caching is disabled
+	 * @since 3.12.1
+	 */
+	public UpstreamTLSSessionCache getUpstreamTlsSessionCache(){
+		return this.upstreamTlsSessionCache;
+	}
+
+	void setUpstreamTlsSessionCache(UpstreamTLSSessionCache upstreamTlsSessionCache){
+		this.upstreamTlsSessionCache = upstreamTlsSessionCache;
+	}
+
 	/**
 	 * Returns the {@link ProxyRegistry} for this proxy.
 	 *
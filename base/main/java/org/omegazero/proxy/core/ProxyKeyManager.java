@@ -11,16 +11,31 @@
  */
 package org.omegazero.proxy.core;
 
+import java.io.IOException;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
 import java.security.Principal;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
@@ -31,6 +46,9 @@ import org.omegazero.common.logging.Logger;
 import org.omegazero.common.logging.LoggerUtil;
 import org.omegazero.common.util.PropertyUtil;
 import org.omegazero.proxy.config.ProxyConfiguration;
+import org.omegazero.proxy.net.OCSPStaplingRefresher;
+import org.omegazero.proxy.net.TLSHandshakeController;
+import org.omegazero.proxy.util.ConcurrentLRUCache;
 
 class ProxyKeyManager extends X509ExtendedKeyManager {
 
@@ -42,9 +60,8 @@ class ProxyKeyManager extends X509ExtendedKeyManager {
 
 	private final Proxy proxy;
 
-	private final Map<String, String> aliases = new HashMap<String, String>();
-
-	private Map<String, Entry<PrivateKey, X509Certificate[]>> tlsAuthData;
+	private volatile TLSData tlsData;
+	private volatile Consumer<String> loadListener;
 
 	public ProxyKeyManager(Proxy proxy) {
 		this.proxy = proxy;
@@ -54,38 +71,156 @@ class ProxyKeyManager extends X509ExtendedKeyManager {
 
 
 	public void tlsDataReload() {
-		this.aliases.clear();
+		ProxyConfiguration config = this.proxy.getConfig();
+		TLSData data;
+		if(config.isTlsAuthLazyLoad()){
+			data = new TLSData(config, Collections.emptyMap(), new HashSet<>(config.getTlsAuthAliases()), this::entryLoaded);
+		}else{
+			Map<String, Entry<PrivateKey, X509Certificate[]>> configData = config.getTlsAuthData();
+			// create copy to not modify the original map when adding new entries
+			Map<String, Entry<PrivateKey, X509Certificate[]>> copy;
+			synchronized(configData){
+				copy = new HashMap<>(configData);
+			}
+			data = new TLSData(null, Collections.unmodifiableMap(copy), copy.keySet(), this::entryLoaded);
+		}
+		this.tlsData = data;
+
+		List<String> prefetch = config.getTlsAuthPrefetch();
+		if(data.source != null && !prefetch.isEmpty()){
+			CompletableFuture.runAsync(() -> {
+				long start = System.nanoTime();
+				prefetch.parallelStream().forEach(data::getAll);
+				logger.debug("Prefetched TLS data of ", prefetch.size(), " server names in ", (System.nanoTime() - start) / 1000000, "ms");
+			});
+		}
+	}
 
-		// create copy to not modify the original map when adding new entries
-		this.tlsAuthData = new HashMap<>(this.proxy.getConfig().getTlsAuthData());
+
+	/**
+	 * Replaces the data of the given aliases after their files were reloaded, keeping the data of all other aliases and any entries provided by plugins.
+	 *
+	 * @param aliases The aliases whose data changed
+	 * @since 3.12.1
+	 * @see ProxyConfiguration#reloadChangedTLSAuthData()
+	 */
+	public void tlsDataUpdate(Set<String> aliases) {
+		TLSData data = this.tlsData;
+		if(data.source != null){
+			for(String alias : aliases)
+				data.loaded.remove(alias);
+			data.aliasCache.clear();
+		}else{
+			Map<String, Entry<PrivateKey, X509Certificate[]>> configData = this.proxy.getConfig().getTlsAuthData();
+			Map<String, Entry<PrivateKey, X509Certificate[]>> copy;
+			synchronized(configData){
+				copy = new HashMap<>(data.configured);
+				for(String alias : aliases){
+					Entry<PrivateKey, X509Certificate[]> e = configData.get(alias);
+					if(e != null)
+						copy.put(alias, e);
+				}
+			}
+			this.tlsData = new TLSData(data, Collections.unmodifiableMap(copy));
+		}
+	}
+
+
+	/**
+	 * Sets a listener which is called with the alias of each entry loaded on demand or provided by a plugin, after the entry was loaded.
+	 *
+	 * @param loadListener The listener, or {@code null} to remove it
+	 * @since 3.12.1
+	 */
+	public void setLoadListener(Consumer<String> loadListener) {
+		this.loadListener = loadListener;
+	}
+
+	/**
+	 * Returns the aliases of all entries which are currently loaded on demand or were provided by plugins.
+	 *
+	 * @return The aliases
+	 * @since 3.12.1
+	 */
+	public Collection<String> getLoadedAliases() {
+		TLSData data = this.tlsData;
+		Collection<String> aliases = new ArrayList<>(data.external.keySet());
+		if(data.loaded != null)
+			aliases.addAll(data.loaded.keys());
+		return aliases;
+	}
+
+	private void entryLoaded(String alias) {
+		Consumer<String> listener = this.loadListener;
+		if(listener != null)
+			listener.accept(alias);
 	}
 
 
 	private Entry<PrivateKey, X509Certificate[]> getTlsAuthEntry(String name) {
-		synchronized(this.tlsAuthData){
-			return this.tlsAuthData.get(name);
+		return this.tlsData.get(name);
+	}
+
+	private Entry<PrivateKey, X509Certificate[]> getExternalEntry(TLSData data, String name, String keyType) {
+		Entry<PrivateKey, X509Certificate[]> existing = data.external.get(name);
+		if(existing != null)
+			return existing;
+		return loadOnce(data.pendingLookups, name, () -> {
+			Entry<PrivateKey, X509Certificate[]> entry = data.external.get(name);
+			if(entry == null){
+				entry = this.loadExternalEntry(name, keyType);
+				if(entry != null){
+					data.external.put(name, entry);
+					this.entryLoaded(name);
+				}
+			}
+			return entry;
+		});
+	}
+
+	/**
+	 * Calls the given <b>loader</b>, unless another thread is already loading an entry with the given name, in which case this method waits for and returns the result of
+	 * that thread instead.
+	 */
+	private static Entry<PrivateKey, X509Certificate[]> loadOnce(Map<String, CompletableFuture<Entry<PrivateKey, X509Certificate[]>>> pendingLoads, String name,
+			Supplier<Entry<PrivateKey, X509Certificate[]>> loader) {
+		CompletableFuture<Entry<PrivateKey, X509Certificate[]>> future = new CompletableFuture<>();
+		CompletableFuture<Entry<PrivateKey, X509Certificate[]>> pending = pendingLoads.putIfAbsent(name, future);
+		if(pending != null){
+			try{
+				return pending.join();
+			}catch(CompletionException | CancellationException e){
+				return null;
+			}
+		}
+		try{
+			Entry<PrivateKey, X509Certificate[]> entry = loader.get();
+			future.complete(entry);
+			return entry;
+		}catch(RuntimeException | Error e){
+			future.completeExceptionally(e);
+			throw e;
+		}finally{
+			pendingLoads.remove(name, future);
 		}
 	}
 
 	@SuppressWarnings("unchecked")
-	private boolean getExternalEntry(String name, String keyType) {
+	private Entry<PrivateKey, X509Certificate[]> loadExternalEntry(String name, String keyType) {
 		EventResult res = this.proxy.dispatchEventRes(ProxyEvents.MISSING_TLS_DATA, name, keyType);
 		if(res.getReturnValue() != null){
 			Entry<Object, Object> e = (Entry<Object, Object>) res.getReturnValue();
 			if(!(e.getKey() instanceof PrivateKey)){
 				logger.warn("Entry key must be of type ", PrivateKey.class.getName(), " but received ", getClassName(e.getKey()));
-				return false;
+				return null;
 			}
 			if(!(e.getValue() instanceof X509Certificate[])){
 				logger.warn("Entry value must be of type ", X509Certificate[].class.getName(), " but received ", getClassName(e.getValue()));
-				return false;
-			}
-			synchronized(this.tlsAuthData){
-				this.tlsAuthData.put(name, (Entry<PrivateKey, X509Certificate[]>) res.getReturnValue());
+				return null;
 			}
-			return true;
+			return (Entry<PrivateKey, X509Certificate[]>) res.getReturnValue();
 		}else
-			return false;
+			return null;
 	}
 
 	private static String getClassName(Object o) {
@@ -138,60 +273,210 @@ class ProxyKeyManager extends X509ExtendedKeyManager {
 			logger.debug("session is not of type ", ExtendedSSLSession.class.getName(), " but ", session.getClass().getName());
 			return null;
 		}
-		ExtendedSSLSession esession = (ExtendedSSLSession) session;
-		List<SNIServerName> servernames = esession.getRequestedServerNames();
+		OCSPStaplingRefresher refresher = this.proxy.getOcspStaplingRefresher();
+		String refreshAlias = refresher != null ? refresher.getRefreshAlias(engine) : null;
+		if(refreshAlias != null){
+			PrivateKey key = this.getPrivateKey(refreshAlias);
+			return key != null && key.getAlgorithm().equals(keyType) ? refreshAlias : null;
+		}
+		TLSHandshakeController.markFullHandshake(session);
+		return this.selectServerAlias(((ExtendedSSLSession) session).getRequestedServerNames(), keyType);
+	}
 
+	/**
+	 * Selects the alias of the key and certificate to use for the given SNI server names and key type.
+	 *
+	 * @param servernames The server names requested by the client
+	 * @param keyType The key algorithm name
+	 * @return The alias, or {@code null} if none matches
+	 * @since 3.12.1
+	 */
+	String selectServerAlias(List<SNIServerName> servernames, String keyType) {
+		TLSData data = this.tlsData;
 		String available = null;
 		String servername = null;
-		synchronized(this.tlsAuthData){
-			for(SNIServerName s : servernames){
-				servername = new String(s.getEncoded());
-				if(this.tlsAuthData.containsKey(servername)){
-					available = servername;
-					break;
-				}
-				if(this.aliases.containsKey(servername)){
-					available = this.aliases.get(servername);
-					break;
-				}
-
-				if(this.getExternalEntry(servername, keyType)){
-					available = servername;
-					break;
-				}
-
-				// no direct mapping found, try with higher level names (ie select 'example.com' for sni name 'subdomain.example.com' and cache it if found)
-				String c = servername;
-				int di;
-				while((di = c.indexOf('.')) >= 0){
-					c = c.substring(di + 1);
-					if(this.tlsAuthData.containsKey(c)){
-						if(servername.length() < maxSNICacheNameLen && this.aliases.size() < maxSNICacheMappings)
-							this.aliases.put(servername, c);
-						available = c;
-						break;
-					}else if(this.getExternalEntry(c, keyType)){
-						available = c;
-						break;
-					}
-				}
-				if(available != null)
-					break;
+		for(SNIServerName s : servernames){
+			servername = s instanceof SNIHostName ? ((SNIHostName) s).getAsciiName() : new String(s.getEncoded());
+			boolean cacheable = servername.length() < maxSNICacheNameLen;
+			String cached = cacheable ? data.aliasCache.get(servername) : null;
+			if(cached != null){
+				available = cached;
+				break;
 			}
 
-			// no matching server name, try default
-			if(available == null && this.tlsAuthData.containsKey(ProxyConfiguration.TLS_AUTH_DEFAULT_NAME))
-				available = ProxyConfiguration.TLS_AUTH_DEFAULT_NAME;
-
-			// check if found entry is correct key type
+			available = this.findServerName(data, servername, keyType);
+			// names without a match are not cached, so that plugins are asked to provide TLS data for them again during the next handshake
 			if(available != null){
-				Entry<PrivateKey, X509Certificate[]> e = this.tlsAuthData.get(available);
-				if(!e.getKey().getAlgorithm().equals(keyType))
-					available = null;
+				if(cacheable)
+					data.aliasCache.put(servername, available);
+				break;
 			}
 		}
 
+		// no matching server name, try default
+		if(available == null && data.hasName(ProxyConfiguration.TLS_AUTH_DEFAULT_NAME))
+			available = ProxyConfiguration.TLS_AUTH_DEFAULT_NAME;
+
+		// select the key/certificate pair of the found name with the correct key type
+		if(available != null)
+			available = data.selectAlias(available, keyType);
+
 		logger.trace("SNI: Selected '", available, "' for '", servername, "' (keyType=", keyType, ")");
 		return available;
 	}
+
+
+	/**
+	 * Returns the configured server name or the name of an entry provided by a plugin to use for the given SNI server name, or {@code null} if there is none.
+	 */
+	private String findServerName(TLSData data, String servername, String keyType) {
+		String match = data.index.find(servername);
+		int matchLength = match == null ? 0 : match.startsWith("*.") ? match.length() - 2 : match.length();
+		if(matchLength == servername.length())
+			return match;
+
+		// names more specific than a configured match may be provided by plugins (ie try 'subdomain.example.com' before using 'example.com')
+		String c = servername;
+		while(c.length() > matchLength){
+			if(this.getExternalEntry(data, c, keyType) != null)
+				return c;
+			int di = c.indexOf('.');
+			if(di < 0)
+				break;
+			c = c.substring(di + 1);
+		}
+		return match;
+	}
+
+
+	/**
+	 * A snapshot of the TLS data, replaced when the data is reloaded. Configured entries are immutable, or loaded on demand if lazy loading is enabled; entries provided by
+	 * plugins and the server names selected for SNI names are added concurrently and discarded with the snapshot.
+	 */
+	private static class TLSData {
+
+		private final ProxyConfiguration source;
+		private final Map<String, Entry<PrivateKey, X509Certificate[]>> configured;
+		private final Set<String> aliases;
+		private final Map<String, String[]> aliasesByName;
+		private final ServerNameIndex index;
+		private final ConcurrentLRUCache<String, Entry<PrivateKey, X509Certificate[]>> loaded;
+		private final Map<String, CompletableFuture<Entry<PrivateKey, X509Certificate[]>>> pendingLoads;
+		private final Map<String, Entry<PrivateKey, X509Certificate[]>> external;
+		private final Map<String, CompletableFuture<Entry<PrivateKey, X509Certificate[]>>> pendingLookups;
+		private final ConcurrentLRUCache<String, String> aliasCache = new ConcurrentLRUCache<>(Math.max(maxSNICacheMappings, 0));
+		private final Consumer<String> onLoad;
+
+		/**
+		 * @param source The configuration to load entries from on demand, or {@code null} if all entries are in <b>configured</b>
+		 * @param aliases The aliases of all configured entries
+		 * @param onLoad Called with the alias of each entry loaded on demand
+		 */
+		public TLSData(ProxyConfiguration source, Map<String, Entry<PrivateKey, X509Certificate[]>> configured, Set<String> aliases, Consumer<String> onLoad) {
+			this.source = source;
+			this.configured = configured;
+			this.aliases = aliases;
+			Map<String, List<String>> grouped = new HashMap<>();
+			for(String alias : aliases)
+				grouped.computeIfAbsent(ProxyConfiguration.getTlsAuthServername(alias), (k) -> new ArrayList<>()).add(alias);
+			this.aliasesByName = new HashMap<>(grouped.size());
+			for(Entry<String, List<String>> e : grouped.entrySet()){
+				List<String> list = e.getValue();
+				// configuration order: 'name', 'name|1', 'name|2', ...
+				list.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+				this.aliasesByName.put(e.getKey(), list.toArray(new String[list.size()]));
+			}
+			this.index = new ServerNameIndex(this.aliasesByName.keySet());
+			this.loaded = source != null ? new ConcurrentLRUCache<>(source.getTlsAuthMaxLoaded()) : null;
+			this.pendingLoads = new ConcurrentHashMap<>();
+			this.external = new ConcurrentHashMap<>();
+			this.pendingLookups = new ConcurrentHashMap<>();
+			this.onLoad = onLoad;
+		}
+
+		/**
+		 * Creates a copy of <b>previous</b> with new configured entries, sharing the index and entries provided by plugins.
+		 */
+		public TLSData(TLSData previous, Map<String, Entry<PrivateKey, X509Certificate[]>> configured) {
+			this.source = previous.source;
+			this.configured = configured;
+			this.aliases = previous.aliases;
+			this.aliasesByName = previous.aliasesByName;
+			this.index = previous.index;
+			this.loaded = previous.loaded;
+			this.pendingLoads = previous.pendingLoads;
+			this.external = previous.external;
+			this.pendingLookups = previous.pendingLookups;
+			this.onLoad = previous.onLoad;
+		}
+
+
+		public Entry<PrivateKey, X509Certificate[]> get(String name) {
+			Entry<PrivateKey, X509Certificate[]> e;
+			if(this.source == null)
+				e = this.configured.get(name);
+			else if(this.aliases.contains(name))
+				e = this.getLoaded(name);
+			else
+				e = null;
+			if(e == null)
+				e = this.external.get(name);
+			return e;
+		}
+
+		public boolean hasName(String name) {
+			return this.aliasesByName.containsKey(name);
+		}
+
+		/**
+		 * Loads the entries of all aliases of the given server name.
+		 */
+		public void getAll(String name) {
+			String[] nameAliases = this.aliasesByName.get(name);
+			if(nameAliases != null){
+				for(String alias : nameAliases)
+					this.get(alias);
+			}
+		}
+
+		/**
+		 * Returns the alias of the first key/certificate pair of the given server name whose key has the given algorithm, or {@code null} if there is none.
+		 */
+		public String selectAlias(String name, String keyType) {
+			String[] nameAliases = this.aliasesByName.get(name);
+			if(nameAliases == null){
+				// entry provided by a plugin
+				Entry<PrivateKey, X509Certificate[]> e = this.external.get(name);
+				return e != null && e.getKey().getAlgorithm().equals(keyType) ? name : null;
+			}
+			for(String alias : nameAliases){
+				Entry<PrivateKey, X509Certificate[]> e = this.get(alias);
+				if(e != null && e.getKey().getAlgorithm().equals(keyType))
+					return alias;
+			}
+			return null;
+		}
+
+		private Entry<PrivateKey, X509Certificate[]> getLoaded(String name) {
+			Entry<PrivateKey, X509Certificate[]> e = this.loaded.get(name);
+			if(e != null)
+				return e;
+			return loadOnce(this.pendingLoads, name, () -> {
+				Entry<PrivateKey, X509Certificate[]> entry = this.loaded.get(name);
+				if(entry != null)
+					return entry;
+				try{
+					entry = this.source.loadTLSAuthEntry(name);
+				}catch(GeneralSecurityException | IOException ex){
+					logger.error("Failed to load TLS data for '", name, "': ", ex.toString());
+					return null;
+				}
+				if(entry != null){
+					this.loaded.put(name, entry);
+					this.onLoad.accept(name);
+				}
+				return entry;
+			});
+		}
+	}
 }
@@ -295,11 +295,15 @@ public final class ProxyRegistry {
 
 		/**
 		 * Creates a new {@code HTTPClient} instance.
+		 * <p>
+		 * If <b>dserver</b> is {@code null}, the client is shared by multiple client connections, or may be reused by other client connections after the client
+		 * connection it was created for closed (since 3.12.1). In this case, the returned {@code HTTPClient} and its {@code HTTPClientStream}s must be safe for use by
+		 * multiple threads, and it must not depend on the state of any downstream {@code HTTPServer}.
 		 *
 		 * @param upstreamConnection The connection to the server used by the upstream client
 		 * @param userver The {@code UpstreamServer}
 		 * @param config The {@code HTTPEngineConfig} to use
-		 * @param dserver The downstream {@code HTTPServer} instance
+		 * @param dserver The downstream {@code HTTPServer} instance, or {@code null} if the client is shared
 		 */
 		public HTTPClient construct(SocketConnection upstreamConnection, UpstreamServer userver, HTTPEngineConfig config, HTTPServer dserver);
 	}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of server names, used to find the configured name which matches a requested SNI server name.
+ * <p>
+ * Names are stored in a trie of their labels in reverse order (for example, {@code www.example.com} is stored as the path {@code com}, {@code example}, {@code www}),
+ * which allows finding exact, wildcard and parent domain matches in a single pass over the requested name without allocating. Names are compared case-insensitively.
+ *
+ * @since 3.12.1
+ */
+final class ServerNameIndex {
+
+	private final Node root = new Node();
+
+	/**
+	 * Creates a new {@code ServerNameIndex} containing the given names. A name starting with {@code *.} is a wildcard name, which matches any name with exactly one
+	 * additional label.
+	 *
+	 * @param names The names
+	 */
+	public ServerNameIndex(Collection<String> names) {
+		for(String name : names)
+			this.add(name);
+		this.root.freeze();
+	}
+
+
+	private void add(String name) {
+		boolean wildcard = name.startsWith("*.");
+		String labels = wildcard ? name.substring(2) : name;
+		Node node = this.root;
+		int end = labels.length();
+		for(int i = end - 1; i >= -1; i--){
+			if(i >= 0 && labels.charAt(i) != '.')
+				continue;
+			node = node.getOrCreateChild(labels.substring(i + 1, end));
+			end = i;
+		}
+		if(wildcard)
+			node.wildcard = name;
+		else
+			node.name = name;
+	}
+
+
+	/**
+	 * Finds the name matching the given server name. An exact match is preferred over a wildcard match, which is preferred over the longest parent domain name of the given
+	 * name (for example, {@code example.com} for {@code www.example.com}).
+	 *
+	 * @param servername The requested server name
+	 * @return The matching name as it was passed to the constructor, or {@code null} if no name matches
+	 */
+	public String find(String servername) {
+		int firstDot = servername.indexOf('.');
+		String parent = null;
+		String wildcard = null;
+		Node node = this.root;
+		int end = servername.length();
+		int hash = 0;
+		for(int i = end - 1; i >= -1; i--){
+			char c = i >= 0 ? servername.charAt(i) : '.';
+			if(c != '.'){
+				hash = 31 * hash + toLowerCase(c);
+				continue;
+			}
+			node = node.getChild(hash, servername, i + 1, end - i - 1);
+			if(node == null)
+				break;
+			if(i < 0)
+				return node.name != null ? node.name : wildcard != null ? wildcard : parent;
+			if(node.name != null)
+				parent = node.name;
+			if(i == firstDot && node.wildcard != null)
+				wildcard = node.wildcard;
+			end = i;
+			hash = 0;
+		}
+		return wildcard != null ? wildcard : parent;
+	}
+
+
+	/**
+	 * Computes the hash of a label, iterating over the characters in reverse order like {@link #find(String)}.
+	 */
+	private static int labelHash(String label) {
+		int hash = 0;
+		for(int i = label.length() - 1; i >= 0; i--)
+			hash = 31 * hash + toLowerCase(label.charAt(i));
+		return hash;
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+
+	private static class Node {
+
+		private static final int[] EMPTY_HASHES = new int[0];
+		private static final String[] EMPTY_LABELS = new String[0];
+		private static final Node[] EMPTY_NODES = new Node[0];
+
+		private Map<String, Node> building = new HashMap<>();
+
+		// sorted by hash
+		private int[] hashes = EMPTY_HASHES;
+		private String[] labels = EMPTY_LABELS;
+		private Node[] children = EMPTY_NODES;
+
+		private String name;
+		private String wildcard;
+
+		public Node getOrCreateChild(String label) {
+			return this.building.computeIfAbsent(label, (l) -> new Node());
+		}
+
+		public void freeze() {
+			int count = this.building.size();
+			if(count > 0){
+				List<Map.Entry<String, Node>> entries = new ArrayList<>(this.building.entrySet());
+				entries.sort((a, b) -> Integer.compare(labelHash(a.getKey()), labelHash(b.getKey())));
+				this.hashes = new int[count];
+				this.labels = new String[count];
+				this.children = new Node[count];
+				for(int i = 0; i < count; i++){
+					this.hashes[i] = labelHash(entries.get(i).getKey());
+					this.labels[i] = entries.get(i).getKey();
+					this.children[i] = entries.get(i).getValue();
+					this.children[i].freeze();
+				}
+			}
+			this.building = null;
+		}
+
+		public Node getChild(int hash, String str, int offset, int length) {
+			int low = 0;
+			int high = this.hashes.length;
+			while(low < high){
+				int mid = (low + high) >>> 1;
+				if(this.hashes[mid] < hash)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			for(int i = low; i < this.hashes.length && this.hashes[i] == hash; i++){
+				String label = this.labels[i];
+				if(label.length() == length && str.regionMatches(true, offset, label, 0, length))
+					return this.children[i];
+			}
+			return null;
+		}
+	}
+}
@@ -7,18 +7,22 @@
 package org.omegazero.proxy.http;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
-import org.omegazero.common.event.Tasks;
 import org.omegazero.common.eventbus.EventResult;
 import org.omegazero.common.logging.Logger;
 import org.omegazero.http.common.HTTPException;
 import org.omegazero.http.common.HTTPMessage;
+import org.omegazero.http.common.HTTPMessageTrailers;
 import org.omegazero.http.common.HTTPRequest;
 import org.omegazero.http.common.HTTPRequestData;
 import org.omegazero.http.common.HTTPResponse;
@@ -38,9 +42,14 @@ import org.omegazero.proxy.core.ProxyEvents;
 import org.omegazero.proxy.core.ProxyRegistry;
 import org.omegazero.proxy.http.HTTPCommon;
 import org.omegazero.proxy.http.HTTPEngine;
+import org.omegazero.proxy.net.RoutingTable;
+import org.omegazero.proxy.net.UpstreamGroup;
+import org.omegazero.proxy.net.UpstreamOutlierDetector;
 import org.omegazero.proxy.net.UpstreamServer;
 import org.omegazero.proxy.util.HTTPEngineResponderMixin;
+import org.omegazero.proxy.util.LatencyHistogram;
 import org.omegazero.proxy.util.ProxyUtil;
+import org.omegazero.proxy.util.TimingWheel;
 
 import static org.omegazero.http.util.HTTPStatus.*;
 
@@ -50,7 +59,8 @@ import static org.omegazero.http.util.HTTPStatus.*;
  * This implementation uses a single {@link HTTPServer} passed in the constructor as the client request processor and any amount of {@link HTTPClient}s to send requests to {@link UpstreamServer}s
  * using an appropriate procotol.
  * <p>
- * {@code HTTPServer} and {@code HTTPClient} implementations used for this {@code AbstractHTTPEngine} need not be thread-safe.
+ * {@code HTTPServer} and {@code HTTPClient} implementations used for this {@code AbstractHTTPEngine} need not be thread-safe, except for {@code HTTPClient}s of protocols
+ * configured to be shared by multiple client connections (see {@link ProxyRegistry.HTTPClientConstructor}).
  * 
  * @since 3.10.1
  * @see ProxyRegistry#registerHTTPClientImplementation(String, ProxyRegistry.HTTPClientConstructor, String)
@@ -62,8 +72,29 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 	public static final String ATTACHMENT_KEY_UPSTREAM_SERVER = "engine_userver";
 	public static final String ATTACHMENT_KEY_USERVER_CLIENT = "engine_usc";
 	public static final String ATTACHMENT_KEY_RESPONSE_TIMEOUT = "engine_responseTimeoutId";
+	/**
+	 * Attachment key of the {@link UpstreamGroup.Lease} of a request, which is released when the response ends or the request fails. Plugins selecting a member of an
+	 * {@code UpstreamGroup} in {@code onHTTPRequestSelectServer} may set this attachment to count the request as outstanding for that member.
+	 *
+	 * @since 3.12.1
+	 */
+	public static final String ATTACHMENT_KEY_UPSTREAM_LEASE = "engine_upstreamLease";
 
 	protected static final String CONNDBG = "dbg";
+	private static final String ATTACHMENT_KEY_POOL_ENTRY = "engine_poolEntry";
+	private static final String ATTACHMENT_KEY_SHARED_UPSTREAM_STREAM = "engine_sharedUstream";
+	private static final String ATTACHMENT_KEY_FORWARD_STATE = "engine_forwardState";
+	// the UpstreamServer for which the current upstream request of a request was admitted as the trial request by the UpstreamOutlierDetector
+	private static final String ATTACHMENT_KEY_OUTLIER_TRIAL = "engine_outlierTrial";
+
+	/**
+	 * Request methods whose requests may be retried or hedged.
+	 */
+	private static final Set<String> IDEMPOTENT_METHODS = new java.util.HashSet<>(java.util.Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+	/**
+	 * The minimum number of response latencies recorded for an upstream server before requests to it are hedged.
+	 */
+	private static final int HEDGE_MIN_SAMPLES = 100;
 
 	protected final SocketConnection downstreamConnection;
 	protected final Proxy proxy;
@@ -144,8 +175,16 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 	@Override
 	public void close(){
 		this.downstreamClosed = true;
+		for(HTTPServerStream req : this.httpServer.getActiveRequests()){ // streams on shared clients are not closed with the client
+			releaseUpstreamLease(req.getRequest());
+			cancelHedge(req.getRequest());
+			HTTPClientStream ureq = (HTTPClientStream) req.getRequest().getAttachment(ATTACHMENT_KEY_SHARED_UPSTREAM_STREAM);
+			if(ureq != null)
+				ureq.close();
+		}
 		for(HTTPClientSet clientset : this.upstreamClients.values())
-			clientset.closeAll();
+			clientset.releaseAll();
+		this.upstreamClients.clear();
 		this.httpServer.close();
 	}
 
@@ -164,8 +203,10 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 		this.httpServer.respond(request, responsedata);
 		if(request != null){
 			if(request.hasAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT))
-				Tasks.I.clear(request.removeAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT));
+				((TimingWheel.Timeout) request.removeAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT)).cancel();
 			request.removeAttachment(ATTACHMENT_KEY_USERVER_CLIENT);
+			releaseUpstreamLease(request);
+			cancelHedge(request);
 		}
 	}
 
@@ -194,12 +235,24 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 
 	private void endRequestsForUClient(HTTPClient client, Consumer<HTTPServerStream> callback){
 		for(HTTPServerStream req : this.httpServer.getActiveRequests()){
+			ForwardState fs = (ForwardState) req.getRequest().getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+			if(fs != null && fs.hedge != null && fs.hedge.getClient() == client){
+				logger.debug(this.downstreamConnectionDbgstr, " Hedged request to ", fs.hedgeServer, " failed");
+				if(fs.hedgeTrial)
+					this.proxy.getUpstreamOutlierDetector().record(fs.hedgeServer, false, true);
+				fs.cancelHedge();
+			}
 			HTTPClient uclientR = (HTTPClient) req.getRequest().getAttachment(ATTACHMENT_KEY_USERVER_CLIENT);
 			if(client == uclientR){
 				if(req.getRequest().hasResponse()){
 					req.close();
-				}else
+				}else{
+					// the failure of the connection was already recorded, but not as the outcome of the trial request
+					HTTPRequest request = req.getRequest();
+					if(request.hasAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL))
+						this.proxy.getUpstreamOutlierDetector().record((UpstreamServer) request.removeAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL), false, true);
 					callback.accept(req);
+				}
 			}
 		}
 	}
@@ -207,6 +260,10 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 	private void handleUpstreamMessageStreamError(HTTPServerStream req, Throwable err, AbstractSocketConnection uconn, UpstreamServer userver){
 		if(err instanceof org.omegazero.common.event.task.ExecutionFailedException)
 			err = err.getCause();
+		if(err instanceof IOException && this.recoverUpstreamFailure(req)){
+			logUNetError(uconn.getAttachment(CONNDBG), " Error (request retried): ", NetCommon.PRINT_STACK_TRACES ? err : err.toString());
+			return;
+		}
 		Exception e2 = null;
 		try{
 			if(!req.getRequest().hasResponse()){
@@ -234,10 +291,28 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 
 	private HTTPClientStream createClientStream(HTTPServerStream req){
 		HTTPRequest request = req.getRequest();
-		EventResult userverRes = this.proxy.dispatchEventRes(ProxyEvents.HTTP_REQUEST_SELECT_SERVER, this.downstreamConnection, request);
-		if(request.hasResponse())
-			return null;
-		UpstreamServer userver = (UpstreamServer) userverRes.getReturnValue();
+		// configured routes take precedence over plugins selecting a server
+		RoutingTable.Route route = this.proxy.getRoutingTable().select(request.getAuthority(), request.getPath(), request.getMethod());
+		UpstreamServer userver;
+		if(route != null && route.getUpstreamGroup() != null){
+			UpstreamGroup.Lease lease = route.getUpstreamGroup().select();
+			if(lease == null){
+				// the route selects this group, so the default server is not a substitute for its members
+				logger.debug(this.downstreamConnectionDbgstr, " Upstream group '", route.getUpstreamGroup().getName(), "' has no members");
+				this.proxy.dispatchEvent(ProxyEvents.INVALID_UPSTREAM_SERVER, this.downstreamConnection, request);
+				this.respondError(request, STATUS_SERVICE_UNAVAILABLE, HTTPCommon.MSG_NO_SERVER);
+				return null;
+			}
+			request.setAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE, lease);
+			userver = lease.getUpstreamServer();
+		}else if(route != null){
+			userver = route.getUpstreamServer();
+		}else{
+			EventResult userverRes = this.proxy.dispatchEventRes(ProxyEvents.HTTP_REQUEST_SELECT_SERVER, this.downstreamConnection, request);
+			if(request.hasResponse())
+				return null;
+			userver = (UpstreamServer) userverRes.getReturnValue();
+		}
 		if(userver == null)
 			userver = this.proxy.getDefaultUpstreamServer();
 		if(userver == null){
@@ -246,10 +321,29 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			this.respondError(request, STATUS_NOT_FOUND, HTTPCommon.MSG_NO_SERVER);
 			return null;
 		}
+		if(!userver.isHealthy()){
+			logger.debug(this.downstreamConnectionDbgstr, " Upstream server ", userver, " is unhealthy");
+			this.respondUNetError(request, STATUS_SERVICE_UNAVAILABLE, HTTPCommon.MSG_UPSTREAM_UNHEALTHY, null, userver);
+			return null;
+		}
+		if(userver.isEjected()){
+			logger.debug(this.downstreamConnectionDbgstr, " Upstream server ", userver, " is ejected");
+			this.respondUNetError(request, STATUS_SERVICE_UNAVAILABLE, HTTPCommon.MSG_UPSTREAM_EJECTED, null, userver);
+			return null;
+		}
 
 		this.proxy.dispatchEvent(ProxyEvents.HTTP_REQUEST_PRE, this.downstreamConnection, request, userver);
 		if(request.hasResponse())
 			return null;
+		// after the ejection of the upstream server ended, only one trial request is admitted
+		UpstreamOutlierDetector.Admission admission = this.proxy.getUpstreamOutlierDetector().admit(userver);
+		if(admission == UpstreamOutlierDetector.Admission.REJECTED){
+			logger.debug(this.downstreamConnectionDbgstr, " Upstream server ", userver, " is ejected");
+			this.respondUNetError(request, STATUS_SERVICE_UNAVAILABLE, HTTPCommon.MSG_UPSTREAM_EJECTED, null, userver);
+			return null;
+		}
+		if(admission == UpstreamOutlierDetector.Admission.TRIAL)
+			request.setAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL, userver);
 
 		request.setAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER, userver);
 
@@ -283,15 +377,31 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			req.close(MessageStreamClosedException.CloseReason.REFUSED);
 		}else{
 			request.setAttachment(ATTACHMENT_KEY_USERVER_CLIENT, ureq.getClient());
+			this.proxy.getRetryBudget().deposit();
+			if((this.config.getRetryMaxAttempts() > 1 || this.config.getHedgePercentile() > 0) && IDEMPOTENT_METHODS.contains(request.getMethod())
+					&& !request.headerExists("upgrade"))
+				request.setAttachment(ATTACHMENT_KEY_FORWARD_STATE, new ForwardState(ureq, userver, route != null ? route.getUpstreamGroup() : null));
 		}
 		return ureq;
 	}
 
-	private HTTPClient createClient(UpstreamServer userver, HTTPRequest initrequest){
+	private UpstreamClientPool.Entry createClient(UpstreamServer userver, HTTPRequest initrequest){
 		// ! use of initrequest in callbacks is disallowed; only use for respondError
 		ProxyRegistry.HTTPClientConstructor constructor = null;
 		String protocol = this.getHTTPVersionName();
-		if(userver.isProtocolSupported(protocol))
+		boolean shared = false;
+		for(String proto : this.proxy.getConfig().getUpstreamMultiplexProtocols()){
+			// only switch to a different protocol if the upstream server explicitly supports it
+			if(proto.equals(protocol) ? userver.isProtocolSupported(proto) : userver.getSupportedProcotols().contains(proto)){
+				constructor = this.proxy.getRegistry().getHTTPClientImplementation(proto);
+				if(constructor != null){
+					protocol = proto;
+					shared = true;
+					break;
+				}
+			}
+		}
+		if(constructor == null && userver.isProtocolSupported(protocol))
 			constructor = this.proxy.getRegistry().getHTTPClientImplementation(protocol);
 		if(constructor == null){
 			Collection<String> supported = userver.getSupportedProcotols();
@@ -310,84 +420,230 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			return null;
 		}
 
+		boolean secure = this.isDownstreamConnectionSecure();
+		UpstreamClientPool pool = this.proxy.getUpstreamClientPool();
+		if(shared){
+			UpstreamClientPool.Entry sharedEntry = pool.acquireShared(userver, protocol, secure);
+			if(sharedEntry != null){
+				this.bindSharedClient(sharedEntry);
+				return sharedEntry;
+			}
+			// all shared clients are at their stream limit; fall back to a client exclusive to this engine if no more shared clients may be created
+			shared = pool.canAddShared(userver, protocol, secure);
+		}
+		if(!shared){
+			UpstreamClientPool.Entry pooled = pool.acquire(userver, protocol, secure, this.config);
+			if(pooled != null){
+				this.bindClient(pooled);
+				return pooled;
+			}
+		}
+
 		AbstractSocketConnection uconn;
 		try{
-			uconn = (AbstractSocketConnection) ProxyUtil.connectUpstreamTCP(this.proxy, this.downstreamConnection, this.isDownstreamConnectionSecure(),
+			uconn = (AbstractSocketConnection) ProxyUtil.connectUpstreamTCP(this.proxy, shared ? null : this.downstreamConnection, secure,
 					userver, new String[] { this.proxy.getRegistry().getHTTPClientALPName(protocol) });
 		}catch(IOException e){
 			this.respondInternalError(initrequest, e);
 			logger.error("Connection failed: ", e);
 			return null;
 		}
+		if(shared) // shared connections must not run on the worker of any single client connection
+			uconn.setWorker(this.proxy.getSessionWorkerProvider(uconn));
 		uconn.setAttachment(CONNDBG, this.proxy.debugStringForConnection(this.downstreamConnection, uconn));
 
-		HTTPClient client = constructor.construct(uconn, userver, this.config, this.httpServer);
+		// clients which may be reused by other client connections must not reference the HTTPServer of this client connection
+		boolean poolable = !shared && pool.isIdlePoolingEnabled();
+		HTTPClient client = constructor.construct(uconn, userver, this.config, shared || poolable ? null : this.httpServer);
 		if(client == null){
 			uconn.destroy();
 			throw new NullPointerException("client is null");
 		}
 		if(logger.debug())
-			logger.debug(this.downstreamConnectionDbgstr, " Using ", client.getClass().getName(), " (protocol '", protocol, "') with ", uconn, " to connect to ", userver);
-		client.setServerPushEnabled(this.httpServer.isServerPushEnabled());
-
-		uconn.on("connect", () -> {
-			logger.debug(uconn.getAttachment(CONNDBG), " Connected");
-			this.proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION, uconn);
-		});
-		uconn.on("timeout", () -> {
+			logger.debug(this.downstreamConnectionDbgstr, " Using ", shared ? "shared " : "", client.getClass().getName(), " (protocol '", protocol, "') with ", uconn,
+					" to connect to ", userver);
+		client.setServerPushEnabled(!shared && !poolable && this.httpServer.isServerPushEnabled());
+
+		UpstreamClientPool.Entry entry = new UpstreamClientPool.Entry(client, uconn, userver, protocol, secure, shared, this.config, poolable);
+		uconn.setAttachment(ATTACHMENT_KEY_POOL_ENTRY, entry);
+		// the callbacks below must not reference this engine, because the client may be used by other engines
+		Proxy proxy = this.proxy;
+		// scheduled on the timing wheel instead of passing the timeout to connect(), which would use the global Tasks timer
+		int connectTimeoutDuration = this.config.getUpstreamConnectionTimeout();
+		TimingWheel.Timeout connectTimeout = connectTimeoutDuration > 0 ? proxy.getTimingWheel().schedule(() -> {
+			if(uconn.hasConnected())
+				return;
 			logUNetError(uconn.getAttachment(CONNDBG), " Connect timed out");
-			this.proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_TIMEOUT, uconn);
-			if(this.downstreamClosed)
+			proxy.getUpstreamOutlierDetector().record(userver, false);
+			proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_TIMEOUT, uconn);
+			// this runs in the timing wheel thread, but the requests must be ended in the worker of each client connection, like in scheduleResponseTimeout;
+			// the connection is only closed afterwards, so that the requests are not ended because of the close first
+			List<AbstractHTTPEngine> owners = new ArrayList<>(entry.getOwners());
+			if(owners.isEmpty()){
+				uconn.destroy();
 				return;
-			this.endRequestsForUClient(client, (req) -> {
-				this.respondUNetError(req.getRequest(), STATUS_GATEWAY_TIMEOUT, HTTPCommon.MSG_UPSTREAM_CONNECT_TIMEOUT, uconn, userver);
-			});
+			}
+			AtomicInteger remaining = new AtomicInteger(owners.size());
+			for(AbstractHTTPEngine engine : owners){
+				engine.runInDownstreamWorker(() -> {
+					try{
+						if(engine.downstreamClosed)
+							return;
+						engine.endRequestsForUClient(client, (req) -> {
+							if(!engine.recoverUpstreamFailure(req))
+								engine.respondUNetError(req.getRequest(), STATUS_GATEWAY_TIMEOUT, HTTPCommon.MSG_UPSTREAM_CONNECT_TIMEOUT, uconn, userver);
+						});
+					}finally{
+						if(remaining.decrementAndGet() == 0)
+							uconn.destroy();
+					}
+				});
+			}
+		}, connectTimeoutDuration) : null;
+		uconn.on("connect", () -> {
+			if(connectTimeout != null)
+				connectTimeout.cancel();
+			logger.debug(uconn.getAttachment(CONNDBG), " Connected");
+			proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION, uconn);
 		});
 		uconn.on("error", (Throwable e) -> {
+			if(connectTimeout != null)
+				connectTimeout.cancel();
 			if(e instanceof org.omegazero.common.event.task.ExecutionFailedException)
 				e = e.getCause();
 			try{
 				if(logger.debug())
 					logger.trace(uconn.getAttachment(CONNDBG), " Connection error (pre msg): ", e.toString());
-				this.proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_ERROR, uconn, e);
+				proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_ERROR, uconn, e);
+				proxy.getUpstreamOutlierDetector().record(userver, false);
 			}catch(Exception ue){
 				e.addSuppressed(ue);
 			}
-			if(this.downstreamClosed)
-				return;
 			final Throwable e0 = e;
-			uconn.getWorker().accept(() -> {
-				this.endRequestsForUClient(client, (req) -> {
-					this.handleUpstreamMessageStreamError(req, e0, uconn, userver);
-				});
-			});
+			for(AbstractHTTPEngine engine : entry.getOwners()){
+				Runnable r = () -> {
+					if(engine.downstreamClosed)
+						return;
+					engine.endRequestsForUClient(client, (req) -> {
+						engine.handleUpstreamMessageStreamError(req, e0, uconn, userver);
+					});
+				};
+				if(entry.isShared())
+					engine.runInDownstreamWorker(r);
+				else
+					uconn.getWorker().accept(r);
+			}
 		});
 		uconn.on("close", () -> {
+			if(connectTimeout != null)
+				connectTimeout.cancel();
 			logger.debug(uconn.getAttachment(CONNDBG), " Disconnected");
-			this.proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_CLOSED, uconn);
-			if(!this.downstreamClosed){ // respond to all incomplete requests for this connection with an error
-				this.endRequestsForUClient(client, (req) -> {
-					this.respondUNetError(req.getRequest(), STATUS_BAD_GATEWAY, HTTPCommon.MSG_UPSTREAM_CONNECTION_CLOSED, uconn, userver);
+			// may complete a response, so that its request is not ended with an error below
+			if(client instanceof UpstreamConnectionCloseHandler)
+				((UpstreamConnectionCloseHandler) client).connectionClosed();
+			proxy.dispatchEvent(ProxyEvents.UPSTREAM_CONNECTION_CLOSED, uconn);
+			proxy.getUpstreamClientPool().remove(entry);
+			for(AbstractHTTPEngine engine : entry.getOwners()){
+				engine.runClientCallback(entry.isShared(), () -> {
+					if(!engine.downstreamClosed){ // respond to all incomplete requests for this connection with an error
+						engine.endRequestsForUClient(client, (req) -> {
+							if(!engine.recoverUpstreamFailure(req))
+								engine.respondUNetError(req.getRequest(), STATUS_BAD_GATEWAY, HTTPCommon.MSG_UPSTREAM_CONNECTION_CLOSED, uconn, userver);
+						});
+					}
+					HTTPClientSet clientset = engine.upstreamClients.get(userver);
+					if(clientset != null){
+						clientset.remove(entry);
+						if(clientset.isEmpty())
+							engine.upstreamClients.remove(userver);
+					}
+
+					if(engine.duplexClose && !entry.isShared())
+						engine.close();
 				});
 			}
-			HTTPClientSet clientset = this.upstreamClients.get(userver);
-			clientset.remove(client);
-			if(clientset.isEmpty())
-				this.upstreamClients.remove(userver);
-
-			if(this.duplexClose)
-				this.close();
 		});
 		uconn.on("data", (byte[] data) -> {
-			if(this.switchedProtocolUpstreamConnection == uconn){
-				ProxyUtil.handleBackpressure(this.downstreamConnection, uconn);
-				this.downstreamConnection.write(data);
-			}else
-				client.receive(data);
+			if(!entry.isShared()){
+				for(AbstractHTTPEngine engine : entry.getOwners()){
+					if(engine.switchedProtocolUpstreamConnection == uconn){
+						ProxyUtil.handleBackpressure(engine.downstreamConnection, uconn);
+						engine.downstreamConnection.write(data);
+						return;
+					}
+				}
+			}
+			client.receive(data);
 		});
 
-		uconn.connect(this.config.getUpstreamConnectionTimeout());
-		return client;
+		if(shared){
+			entry.addOwner(this);
+			pool.addShared(entry);
+		}else
+			entry.setOwner(this);
+		uconn.connect(0);
+		return entry;
+	}
+
+	private void bindClient(UpstreamClientPool.Entry entry){
+		AbstractSocketConnection uconn = entry.getConnection();
+		if(this.downstreamConnection instanceof AbstractSocketConnection)
+			uconn.setWorker(((AbstractSocketConnection) this.downstreamConnection).getWorker());
+		uconn.setAttachment(CONNDBG, this.proxy.debugStringForConnection(this.downstreamConnection, uconn));
+		entry.setOwner(this);
+		if(logger.debug())
+			logger.debug(this.downstreamConnectionDbgstr, " Using pooled ", entry.getClient().getClass().getName(), " (protocol '", entry.getProtocol(), "') with ", uconn,
+					" to connect to ", entry.getUpstreamServer());
+	}
+
+	private void bindSharedClient(UpstreamClientPool.Entry entry){
+		entry.addOwner(this);
+		if(logger.debug())
+			logger.debug(this.downstreamConnectionDbgstr, " Using shared ", entry.getClient().getClass().getName(), " (protocol '", entry.getProtocol(), "') with ",
+					entry.getConnection(), " to connect to ", entry.getUpstreamServer());
+	}
+
+	private static boolean isSharedClient(SocketConnection uconn){
+		Object entry = ((AbstractSocketConnection) uconn).getAttachment(ATTACHMENT_KEY_POOL_ENTRY);
+		return entry != null && ((UpstreamClientPool.Entry) entry).isShared();
+	}
+
+	private void runInDownstreamWorker(Runnable runnable){
+		if(this.downstreamConnection instanceof AbstractSocketConnection)
+			((AbstractSocketConnection) this.downstreamConnection).getWorker().accept(runnable);
+		else
+			runnable.run();
+	}
+
+	/**
+	 * Callbacks of shared clients are called in the worker of the shared upstream connection, and are passed to the worker of the client connection here, to
+	 * serialize them with all other events of the client connection.
+	 */
+	private void runClientCallback(boolean shared, Runnable callback){
+		if(shared)
+			this.runInDownstreamWorker(callback);
+		else
+			callback.run();
+	}
+
+	private void runStreamCallback(boolean shared, HTTPServerStream req, HTTPClientStream ureq, Runnable callback){
+		if(!shared){
+			callback.run();
+			return;
+		}
+		this.runInDownstreamWorker(() -> {
+			try{
+				callback.run();
+			}catch(Exception e){
+				// errors must not propagate to the shared connection, which would also affect other client connections
+				logger.error(this.downstreamConnectionDbgstr, " Error in shared upstream stream callback: ", e);
+				ureq.close();
+				if(!req.getRequest().hasResponse())
+					this.respondInternalError(req.getRequest(), e);
+				else
+					req.close(MessageStreamClosedException.CloseReason.INTERNAL_ERROR);
+			}
+		});
 	}
 
 	private HTTPClientStream setupRequestStream(HTTPServerStream req){
@@ -407,14 +663,21 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			logger.error("Error while handling request: ", e);
 		}
 		HTTPClientStream ureq = ureq0;
-		if(req.isClosed()) // request aborted
+		if(req.isClosed()){ // request aborted
+			releaseUpstreamLease(request);
 			return null;
+		}
 		UpstreamServer userver = (UpstreamServer) request.getAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER);
 		assert !(ureq != null && userver == null) : "ureq exists but userver is null";
 
 		req.onError((err) -> {
 			logger.debug(this.downstreamConnectionDbgstr, " Request stream error: ", err);
-			if(ureq != null)
+			releaseUpstreamLease(request);
+			cancelHedge(request);
+			ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+			if(fs != null)
+				fs.primary.close();
+			else if(ureq != null)
 				ureq.close();
 		});
 		req.onRequestData((reqdata) -> {
@@ -424,6 +687,9 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 					if(ureq != null){
 						if(ureq.isClosed() && !request.hasResponse())
 							this.respondError(request, STATUS_BAD_GATEWAY, "Upstream message stream is no longer active");
+						ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+						if(fs != null)
+							fs.bufferRequestData(reqdata.getData(), this.config.getRetryMaxBodySize());
 						if(!ureq.sendRequestData(reqdata.getData(), false))
 							req.setReceiveData(false);
 					}
@@ -441,6 +707,11 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 					if(ureq != null){
 						if(ureq.isClosed() && !request.hasResponse())
 							this.respondError(request, STATUS_BAD_GATEWAY, "Upstream message stream is no longer active");
+						ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+						if(fs != null){
+							fs.ended = true;
+							fs.trailers = trailers;
+						}
 						ureq.endRequest(trailers);
 					}
 					this.proxy.dispatchEvent(ProxyEvents.HTTP_REQUEST_ENDED, this.downstreamConnection, request, userver);
@@ -454,9 +725,11 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 		return ureq;
 	}
 
-	private void setupResponseStream(HTTPServerStream req, HTTPClientStream ureq, SocketConnection uconn){
-		HTTPRequest request = req.getRequest();
-		UpstreamServer userver = (UpstreamServer) request.getAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER);
+	private void setupResponseStream(HTTPServerStream req, HTTPClientStream ureq, SocketConnection uconn, UpstreamServer userver){
+		if(isSharedClient(uconn)){ // server push is disabled on shared clients
+			this.setupResponseStreamBase(req, ureq, (AbstractSocketConnection) uconn, userver);
+			return;
+		}
 		ureq.onServerPush((resstream) -> {
 			HTTPRequest promiseRequest = resstream.getRequest();
 			String promiseRequestId = this.initRequest(promiseRequest);
@@ -493,20 +766,34 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 
 	private void setupResponseStreamBase(HTTPServerStream req, HTTPClientStream ureq, AbstractSocketConnection uconn, UpstreamServer userver){
 		HTTPRequest request = req.getRequest();
-		ureq.onResponse((response) -> {
+		boolean shared = isSharedClient(uconn);
+		ureq.onResponse((response) -> this.runStreamCallback(shared, req, ureq, () -> {
 			synchronized(req){
-				if(req.isClosed()){
+				if(req.isClosed() || isStaleStream(request, ureq)){
 					ureq.close();
 					return;
 				}
 
+				ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+				if(fs != null){ // the first response is used, the other request is cancelled
+					if(ureq == fs.hedge){
+						logger.debug(this.downstreamConnectionDbgstr, " Using response to hedged request from ", userver);
+						this.promoteHedge(request, fs);
+					}else
+						fs.cancelHedge();
+					if(!response.isIntermediateMessage() && fs.timed) // startTime is not set if the response started before the request ended
+						userver.getResponseLatency().record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fs.startTime));
+				}
+
 				if(request.hasAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT))
-					Tasks.I.clear(request.removeAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT));
+					((TimingWheel.Timeout) request.removeAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT)).cancel();
 
 				if(!HTTPCommon.setRequestResponse(request, response)){
 					ureq.close();
 					return;
 				}
+				if(!response.isIntermediateMessage())
+					this.recordUpstreamOutcome(request, userver, response.getStatus() < 500);
 				try{
 					response.setOther(request);
 					if(this.config.isEnableHeaders()){
@@ -522,6 +809,7 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 					else if(response.isChunkedTransfer() && !wasChunked)
 						response.deleteHeader("content-length");
 					if(response.getStatus() == STATUS_SWITCHING_PROTOCOLS && response.headerExists("upgrade")){
+						releaseUpstreamLease(request);
 						this.procotolChanged(uconn, ureq, response);
 					}else if(response.isIntermediateMessage())
 						request.setOther(null);
@@ -532,10 +820,10 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 				request.removeAttachment(ATTACHMENT_KEY_USERVER_CLIENT);
 				req.startResponse(response);
 			}
-		});
-		ureq.onResponseData((resdata) -> {
+		}));
+		ureq.onResponseData((resdata) -> this.runStreamCallback(shared, req, ureq, () -> {
 			synchronized(req){
-				if(req.isClosed()){
+				if(req.isClosed() || isStaleStream(request, ureq)){
 					ureq.close();
 					return;
 				}
@@ -543,10 +831,10 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 				if(!req.sendResponseData(resdata.getData(), false))
 					ureq.setReceiveData(false);
 			}
-		});
-		ureq.onResponseEnded((trailers) -> {
+		}));
+		ureq.onResponseEnded((trailers) -> this.runStreamCallback(shared, req, ureq, () -> {
 			synchronized(req){
-				if(req.isClosed()){
+				if(req.isClosed() || isStaleStream(request, ureq)){
 					ureq.close();
 					return;
 				}
@@ -554,28 +842,40 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 					this.proxy.dispatchEvent(ProxyEvents.HTTP_RESPONSE_TRAILERS, this.downstreamConnection, uconn, trailers, userver);
 				req.endResponse(trailers);
 			}
+			releaseUpstreamLease(request);
 			this.proxy.dispatchEvent(ProxyEvents.HTTP_RESPONSE_ENDED, this.downstreamConnection, uconn, ureq.getResponse(), userver);
-		});
-		ureq.onError((err) -> {
+		}));
+		ureq.onError((err) -> this.runStreamCallback(shared, req, ureq, () -> {
+			ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+			if(fs != null && ureq != fs.primary){
+				if(ureq == fs.hedge){
+					logger.debug(this.downstreamConnectionDbgstr, " Hedged request to ", userver, " failed: ", err);
+					fs.cancelHedge();
+				}
+				return;
+			}
+			releaseUpstreamLease(request);
 			synchronized(req){
 				if(req.isClosed()){
+					cancelHedge(request);
 					ureq.close();
 					return;
 				}
 				if(err instanceof MessageStreamClosedException){
 					MessageStreamClosedException.CloseReason reason = ((MessageStreamClosedException) err).getCloseReason();
 					if(reason == MessageStreamClosedException.CloseReason.PROTOCOL_DOWNGRADE || reason == MessageStreamClosedException.CloseReason.ENHANCE_YOUR_CALM){
+						cancelHedge(request);
 						req.close(reason);
 						return;
 					}
 				}
 				this.handleUpstreamMessageStreamError(req, err, uconn, userver);
 			}
-		});
+		}));
 
-		ureq.onWritable(() -> {
+		ureq.onWritable(() -> this.runClientCallback(shared, () -> {
 			req.setReceiveData(true);
-		});
+		}));
 		req.onWritable(() -> {
 			ureq.setReceiveData(true);
 		});
@@ -586,13 +886,8 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			logger.debug(((AbstractSocketConnection) uconn).getAttachment(CONNDBG), " Protocol changed, closing all clients except ", ureq.getClient());
 		this.proxy.dispatchEvent(ProxyEvents.PROTOCOL_SWITCHED, this.downstreamConnection, uconn, response);
 		this.switchedProtocolUpstreamConnection = uconn;
-		Iterator<HTTPClientSet> clientsetIt = this.upstreamClients.values().iterator();
-		while(clientsetIt.hasNext()){
-			HTTPClientSet clientset = clientsetIt.next();
+		for(HTTPClientSet clientset : this.upstreamClients.values())
 			clientset.closeIf((c) -> c != ureq.getClient());
-			if(clientset.isEmpty())
-				clientsetIt.remove();
-		}
 	}
 
 	private void requestEnded(HTTPRequest request, HTTPServerStream req, HTTPClientStream ureq){
@@ -605,36 +900,256 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 				logger.error(this.downstreamConnectionDbgstr, " requestEnded: ", e);
 				return;
 			}
-			if(ureq != null && this.config.getResponseTimeout() > 0 && !request.hasResponse()){
-				Object tid = Tasks.I.timeout(() -> {
-					if(this.downstreamClosed || req.isClosed())
-						return;
-					AbstractSocketConnection uconn = (AbstractSocketConnection) ((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection();
-					UpstreamServer userver = (UpstreamServer) request.getAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER);
-					logUNetError(uconn.getAttachment(CONNDBG), " Response timeout");
-					try{
-						this.proxy.dispatchEvent(ProxyEvents.HTTP_RESPONSE_TIMEOUT, this.downstreamConnection, uconn, request, userver);
-						this.respondUNetError(request, STATUS_GATEWAY_TIMEOUT, HTTPCommon.MSG_UPSTREAM_RESPONSE_TIMEOUT, uconn, userver);
+			if(ureq != null && !request.hasResponse()){
+				this.scheduleResponseTimeout(request, req, ureq);
+				ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+				if(fs != null && ureq == fs.primary){
+					fs.startTime = System.nanoTime();
+					fs.timed = true;
+					this.scheduleHedge(req, fs);
+				}
+			}
+		}
+	}
+
+	private void scheduleResponseTimeout(HTTPRequest request, HTTPServerStream req, HTTPClientStream ureq){
+		if(this.config.getResponseTimeout() <= 0)
+			return;
+		TimingWheel.Timeout tid = this.proxy.getTimingWheel().schedule(() -> {
+			if(this.downstreamClosed || req.isClosed() || isStaleStream(request, ureq))
+				return;
+			AbstractSocketConnection uconn = (AbstractSocketConnection) ((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection();
+			UpstreamServer userver = (UpstreamServer) request.getAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER);
+			logUNetError(uconn.getAttachment(CONNDBG), " Response timeout");
+			this.recordUpstreamOutcome(request, userver, false);
+			try{
+				this.proxy.dispatchEvent(ProxyEvents.HTTP_RESPONSE_TIMEOUT, this.downstreamConnection, uconn, request, userver);
+				if(request.hasAttachment(ATTACHMENT_KEY_FORWARD_STATE)){
+					// retries modify the state of this engine and must run in the worker of the client connection
+					this.runInDownstreamWorker(() -> {
+						if(this.downstreamClosed || req.isClosed() || isStaleStream(request, ureq) || request.hasResponse())
+							return;
+						if(!this.recoverUpstreamFailure(req))
+							this.respondUNetError(request, STATUS_GATEWAY_TIMEOUT, HTTPCommon.MSG_UPSTREAM_RESPONSE_TIMEOUT, uconn, userver);
 						ureq.close();
-					}catch(Exception e){
-						this.respondInternalError(request, e);
-						logger.error(uconn.getAttachment(CONNDBG), " Error while handling response timeout: ", e);
-					}
-				}, this.config.getResponseTimeout()).daemon();
-				request.setAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT, tid);
+					});
+					return;
+				}
+				this.respondUNetError(request, STATUS_GATEWAY_TIMEOUT, HTTPCommon.MSG_UPSTREAM_RESPONSE_TIMEOUT, uconn, userver);
+				ureq.close();
+			}catch(Exception e){
+				this.respondInternalError(request, e);
+				logger.error(uconn.getAttachment(CONNDBG), " Error while handling response timeout: ", e);
 			}
+		}, this.config.getResponseTimeout());
+		request.setAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT, tid);
+	}
+
+	private void scheduleHedge(HTTPServerStream req, ForwardState fs){
+		int percentile = this.config.getHedgePercentile();
+		if(percentile <= 0 || fs.hedged || fs.body == null)
+			return;
+		LatencyHistogram latency = fs.primaryServer.getResponseLatency();
+		if(latency.getRecordedCount() < HEDGE_MIN_SAMPLES)
+			return;
+		long delay = Math.max(latency.getPercentile(percentile), this.config.getHedgeMinDelay());
+		fs.hedged = true;
+		fs.hedgeTimeout = this.proxy.getTimingWheel().schedule(() -> {
+			this.runInDownstreamWorker(() -> {
+				this.startHedge(req, fs);
+			});
+		}, delay);
+	}
+
+	private void startHedge(HTTPServerStream req, ForwardState fs){
+		HTTPRequest request = req.getRequest();
+		fs.hedgeTimeout = null;
+		if(this.downstreamClosed || req.isClosed() || request.hasResponse() || fs.hedge != null)
+			return;
+		UpstreamGroup.Lease lease = fs.group != null ? fs.group.select(fs.primaryServer) : null;
+		UpstreamServer userver = lease != null ? lease.getUpstreamServer() : fs.primaryServer;
+		UpstreamOutlierDetector.Admission admission = UpstreamOutlierDetector.Admission.REJECTED;
+		if(!userver.isAvailable() || !this.proxy.getRetryBudget().tryWithdraw()
+				|| (admission = this.proxy.getUpstreamOutlierDetector().admit(userver)) == UpstreamOutlierDetector.Admission.REJECTED){
+			if(lease != null)
+				lease.release();
+			return;
+		}
+		HTTPClientStream hedge;
+		try{
+			hedge = this.forwardAttempt(req, fs, userver);
+		}catch(Exception e){
+			hedge = null;
+			logger.error(this.downstreamConnectionDbgstr, " Error while sending hedged request: ", e);
+		}
+		if(hedge == null){
+			if(lease != null)
+				lease.release();
+			return;
 		}
+		logger.debug(this.downstreamConnectionDbgstr, " No response from ", fs.primaryServer, " after ", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fs.startTime), "ms, sent hedged request to ",
+				userver);
+		fs.hedge = hedge;
+		fs.hedgeServer = userver;
+		fs.hedgeLease = lease;
+		fs.hedgeTrial = admission == UpstreamOutlierDetector.Admission.TRIAL;
+		fs.hedgeStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Called when the upstream request of the given client request failed before a response was received. If the request was hedged, the hedged request replaces the failed
+	 * request. Otherwise, the request is retried if it is eligible and the retry budget allows it.
+	 *
+	 * @return {@code true} if the request is being continued and no error response should be sent
+	 */
+	private boolean recoverUpstreamFailure(HTTPServerStream req){
+		HTTPRequest request = req.getRequest();
+		ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+		if(fs == null || this.downstreamClosed || req.isClosed() || request.hasResponse())
+			return false;
+		if(request.hasAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT))
+			((TimingWheel.Timeout) request.removeAttachment(ATTACHMENT_KEY_RESPONSE_TIMEOUT)).cancel();
+		if(fs.hedge != null){
+			logger.debug(this.downstreamConnectionDbgstr, " Request to ", fs.primaryServer, " failed, continuing with hedged request to ", fs.hedgeServer);
+			this.promoteHedge(request, fs);
+			this.scheduleResponseTimeout(request, req, fs.primary);
+			return true;
+		}
+		if(!fs.ended || fs.body == null || fs.attempts >= this.config.getRetryMaxAttempts())
+			return false;
+		UpstreamServer failed = fs.primaryServer;
+		UpstreamGroup.Lease lease = fs.group != null ? fs.group.select(failed) : null;
+		UpstreamServer userver = lease != null ? lease.getUpstreamServer() : failed;
+		UpstreamOutlierDetector.Admission admission = UpstreamOutlierDetector.Admission.REJECTED;
+		if(!userver.isAvailable() || !this.proxy.getRetryBudget().tryWithdraw()
+				|| (admission = this.proxy.getUpstreamOutlierDetector().admit(userver)) == UpstreamOutlierDetector.Admission.REJECTED){
+			if(lease != null)
+				lease.release();
+			return false;
+		}
+		fs.attempts++;
+		HTTPClientStream ureq;
+		try{
+			ureq = this.forwardAttempt(req, fs, userver);
+		}catch(Exception e){
+			ureq = null;
+			logger.error(this.downstreamConnectionDbgstr, " Error while retrying request: ", e);
+		}
+		if(ureq == null){
+			if(lease != null)
+				lease.release();
+			// the request may have been responded to if no connection could be created
+			return request.hasResponse();
+		}
+		logger.debug(this.downstreamConnectionDbgstr, " Request to ", failed, " failed, retrying with ", userver, " (attempt ", fs.attempts, ")");
+		releaseUpstreamLease(request);
+		if(lease != null)
+			request.setAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE, lease);
+		else
+			request.removeAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE);
+		HTTPClientStream failedStream = fs.primary;
+		this.setPrimaryStream(request, fs, ureq, userver, admission == UpstreamOutlierDetector.Admission.TRIAL);
+		failedStream.close();
+		fs.startTime = System.nanoTime();
+		fs.timed = true;
+		this.scheduleResponseTimeout(request, req, ureq);
+		return true;
+	}
+
+	/**
+	 * Sends a copy of the given request, whose body is fully buffered in the given {@code ForwardState}, to the given upstream server. Plugin events for the request are not
+	 * dispatched again.
+	 */
+	private HTTPClientStream forwardAttempt(HTTPServerStream req, ForwardState fs, UpstreamServer userver){
+		HTTPRequest request = req.getRequest();
+		HTTPClientSet clientset = this.upstreamClients.get(userver);
+		if(clientset == null)
+			clientset = new HTTPClientSet(userver);
+		HTTPClientStream ureq = clientset.newRequest(request);
+		if(ureq == null)
+			return null;
+		this.upstreamClients.put(userver, clientset);
+		SocketConnection uconn = ((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection();
+		this.setupResponseStream(req, ureq, uconn, userver);
+		ureq.startRequest();
+		for(byte[] data : fs.body)
+			ureq.sendRequestData(data, false);
+		ureq.endRequest(fs.trailers);
+		return ureq;
+	}
+
+	private void promoteHedge(HTTPRequest request, ForwardState fs){
+		HTTPClientStream previous = fs.primary;
+		releaseUpstreamLease(request);
+		if(fs.hedgeLease != null)
+			request.setAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE, fs.hedgeLease);
+		else
+			request.removeAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE);
+		this.setPrimaryStream(request, fs, fs.hedge, fs.hedgeServer, fs.hedgeTrial);
+		fs.startTime = fs.hedgeStartTime;
+		fs.timed = true;
+		fs.hedge = null;
+		fs.hedgeServer = null;
+		fs.hedgeLease = null;
+		fs.hedgeTrial = false;
+		previous.close();
+	}
+
+	private void setPrimaryStream(HTTPRequest request, ForwardState fs, HTTPClientStream ureq, UpstreamServer userver, boolean trial){
+		fs.primary = ureq;
+		fs.primaryServer = userver;
+		request.setAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER, userver);
+		if(trial)
+			request.setAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL, userver);
+		else
+			request.removeAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL);
+		request.setAttachment(ATTACHMENT_KEY_USERVER_CLIENT, ureq.getClient());
+		if(isSharedClient(((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection()))
+			request.setAttachment(ATTACHMENT_KEY_SHARED_UPSTREAM_STREAM, ureq);
+		else
+			request.removeAttachment(ATTACHMENT_KEY_SHARED_UPSTREAM_STREAM);
+	}
+
+	/**
+	 * Records the outcome of the current upstream request of the given request with the {@link UpstreamOutlierDetector}, as the outcome of the trial request if it was
+	 * admitted as one.
+	 */
+	private void recordUpstreamOutcome(HTTPRequest request, UpstreamServer userver, boolean success){
+		boolean trial = request.getAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL) == userver;
+		if(trial)
+			request.removeAttachment(ATTACHMENT_KEY_OUTLIER_TRIAL);
+		this.proxy.getUpstreamOutlierDetector().record(userver, success, trial);
+	}
+
+	private static boolean isStaleStream(HTTPRequest request, HTTPClientStream ureq){
+		ForwardState fs = (ForwardState) request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+		return fs != null && ureq != fs.primary && ureq != fs.hedge;
 	}
 
 
 	private void receiveNewRequest(HTTPServerStream req){
 		HTTPClientStream ureq = this.setupRequestStream(req);
 		if(ureq != null){
-			this.setupResponseStream(req, ureq, ((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection());
+			SocketConnection uconn = ((SocketConnectionWritable) ureq.getClient().getConnection()).getConnection();
+			if(isSharedClient(uconn))
+				req.getRequest().setAttachment(ATTACHMENT_KEY_SHARED_UPSTREAM_STREAM, ureq);
+			this.setupResponseStream(req, ureq, uconn, (UpstreamServer) req.getRequest().getAttachment(ATTACHMENT_KEY_UPSTREAM_SERVER));
 			ureq.startRequest();
 		}
 	}
 
+	private static void releaseUpstreamLease(HTTPRequest request){
+		Object lease = request.getAttachment(ATTACHMENT_KEY_UPSTREAM_LEASE);
+		if(lease != null)
+			((UpstreamGroup.Lease) lease).release();
+	}
+
+	private static void cancelHedge(HTTPRequest request){
+		Object fs = request.getAttachment(ATTACHMENT_KEY_FORWARD_STATE);
+		if(fs != null)
+			((ForwardState) fs).cancelHedge();
+	}
+
 	private String initRequest(HTTPRequest request){
 		request.setHttpResponder(this);
 		String requestId = HTTPCommon.requestId(this.downstreamConnection);
@@ -649,7 +1164,7 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 
 		private final UpstreamServer userver;
 
-		private Set<HTTPClient> clients = new java.util.HashSet<>();
+		private Set<UpstreamClientPool.Entry> clients = new java.util.LinkedHashSet<>();
 
 		public HTTPClientSet(UpstreamServer userver){
 			this.userver = userver;
@@ -659,15 +1174,16 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 		private HTTPClient newClient(HTTPRequest request){
 			int maxStreams = AbstractHTTPEngine.this.config.getMaxStreamsPerServer();
 			int currentMaxStreams = 0;
-			for(HTTPClient client : this.clients)
-				currentMaxStreams += client.getMaxConcurrentRequestCount();
+			for(UpstreamClientPool.Entry entry : this.clients)
+				currentMaxStreams += entry.getClient().getMaxConcurrentRequestCount();
 			if(currentMaxStreams >= AbstractHTTPEngine.this.config.getMaxStreamsPerServer())
 				return null;
 			logger.debug(AbstractHTTPEngine.this.downstreamConnectionDbgstr, " Creating new HTTPClient instance (", currentMaxStreams, "+n of ", maxStreams, " streams total)");
-			HTTPClient newClient = AbstractHTTPEngine.this.createClient(this.userver, request);
-			if(newClient != null)
-				this.clients.add(newClient);
-			return newClient;
+			UpstreamClientPool.Entry newEntry = AbstractHTTPEngine.this.createClient(this.userver, request);
+			if(newEntry == null)
+				return null;
+			this.clients.add(newEntry);
+			return newEntry.getClient();
 		}
 
 		public boolean initFirstClient(HTTPRequest request){
@@ -676,9 +1192,9 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 
 		public HTTPClientStream newRequest(HTTPRequest request){
 			HTTPClientStream stream = null;
-			Iterator<HTTPClient> clientIt = this.clients.iterator();
+			Iterator<UpstreamClientPool.Entry> clientIt = this.clients.iterator();
 			while(clientIt.hasNext()){
-				HTTPClient client = clientIt.next();
+				HTTPClient client = clientIt.next().getClient();
 				if(((SocketConnectionWritable) client.getConnection()).getConnection().hasDisconnected()){
 					logger.debug(AbstractHTTPEngine.this.downstreamConnectionDbgstr, " Upstream connection to ", client.getConnection().getRemoteName(), " no longer connected but still in map");
 					clientIt.remove();
@@ -690,32 +1206,112 @@ public abstract class AbstractHTTPEngine implements HTTPEngine, HTTPEngineRespon
 			}
 			if(stream == null){
 				HTTPClient newClient = this.newClient(request);
-				if(newClient != null){
+				if(newClient != null)
 					stream = newClient.newRequest(request);
-					this.clients.add(newClient);
-				}
 			}
 			return stream;
 		}
 
-		public void remove(HTTPClient client){
-			this.clients.remove(client);
+		public void remove(UpstreamClientPool.Entry entry){
+			this.clients.remove(entry);
 		}
 
 		public boolean isEmpty(){
 			return this.clients.isEmpty();
 		}
 
-		public void closeAll(){
-			for(HTTPClient client : this.clients)
-				client.close();
+		public void releaseAll(){
+			UpstreamClientPool pool = AbstractHTTPEngine.this.proxy.getUpstreamClientPool();
+			for(UpstreamClientPool.Entry entry : this.clients){
+				if(entry.isShared()){
+					entry.removeOwner(AbstractHTTPEngine.this);
+				}else if(AbstractHTTPEngine.this.switchedProtocolUpstreamConnection != null || !pool.release(entry)){
+					entry.setOwner(null);
+					entry.getClient().close();
+				}
+			}
+			this.clients.clear();
 		}
 
 		public void closeIf(java.util.function.Predicate<HTTPClient> pred){
-			for(HTTPClient client : this.clients){
-				if(pred.test(client))
-					client.close();
+			Iterator<UpstreamClientPool.Entry> clientIt = this.clients.iterator();
+			while(clientIt.hasNext()){
+				UpstreamClientPool.Entry entry = clientIt.next();
+				if(!pred.test(entry.getClient()))
+					continue;
+				if(entry.isShared()){ // only detach from shared clients, which are still used by other client connections
+					entry.removeOwner(AbstractHTTPEngine.this);
+					clientIt.remove();
+				}else
+					entry.getClient().close();
+			}
+		}
+	}
+
+
+	/**
+	 * State of a forwarded request which may be retried or hedged.
+	 */
+	private static class ForwardState {
+
+		private final UpstreamGroup group;
+
+		// null if the request body exceeded the maximum size
+		private List<byte[]> body = new ArrayList<>();
+		private int bodySize = 0;
+		private boolean ended = false;
+		private HTTPMessageTrailers trailers;
+		private int attempts = 1;
+
+		private HTTPClientStream primary;
+		private UpstreamServer primaryServer;
+		// System.nanoTime() when the request to the primary upstream server ended, valid if timed is set
+		private long startTime;
+		private boolean timed = false;
+
+		private boolean hedged = false;
+		private TimingWheel.Timeout hedgeTimeout;
+		private HTTPClientStream hedge;
+		private UpstreamServer hedgeServer;
+		private UpstreamGroup.Lease hedgeLease;
+		private long hedgeStartTime;
+		// the hedged request was admitted as the trial request by the UpstreamOutlierDetector
+		private boolean hedgeTrial = false;
+
+		public ForwardState(HTTPClientStream primary, UpstreamServer primaryServer, UpstreamGroup group){
+			this.primary = primary;
+			this.primaryServer = primaryServer;
+			this.group = group;
+		}
+
+
+		public void bufferRequestData(byte[] data, int maxSize){
+			if(this.body == null)
+				return;
+			if(this.bodySize + data.length > maxSize){
+				this.body = null;
+				return;
+			}
+			// data may be a view of a receive buffer
+			this.body.add(data.clone());
+			this.bodySize += data.length;
+		}
+
+		public void cancelHedge(){
+			if(this.hedgeTimeout != null){
+				this.hedgeTimeout.cancel();
+				this.hedgeTimeout = null;
+			}
+			HTTPClientStream hedge = this.hedge;
+			this.hedge = null;
+			this.hedgeServer = null;
+			this.hedgeTrial = false;
+			if(this.hedgeLease != null){
+				this.hedgeLease.release();
+				this.hedgeLease = null;
 			}
+			if(hedge != null)
+				hedge.close();
 		}
 	}
 
@@ -12,32 +12,31 @@
 package org.omegazero.proxy.http;
 
 import java.net.InetAddress;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.omegazero.common.util.PropertyUtil;
 import org.omegazero.http.common.HTTPMessage;
 import org.omegazero.http.common.HTTPRequest;
 import org.omegazero.http.common.HTTPResponse;
 import org.omegazero.http.common.InvalidHTTPMessageException;
+import org.omegazero.net.socket.AbstractSocketConnection;
 import org.omegazero.net.socket.SocketConnection;
 import org.omegazero.proxy.core.Proxy;
+import org.omegazero.proxy.util.CachedClock;
 
 public final class HTTPCommon {
 
-	private static final Random RANDOM = new Random();
 	public static final int IADDR_HASH_SALT = PropertyUtil.getInt("org.omegazero.proxy.http.iaddrHashSalt", 42);
 	public static final boolean USOCKET_ERROR_DEBUG = PropertyUtil.getBoolean("org.omegazero.proxy.net.upstreamSocketErrorDebug", false);
 	public static final String REQUEST_ID_SEPARATOR = PropertyUtil.getString("org.omegazero.proxy.http.requestId.separator", ",");
 	public static final int REQUEST_ID_TIME_LENGTH = PropertyUtil.getInt("org.omegazero.proxy.http.requestId.timeLength", 0);
 	public static final long REQUEST_ID_TIME_BASE = PropertyUtil.getLong("org.omegazero.proxy.http.requestId.timeBase", 0);
 
-	private static final DateTimeFormatter DATE_HEADER_FORMATTER = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss z", Locale.ENGLISH).withZone(ZoneId.of("GMT"));
-
 	public static final String ATTACHMENT_KEY_REQUEST_ID = "engine_requestId";
+	private static final String ATTACHMENT_KEY_ADDRESS_HASH = "engine_addressHash";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final ThreadLocal<char[]> REQUEST_ID_BUFFER = ThreadLocal.withInitial(() -> new char[17 + Math.max(REQUEST_ID_TIME_LENGTH, 16)]);
 
 	public static final String MSG_BAD_REQUEST = "The proxy server did not understand the request";
 	public static final String MSG_NO_SERVER = "No appropriate upstream server is available to handle this request";
@@ -49,19 +48,27 @@ public final class HTTPCommon {
 	public static final String MSG_UPSTREAM_RESPONSE_INVALID = "Invalid HTTP response from upstream server";
 	public static final String MSG_UPSTREAM_CONNECTION_ERROR = "An error occurred in the connection to the upstream server";
 	public static final String MSG_UPSTREAM_CONNECTION_CLOSED = "Connection to the upstream server closed unexpectedly";
+	public static final String MSG_UPSTREAM_UNHEALTHY = "The upstream server is currently unavailable";
+	public static final String MSG_UPSTREAM_EJECTED = "The upstream server is temporarily unavailable because of previous errors";
 	public static final String MSG_PROTO_NOT_SUPPORTED = "Unable to proxy request because the upstream server does not support ";
 
 
 	/**
 	 * Generates a date string formatted for use in the <i>Date</i> HTTP header.
+	 * <p>
+	 * Since 3.12.1, the value is read from {@link CachedClock}.
 	 * 
 	 * @return The date string
 	 */
 	public static String dateString() {
-		return DATE_HEADER_FORMATTER.format(ZonedDateTime.now());
+		return CachedClock.dateString();
 	}
 
 	public static String hstrFromInetAddress(InetAddress address) {
+		return Integer.toHexString(hashInetAddress(address));
+	}
+
+	private static int hashInetAddress(InetAddress address) {
 		byte[] addrBytes = address.getAddress();
 		int nf = 0;
 		int bytesPerF = addrBytes.length >> 2;
@@ -74,41 +81,57 @@ public final class HTTPCommon {
 		}
 		if(nf <= 0x0fffffff)
 			nf |= 0x80000000;
-		return Integer.toHexString(nf);
+		return nf;
+	}
+
+	private static int connectionAddressHash(SocketConnection connection) {
+		if(connection instanceof AbstractSocketConnection){
+			AbstractSocketConnection aconn = (AbstractSocketConnection) connection;
+			Object hash = aconn.getAttachment(ATTACHMENT_KEY_ADDRESS_HASH);
+			if(hash == null){
+				hash = hashInetAddress(((java.net.InetSocketAddress) connection.getRemoteAddress()).getAddress());
+				aconn.setAttachment(ATTACHMENT_KEY_ADDRESS_HASH, hash);
+			}
+			return (Integer) hash;
+		}
+		return hashInetAddress(((java.net.InetSocketAddress) connection.getRemoteAddress()).getAddress());
+	}
+
+	/**
+	 * Writes the lowest <b>digits</b> hexadecimal digits of <b>value</b> to <b>buf</b>, starting at index <b>pos</b>.
+	 */
+	private static int putHex(char[] buf, int pos, long value, int digits) {
+		for(int i = pos + digits - 1; i >= pos; i--){
+			buf[i] = HEX_DIGITS[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+		return pos + digits;
 	}
 
 	/**
 	 * Generates a pseudo-random request ID from the given parameters and system properties.
+	 * <p>
+	 * Since 3.12.1, the random part is generated using {@link ThreadLocalRandom}, and the part derived from the remote address is cached in the connection.
 	 * 
 	 * @param connection The remote connection
 	 * @return The request ID
 	 */
 	public static String requestId(SocketConnection connection) {
-		int n = RANDOM.nextInt();
+		int n = ThreadLocalRandom.current().nextInt();
 		if(n <= 0x0fffffff)
 			n |= 0x10000000;
-		StringBuilder sb = new StringBuilder(32);
-		sb.append(Integer.toHexString(n)).append(HTTPCommon.hstrFromInetAddress(((java.net.InetSocketAddress) connection.getRemoteAddress()).getAddress()));
+		char[] buf = REQUEST_ID_BUFFER.get();
+		int pos = putHex(buf, 0, n, 8);
+		pos = putHex(buf, pos, connectionAddressHash(connection), 8);
 		if(REQUEST_ID_TIME_LENGTH > 0){
-			sb.append('-');
-			char[] buf = new char[REQUEST_ID_TIME_LENGTH];
-			long val = Math.max(System.currentTimeMillis() - REQUEST_ID_TIME_BASE, 0);
-			for(int i = buf.length - 1; i >= 0; i--){
-				long p = val & 0xf;
-				val >>>= 4;
-				char c;
-				if(p >= 10)
-					c = (char) (p + 87);
-				else
-					c = (char) (p + 48);
-				buf[i] = c;
-			}
-			sb.append(buf);
+			buf[pos++] = '-';
+			pos = putHex(buf, pos, Math.max(CachedClock.currentTimeMillis() - REQUEST_ID_TIME_BASE, 0), REQUEST_ID_TIME_LENGTH);
 		}else if(REQUEST_ID_TIME_LENGTH == 0){
-			sb.append('-');
-			sb.append(Long.toHexString(System.currentTimeMillis()));
+			buf[pos++] = '-';
+			long time = CachedClock.currentTimeMillis();
+			pos = putHex(buf, pos, time, Math.max((64 - Long.numberOfLeadingZeros(time) + 3) >> 2, 1));
 		}
-		return sb.toString();
+		return new String(buf, 0, pos);
 	}
 
 	/**
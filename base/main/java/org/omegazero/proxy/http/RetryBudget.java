@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of retried and hedged upstream requests to a percentage of all upstream requests, so that retries cannot multiply the load on upstream servers
+ * which are failing because they are overloaded.
+ * <p>
+ * Each request {@linkplain #deposit() deposits} a fraction of a token into the budget, and each retry {@linkplain #tryWithdraw() withdraws} a whole token. The budget
+ * holds at most {@link #MAX_BALANCE} tokens and initially contains {@link #MIN_BALANCE} tokens, so that retries are possible when there is little traffic.
+ *
+ * @since 3.12.1
+ */
+public class RetryBudget {
+
+	/**
+	 * The maximum number of tokens in a budget.
+	 */
+	public static final int MAX_BALANCE = 100;
+	/**
+	 * The initial number of tokens in a budget.
+	 */
+	public static final int MIN_BALANCE = 10;
+
+	private static final long SCALE = 1000;
+
+
+	private final AtomicLong balance = new AtomicLong(MIN_BALANCE * SCALE);
+	private volatile long depositAmount = 0;
+
+	private final LongAdder withdrawn = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Creates a new {@code RetryBudget}. The budget initially receives no deposits (see {@link #configure(int)}).
+	 */
+	public RetryBudget() {
+	}
+
+
+	/**
+	 * Sets the percentage of requests which may be retried.
+	 *
+	 * @param percent The percentage
+	 */
+	public void configure(int percent) {
+		this.depositAmount = Math.min(Math.max(percent, 0), 100) * SCALE / 100;
+	}
+
+	/**
+	 * Deposits the configured fraction of a token for a new request.
+	 */
+	public void deposit() {
+		long amount = this.depositAmount;
+		if(amount == 0)
+			return;
+		long b;
+		do{
+			b = this.balance.get();
+			if(b >= MAX_BALANCE * SCALE)
+				return;
+		}while(!this.balance.compareAndSet(b, Math.min(b + amount, MAX_BALANCE * SCALE)));
+	}
+
+	/**
+	 * Withdraws a token for a retry, if the budget contains at least one token.
+	 *
+	 * @return {@code true} if a token was withdrawn and the request may be retried
+	 */
+	public boolean tryWithdraw() {
+		long b;
+		do{
+			b = this.balance.get();
+			if(b < SCALE){
+				this.rejected.increment();
+				return false;
+			}
+		}while(!this.balance.compareAndSet(b, b - SCALE));
+		this.withdrawn.increment();
+		return true;
+	}
+
+	/**
+	 * Returns the total number of tokens withdrawn.
+	 *
+	 * @return The number of retries allowed
+	 */
+	public long getWithdrawnCount() {
+		return this.withdrawn.sum();
+	}
+
+	/**
+	 * Returns the total number of retries rejected because the budget was exhausted.
+	 *
+	 * @return The number of retries rejected
+	 */
+	public long getRejectedCount() {
+		return this.rejected.sum();
+	}
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.http;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.omegazero.common.logging.Logger;
+import org.omegazero.http.util.HTTPClient;
+import org.omegazero.net.socket.AbstractSocketConnection;
+import org.omegazero.proxy.config.HTTPEngineConfig;
+import org.omegazero.proxy.net.UpstreamServer;
+import org.omegazero.proxy.util.CachedClock;
+
+/**
+ * A proxy-wide pool of idle {@link HTTPClient}s, keyed by {@link UpstreamServer}.
+ * <p>
+ * When a client connection closes, {@link AbstractHTTPEngine} releases upstream clients without active requests into this pool instead of closing them.
+ * Other {@code AbstractHTTPEngine}s may then {@linkplain #acquire(UpstreamServer, String, boolean, HTTPEngineConfig) acquire} these clients to avoid establishing new connections to
+ * the upstream server. Only clients created without a downstream {@code HTTPServer} (see {@link Entry#isPoolable()}) can be pooled, because a pooled client may be used by a
+ * different client connection than the one it was created for.
+ * <p>
+ * Additionally, this pool holds <i>shared</i> clients, which are used by multiple {@code AbstractHTTPEngine}s at the same time to multiplex requests of different client
+ * connections over a small number of upstream connections (see {@link #acquireShared(UpstreamServer, String, boolean)}).
+ * <p>
+ * This class is thread-safe.
+ *
+ * @since 3.12.1
+ */
+public final class UpstreamClientPool {
+
+	private static final Logger logger = Logger.create();
+
+
+	private final Map<UpstreamServer, Deque<Entry>> idleClients = new HashMap<>();
+	private final Map<UpstreamServer, List<Entry>> sharedClients = new HashMap<>();
+
+	private int maxIdlePerServer = 0;
+	private long idleTimeout = 0;
+	private long maxLifetime = 0;
+	private int maxSharedPerServer = 0;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new {@code UpstreamClientPool}. The pool is initially disabled (see {@link #configure(int, int, int)}).
+	 */
+	public UpstreamClientPool(){
+	}
+
+
+	/**
+	 * Sets the limits of this pool. Idle clients exceeding the new limits are closed during the next call to {@link #sweep()}.
+	 *
+	 * @param maxIdlePerServer The maximum number of idle clients to keep per upstream server. Pooling is disabled if this is {@code 0}
+	 * @param idleTimeout The maximum time in seconds a client may be idle in this pool before it is closed. No limit if this is {@code 0}
+	 * @param maxLifetime The maximum time in seconds since creation after which a client is no longer reused. No limit if this is {@code 0}
+	 */
+	public synchronized void configure(int maxIdlePerServer, int idleTimeout, int maxLifetime){
+		this.maxIdlePerServer = Math.max(maxIdlePerServer, 0);
+		this.idleTimeout = Math.max(idleTimeout, 0) * 1000L;
+		this.maxLifetime = Math.max(maxLifetime, 0) * 1000L;
+	}
+
+	/**
+	 * Sets the maximum number of shared clients per upstream server, protocol and connection security.
+	 *
+	 * @param maxSharedPerServer The maximum number of shared clients. Shared clients are disabled if this is {@code 0}
+	 */
+	public synchronized void setMaxSharedPerServer(int maxSharedPerServer){
+		this.maxSharedPerServer = Math.max(maxSharedPerServer, 0);
+	}
+
+	/**
+	 * Returns {@code true} if idle clients are retained in this pool. If this is the case, new non-shared clients should be created {@linkplain Entry#isPoolable() poolable}.
+	 *
+	 * @return {@code true} if pooling of idle clients is enabled
+	 */
+	public synchronized boolean isIdlePoolingEnabled(){
+		return this.maxIdlePerServer > 0;
+	}
+
+	/**
+	 * Returns {@code true} if idle clients are retained in this pool or shared clients may be added to this pool.
+	 *
+	 * @return {@code true} if pooling is enabled
+	 */
+	public synchronized boolean isEnabled(){
+		return this.maxIdlePerServer > 0 || this.maxSharedPerServer > 0;
+	}
+
+
+	/**
+	 * Removes and returns an idle client for the given upstream server which uses the given protocol, connection security and engine configuration.
+	 * The most recently released client is returned first.
+	 *
+	 * @param userver The upstream server
+	 * @param protocol The protocol name of the client
+	 * @param secure Whether the client is used for an encrypted client connection. See {@link org.omegazero.proxy.util.ProxyUtil#connectUpstreamTCP}
+	 * @param config The {@code HTTPEngineConfig} the client must have been created with
+	 * @return The idle client entry, or {@code null} if there is none
+	 */
+	public Entry acquire(UpstreamServer userver, String protocol, boolean secure, HTTPEngineConfig config){
+		long time = CachedClock.currentTimeMillis();
+		List<Entry> expired = null;
+		Entry found = null;
+		synchronized(this){
+			Deque<Entry> deque = this.idleClients.get(userver);
+			if(deque == null)
+				return null;
+			Iterator<Entry> it = deque.iterator();
+			while(it.hasNext()){
+				Entry e = it.next();
+				if(!this.isReusable(e, time)){
+					it.remove();
+					if(expired == null)
+						expired = new ArrayList<>();
+					expired.add(e);
+				}else if(e.protocol.equals(protocol) && e.secure == secure && e.config == config){
+					it.remove();
+					found = e;
+					break;
+				}
+			}
+			if(deque.isEmpty())
+				this.idleClients.remove(userver);
+		}
+		closeAll(expired);
+		if(found != null && logger.debug())
+			logger.debug("Reusing pooled upstream client ", found.client, " for ", userver);
+		return found;
+	}
+
+	/**
+	 * Attempts to add the given client entry to the pool of idle clients.
+	 * <p>
+	 * The client is only retained if pooling is enabled, the client is {@linkplain Entry#isPoolable() poolable} and has no active requests, its connection is still open
+	 * and the pool limits are not exceeded.
+	 * If this method returns {@code false}, the caller is responsible for closing the client.
+	 *
+	 * @param entry The client entry
+	 * @return {@code true} if the client was added to the pool
+	 * @throws IllegalArgumentException If the given entry is a shared client entry
+	 */
+	public boolean release(Entry entry){
+		long time = CachedClock.currentTimeMillis();
+		if(entry.shared)
+			throw new IllegalArgumentException("Cannot release a shared client");
+		if(!entry.poolable || !entry.client.getActiveRequests().isEmpty())
+			return false;
+		synchronized(this){
+			if(this.closed || this.maxIdlePerServer <= 0 || !this.isReusable(entry, time))
+				return false;
+			Deque<Entry> deque = this.idleClients.computeIfAbsent(entry.userver, (k) -> new ArrayDeque<>());
+			if(deque.size() >= this.maxIdlePerServer)
+				return false;
+			entry.owners.clear();
+			entry.idleSince = time;
+			deque.addFirst(entry);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the shared client with the least number of active requests for the given upstream server, protocol and connection security, which can accept another
+	 * request without exceeding its {@linkplain HTTPClient#getMaxConcurrentRequestCount() concurrent request limit}.
+	 *
+	 * @param userver The upstream server
+	 * @param protocol The protocol name of the client
+	 * @param secure Whether the client is used for an encrypted client connection
+	 * @return The shared client entry, or {@code null} if there is no shared client that can accept another request
+	 * @see #canAddShared(UpstreamServer, String, boolean)
+	 */
+	public Entry acquireShared(UpstreamServer userver, String protocol, boolean secure){
+		long time = CachedClock.currentTimeMillis();
+		Entry found = null;
+		int foundFree = 0;
+		synchronized(this){
+			List<Entry> list = this.sharedClients.get(userver);
+			if(list == null)
+				return null;
+			for(Entry e : list){
+				if(!e.protocol.equals(protocol) || e.secure != secure || !this.isReusable(e, time))
+					continue;
+				int free = e.client.getMaxConcurrentRequestCount() - e.client.getActiveRequests().size();
+				if(free > foundFree){
+					found = e;
+					foundFree = free;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns {@code true} if the number of shared clients for the given upstream server, protocol and connection security is below the configured maximum.
+	 *
+	 * @param userver The upstream server
+	 * @param protocol The protocol name of the client
+	 * @param secure Whether the client is used for an encrypted client connection
+	 * @return {@code true} if another shared client may be added
+	 * @see #setMaxSharedPerServer(int)
+	 */
+	public synchronized boolean canAddShared(UpstreamServer userver, String protocol, boolean secure){
+		int n = 0;
+		List<Entry> list = this.sharedClients.get(userver);
+		if(list != null){
+			for(Entry e : list){
+				if(e.protocol.equals(protocol) && e.secure == secure)
+					n++;
+			}
+		}
+		return n < this.maxSharedPerServer;
+	}
+
+	/**
+	 * Adds a new shared client to this pool. The caller should check {@link #canAddShared(UpstreamServer, String, boolean)} before creating the client.
+	 *
+	 * @param entry The client entry
+	 * @throws IllegalArgumentException If the given entry is not a shared client entry
+	 */
+	public synchronized void addShared(Entry entry){
+		if(!entry.shared)
+			throw new IllegalArgumentException("Not a shared client entry");
+		if(this.closed)
+			return;
+		this.sharedClients.computeIfAbsent(entry.userver, (k) -> new ArrayList<>()).add(entry);
+	}
+
+	/**
+	 * Removes the given client entry from this pool, if it is in the pool. This is called when the connection of an idle or shared client closes.
+	 *
+	 * @param entry The client entry
+	 */
+	public synchronized void remove(Entry entry){
+		if(entry.shared){
+			List<Entry> list = this.sharedClients.get(entry.userver);
+			if(list != null){
+				list.remove(entry);
+				if(list.isEmpty())
+					this.sharedClients.remove(entry.userver);
+			}
+			return;
+		}
+		Deque<Entry> deque = this.idleClients.get(entry.userver);
+		if(deque != null){
+			deque.remove(entry);
+			if(deque.isEmpty())
+				this.idleClients.remove(entry.userver);
+		}
+	}
+
+	/**
+	 * Closes and removes all idle clients which exceeded the idle timeout or maximum lifetime, or which exceed the maximum number of idle clients per upstream server.
+	 * Shared clients are closed if they are no longer used by any {@code AbstractHTTPEngine} and exceeded the idle timeout or maximum lifetime.
+	 */
+	public void sweep(){
+		long time = CachedClock.currentTimeMillis();
+		List<Entry> expired = new ArrayList<>();
+		synchronized(this){
+			Iterator<List<Entry>> listIt = this.sharedClients.values().iterator();
+			while(listIt.hasNext()){
+				List<Entry> list = listIt.next();
+				Iterator<Entry> it = list.iterator();
+				while(it.hasNext()){
+					Entry e = it.next();
+					if(!e.owners.isEmpty() || !e.client.getActiveRequests().isEmpty()){
+						e.idleSince = 0;
+						continue;
+					}
+					if(e.idleSince == 0)
+						e.idleSince = time;
+					if(!this.isReusable(e, time) || (this.idleTimeout > 0 && time - e.idleSince > this.idleTimeout)){
+						it.remove();
+						expired.add(e);
+					}
+				}
+				if(list.isEmpty())
+					listIt.remove();
+			}
+
+			Iterator<Deque<Entry>> dequeIt = this.idleClients.values().iterator();
+			while(dequeIt.hasNext()){
+				Deque<Entry> deque = dequeIt.next();
+				int n = 0;
+				Iterator<Entry> it = deque.iterator();
+				while(it.hasNext()){
+					Entry e = it.next();
+					if(n >= this.maxIdlePerServer || !this.isReusable(e, time) || (this.idleTimeout > 0 && time - e.idleSince > this.idleTimeout)){
+						it.remove();
+						expired.add(e);
+					}else
+						n++;
+				}
+				if(deque.isEmpty())
+					dequeIt.remove();
+			}
+		}
+		if(!expired.isEmpty() && logger.debug())
+			logger.debug("Closing ", expired.size(), " expired pooled upstream clients");
+		closeAll(expired);
+	}
+
+	/**
+	 * Closes and removes all idle and shared clients. After this method was called, clients are no longer added to this pool.
+	 */
+	public void closeAll(){
+		List<Entry> all = new ArrayList<>();
+		synchronized(this){
+			this.closed = true;
+			for(Deque<Entry> deque : this.idleClients.values())
+				all.addAll(deque);
+			this.idleClients.clear();
+			for(List<Entry> list : this.sharedClients.values())
+				all.addAll(list);
+			this.sharedClients.clear();
+		}
+		closeAll(all);
+	}
+
+	/**
+	 * Returns the number of idle clients currently in this pool.
+	 *
+	 * @return The number of idle clients
+	 */
+	public synchronized int size(){
+		int n = 0;
+		for(Deque<Entry> deque : this.idleClients.values())
+			n += deque.size();
+		return n;
+	}
+
+
+	private boolean isReusable(Entry e, long time){
+		if(this.maxLifetime > 0 && time - e.created > this.maxLifetime)
+			return false;
+		return e.connection.isConnected();
+	}
+
+	private static void closeAll(List<Entry> entries){
+		if(entries == null)
+			return;
+		for(Entry e : entries){
+			try{
+				e.client.close();
+			}catch(Exception ex){
+				logger.warn("Error while closing pooled upstream client: ", ex.toString());
+			}
+		}
+	}
+
+
+	/**
+	 * An {@link HTTPClient} with information required for pooling.
+	 */
+	public static final class Entry {
+
+		private final HTTPClient client;
+		private final AbstractSocketConnection connection;
+		private final UpstreamServer userver;
+		private final String protocol;
+		private final boolean secure;
+		private final boolean shared;
+		private final HTTPEngineConfig config;
+		private final boolean poolable;
+		private final long created = CachedClock.currentTimeMillis();
+
+		private final Set<AbstractHTTPEngine> owners = new CopyOnWriteArraySet<>();
+		private long idleSince;
+
+		Entry(HTTPClient client, AbstractSocketConnection connection, UpstreamServer userver, String protocol, boolean secure, boolean shared, HTTPEngineConfig config,
+				boolean poolable){
+			this.client = client;
+			this.connection = connection;
+			this.userver = userver;
+			this.protocol = protocol;
+			this.secure = secure;
+			this.shared = shared;
+			this.config = config;
+			this.poolable = poolable;
+		}
+
+
+		/**
+		 * Returns the {@link HTTPClient}.
+		 *
+		 * @return The client
+		 */
+		public HTTPClient getClient(){
+			return this.client;
+		}
+
+		/**
+		 * Returns the connection to the upstream server used by the client.
+		 *
+		 * @return The upstream connection
+		 */
+		public AbstractSocketConnection getConnection(){
+			return this.connection;
+		}
+
+		/**
+		 * Returns the {@link UpstreamServer} the client is connected to.
+		 *
+		 * @return The upstream server
+		 */
+		public UpstreamServer getUpstreamServer(){
+			return this.userver;
+		}
+
+		/**
+		 * Returns the protocol name of the client.
+		 *
+		 * @return The protocol name
+		 */
+		public String getProtocol(){
+			return this.protocol;
+		}
+
+		/**
+		 * Returns {@code true} if the client was created for an encrypted client connection.
+		 *
+		 * @return {@code true} if created for an encrypted client connection
+		 */
+		public boolean isSecure(){
+			return this.secure;
+		}
+
+		/**
+		 * Returns {@code true} if the client is shared by multiple {@code AbstractHTTPEngine}s.
+		 *
+		 * @return {@code true} if shared
+		 */
+		public boolean isShared(){
+			return this.shared;
+		}
+
+		/**
+		 * Returns the {@link HTTPEngineConfig} the client was created with.
+		 *
+		 * @return The {@code HTTPEngineConfig}
+		 */
+		public HTTPEngineConfig getConfig(){
+			return this.config;
+		}
+
+		/**
+		 * Returns {@code true} if the client was created without a reference to the downstream {@code HTTPServer} of the client connection it was created for, and may
+		 * therefore be {@linkplain UpstreamClientPool#release(Entry) released} into the pool and reused by other client connections.
+		 *
+		 * @return {@code true} if poolable
+		 */
+		public boolean isPoolable(){
+			return this.poolable;
+		}
+
+		Collection<AbstractHTTPEngine> getOwners(){
+			return this.owners;
+		}
+
+		void setOwner(AbstractHTTPEngine owner){
+			if(this.shared)
+				throw new IllegalStateException("Shared client entry cannot have a single owner");
+			this.owners.clear();
+			if(owner != null)
+				this.owners.add(owner);
+		}
+
+		void addOwner(AbstractHTTPEngine owner){
+			this.owners.add(owner);
+		}
+
+		void removeOwner(AbstractHTTPEngine owner){
+			this.owners.remove(owner);
+		}
+	}
+}
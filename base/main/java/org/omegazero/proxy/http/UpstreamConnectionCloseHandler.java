@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.http;
+
+/**
+ * An {@link org.omegazero.http.util.HTTPClient} which needs to be notified when its connection to the upstream server closes, for example to complete a response whose
+ * end is indicated by the connection closing.
+ * <p>
+ * Clients must not register their own <i>close</i> listener on the connection, because {@link AbstractHTTPEngine} registers one, which replaces it. Instead,
+ * {@code AbstractHTTPEngine} calls {@link #connectionClosed()} from its listener, before incomplete requests of the client are ended with an error.
+ *
+ * @since 3.12.1
+ */
+public interface UpstreamConnectionCloseHandler {
+
+	/**
+	 * Called when the connection of this client to the upstream server closed.
+	 */
+	public void connectionClosed();
+}
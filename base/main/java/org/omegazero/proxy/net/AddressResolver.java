@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.omegazero.common.util.PropertyUtil;
+
+/**
+ * Resolves host names in background threads, so that name resolution does not block worker threads.
+ * <p>
+ * Name resolution is delegated to a {@link Resolver}, which is {@link InetAddress#getByName(String)} for the {@linkplain #getDefault() default instance}. A different
+ * {@code Resolver}, for example a local stub resolver for testing, may be used by creating a new {@code AddressResolver} and setting it as the default instance using
+ * {@link #setDefault(AddressResolver)}.
+ * <p>
+ * Each instance counts the number of resolutions, failures and the time spent resolving names.
+ *
+ * @since 3.12.1
+ * @see UpstreamServer#getAddress()
+ */
+public class AddressResolver {
+
+	private static final int DEFAULT_THREADS = PropertyUtil.getInt("org.omegazero.proxy.addressResolverThreads", 2);
+
+	private static volatile AddressResolver defaultInstance;
+
+
+	private final Resolver resolver;
+	private final ExecutorService executor;
+
+	private final LongAdder resolutions = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder totalLatency = new LongAdder();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * Creates a new {@code AddressResolver}.
+	 *
+	 * @param resolver The resolver to use to resolve names
+	 * @param threads The number of background threads
+	 */
+	public AddressResolver(Resolver resolver, int threads){
+		if(threads <= 0)
+			throw new IllegalArgumentException("threads must be positive");
+		this.resolver = Objects.requireNonNull(resolver);
+		AtomicInteger threadCounter = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (r) -> {
+			Thread t = new Thread(r, "AddressResolverThread-" + threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		this.executor = executor;
+	}
+
+
+	/**
+	 * Resolves the given host name in a background thread.
+	 *
+	 * @param hostname The host name to resolve
+	 * @return A {@code CompletableFuture} completed with the resolved address, or completed exceptionally with the exception thrown by the {@link Resolver}
+	 */
+	public CompletableFuture<InetAddress> resolve(String hostname){
+		CompletableFuture<InetAddress> future = new CompletableFuture<>();
+		this.pending.incrementAndGet();
+		try{
+			this.executor.execute(() -> {
+				long start = System.nanoTime();
+				try{
+					InetAddress address = this.resolver.resolve(hostname);
+					this.recordResolution(start, true);
+					future.complete(address);
+				}catch(Exception e){
+					this.recordResolution(start, false);
+					future.completeExceptionally(e);
+				}finally{
+					this.pending.decrementAndGet();
+				}
+			});
+		}catch(RuntimeException e){
+			this.pending.decrementAndGet();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void recordResolution(long start, boolean success){
+		long time = System.nanoTime() - start;
+		this.resolutions.increment();
+		if(!success)
+			this.failures.increment();
+		this.totalLatency.add(time);
+		long max;
+		while((max = this.maxLatency.get()) < time && !this.maxLatency.compareAndSet(max, time));
+	}
+
+	/**
+	 * Stops the background threads of this {@code AddressResolver}. Pending resolutions are completed, new resolutions fail.
+	 */
+	public void close(){
+		this.executor.shutdown();
+	}
+
+
+	/**
+	 * Returns the number of completed resolutions, including failed ones.
+	 *
+	 * @return The number of resolutions
+	 */
+	public long getResolutionCount(){
+		return this.resolutions.sum();
+	}
+
+	/**
+	 * Returns the number of failed resolutions.
+	 *
+	 * @return The number of failed resolutions
+	 */
+	public long getFailureCount(){
+		return this.failures.sum();
+	}
+
+	/**
+	 * Returns the total time spent resolving names in nanoseconds.
+	 *
+	 * @return The total resolution time
+	 * @see #getResolutionCount()
+	 */
+	public long getTotalLatencyNanos(){
+		return this.totalLatency.sum();
+	}
+
+	/**
+	 * Returns the longest time a single resolution took in nanoseconds.
+	 *
+	 * @return The maximum resolution time
+	 */
+	public long getMaxLatencyNanos(){
+		return this.maxLatency.get();
+	}
+
+	/**
+	 * Returns the number of resolutions that were requested but are not completed yet.
+	 *
+	 * @return The number of pending resolutions
+	 */
+	public int getPendingCount(){
+		return this.pending.get();
+	}
+
+
+	/**
+	 * Returns the default {@code AddressResolver}, which uses {@link InetAddress#getByName(String)}. The number of background threads is set using the system property
+	 * {@code org.omegazero.proxy.addressResolverThreads} (default {@code 2}).
+	 *
+	 * @return The default {@code AddressResolver}
+	 */
+	public static AddressResolver getDefault(){
+		AddressResolver r = defaultInstance;
+		if(r == null){
+			synchronized(AddressResolver.class){
+				if((r = defaultInstance) == null)
+					defaultInstance = r = new AddressResolver(InetAddress::getByName, DEFAULT_THREADS);
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Replaces the default {@code AddressResolver}. The previous default instance is not closed.
+	 *
+	 * @param resolver The new default {@code AddressResolver}
+	 */
+	public static void setDefault(AddressResolver resolver){
+		defaultInstance = Objects.requireNonNull(resolver);
+	}
+
+
+	/**
+	 * Resolves a host name to an address.
+	 */
+	@FunctionalInterface
+	public static interface Resolver {
+
+		/**
+		 * Resolves the given host name.
+		 *
+		 * @param hostname The host name
+		 * @return The resolved address
+		 * @throws UnknownHostException If the host name could not be resolved
+		 */
+		public InetAddress resolve(String hostname) throws UnknownHostException;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * A {@link DelegatingSSLEngine} whose initial handshake is admitted and measured by a {@link TLSHandshakeController}.
+ *
+ * @since 3.12.1
+ */
+class ControlledSSLEngine extends DelegatingSSLEngine {
+
+	private static final int HANDSHAKE_NONE = 0;
+	private static final int HANDSHAKE_RUNNING = 1;
+	private static final int HANDSHAKE_DONE = 2;
+
+
+	private final TLSHandshakeController controller;
+
+	private int handshakeState = HANDSHAKE_NONE;
+	private long handshakeStart;
+	private String rejectReason;
+
+	public ControlledSSLEngine(TLSHandshakeController controller, SSLEngine engine) {
+		super(engine);
+		this.controller = controller;
+	}
+
+
+	private void beforeOperation() throws SSLException {
+		if(this.rejectReason != null){
+			this.handshakeEnded(false);
+			throw new SSLHandshakeException(this.rejectReason);
+		}
+		if(this.handshakeState == HANDSHAKE_NONE){
+			this.controller.started.increment();
+			if(!this.controller.admit()){
+				this.controller.rejected.increment();
+				this.controller.failed.increment();
+				this.handshakeState = HANDSHAKE_DONE;
+				this.rejectReason = "TLS handshake rate limit exceeded";
+				throw new SSLHandshakeException(this.rejectReason);
+			}
+			this.handshakeStart = System.nanoTime();
+			this.handshakeState = HANDSHAKE_RUNNING;
+		}
+	}
+
+	private SSLEngineResult afterOperation(SSLEngineResult result) {
+		if(result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED)
+			this.handshakeEnded(true);
+		return result;
+	}
+
+	private void handshakeEnded(boolean success) {
+		if(this.handshakeState != HANDSHAKE_RUNNING)
+			return;
+		this.handshakeState = HANDSHAKE_DONE;
+		if(success){
+			this.controller.completed.increment();
+			this.controller.handshakeTime.add(System.nanoTime() - this.handshakeStart);
+			if(!this.engine.getUseClientMode() && !TLSHandshakeController.checkFullHandshake(this.engine.getSession()))
+				this.controller.resumed.increment();
+		}else
+			this.controller.failed.increment();
+	}
+
+
+	@Override
+	public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+		this.beforeOperation();
+		try{
+			return this.afterOperation(this.engine.wrap(srcs, offset, length, dst));
+		}catch(SSLException e){
+			this.handshakeEnded(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+		this.beforeOperation();
+		try{
+			return this.afterOperation(this.engine.unwrap(src, dsts, offset, length));
+		}catch(SSLException e){
+			this.handshakeEnded(false);
+			throw e;
+		}
+	}
+
+	@Override
+	public Runnable getDelegatedTask() {
+		Runnable task = this.engine.getDelegatedTask();
+		if(task == null)
+			return null;
+		return this.controller.timedTask(task);
+	}
+
+	@Override
+	public void closeInbound() throws SSLException {
+		this.handshakeEnded(false);
+		this.engine.closeInbound();
+	}
+
+	@Override
+	public void closeOutbound() {
+		this.handshakeEnded(false);
+		this.engine.closeOutbound();
+	}
+}
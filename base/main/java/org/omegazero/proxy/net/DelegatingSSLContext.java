@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.util.function.UnaryOperator;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * Utility for creating {@link SSLContext}s which delegate to another {@code SSLContext}, but wrap the {@link SSLEngine}s it creates.
+ *
+ * @since 3.12.1
+ */
+final class DelegatingSSLContext {
+
+	private DelegatingSSLContext() {
+	}
+
+
+	/**
+	 * Returns a new {@link SSLContext} delegating to the given <b>context</b>, which passes every {@code SSLEngine} created by it to the given <b>engineWrapper</b> and
+	 * returns the result.
+	 *
+	 * @param context The initialized {@code SSLContext}
+	 * @param engineWrapper The function wrapping created engines
+	 * @return The wrapped {@code SSLContext}
+	 */
+	public static SSLContext wrap(SSLContext context, UnaryOperator<SSLEngine> engineWrapper) {
+		SSLContextSpi spi = new SSLContextSpi(){
+
+			@Override
+			protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+				context.init(km, tm, sr);
+			}
+
+			@Override
+			protected SSLSocketFactory engineGetSocketFactory() {
+				return context.getSocketFactory();
+			}
+
+			@Override
+			protected SSLServerSocketFactory engineGetServerSocketFactory() {
+				return context.getServerSocketFactory();
+			}
+
+			@Override
+			protected SSLEngine engineCreateSSLEngine() {
+				return engineWrapper.apply(context.createSSLEngine());
+			}
+
+			@Override
+			protected SSLEngine engineCreateSSLEngine(String host, int port) {
+				return engineWrapper.apply(context.createSSLEngine(host, port));
+			}
+
+			@Override
+			protected SSLSessionContext engineGetServerSessionContext() {
+				return context.getServerSessionContext();
+			}
+
+			@Override
+			protected SSLSessionContext engineGetClientSessionContext() {
+				return context.getClientSessionContext();
+			}
+
+			@Override
+			protected SSLParameters engineGetDefaultSSLParameters() {
+				return context.getDefaultSSLParameters();
+			}
+
+			@Override
+			protected SSLParameters engineGetSupportedSSLParameters() {
+				return context.getSupportedSSLParameters();
+			}
+		};
+		return new SSLContext(spi, context.getProvider(), context.getProtocol()){};
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+
+/**
+ * An {@link SSLEngine} delegating all operations to another {@code SSLEngine}.
+ *
+ * @since 3.12.1
+ */
+class DelegatingSSLEngine extends SSLEngine {
+
+	protected SSLEngine engine;
+
+	public DelegatingSSLEngine(SSLEngine engine) {
+		super(engine.getPeerHost(), engine.getPeerPort());
+		this.engine = engine;
+	}
+
+
+	@Override
+	public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+		return this.engine.wrap(srcs, offset, length, dst);
+	}
+
+	@Override
+	public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+		return this.engine.unwrap(src, dsts, offset, length);
+	}
+
+	@Override
+	public Runnable getDelegatedTask() {
+		return this.engine.getDelegatedTask();
+	}
+
+	@Override
+	public void closeInbound() throws SSLException {
+		this.engine.closeInbound();
+	}
+
+	@Override
+	public boolean isInboundDone() {
+		return this.engine.isInboundDone();
+	}
+
+	@Override
+	public void closeOutbound() {
+		this.engine.closeOutbound();
+	}
+
+	@Override
+	public boolean isOutboundDone() {
+		return this.engine.isOutboundDone();
+	}
+
+	@Override
+	public String[] getSupportedCipherSuites() {
+		return this.engine.getSupportedCipherSuites();
+	}
+
+	@Override
+	public String[] getEnabledCipherSuites() {
+		return this.engine.getEnabledCipherSuites();
+	}
+
+	@Override
+	public void setEnabledCipherSuites(String[] suites) {
+		this.engine.setEnabledCipherSuites(suites);
+	}
+
+	@Override
+	public String[] getSupportedProtocols() {
+		return this.engine.getSupportedProtocols();
+	}
+
+	@Override
+	public String[] getEnabledProtocols() {
+		return this.engine.getEnabledProtocols();
+	}
+
+	@Override
+	public void setEnabledProtocols(String[] protocols) {
+		this.engine.setEnabledProtocols(protocols);
+	}
+
+	@Override
+	public SSLSession getSession() {
+		return this.engine.getSession();
+	}
+
+	@Override
+	public SSLSession getHandshakeSession() {
+		return this.engine.getHandshakeSession();
+	}
+
+	@Override
+	public void beginHandshake() throws SSLException {
+		this.engine.beginHandshake();
+	}
+
+	@Override
+	public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+		return this.engine.getHandshakeStatus();
+	}
+
+	@Override
+	public void setUseClientMode(boolean mode) {
+		this.engine.setUseClientMode(mode);
+	}
+
+	@Override
+	public boolean getUseClientMode() {
+		return this.engine.getUseClientMode();
+	}
+
+	@Override
+	public void setNeedClientAuth(boolean need) {
+		this.engine.setNeedClientAuth(need);
+	}
+
+	@Override
+	public boolean getNeedClientAuth() {
+		return this.engine.getNeedClientAuth();
+	}
+
+	@Override
+	public void setWantClientAuth(boolean want) {
+		this.engine.setWantClientAuth(want);
+	}
+
+	@Override
+	public boolean getWantClientAuth() {
+		return this.engine.getWantClientAuth();
+	}
+
+	@Override
+	public void setEnableSessionCreation(boolean flag) {
+		this.engine.setEnableSessionCreation(flag);
+	}
+
+	@Override
+	public boolean getEnableSessionCreation() {
+		return this.engine.getEnableSessionCreation();
+	}
+
+	@Override
+	public SSLParameters getSSLParameters() {
+		return this.engine.getSSLParameters();
+	}
+
+	@Override
+	public void setSSLParameters(SSLParameters params) {
+		this.engine.setSSLParameters(params);
+	}
+
+	@Override
+	public String getApplicationProtocol() {
+		return this.engine.getApplicationProtocol();
+	}
+
+	@Override
+	public String getHandshakeApplicationProtocol() {
+		return this.engine.getHandshakeApplicationProtocol();
+	}
+
+	@Override
+	public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+		this.engine.setHandshakeApplicationProtocolSelector(selector);
+	}
+
+	@Override
+	public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+		return this.engine.getHandshakeApplicationProtocolSelector();
+	}
+
+	@Override
+	public String getPeerHost() {
+		return this.engine.getPeerHost();
+	}
+
+	@Override
+	public int getPeerPort() {
+		return this.engine.getPeerPort();
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "[" + this.engine + "]";
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.X509KeyManager;
+
+import org.omegazero.common.logging.Logger;
+import org.omegazero.net.util.TrustManagerUtil;
+
+/**
+ * Keeps the OCSP response cache of the JDK TLS implementation populated for a set of certificates, so that OCSP responses can be stapled to TLS handshakes without
+ * waiting for the OCSP responder.
+ * <p>
+ * The JDK TLS implementation fetches OCSP responses for stapling during a handshake if there is no cached response for the server certificate, delaying the handshake
+ * by up to the response timeout. There is no API for supplying OCSP responses from elsewhere. Instead, this class refreshes the cache by performing in-memory
+ * handshakes requesting certificate status with the server {@link SSLContext} in a background thread. Cached responses are used until the end of their validity
+ * period or the configured cache lifetime, whichever comes first. If no response could be fetched, handshakes continue without a stapled response.
+ * <p>
+ * The certificate used in a refresh handshake is not selected by server name, but by the key manager of the server {@code SSLContext}, which must return the alias
+ * given by {@link #getRefreshAlias(SSLEngine)} if it is not {@code null}. Certificates which are only loaded during a live handshake can be
+ * {@linkplain #warm(String) warmed} when they are loaded, but that handshake still waits for the OCSP responder.
+ *
+ * @since 3.12.1
+ */
+public class OCSPStaplingRefresher {
+
+	private static final Logger logger = Logger.create();
+
+	private static final int MAX_HANDSHAKE_STEPS = 64;
+
+
+	private final SSLContext serverContext;
+	private final X509KeyManager keyManager;
+	private final SSLContext clientContext;
+
+	private final ExecutorService executor;
+	private volatile Thread thread;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private final Set<String> pendingWarm = ConcurrentHashMap.newKeySet();
+	private final Map<SSLEngine, String> engineAliases = new ConcurrentHashMap<>();
+
+	private final LongAdder stapled = new LongAdder();
+	private final LongAdder unstapled = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private volatile long lastRefreshTime;
+
+	/**
+	 * Creates a new {@code OCSPStaplingRefresher}.
+	 *
+	 * @param serverContext The {@code SSLContext} used for incoming TLS connections
+	 * @param keyManager The key manager of the <b>serverContext</b>, which selects the alias returned by {@link #getRefreshAlias(SSLEngine)}
+	 * @throws GeneralSecurityException If the {@code SSLContext} for the in-memory client could not be created
+	 */
+	public OCSPStaplingRefresher(SSLContext serverContext, X509KeyManager keyManager) throws GeneralSecurityException {
+		this.serverContext = serverContext;
+		this.keyManager = keyManager;
+		this.clientContext = SSLContext.getInstance("TLS");
+		// the certificates are not validated, only the stapled responses are of interest
+		this.clientContext.init(null, TrustManagerUtil.getTrustAllManager(), null);
+		this.executor = Executors.newSingleThreadExecutor((r) -> {
+			Thread t = new Thread(r, "OCSPStaplingThread");
+			t.setDaemon(true);
+			this.thread = t;
+			return t;
+		});
+	}
+
+
+	/**
+	 * Refreshes the cached OCSP responses of the certificates with the given aliases in the background. Does nothing if a refresh is still running.
+	 *
+	 * @param aliases The aliases of the certificates in the key manager
+	 */
+	public void refresh(Collection<String> aliases) {
+		if(!this.refreshing.compareAndSet(false, true))
+			return;
+		List<String> aliasList = new ArrayList<>(aliases);
+		this.executor.execute(() -> {
+			try{
+				int count = 0;
+				for(String alias : aliasList){
+					if(this.refreshAlias(alias))
+						count++;
+				}
+				this.lastRefreshTime = System.currentTimeMillis();
+				logger.debug("OCSP responses available for ", count, " of ", aliasList.size(), " certificates");
+			}finally{
+				this.refreshing.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Refreshes the cached OCSP response of the certificate with the given alias in the background, for example after the certificate was loaded on demand. Does nothing
+	 * if the certificate was loaded by a refresh of this {@code OCSPStaplingRefresher}, or if the alias is already waiting to be refreshed.
+	 *
+	 * @param alias The alias of the certificate in the key manager
+	 */
+	public void warm(String alias) {
+		if(Thread.currentThread() == this.thread || !this.pendingWarm.add(alias))
+			return;
+		try{
+			this.executor.execute(() -> {
+				this.pendingWarm.remove(alias);
+				this.refreshAlias(alias);
+			});
+		}catch(RejectedExecutionException e){
+			this.pendingWarm.remove(alias);
+		}
+	}
+
+	/**
+	 * Returns the alias of the certificate which the key manager must select for the given {@code SSLEngine}, if the engine performs a refresh handshake of this
+	 * {@code OCSPStaplingRefresher}.
+	 *
+	 * @param engine The server {@code SSLEngine}
+	 * @return The alias, or {@code null} if the engine is not used for a refresh
+	 */
+	public String getRefreshAlias(SSLEngine engine) {
+		return this.engineAliases.get(engine);
+	}
+
+	private boolean refreshAlias(String alias) {
+		PrivateKey key = this.keyManager.getPrivateKey(alias);
+		if(key == null)
+			return false;
+		String suiteType;
+		if(key.getAlgorithm().equals("EC"))
+			suiteType = "_ECDSA_";
+		else if(key.getAlgorithm().equals("RSA"))
+			suiteType = "_RSA_";
+		else
+			return false;
+		SSLEngine server = this.serverContext.createSSLEngine();
+		server.setUseClientMode(false);
+		this.engineAliases.put(server, alias);
+		try{
+			SSLEngine client = this.clientContext.createSSLEngine();
+			client.setUseClientMode(true);
+			// TLS 1.2 allows selecting the certificate type by cipher suite
+			SSLParameters params = client.getSSLParameters();
+			params.setProtocols(new String[] { "TLSv1.2" });
+			List<String> suites = new ArrayList<>();
+			for(String suite : params.getCipherSuites()){
+				if(suite.contains(suiteType) && !(suiteType.equals("_RSA_") && suite.contains("_ECDSA_")))
+					suites.add(suite);
+			}
+			params.setCipherSuites(suites.toArray(new String[suites.size()]));
+			client.setSSLParameters(params);
+
+			handshake(client, server);
+			List<byte[]> responses = ((ExtendedSSLSession) client.getSession()).getStatusResponses();
+			if(responses.isEmpty() || responses.get(0).length == 0){
+				logger.debug("No OCSP response available for '", alias, "'");
+				this.unstapled.increment();
+				return false;
+			}
+			this.stapled.increment();
+			return true;
+		}catch(Exception e){
+			logger.debug("OCSP stapling handshake for '", alias, "' failed: ", e.toString());
+			this.failed.increment();
+			return false;
+		}finally{
+			this.engineAliases.remove(server);
+		}
+	}
+
+	private static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+		int bufferSize = client.getSession().getPacketBufferSize();
+		ByteBuffer toServer = ByteBuffer.allocate(bufferSize);
+		ByteBuffer toClient = ByteBuffer.allocate(bufferSize);
+		ByteBuffer app = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+		ByteBuffer empty = ByteBuffer.allocate(0);
+		client.beginHandshake();
+		server.beginHandshake();
+		for(int i = 0; i < MAX_HANDSHAKE_STEPS; i++){
+			boolean clientDone = handshakeStep(client, toClient, toServer, app, empty);
+			boolean serverDone = handshakeStep(server, toServer, toClient, app, empty);
+			if(clientDone && serverDone)
+				return;
+		}
+		throw new SSLException("Handshake did not complete");
+	}
+
+	private static boolean handshakeStep(SSLEngine engine, ByteBuffer in, ByteBuffer out, ByteBuffer app, ByteBuffer empty) throws SSLException {
+		while(true){
+			SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+			if(status == SSLEngineResult.HandshakeStatus.NEED_TASK){
+				Runnable task;
+				while((task = engine.getDelegatedTask()) != null)
+					task.run();
+			}else if(status == SSLEngineResult.HandshakeStatus.NEED_WRAP){
+				if(engine.wrap(empty, out).getStatus() != SSLEngineResult.Status.OK)
+					return false;
+			}else if(status == SSLEngineResult.HandshakeStatus.NEED_UNWRAP){
+				in.flip();
+				SSLEngineResult result = engine.unwrap(in, app);
+				in.compact();
+				app.clear();
+				if(result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+					return false;
+			}else
+				return true;
+		}
+	}
+
+	/**
+	 * Stops the refresh thread.
+	 */
+	public void close() {
+		this.executor.shutdownNow();
+	}
+
+
+	/**
+	 * Returns the number of refreshes of a certificate where an OCSP response was available for stapling.
+	 *
+	 * @return The number of successful refreshes
+	 */
+	public long getStapledCount() {
+		return this.stapled.sum();
+	}
+
+	/**
+	 * Returns the number of refreshes of a certificate where no OCSP response was available, for example because the OCSP responder was not reachable or the
+	 * certificate has no OCSP responder URI.
+	 *
+	 * @return The number of refreshes without an OCSP response
+	 */
+	public long getUnstapledCount() {
+		return this.unstapled.sum();
+	}
+
+	/**
+	 * Returns the number of refreshes of a certificate which failed because of an error in the handshake.
+	 *
+	 * @return The number of failed refreshes
+	 */
+	public long getFailedCount() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Returns the time the last refresh completed, as returned by {@link System#currentTimeMillis()}.
+	 *
+	 * @return The time of the last refresh, or {@code 0} if no refresh completed yet
+	 */
+	public long getLastRefreshTime() {
+		return this.lastRefreshTime;
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.omegazero.proxy.util.HostPatternSet;
+
+/**
+ * An immutable table of routes, which selects the {@link UpstreamServer} or {@link UpstreamGroup} for a request based on its host name, path and method.
+ * <p>
+ * The route for a request is selected as follows: the host name is first looked up among the routes with an exact host name, then among the routes with a host name
+ * expression containing wildcard characters (in the order they were passed to the constructor, see {@link HostPatternSet}), and finally among the routes for any host
+ * name. Of the routes of the first of these host names with a matching route, the route with the longest matching path prefix is selected. A path prefix matches
+ * the request path if the request path starts with the prefix and the prefix ends at a path segment boundary. A route with a method is preferred over a route for any
+ * method with the same path prefix.
+ * <p>
+ * Path prefixes are stored in a radix tree per host name, so the time required to select a route depends only on the length of the host name and path, not on the
+ * number of routes.
+ *
+ * @since 3.12.1
+ */
+public class RoutingTable {
+
+	private final Map<String, PathNode> exactHosts = new HashMap<>();
+	private final HostPatternSet hostPatterns;
+	private final Map<String, PathNode> patternHosts = new HashMap<>();
+	private final PathNode anyHost = new PathNode("");
+	private final List<Route> routes;
+
+	/**
+	 * Creates a new {@code RoutingTable} containing the given routes. If there are multiple routes with the same host name, path prefix and method, the last one is used.
+	 *
+	 * @param routes The routes
+	 */
+	public RoutingTable(Collection<Route> routes) {
+		Map<String, PathNode> patterns = new LinkedHashMap<>();
+		for(Route route : routes){
+			PathNode root;
+			if(route.host == null)
+				root = this.anyHost;
+			else if(route.host.indexOf('*') >= 0)
+				root = patterns.computeIfAbsent(route.host, (h) -> new PathNode(""));
+			else
+				root = this.exactHosts.computeIfAbsent(route.host, (h) -> new PathNode(""));
+			root.insert(route.pathPrefix, route.method, route);
+		}
+		this.hostPatterns = new HostPatternSet(patterns.keySet());
+		this.patternHosts.putAll(patterns);
+		this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+	}
+
+
+	/**
+	 * Selects the {@link Route} for a request.
+	 *
+	 * @param authority The authority (host name and optional port) of the request. May be {@code null}
+	 * @param path The request path, which may include a query string
+	 * @param method The request method
+	 * @return The selected route, or {@code null} if no route matches
+	 */
+	public Route select(String authority, String path, String method) {
+		if(path == null)
+			path = "";
+		Route route = null;
+		String host = authority != null ? normalizeHost(authority) : null;
+		if(host != null){
+			PathNode root = this.exactHosts.get(host);
+			if(root != null)
+				route = root.find(path, method);
+			if(route == null && this.hostPatterns.size() > 0){
+				// a matching expression may not have a route for this path, in which case the next one is tried
+				for(String pattern : this.hostPatterns.matches(host)){
+					route = this.patternHosts.get(pattern).find(path, method);
+					if(route != null)
+						break;
+				}
+			}
+		}
+		if(route == null)
+			route = this.anyHost.find(path, method);
+		return route;
+	}
+
+	/**
+	 * Selects the {@link UpstreamServer} for a request.
+	 * <p>
+	 * If the selected route has an {@link UpstreamGroup}, a member of the group is selected and its {@link UpstreamGroup.Lease} is released immediately, so the
+	 * request is not counted as outstanding. Use {@link #select(String, String, String)} to keep track of outstanding requests.
+	 *
+	 * @param authority The authority (host name and optional port) of the request. May be {@code null}
+	 * @param path The request path, which may include a query string
+	 * @param method The request method
+	 * @return The {@code UpstreamServer} of the selected route, or {@code null} if no route matches
+	 */
+	public UpstreamServer route(String authority, String path, String method) {
+		Route route = this.select(authority, path, method);
+		if(route == null)
+			return null;
+		if(route.upstreamGroup != null){
+			UpstreamGroup.Lease lease = route.upstreamGroup.select();
+			if(lease == null)
+				return null;
+			lease.release();
+			return lease.getUpstreamServer();
+		}
+		return route.upstreamServer;
+	}
+
+	/**
+	 * Returns the number of routes in this table.
+	 *
+	 * @return The number of routes
+	 */
+	public int size() {
+		return this.routes.size();
+	}
+
+	/**
+	 * Returns {@code true} if this table contains no routes.
+	 *
+	 * @return {@code true} if there are no routes
+	 */
+	public boolean isEmpty() {
+		return this.routes.isEmpty();
+	}
+
+	/**
+	 * Returns an unmodifiable list of the routes passed to the constructor, in the same order.
+	 *
+	 * @return The routes
+	 */
+	public List<Route> getRoutes() {
+		return this.routes;
+	}
+
+
+	/**
+	 * Removes the port from the given authority and converts it to lower case.
+	 */
+	private static String normalizeHost(String authority) {
+		int end;
+		if(authority.startsWith("[")){
+			end = authority.indexOf(']') + 1;
+			if(end == 0)
+				end = authority.length();
+		}else{
+			end = authority.lastIndexOf(':');
+			if(end < 0)
+				end = authority.length();
+		}
+		String host = end == authority.length() ? authority : authority.substring(0, end);
+		for(int i = 0; i < host.length(); i++){
+			char c = host.charAt(i);
+			if(c >= 'A' && c <= 'Z')
+				return host.toLowerCase(Locale.ROOT);
+		}
+		return host;
+	}
+
+
+	/**
+	 * A route of a {@link RoutingTable}.
+	 *
+	 * @since 3.12.1
+	 */
+	public static class Route {
+
+		private final String host;
+		private final String pathPrefix;
+		private final String method;
+		private final UpstreamServer upstreamServer;
+		private final UpstreamGroup upstreamGroup;
+
+		/**
+		 * Creates a new {@code Route}.
+		 *
+		 * @param host The host name or host name expression (see {@link HostPatternSet}). {@code null} or <code>*</code> matches any host name
+		 * @param pathPrefix The path prefix. {@code null} or the empty string matches any path
+		 * @param method The request method. {@code null} matches any method
+		 * @param upstreamServer The upstream server to select
+		 */
+		public Route(String host, String pathPrefix, String method, UpstreamServer upstreamServer) {
+			this(host, pathPrefix, method, Objects.requireNonNull(upstreamServer), null);
+		}
+
+		/**
+		 * Creates a new {@code Route} to a group of upstream servers.
+		 *
+		 * @param host The host name or host name expression (see {@link HostPatternSet}). {@code null} or <code>*</code> matches any host name
+		 * @param pathPrefix The path prefix. {@code null} or the empty string matches any path
+		 * @param method The request method. {@code null} matches any method
+		 * @param upstreamGroup The group to select an upstream server from
+		 */
+		public Route(String host, String pathPrefix, String method, UpstreamGroup upstreamGroup) {
+			this(host, pathPrefix, method, null, Objects.requireNonNull(upstreamGroup));
+		}
+
+		private Route(String host, String pathPrefix, String method, UpstreamServer upstreamServer, UpstreamGroup upstreamGroup) {
+			this.host = host == null || host.equals("*") ? null : host.toLowerCase(Locale.ROOT);
+			this.pathPrefix = pathPrefix != null ? pathPrefix : "";
+			this.method = method;
+			this.upstreamServer = upstreamServer;
+			this.upstreamGroup = upstreamGroup;
+		}
+
+		public String getHost() {
+			return this.host;
+		}
+
+		public String getPathPrefix() {
+			return this.pathPrefix;
+		}
+
+		public String getMethod() {
+			return this.method;
+		}
+
+		/**
+		 * Returns the upstream server of this route, or {@code null} if this is a route to an {@link UpstreamGroup}.
+		 *
+		 * @return The {@code UpstreamServer}
+		 */
+		public UpstreamServer getUpstreamServer() {
+			return this.upstreamServer;
+		}
+
+		/**
+		 * Returns the upstream group of this route, or {@code null} if this is a route to a single {@link UpstreamServer}.
+		 *
+		 * @return The {@code UpstreamGroup}
+		 */
+		public UpstreamGroup getUpstreamGroup() {
+			return this.upstreamGroup;
+		}
+
+		@Override
+		public String toString() {
+			return "Route{" + (this.host != null ? this.host : "*") + this.pathPrefix + (this.method != null ? " " + this.method : "") + " -> " + (this.upstreamGroup != null ? this.upstreamGroup : this.upstreamServer) + "}";
+		}
+	}
+
+
+	private static class PathNode {
+
+		private static final char[] EMPTY_CHARS = new char[0];
+		private static final PathNode[] EMPTY_NODES = new PathNode[0];
+
+		private String label;
+
+		// sorted by first character of the label
+		private char[] firstChars = EMPTY_CHARS;
+		private PathNode[] children = EMPTY_NODES;
+
+		private Route anyMethod;
+		private Map<String, Route> byMethod;
+
+		public PathNode(String label) {
+			this.label = label;
+		}
+
+
+		public void insert(String path, String method, Route route) {
+			PathNode node = this;
+			int pos = 0;
+			while(pos < path.length()){
+				int ci = Arrays.binarySearch(node.firstChars, path.charAt(pos));
+				if(ci < 0){
+					PathNode leaf = new PathNode(path.substring(pos));
+					node.addChild(-ci - 1, leaf);
+					node = leaf;
+					break;
+				}
+				PathNode child = node.children[ci];
+				int common = 0;
+				int max = Math.min(child.label.length(), path.length() - pos);
+				while(common < max && child.label.charAt(common) == path.charAt(pos + common))
+					common++;
+				if(common < child.label.length()){
+					// split the edge at the end of the common part
+					PathNode split = new PathNode(child.label.substring(0, common));
+					child.label = child.label.substring(common);
+					split.addChild(0, child);
+					node.children[ci] = split;
+					child = split;
+				}
+				node = child;
+				pos += common;
+			}
+			if(method == null)
+				node.anyMethod = route;
+			else{
+				if(node.byMethod == null)
+					node.byMethod = new HashMap<>();
+				node.byMethod.put(method, route);
+			}
+		}
+
+		private void addChild(int index, PathNode child) {
+			char[] chars = new char[this.firstChars.length + 1];
+			PathNode[] nodes = new PathNode[this.children.length + 1];
+			System.arraycopy(this.firstChars, 0, chars, 0, index);
+			System.arraycopy(this.children, 0, nodes, 0, index);
+			chars[index] = child.label.charAt(0);
+			nodes[index] = child;
+			System.arraycopy(this.firstChars, index, chars, index + 1, this.firstChars.length - index);
+			System.arraycopy(this.children, index, nodes, index + 1, this.children.length - index);
+			this.firstChars = chars;
+			this.children = nodes;
+		}
+
+		private Route get(String method) {
+			if(this.byMethod != null){
+				Route route = this.byMethod.get(method);
+				if(route != null)
+					return route;
+			}
+			return this.anyMethod;
+		}
+
+
+		public Route find(String path, String method) {
+			int end = path.indexOf('?');
+			if(end < 0)
+				end = path.length();
+			Route best = null;
+			PathNode node = this;
+			int pos = 0;
+			while(true){
+				if(node.anyMethod != null || node.byMethod != null){
+					// only match at path segment boundaries
+					if(pos == 0 || pos == end || path.charAt(pos - 1) == '/' || path.charAt(pos) == '/'){
+						Route route = node.get(method);
+						if(route != null)
+							best = route;
+					}
+				}
+				if(pos >= end)
+					break;
+				int ci = Arrays.binarySearch(node.firstChars, path.charAt(pos));
+				if(ci < 0)
+					break;
+				PathNode child = node.children[ci];
+				int len = child.label.length();
+				if(pos + len > end || !path.regionMatches(pos, child.label, 0, len))
+					break;
+				node = child;
+				pos += len;
+			}
+			return best;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Controls the TLS handshakes of {@link SSLEngine}s created by an {@link SSLContext} {@linkplain #wrap(SSLContext) wrapped} by this {@code TLSHandshakeController}.
+ * <p>
+ * The number of handshakes started per second may be limited, so that handshake bursts do not starve established connections of CPU time. Handshakes exceeding the
+ * limit fail.
+ * <p>
+ * Each instance counts started, completed, resumed, failed and rejected handshakes and the time spent in delegated tasks, which contain the CPU-intensive parts of a
+ * handshake (for example, signing with the private key). Delegated tasks are run by the caller of {@link SSLEngine#getDelegatedTask()} as usual.
+ *
+ * @since 3.12.1
+ */
+public class TLSHandshakeController {
+
+	private static final String FULL_HANDSHAKE_KEY = "org.omegazero.proxy.fullHandshake";
+
+
+	private final int rateLimit;
+
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+
+	final LongAdder started = new LongAdder();
+	final LongAdder completed = new LongAdder();
+	final LongAdder failed = new LongAdder();
+	final LongAdder rejected = new LongAdder();
+	final LongAdder resumed = new LongAdder();
+	private final LongAdder tasks = new LongAdder();
+	private final LongAdder taskTime = new LongAdder();
+	final LongAdder handshakeTime = new LongAdder();
+
+	/**
+	 * Creates a new {@code TLSHandshakeController}.
+	 *
+	 * @param rateLimit The maximum number of handshakes started per second. {@code 0} means unlimited
+	 */
+	public TLSHandshakeController(int rateLimit) {
+		if(rateLimit < 0)
+			throw new IllegalArgumentException("Invalid TLS handshake rate limit");
+		this.rateLimit = rateLimit;
+		this.tokens = rateLimit;
+	}
+
+
+	/**
+	 * Returns a new {@link SSLContext} which creates {@link SSLEngine}s controlled by this {@code TLSHandshakeController}, and otherwise delegates to the given
+	 * {@code SSLContext}.
+	 *
+	 * @param context The initialized {@code SSLContext}
+	 * @return The wrapped {@code SSLContext}
+	 */
+	public SSLContext wrap(SSLContext context) {
+		return DelegatingSSLContext.wrap(context, (engine) -> new ControlledSSLEngine(this, engine));
+	}
+
+	/**
+	 * Marks the given handshake session as being created by a full handshake, as opposed to an abbreviated handshake resuming a previous session. This must be called by
+	 * the {@code KeyManager} when it is asked to select a certificate, which only happens during full handshakes.
+	 *
+	 * @param handshakeSession The handshake session
+	 */
+	public static void markFullHandshake(SSLSession handshakeSession) {
+		handshakeSession.putValue(FULL_HANDSHAKE_KEY, Boolean.TRUE);
+	}
+
+	/**
+	 * Returns {@code true} if the given session was {@linkplain #markFullHandshake(SSLSession) marked} during the handshake that just completed, and removes the mark, so
+	 * that later handshakes resuming the session are not counted as full handshakes.
+	 */
+	static boolean checkFullHandshake(SSLSession session) {
+		if(session.getValue(FULL_HANDSHAKE_KEY) == null)
+			return false;
+		session.removeValue(FULL_HANDSHAKE_KEY);
+		return true;
+	}
+
+	/**
+	 * Called when a handshake starts. Returns {@code false} if the handshake rate limit was exceeded.
+	 */
+	synchronized boolean admit() {
+		if(this.rateLimit > 0){
+			long now = System.nanoTime();
+			this.tokens = Math.min(this.rateLimit, this.tokens + (now - this.lastRefill) * this.rateLimit / 1e9);
+			this.lastRefill = now;
+			if(this.tokens < 1)
+				return false;
+			this.tokens--;
+		}
+		return true;
+	}
+
+	/**
+	 * Wraps a delegated task of an {@code SSLEngine} to measure its run time.
+	 */
+	Runnable timedTask(Runnable task) {
+		return () -> {
+			long start = System.nanoTime();
+			try{
+				task.run();
+			}finally{
+				this.taskTime.add(System.nanoTime() - start);
+				this.tasks.increment();
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the number of handshakes that were started, including rejected handshakes.
+	 *
+	 * @return The number of started handshakes
+	 */
+	public long getStartedCount() {
+		return this.started.sum();
+	}
+
+	/**
+	 * Returns the number of handshakes that completed successfully.
+	 *
+	 * @return The number of completed handshakes
+	 */
+	public long getCompletedCount() {
+		return this.completed.sum();
+	}
+
+	/**
+	 * Returns the number of completed handshakes that resumed a previous session, for example using a session ticket, instead of performing a full handshake.
+	 *
+	 * @return The number of resumed handshakes
+	 */
+	public long getResumedCount() {
+		return this.resumed.sum();
+	}
+
+	/**
+	 * Returns the number of handshakes that failed or were aborted, including rejected handshakes.
+	 *
+	 * @return The number of failed handshakes
+	 */
+	public long getFailedCount() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Returns the number of handshakes that were rejected because the rate limit was exceeded.
+	 *
+	 * @return The number of rejected handshakes
+	 */
+	public long getRejectedCount() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * Returns the total time between the start and completion of all completed handshakes in nanoseconds.
+	 *
+	 * @return The total handshake time
+	 */
+	public long getTotalHandshakeTimeNanos() {
+		return this.handshakeTime.sum();
+	}
+
+	/**
+	 * Returns the number of delegated tasks that were run.
+	 *
+	 * @return The number of delegated tasks
+	 */
+	public long getTaskCount() {
+		return this.tasks.sum();
+	}
+
+	/**
+	 * Returns the total time spent running delegated tasks in nanoseconds.
+	 *
+	 * @return The total task time
+	 */
+	public long getTotalTaskTimeNanos() {
+		return this.taskTime.sum();
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.omegazero.proxy.util.CachedClock;
+
+/**
+ * A named group of {@link UpstreamServer}s, across which requests are balanced.
+ * <p>
+ * An upstream server is selected using the <i>power of two choices</i>: two distinct members are chosen at random, and the one with fewer outstanding requests relative to
+ * its weight is selected. The number of outstanding requests of a member is the number of {@link Lease}s returned by {@link #select()} which were not
+ * {@linkplain Lease#release() released} yet. This avoids both the herd behavior of always selecting the least loaded member and long queues at slow members, which
+ * occur with random or round-robin selection.
+ * <p>
+ * Members whose {@link UpstreamServer} is not {@linkplain UpstreamServer#isAvailable() available} (unhealthy or ejected) are only selected if no member is available.
+ * <p>
+ * Members added to an existing group using {@link #setMembers(Collection)} start with a fraction of their weight, which increases linearly to their full weight
+ * during the {@linkplain #getSlowStart() slow start} duration, to prevent overloading members which were just started.
+ *
+ * @since 3.12.1
+ */
+public class UpstreamGroup {
+
+	/**
+	 * The fraction of its weight a member starts with during slow start.
+	 */
+	private static final double SLOW_START_MIN_FACTOR = 0.1;
+
+
+	private final String name;
+	private volatile int slowStart;
+	private volatile Member[] members;
+
+	/**
+	 * Creates a new {@code UpstreamGroup}. Slow start does not apply to the initial members.
+	 *
+	 * @param name The name of this group
+	 * @param members The initial members
+	 * @param slowStart The slow start duration in seconds. See {@link #getSlowStart()}
+	 */
+	public UpstreamGroup(String name, Collection<Member> members, int slowStart) {
+		this.name = Objects.requireNonNull(name);
+		this.slowStart = slowStart;
+		this.members = members.toArray(new Member[0]);
+	}
+
+
+	/**
+	 * Selects a member of this group for a request, using the power of two choices (see {@link UpstreamGroup}). The returned {@link Lease} counts as an outstanding
+	 * request of the member until it is released.
+	 *
+	 * @return The {@code Lease} of the selected member, or {@code null} if this group has no members
+	 */
+	public Lease select() {
+		return this.select(null);
+	}
+
+	/**
+	 * Selects a member of this group like {@link #select()}, but members with the given {@link UpstreamServer} are treated like unavailable members. This is used to send
+	 * retried requests to a different member than the one which failed.
+	 *
+	 * @param avoid The upstream server to avoid, or {@code null}
+	 * @return The {@code Lease} of the selected member, or {@code null} if this group has no members
+	 */
+	public Lease select(UpstreamServer avoid) {
+		Member[] members = this.members;
+		Member member;
+		if(members.length == 0)
+			return null;
+		else if(members.length == 1)
+			member = members[0];
+		else{
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int a = random.nextInt(members.length);
+			int b = random.nextInt(members.length - 1);
+			if(b >= a)
+				b++;
+			Member ma = members[a];
+			Member mb = members[b];
+			boolean ha = isAvailable(ma, avoid);
+			boolean hb = isAvailable(mb, avoid);
+			if(ha && hb){
+				long time = CachedClock.currentTimeMillis();
+				long slowStartMillis = this.slowStart * 1000L;
+				// compare (outstanding + 1) / weight without division
+				double la = (ma.outstanding.get() + 1) * mb.effectiveWeight(time, slowStartMillis);
+				double lb = (mb.outstanding.get() + 1) * ma.effectiveWeight(time, slowStartMillis);
+				member = la <= lb ? ma : mb;
+			}else if(ha){
+				member = ma;
+			}else if(hb){
+				member = mb;
+			}else{
+				member = findAvailable(members, b, avoid);
+				if(member == null)
+					member = ma;
+			}
+		}
+		member.outstanding.incrementAndGet();
+		return new Lease(member);
+	}
+
+	private static Member findAvailable(Member[] members, int start, UpstreamServer avoid) {
+		for(int i = 1; i < members.length; i++){
+			Member m = members[(start + i) % members.length];
+			if(isAvailable(m, avoid))
+				return m;
+		}
+		return null;
+	}
+
+	private static boolean isAvailable(Member member, UpstreamServer avoid) {
+		return member.upstreamServer.isAvailable() && !member.upstreamServer.equals(avoid);
+	}
+
+	/**
+	 * Replaces the members of this group. Existing members with an {@linkplain UpstreamServer#equals(Object) equal} {@link UpstreamServer} keep their outstanding request
+	 * count and slow start state, and have their weight updated. Other given members start their slow start.
+	 *
+	 * @param members The new members
+	 */
+	public synchronized void setMembers(Collection<Member> members) {
+		Map<UpstreamServer, Member> existing = new HashMap<>();
+		for(Member m : this.members)
+			existing.put(m.upstreamServer, m);
+		long time = CachedClock.currentTimeMillis();
+		Member[] newMembers = new Member[members.size()];
+		int i = 0;
+		for(Member m : members){
+			Member prev = existing.get(m.upstreamServer);
+			if(prev != null){
+				prev.weight = m.weight;
+				m = prev;
+			}else
+				m.addedTime = time;
+			newMembers[i++] = m;
+		}
+		this.members = newMembers;
+	}
+
+	/**
+	 * Sets the slow start duration of this group.
+	 *
+	 * @param slowStart The slow start duration in seconds
+	 * @see #getSlowStart()
+	 */
+	public void setSlowStart(int slowStart) {
+		this.slowStart = slowStart;
+	}
+
+	/**
+	 * Returns the name of this group.
+	 *
+	 * @return The name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the time in seconds during which the weight of a newly added member increases to its configured weight. Slow start is disabled if {@code 0}.
+	 *
+	 * @return The slow start duration in seconds
+	 */
+	public int getSlowStart() {
+		return this.slowStart;
+	}
+
+	/**
+	 * Returns an unmodifiable list of the current members of this group.
+	 *
+	 * @return The members
+	 */
+	public List<Member> getMembers() {
+		return Collections.unmodifiableList(java.util.Arrays.asList(this.members));
+	}
+
+	/**
+	 * Returns the total number of outstanding requests of all members of this group.
+	 *
+	 * @return The number of outstanding requests
+	 */
+	public int getOutstandingRequests() {
+		int count = 0;
+		for(Member m : this.members)
+			count += m.outstanding.get();
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "UpstreamGroup{" + this.name + ", " + this.members.length + " members}";
+	}
+
+
+	/**
+	 * A member of an {@link UpstreamGroup}.
+	 *
+	 * @since 3.12.1
+	 */
+	public static class Member {
+
+		private final UpstreamServer upstreamServer;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private volatile int weight;
+		// 0 if not in slow start
+		private volatile long addedTime = 0;
+
+		/**
+		 * Creates a new {@code Member}.
+		 *
+		 * @param upstreamServer The upstream server
+		 * @param weight The weight of this member. Members with a higher weight receive proportionally more requests
+		 * @throws IllegalArgumentException If <b>weight</b> is not positive
+		 */
+		public Member(UpstreamServer upstreamServer, int weight) {
+			if(weight <= 0)
+				throw new IllegalArgumentException("weight must be positive");
+			this.upstreamServer = Objects.requireNonNull(upstreamServer);
+			this.weight = weight;
+		}
+
+
+		private double effectiveWeight(long time, long slowStartMillis) {
+			long added = this.addedTime;
+			if(added == 0)
+				return this.weight;
+			long elapsed = time - added;
+			if(elapsed >= slowStartMillis){
+				this.addedTime = 0;
+				return this.weight;
+			}
+			return this.weight * Math.max((double) elapsed / slowStartMillis, SLOW_START_MIN_FACTOR);
+		}
+
+
+		/**
+		 * Returns the {@link UpstreamServer} of this member.
+		 *
+		 * @return The {@code UpstreamServer}
+		 */
+		public UpstreamServer getUpstreamServer() {
+			return this.upstreamServer;
+		}
+
+		/**
+		 * Returns the configured weight of this member.
+		 *
+		 * @return The weight
+		 */
+		public int getWeight() {
+			return this.weight;
+		}
+
+		/**
+		 * Returns the number of outstanding requests of this member.
+		 *
+		 * @return The number of outstanding requests
+		 */
+		public int getOutstandingRequests() {
+			return this.outstanding.get();
+		}
+
+		@Override
+		public String toString() {
+			return "Member{" + this.upstreamServer + ", weight=" + this.weight + ", outstanding=" + this.outstanding.get() + "}";
+		}
+	}
+
+
+	/**
+	 * An outstanding request to a {@link Member} selected by {@link UpstreamGroup#select()}.
+	 *
+	 * @since 3.12.1
+	 */
+	public static final class Lease {
+
+		private final Member member;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(Member member) {
+			this.member = member;
+		}
+
+
+		/**
+		 * Releases this lease, decrementing the number of outstanding requests of the member. Subsequent calls have no effect.
+		 */
+		public void release() {
+			if(this.released.compareAndSet(false, true))
+				this.member.outstanding.decrementAndGet();
+		}
+
+		/**
+		 * Returns the selected {@link Member}.
+		 *
+		 * @return The {@code Member}
+		 */
+		public Member getMember() {
+			return this.member;
+		}
+
+		/**
+		 * Returns the {@link UpstreamServer} of the selected member.
+		 *
+		 * @return The {@code UpstreamServer}
+		 */
+		public UpstreamServer getUpstreamServer() {
+			return this.member.upstreamServer;
+		}
+	}
+}
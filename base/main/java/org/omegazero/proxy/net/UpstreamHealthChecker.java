@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.omegazero.common.logging.Logger;
+import org.omegazero.net.socket.SocketConnection;
+import org.omegazero.proxy.core.Proxy;
+import org.omegazero.proxy.core.State;
+import org.omegazero.proxy.util.ProxyUtil;
+
+/**
+ * Periodically sends HTTP requests to a set of {@link UpstreamServer}s and updates their {@linkplain UpstreamServer#isHealthy() health state} based on the responses.
+ * <p>
+ * Each check opens a new connection to the upstream server using {@link ProxyUtil#connectUpstreamTCP(Proxy, SocketConnection, boolean, UpstreamServer, String...)}, so
+ * the client managers registered in the proxy are used, including those of {@link LoopbackUpstreamServer}s. A <code>GET</code> request is sent over HTTP/1.1, using
+ * TLS as determined by {@link HealthCheck#isTls(UpstreamServer)}, and the check succeeds if the status code of the response is the expected status. An upstream server is marked unhealthy after {@link HealthCheck#getFall()} consecutive failed
+ * checks and healthy again after {@link HealthCheck#getRise()} consecutive successful checks. Upstream servers are initially considered healthy.
+ * <p>
+ * Checks are started by a single daemon thread with the lowest priority. Responses are received by the worker threads of the client managers.
+ *
+ * @since 3.12.1
+ */
+public class UpstreamHealthChecker {
+
+	private static final Logger logger = Logger.create();
+
+	private static final int MAX_STATUS_LINE_LENGTH = 1024;
+
+
+	private final Proxy proxy;
+	private final Connector connector;
+	private final ScheduledExecutorService scheduler;
+
+	private final Map<UpstreamServer, Target> targets = new HashMap<>();
+
+	/**
+	 * Creates a new {@code UpstreamHealthChecker}.
+	 *
+	 * @param proxy The {@link Proxy} instance to create connections with
+	 */
+	public UpstreamHealthChecker(Proxy proxy) {
+		this(Objects.requireNonNull(proxy), (userver, tls) -> ProxyUtil.connectUpstreamTCP(proxy, null, tls, userver, "http/1.1"));
+	}
+
+	/**
+	 * Creates a new {@code UpstreamHealthChecker} which opens connections for checks using the given {@link Connector}.
+	 *
+	 * @param proxy The {@link Proxy} instance whose state is checked before each scheduled check, or {@code null} to always run scheduled checks
+	 * @param connector The {@code Connector}
+	 */
+	UpstreamHealthChecker(Proxy proxy, Connector connector) {
+		this.proxy = proxy;
+		this.connector = connector;
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, (r) -> {
+			Thread t = new Thread(r, "UpstreamHealthCheckThread");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		this.scheduler = executor;
+	}
+
+
+	/**
+	 * Replaces the set of upstream servers to check. Checks of upstream servers not in the given map are stopped.
+	 * <p>
+	 * If an {@linkplain UpstreamServer#equals(Object) equal} upstream server was checked previously, the health state and the number of consecutive successful or failed
+	 * checks is transferred to the given instance.
+	 *
+	 * @param healthChecks The upstream servers to check, and their {@link HealthCheck} parameters
+	 */
+	public synchronized void setTargets(Map<UpstreamServer, HealthCheck> healthChecks) {
+		Map<UpstreamServer, Target> previous = new HashMap<>(this.targets);
+		this.targets.clear();
+		for(Map.Entry<UpstreamServer, HealthCheck> e : healthChecks.entrySet()){
+			UpstreamServer userver = e.getKey();
+			HealthCheck hc = e.getValue();
+			Target target = new Target(userver, hc);
+			Target prev = previous.remove(userver);
+			if(prev != null){
+				prev.future.cancel(false);
+				synchronized(prev){
+					target.successes = prev.successes;
+					target.failures = prev.failures;
+				}
+				userver.setHealthy(prev.userver.isHealthy());
+			}
+			long intervalMillis = hc.interval * 1000L;
+			target.future = this.scheduler.scheduleWithFixedDelay(() -> this.run(target), ThreadLocalRandom.current().nextLong(intervalMillis), intervalMillis,
+					TimeUnit.MILLISECONDS);
+			this.targets.put(userver, target);
+		}
+		for(Target t : previous.values())
+			t.future.cancel(false);
+		logger.debug("Health checks configured for ", this.targets.size(), " upstream servers");
+	}
+
+	/**
+	 * Returns the number of upstream servers being checked.
+	 *
+	 * @return The number of upstream servers
+	 */
+	public synchronized int getTargetCount() {
+		return this.targets.size();
+	}
+
+	/**
+	 * Stops all checks.
+	 */
+	public void close() {
+		this.scheduler.shutdownNow();
+	}
+
+
+	private void run(Target target) {
+		if(target.running || (this.proxy != null && this.proxy.getState() != State.RUNNING))
+			return;
+		target.running = true;
+		this.check(target.userver, target.healthCheck).whenComplete((ok, err) -> {
+			target.running = false;
+			if(err != null){
+				logger.warn("Error during health check of ", target.userver, ": ", err);
+				ok = false;
+			}
+			this.update(target, ok);
+		});
+	}
+
+	private void update(Target target, boolean ok) {
+		UpstreamServer userver = target.userver;
+		synchronized(target){
+			if(ok){
+				target.failures = 0;
+				if(target.successes < Integer.MAX_VALUE)
+					target.successes++;
+				if(!userver.isHealthy() && target.successes >= target.healthCheck.rise){
+					userver.setHealthy(true);
+					logger.info("Upstream server ", userver, " is healthy");
+				}
+			}else{
+				target.successes = 0;
+				if(target.failures < Integer.MAX_VALUE)
+					target.failures++;
+				if(userver.isHealthy() && target.failures >= target.healthCheck.fall){
+					userver.setHealthy(false);
+					logger.warn("Upstream server ", userver, " is unhealthy after ", target.failures, " failed health checks");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Performs a single check of the given upstream server, without updating its health state.
+	 *
+	 * @param userver The upstream server
+	 * @param healthCheck The check parameters
+	 * @return A future completed with {@code true} if the check succeeded, {@code false} otherwise
+	 */
+	public CompletableFuture<Boolean> check(UpstreamServer userver, HealthCheck healthCheck) {
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		boolean tls = healthCheck.isTls(userver);
+		if((tls ? userver.getSecurePort() : userver.getPlainPort()) <= 0){
+			if(logger.debug())
+				logger.debug("Health check of ", userver, " failed: no ", tls ? "TLS" : "plaintext", " port");
+			result.complete(false);
+			return result;
+		}
+		SocketConnection conn;
+		try{
+			conn = this.connector.connect(userver, tls);
+		}catch(IOException | RuntimeException e){
+			if(logger.debug())
+				logger.debug("Health check of ", userver, " failed: ", e.toString());
+			result.complete(false);
+			return result;
+		}
+		byte[] requestData = ("GET " + healthCheck.path + " HTTP/1.1\r\nhost: " + healthCheck.host + "\r\nuser-agent: omz-proxy/" + Proxy.VERSION
+				+ " health-check\r\nconnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+		StringBuilder statusLine = new StringBuilder();
+		conn.on("connect", () -> {
+			conn.write(requestData);
+		});
+		conn.on("data", (byte[] data) -> {
+			if(result.isDone())
+				return;
+			for(byte b : data){
+				if(b == '\r' || b == '\n'){
+					int status = parseStatus(statusLine);
+					boolean ok = healthCheck.isExpectedStatus(status);
+					if(!ok && logger.debug())
+						logger.debug("Health check of ", userver, " failed: unexpected response '", statusLine, "'");
+					result.complete(ok);
+					return;
+				}
+				statusLine.append((char) (b & 0xff));
+			}
+			if(statusLine.length() > MAX_STATUS_LINE_LENGTH)
+				result.complete(false);
+		});
+		conn.on("error", (Throwable e) -> {
+			if(!result.isDone() && logger.debug())
+				logger.debug("Health check of ", userver, " failed: ", e.toString());
+			result.complete(false);
+		});
+		conn.on("close", () -> {
+			result.complete(false);
+		});
+		ScheduledFuture<?> timeout = this.scheduler.schedule(() -> {
+			if(!result.isDone() && logger.debug())
+				logger.debug("Health check of ", userver, " failed: timed out");
+			result.complete(false);
+		}, healthCheck.timeout, TimeUnit.MILLISECONDS);
+		result.whenComplete((ok, err) -> {
+			timeout.cancel(false);
+			conn.destroy();
+		});
+		// the timeout above also covers connecting
+		conn.connect(0);
+		return result;
+	}
+
+
+	private static int parseStatus(CharSequence statusLine) {
+		// HTTP/1.x SSS ...
+		if(statusLine.length() < 12 || statusLine.charAt(8) != ' ' || !statusLine.subSequence(0, 5).toString().equals("HTTP/"))
+			return -1;
+		int status = 0;
+		for(int i = 9; i < 12; i++){
+			char c = statusLine.charAt(i);
+			if(c < '0' || c > '9')
+				return -1;
+			status = status * 10 + (c - '0');
+		}
+		return status;
+	}
+
+
+	/**
+	 * Opens the connection for a health check.
+	 */
+	@FunctionalInterface
+	interface Connector {
+
+		/**
+		 * Creates a connection to the given upstream server, which is not connected yet.
+		 *
+		 * @param userver The upstream server
+		 * @param tls Whether the connection should use TLS
+		 * @return The connection
+		 * @throws IOException If an I/O error occurs
+		 */
+		SocketConnection connect(UpstreamServer userver, boolean tls) throws IOException;
+	}
+
+
+	private static class Target {
+
+		private final UpstreamServer userver;
+		private final HealthCheck healthCheck;
+		private ScheduledFuture<?> future;
+		private volatile boolean running = false;
+
+		// guarded by this
+		private int successes = 0;
+		private int failures = 0;
+
+		public Target(UpstreamServer userver, HealthCheck healthCheck) {
+			this.userver = userver;
+			this.healthCheck = healthCheck;
+		}
+	}
+
+
+	/**
+	 * Parameters of the health checks of an upstream server.
+	 *
+	 * @since 3.12.1
+	 */
+	public static class HealthCheck {
+
+		private final int interval;
+		private final int timeout;
+		private final String path;
+		private final String host;
+		private final int expectedStatus;
+		private final int rise;
+		private final int fall;
+		private final String scheme;
+
+		/**
+		 * Creates a new {@code HealthCheck} using plaintext if the upstream server has a plaintext port, and TLS otherwise.
+		 *
+		 * @param interval The time in seconds between checks
+		 * @param timeout The time in milliseconds to wait for the response of a check
+		 * @param path The request path
+		 * @param host The value of the <code>Host</code> header
+		 * @param expectedStatus The expected response status code. If {@code 0}, any status code from 200 to 399 is accepted
+		 * @param rise The number of consecutive successful checks after which an unhealthy upstream server is marked healthy
+		 * @param fall The number of consecutive failed checks after which a healthy upstream server is marked unhealthy
+		 * @throws IllegalArgumentException If a parameter is invalid
+		 */
+		public HealthCheck(int interval, int timeout, String path, String host, int expectedStatus, int rise, int fall) {
+			this(interval, timeout, path, host, expectedStatus, rise, fall, null);
+		}
+
+		/**
+		 * Creates a new {@code HealthCheck}.
+		 *
+		 * @param interval The time in seconds between checks
+		 * @param timeout The time in milliseconds to wait for the response of a check
+		 * @param path The request path
+		 * @param host The value of the <code>Host</code> header
+		 * @param expectedStatus The expected response status code. If {@code 0}, any status code from 200 to 399 is accepted
+		 * @param rise The number of consecutive successful checks after which an unhealthy upstream server is marked healthy
+		 * @param fall The number of consecutive failed checks after which a healthy upstream server is marked unhealthy
+		 * @param scheme The scheme of the check requests, <code>http</code> or <code>https</code>. If {@code null}, plaintext is used if the upstream server has a
+		 * plaintext port, and TLS otherwise
+		 * @throws IllegalArgumentException If a parameter is invalid
+		 */
+		public HealthCheck(int interval, int timeout, String path, String host, int expectedStatus, int rise, int fall, String scheme) {
+			if(interval <= 0 || timeout <= 0 || rise <= 0 || fall <= 0 || expectedStatus < 0)
+				throw new IllegalArgumentException("Invalid health check parameters");
+			if(scheme != null && !scheme.equals("http") && !scheme.equals("https"))
+				throw new IllegalArgumentException("Health check scheme must be 'http' or 'https'");
+			if(!path.startsWith("/"))
+				throw new IllegalArgumentException("Health check path must start with '/'");
+			this.interval = interval;
+			this.timeout = timeout;
+			this.path = path;
+			this.host = Objects.requireNonNull(host);
+			this.expectedStatus = expectedStatus;
+			this.rise = rise;
+			this.fall = fall;
+			this.scheme = scheme;
+		}
+
+
+		/**
+		 * Returns {@code true} if the given response status code counts as a successful check.
+		 *
+		 * @param status The status code
+		 * @return {@code true} if the status code is expected
+		 */
+		public boolean isExpectedStatus(int status) {
+			if(this.expectedStatus == 0)
+				return status >= 200 && status < 400;
+			else
+				return status == this.expectedStatus;
+		}
+
+		/**
+		 * Returns {@code true} if checks of the given upstream server use TLS.
+		 *
+		 * @param userver The upstream server
+		 * @return {@code true} if TLS is used
+		 */
+		public boolean isTls(UpstreamServer userver) {
+			if(this.scheme == null)
+				return userver.getPlainPort() <= 0;
+			else
+				return this.scheme.equals("https");
+		}
+
+		public int getInterval() {
+			return this.interval;
+		}
+
+		public int getTimeout() {
+			return this.timeout;
+		}
+
+		public String getPath() {
+			return this.path;
+		}
+
+		public String getHost() {
+			return this.host;
+		}
+
+		public int getExpectedStatus() {
+			return this.expectedStatus;
+		}
+
+		public int getRise() {
+			return this.rise;
+		}
+
+		public int getFall() {
+			return this.fall;
+		}
+
+		public String getScheme() {
+			return this.scheme;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.omegazero.common.logging.Logger;
+import org.omegazero.proxy.util.CachedClock;
+
+/**
+ * Detects {@link UpstreamServer}s which fail to serve requests, based on the outcome of proxied requests, and temporarily {@linkplain UpstreamServer#isEjected() ejects}
+ * them.
+ * <p>
+ * An upstream server is ejected if a number of consecutive requests failed, or if the percentage of failed requests within the last one to two error rate intervals reaches
+ * a threshold. A request fails if the connection to the upstream server could not be established or failed, the upstream server did not respond in time, or responded with
+ * a 5xx status code. The first ejection of an upstream server lasts for the base ejection time, and each further ejection lasts twice as long as the previous one, up to
+ * the maximum ejection time. After an ejection ends, the next request {@linkplain #admit(UpstreamServer) admitted} to the upstream server is a trial, and the upstream
+ * server remains ejected for all other requests until the outcome of the trial request is {@linkplain #record(UpstreamServer, boolean, boolean) recorded}: if it succeeds,
+ * the ejection ends and the ejection time is reset to the base ejection time, if it fails, the upstream server is ejected again immediately. Outcomes of other requests,
+ * for example requests started before the ejection, do not end or renew an ejection. If no outcome of the trial request is recorded within the base ejection time, the next
+ * request is admitted as the trial request instead.
+ *
+ * @since 3.12.1
+ */
+public class UpstreamOutlierDetector {
+
+	private static final Logger logger = Logger.create();
+
+
+	private volatile int consecutiveFailures = 0;
+	private volatile int errorRate = 0;
+	private volatile int errorRateMinRequests = 20;
+	private volatile long errorRateInterval = 10000;
+	private volatile long baseEjectionTime = 30000;
+	private volatile long maxEjectionTime = 300000;
+
+	private final LongAdder ejections = new LongAdder();
+
+	/**
+	 * Creates a new {@code UpstreamOutlierDetector}. Outlier detection is initially disabled (see {@link #configure(int, int, int, int, int, int)}).
+	 */
+	public UpstreamOutlierDetector() {
+	}
+
+
+	/**
+	 * Sets the parameters of this outlier detector.
+	 *
+	 * @param consecutiveFailures The number of consecutive failed requests after which an upstream server is ejected. Disabled if {@code 0}
+	 * @param errorRate The percentage of failed requests at which an upstream server is ejected. Disabled if {@code 0}
+	 * @param errorRateMinRequests The minimum number of requests within the error rate interval required to eject an upstream server based on the error rate
+	 * @param errorRateInterval The duration of the error rate interval in seconds
+	 * @param baseEjectionTime The duration of the first ejection of an upstream server in seconds
+	 * @param maxEjectionTime The maximum duration of an ejection in seconds
+	 */
+	public synchronized void configure(int consecutiveFailures, int errorRate, int errorRateMinRequests, int errorRateInterval, int baseEjectionTime, int maxEjectionTime) {
+		this.consecutiveFailures = Math.max(consecutiveFailures, 0);
+		this.errorRate = Math.min(Math.max(errorRate, 0), 100);
+		this.errorRateMinRequests = Math.max(errorRateMinRequests, 1);
+		this.errorRateInterval = Math.max(errorRateInterval, 1) * 1000L;
+		this.baseEjectionTime = Math.max(baseEjectionTime, 1) * 1000L;
+		this.maxEjectionTime = Math.max(maxEjectionTime, Math.max(baseEjectionTime, 1)) * 1000L;
+	}
+
+	/**
+	 * Returns {@code true} if outlier detection is enabled.
+	 *
+	 * @return {@code true} if enabled
+	 */
+	public boolean isEnabled() {
+		return this.consecutiveFailures > 0 || this.errorRate > 0;
+	}
+
+	/**
+	 * Called before a request is sent to the given upstream server. If the last ejection of the upstream server ended and no trial request is running, the request is
+	 * admitted as the trial request (see {@link UpstreamOutlierDetector}). The outcome of a trial request must be recorded using
+	 * {@link #record(UpstreamServer, boolean, boolean)} with {@code trial} set to {@code true}.
+	 *
+	 * @param userver The upstream server
+	 * @return {@link Admission#REJECTED} if the upstream server is ejected or another trial request is running, {@link Admission#TRIAL} if the request is the trial request,
+	 * {@link Admission#ADMITTED} otherwise
+	 */
+	public Admission admit(UpstreamServer userver) {
+		if(userver.isEjected())
+			return Admission.REJECTED;
+		Stats stats = userver.peekOutlierStats();
+		if(stats == null || !stats.trial)
+			return Admission.ADMITTED;
+		synchronized(stats){
+			if(!stats.trial)
+				return Admission.ADMITTED;
+			if(userver.isEjected())
+				return Admission.REJECTED;
+			userver.setEjectedUntil(CachedClock.currentTimeMillis() + this.baseEjectionTime);
+			return Admission.TRIAL;
+		}
+	}
+
+	/**
+	 * Records the outcome of a request to the given upstream server, which was not admitted as a trial request.
+	 * <p>
+	 * Equivalent to a call to {@link #record(UpstreamServer, boolean, boolean)} with {@code trial} set to {@code false}.
+	 *
+	 * @param userver The upstream server
+	 * @param success {@code true} if the request succeeded, {@code false} if it failed
+	 */
+	public void record(UpstreamServer userver, boolean success) {
+		this.record(userver, success, false);
+	}
+
+	/**
+	 * Records the outcome of a request to the given upstream server.
+	 *
+	 * @param userver The upstream server
+	 * @param success {@code true} if the request succeeded, {@code false} if it failed
+	 * @param trial {@code true} if the request was admitted as the trial request, i.e. {@link #admit(UpstreamServer)} returned {@link Admission#TRIAL} for it
+	 */
+	public void record(UpstreamServer userver, boolean success, boolean trial) {
+		if(!this.isEnabled() || userver.getAddress() == null)
+			return;
+		long time = CachedClock.currentTimeMillis();
+		Stats stats = userver.getOutlierStats();
+		synchronized(stats){
+			if(time - stats.windowStart >= this.errorRateInterval){
+				boolean adjacent = time - stats.windowStart < 2 * this.errorRateInterval;
+				stats.prevRequests = adjacent ? stats.requests : 0;
+				stats.prevFailures = adjacent ? stats.failures : 0;
+				stats.requests = 0;
+				stats.failures = 0;
+				stats.windowStart = time;
+			}
+			stats.requests++;
+			if(success){
+				stats.consecutiveFailures = 0;
+				if(trial && stats.trial){
+					stats.trial = false;
+					stats.ejections = 0;
+					userver.setEjectedUntil(0);
+				}
+				return;
+			}
+			stats.failures++;
+			stats.consecutiveFailures++;
+			String reason;
+			if(stats.trial){
+				if(!trial) // failures of requests other than the trial request, for example requests started before the ejection
+					return;
+				reason = "failed trial request";
+			}else if(this.consecutiveFailures > 0 && stats.consecutiveFailures >= this.consecutiveFailures)
+				reason = stats.consecutiveFailures + " consecutive failures";
+			else if(this.errorRate > 0 && stats.requests + stats.prevRequests >= this.errorRateMinRequests
+					&& (stats.failures + stats.prevFailures) * 100L >= (long) this.errorRate * (stats.requests + stats.prevRequests))
+				reason = "error rate " + (stats.failures + stats.prevFailures) * 100 / (stats.requests + stats.prevRequests) + "%";
+			else
+				return;
+			long duration = Math.min(this.baseEjectionTime << Math.min(stats.ejections, 30), this.maxEjectionTime);
+			stats.ejections++;
+			stats.consecutiveFailures = 0;
+			stats.requests = 0;
+			stats.failures = 0;
+			stats.prevRequests = 0;
+			stats.prevFailures = 0;
+			stats.trial = true;
+			userver.setEjectedUntil(time + duration);
+			this.ejections.increment();
+			logger.warn("Ejecting upstream server ", userver, " for ", duration / 1000, " seconds: ", reason);
+		}
+	}
+
+	/**
+	 * Returns the total number of ejections.
+	 *
+	 * @return The number of ejections
+	 */
+	public long getEjectionCount() {
+		return this.ejections.sum();
+	}
+
+
+	/**
+	 * The result of {@link UpstreamOutlierDetector#admit(UpstreamServer)}.
+	 */
+	public static enum Admission {
+		/**
+		 * The request must not be sent, because the upstream server is ejected.
+		 */
+		REJECTED,
+		/**
+		 * The request may be sent.
+		 */
+		ADMITTED,
+		/**
+		 * The request may be sent and is the trial request after an ejection of the upstream server ended.
+		 */
+		TRIAL;
+	}
+
+	/**
+	 * Outlier detection state of an {@link UpstreamServer}.
+	 */
+	static class Stats {
+
+		private long windowStart;
+		private int requests;
+		private int failures;
+		private int prevRequests;
+		private int prevFailures;
+		private int consecutiveFailures;
+		private int ejections;
+		// set after an ejection until a trial request succeeds; read without the lock in admit
+		private volatile boolean trial;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.StandardConstants;
+
+/**
+ * A {@link DelegatingSSLEngine} for upstream connections of an {@link UpstreamTLSSessionCache}.
+ * <p>
+ * Until the handshake starts, operations are delegated to a template engine, which collects the parameters set by the user of this engine. When the handshake starts,
+ * a new engine is created with the session key of the {@code UpstreamTLSSessionCache} as peer host, which allows resuming a cached session, and the parameters are
+ * copied from the template engine.
+ *
+ * @since 3.12.1
+ */
+class UpstreamSSLEngine extends DelegatingSSLEngine {
+
+	private final UpstreamTLSSessionCache cache;
+	private final SSLContext context;
+	private final UpstreamServer upstreamServer;
+
+	private boolean bound = false;
+	private boolean handshakeDone = false;
+	private long handshakeStart;
+
+	public UpstreamSSLEngine(UpstreamTLSSessionCache cache, SSLContext context, UpstreamServer upstreamServer, SSLEngine engine) {
+		super(engine);
+		this.cache = cache;
+		this.context = context;
+		this.upstreamServer = upstreamServer;
+	}
+
+
+	private void bind() {
+		if(this.bound)
+			return;
+		this.bound = true;
+		this.handshakeStart = System.currentTimeMillis();
+		SSLEngine template = super.engine;
+		if(!template.getUseClientMode() || template.getPeerHost() != null)
+			return;
+		String host = UpstreamTLSSessionCache.getSessionHost(this.upstreamServer, getServerName(template.getSSLParameters().getServerNames()));
+		if(host == null){
+			this.cache.unkeyed.increment();
+			return;
+		}
+		SSLEngine engine = this.context.createSSLEngine(host, this.upstreamServer != null ? this.upstreamServer.getSecurePort() : 0);
+		engine.setUseClientMode(true);
+		engine.setEnableSessionCreation(template.getEnableSessionCreation());
+		engine.setSSLParameters(template.getSSLParameters());
+		super.engine = engine;
+	}
+
+	private SSLEngineResult afterOperation(SSLEngineResult result) {
+		if(!this.handshakeDone && result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED && super.engine.getUseClientMode()){
+			this.handshakeDone = true;
+			this.cache.handshakes.increment();
+			// a resumed session keeps the creation time of the session established in the full handshake
+			if(super.engine.getSession().getCreationTime() < this.handshakeStart)
+				this.cache.resumed.increment();
+		}
+		return result;
+	}
+
+	private static String getServerName(List<SNIServerName> serverNames) {
+		if(serverNames == null)
+			return null;
+		for(SNIServerName name : serverNames){
+			if(name.getType() == StandardConstants.SNI_HOST_NAME)
+				return name instanceof SNIHostName ? ((SNIHostName) name).getAsciiName() : new SNIHostName(name.getEncoded()).getAsciiName();
+		}
+		return null;
+	}
+
+
+	@Override
+	public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+		this.bind();
+		return this.afterOperation(super.wrap(srcs, offset, length, dst));
+	}
+
+	@Override
+	public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+		this.bind();
+		return this.afterOperation(super.unwrap(src, dsts, offset, length));
+	}
+
+	@Override
+	public void beginHandshake() throws SSLException {
+		this.bind();
+		super.beginHandshake();
+	}
+}
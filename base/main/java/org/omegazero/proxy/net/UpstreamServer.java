@@ -19,6 +19,8 @@ import java.util.Objects;
 
 import org.omegazero.common.util.PropertyUtil;
 import org.omegazero.common.logging.Logger;
+import org.omegazero.proxy.util.CachedClock;
+import org.omegazero.proxy.util.LatencyHistogram;
 
 /**
  * Contains information about another server where requests can be forwarded to.
@@ -52,15 +54,25 @@ public class UpstreamServer implements java.io.Serializable {
 	public static final InetAddress LOCALHOST_IPV6;
 
 	/**
-	 * The amount of seconds to wait for a retry when an attempt to re-resolve an address, after its TTL expired, fails.
+	 * The amount of seconds to wait for a retry when an attempt to re-resolve an address fails.
 	 * If {@code -1} (the default), the same as the (positive) TTL configured for an {@code UpstreamServer}.
 	 *
 	 * @since 3.10.3
 	 */
 	public static final int addressNegativeTTL = PropertyUtil.getInt("org.omegazero.proxy.addressNegativeTTL", -1);
+	/**
+	 * The percentage of the address TTL before its expiration at which the address is re-resolved in the background. Set using the system property
+	 * {@code org.omegazero.proxy.addressRefreshAhead} (default {@code 20}).
+	 *
+	 * @since 3.12.1
+	 */
+	public static final int addressRefreshAhead = Math.min(Math.max(PropertyUtil.getInt("org.omegazero.proxy.addressRefreshAhead", 20), 0), 100);
 
 
-	private InetAddress address;
+	private volatile InetAddress address;
+	private final String hostname;
+	// used in equals and hashCode instead of the address, which changes when it is re-resolved: the configured host name if the address is re-resolved, the address otherwise
+	private final Object addressKey;
 	private final int addressTTL;
 	private InetAddress localAddress;
 	private final int plainPort;
@@ -68,7 +80,12 @@ public class UpstreamServer implements java.io.Serializable {
 	private final Collection<String> protocols;
 	private final String clientImplOverride;
 
-	private transient long addressExpiration;
+	private transient volatile long addressRefreshTime;
+	private transient volatile boolean addressRefreshing;
+	private transient volatile boolean unhealthy;
+	private transient volatile long ejectedUntil;
+	private transient volatile UpstreamOutlierDetector.Stats outlierStats;
+	private transient volatile LatencyHistogram responseLatency;
 
 	/**
 	 * Creates an {@code UpstreamServer} instance with no parameters set, and protocols set to {@link #PROTOCOLS_ALL}.
@@ -153,6 +170,8 @@ public class UpstreamServer implements java.io.Serializable {
 		if(address != null && localAddress != null && !address.getClass().equals(localAddress.getClass()))
 			throw new IllegalArgumentException("address and localAddress must have the same type");
 		this.address = address;
+		this.hostname = address != null ? configuredHostName(address) : null;
+		this.addressKey = addressTTL >= 0 ? this.hostname : address;
 		this.addressTTL = addressTTL;
 		this.localAddress = localAddress;
 		this.plainPort = plainPort;
@@ -164,44 +183,69 @@ public class UpstreamServer implements java.io.Serializable {
 		this.clientImplOverride = clientImplOverride;
 
 		if(addressTTL >= 0)
-			this.addressExpiration = System.currentTimeMillis() + addressTTL * 1000L;
+			this.addressRefreshTime = CachedClock.currentTimeMillis() + refreshDelay(addressTTL);
 	}
 
 
-	private void reresolveAddressIfNecessary() {
-		if(this.addressTTL < 0)
-			return;
-		long time = System.currentTimeMillis();
-		if(this.addressExpiration > 0 && time <= this.addressExpiration)
+	/**
+	 * Returns the host name the given address was created with, or the address string if it was created from a literal address. Unlike
+	 * {@link InetAddress#getHostName()}, this never does a reverse lookup.
+	 */
+	private static String configuredHostName(InetAddress address) {
+		String str = address.toString(); // "<host name>/<address>", where the host name is empty if it is not known
+		int sep = str.lastIndexOf('/');
+		return sep > 0 ? str.substring(0, sep) : address.getHostAddress();
+	}
+
+	private void refreshAddressIfNecessary() {
+		if(this.addressTTL < 0 || CachedClock.currentTimeMillis() < this.addressRefreshTime || this.addressRefreshing)
 			return;
-		String hostname = this.address.getHostName();
-		try{
-			this.address = InetAddress.getByName(hostname);
-			this.addressExpiration = time + this.addressTTL * 1000L;
-			if(logger.debug())
-				logger.debug("Re-resolved address '", hostname, "': ", this.address.getHostAddress());
-		}catch(UnknownHostException e){
-			logger.warn("Error while re-resolving address '", hostname, "', using existing address: ", e.toString());
-			int nttl;
-			if(addressNegativeTTL >= 0)
-				nttl = addressNegativeTTL;
-			else
-				nttl = this.addressTTL;
-			this.addressExpiration = time + nttl * 1000L;
+		synchronized(this){
+			if(this.addressRefreshing)
+				return;
+			this.addressRefreshing = true;
 		}
+		String hostname = this.hostname;
+		AddressResolver.getDefault().resolve(hostname).whenComplete((address, err) -> {
+			try{
+				long time = CachedClock.currentTimeMillis();
+				if(err == null){
+					this.address = address;
+					this.addressRefreshTime = time + refreshDelay(this.addressTTL);
+					if(logger.debug())
+						logger.debug("Re-resolved address '", hostname, "': ", address.getHostAddress());
+				}else{
+					logger.warn("Error while re-resolving address '", hostname, "', using existing address: ", err.toString());
+					int nttl;
+					if(addressNegativeTTL >= 0)
+						nttl = addressNegativeTTL;
+					else
+						nttl = this.addressTTL;
+					this.addressRefreshTime = time + nttl * 1000L;
+				}
+			}finally{
+				this.addressRefreshing = false;
+			}
+		});
+	}
+
+	private static long refreshDelay(int ttl){
+		return ttl * 1000L * (100 - addressRefreshAhead) / 100;
 	}
 
 
 	/**
 	 * Returns the address of this <code>UpstreamServer</code>. May be {@code null}.
 	 * <p>
-	 * If {@code addressTTL} was set in the constructor, this method may re-resolve the configured {@code address} if necessary.
+	 * If {@code addressTTL} was set in the constructor, this method starts re-resolving the configured {@code address} in the background using the
+	 * {@linkplain AddressResolver#getDefault() default AddressResolver} when the address is about to expire (see {@link #addressRefreshAhead}). Until re-resolution
+	 * completes, and if it fails, the last resolved address is returned. This method never blocks.
 	 *
 	 * @return The address of this <code>UpstreamServer</code>
 	 */
 	public InetAddress getAddress() {
 		if(this.address != null)
-			this.reresolveAddressIfNecessary();
+			this.refreshAddressIfNecessary();
 		return this.address;
 	}
 
@@ -216,7 +260,7 @@ public class UpstreamServer implements java.io.Serializable {
 	}
 
 	/**
-	 * Returns the number of seconds to cache a resolved {@code InetAddress}. After this time expires, the address is re-resolved using {@link InetAddress#getByName}. {@code -1} means
+	 * Returns the number of seconds to cache a resolved {@code InetAddress}. Before this time expires, the address is re-resolved in the background using an {@link AddressResolver}. {@code -1} means
 	 * there is no timeout. Note that the {@code InetAddress} implementation may also cache name resolutions internally (see {@link InetAddress}).
 	 * <p>
 	 * This only applies to the remote address.
@@ -280,9 +324,94 @@ public class UpstreamServer implements java.io.Serializable {
 		return this.clientImplOverride;
 	}
 
+	/**
+	 * Returns {@code true} if this {@code UpstreamServer} is considered healthy. This is {@code true} unless an {@link UpstreamHealthChecker} marked it as unhealthy.
+	 * <p>
+	 * Unhealthy upstream servers are not selected as members of an {@link UpstreamGroup} if other members are {@linkplain #isAvailable() available}, and requests to
+	 * unhealthy upstream servers selected otherwise fail immediately.
+	 *
+	 * @return {@code true} if healthy
+	 * @since 3.12.1
+	 */
+	public boolean isHealthy() {
+		return !this.unhealthy;
+	}
+
+	/**
+	 * Sets the health state of this {@code UpstreamServer}. The health state is not included in {@link #equals(Object)}.
+	 *
+	 * @param healthy Whether this upstream server is healthy
+	 * @since 3.12.1
+	 * @see #isHealthy()
+	 */
+	public void setHealthy(boolean healthy) {
+		this.unhealthy = !healthy;
+	}
+
+	/**
+	 * Returns {@code true} if this {@code UpstreamServer} is currently ejected by an {@link UpstreamOutlierDetector} because too many requests to it failed.
+	 * <p>
+	 * Ejected upstream servers are not selected as members of an {@link UpstreamGroup} if other members are {@linkplain #isAvailable() available}, and requests to
+	 * ejected upstream servers selected otherwise fail immediately.
+	 *
+	 * @return {@code true} if ejected
+	 * @since 3.12.1
+	 */
+	public boolean isEjected() {
+		long until = this.ejectedUntil;
+		return until != 0 && CachedClock.currentTimeMillis() < until;
+	}
+
+	/**
+	 * Returns {@code true} if this {@code UpstreamServer} is {@linkplain #isHealthy() healthy} and not {@linkplain #isEjected() ejected}.
+	 *
+	 * @return {@code true} if available
+	 * @since 3.12.1
+	 */
+	public boolean isAvailable() {
+		return this.isHealthy() && !this.isEjected();
+	}
+
+	long getEjectedUntil() {
+		return this.ejectedUntil;
+	}
+
+	void setEjectedUntil(long ejectedUntil) {
+		this.ejectedUntil = ejectedUntil;
+	}
+
+	UpstreamOutlierDetector.Stats peekOutlierStats() {
+		return this.outlierStats;
+	}
+
+	synchronized UpstreamOutlierDetector.Stats getOutlierStats() {
+		if(this.outlierStats == null)
+			this.outlierStats = new UpstreamOutlierDetector.Stats();
+		return this.outlierStats;
+	}
+
+	/**
+	 * Returns the {@link LatencyHistogram} of the times between the end of a request to this {@code UpstreamServer} and the start of its response, which is used to
+	 * determine the delay of hedged requests.
+	 *
+	 * @return The {@code LatencyHistogram}
+	 * @since 3.12.1
+	 */
+	public LatencyHistogram getResponseLatency() {
+		LatencyHistogram h = this.responseLatency;
+		if(h == null){
+			synchronized(this){
+				h = this.responseLatency;
+				if(h == null)
+					this.responseLatency = h = new LatencyHistogram();
+			}
+		}
+		return h;
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.address, this.addressTTL, this.localAddress, this.plainPort, this.securePort, this.protocols, this.clientImplOverride);
+		return Objects.hash(this.addressKey, this.addressTTL, this.localAddress, this.plainPort, this.securePort, this.protocols, this.clientImplOverride);
 	}
 
 	@Override
@@ -290,7 +419,7 @@ public class UpstreamServer implements java.io.Serializable {
 		if(o == null || !(o instanceof UpstreamServer))
 			return false;
 		UpstreamServer u = (UpstreamServer) o;
-		return Objects.equals(u.address, this.address) && u.addressTTL == this.addressTTL && Objects.equals(u.localAddress, this.localAddress) && u.plainPort == this.plainPort
+		return Objects.equals(u.addressKey, this.addressKey) && u.addressTTL == this.addressTTL && Objects.equals(u.localAddress, this.localAddress) && u.plainPort == this.plainPort
 				&& u.securePort == this.securePort && Objects.equals(u.protocols, this.protocols) && Objects.equals(u.clientImplOverride, this.clientImplOverride);
 	}
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Enables resumption of TLS sessions with upstream servers across connections.
+ * <p>
+ * The JDK TLS implementation only resumes client sessions if the {@link SSLEngine} was created with the peer host and port, which are used as the key for the session
+ * cache of the {@link SSLContext}. The {@code SSLContext} {@linkplain #getSSLContext() returned} by this class creates engines which are bound to a session key
+ * consisting of the {@link UpstreamServer} being connected to and the requested SNI server name when their handshake starts. Because a single {@code SSLContext} is used
+ * for all upstream connections, sessions are resumed regardless of which downstream connection or HTTP engine created the upstream connection.
+ * <p>
+ * The {@code UpstreamServer} is passed using {@link #setCurrentUpstream(UpstreamServer)} while the connection is being created. If it is not available, the session is
+ * keyed by the SNI server name only.
+ *
+ * @since 3.12.1
+ */
+public class UpstreamTLSSessionCache {
+
+	private static final ThreadLocal<UpstreamServer> currentUpstream = new ThreadLocal<>();
+
+
+	private final SSLContext context;
+
+	final LongAdder handshakes = new LongAdder();
+	final LongAdder resumed = new LongAdder();
+	final LongAdder unkeyed = new LongAdder();
+
+	/**
+	 * Creates a new {@code UpstreamTLSSessionCache}.
+	 *
+	 * @param context The initialized client {@code SSLContext}
+	 * @param size The maximum number of cached sessions. Must be positive
+	 * @param timeout The time in seconds a session may be resumed after it was created. Must be positive
+	 */
+	public UpstreamTLSSessionCache(SSLContext context, int size, int timeout) {
+		if(size <= 0 || timeout <= 0)
+			throw new IllegalArgumentException("Invalid upstream TLS session cache parameters");
+		SSLSessionContext sessionContext = context.getClientSessionContext();
+		sessionContext.setSessionCacheSize(size);
+		sessionContext.setSessionTimeout(timeout);
+		this.context = DelegatingSSLContext.wrap(context, (engine) -> new UpstreamSSLEngine(this, context, currentUpstream.get(), engine));
+	}
+
+
+	/**
+	 * Returns the {@link SSLContext} to use for upstream connections.
+	 *
+	 * @return The {@code SSLContext}
+	 */
+	public SSLContext getSSLContext() {
+		return this.context;
+	}
+
+
+	/**
+	 * Sets the {@link UpstreamServer} a connection is currently being created to in the calling thread. {@link SSLEngine}s created by the
+	 * {@linkplain #getSSLContext() SSL context} of any {@code UpstreamTLSSessionCache} in this thread while it is set use it as part of their session key.
+	 *
+	 * @param upstreamServer The upstream server, or {@code null} to unset it
+	 * @return The previously set upstream server
+	 */
+	public static UpstreamServer setCurrentUpstream(UpstreamServer upstreamServer) {
+		UpstreamServer prev = currentUpstream.get();
+		if(upstreamServer != null)
+			currentUpstream.set(upstreamServer);
+		else
+			currentUpstream.remove();
+		return prev;
+	}
+
+	/**
+	 * Returns the host name used as the session key of the JDK TLS session cache for the given upstream server and SNI server name.
+	 */
+	static String getSessionHost(UpstreamServer upstreamServer, String servername) {
+		InetAddress address = upstreamServer != null ? upstreamServer.getAddress() : null;
+		if(address == null)
+			return servername;
+		else if(servername == null)
+			return address.getHostAddress();
+		else
+			return servername + "/" + address.getHostAddress();
+	}
+
+
+	/**
+	 * Returns the number of completed upstream TLS handshakes.
+	 *
+	 * @return The number of handshakes
+	 */
+	public long getHandshakeCount() {
+		return this.handshakes.sum();
+	}
+
+	/**
+	 * Returns the number of completed upstream TLS handshakes which resumed a cached session.
+	 *
+	 * @return The number of resumed handshakes
+	 */
+	public long getResumedCount() {
+		return this.resumed.sum();
+	}
+
+	/**
+	 * Returns the number of upstream TLS handshakes which could not use the session cache because neither the upstream server nor the SNI server name was known.
+	 *
+	 * @return The number of handshakes without a session key
+	 */
+	public long getUnkeyedCount() {
+		return this.unkeyed.sum();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import org.omegazero.common.util.PropertyUtil;
+
+/**
+ * A coarse clock, which is updated by a background thread at a fixed interval.
+ * <p>
+ * Reading the time from this clock is a single volatile read, and the value of the HTTP <i>Date</i> header is formatted at most once per second, instead of on every
+ * call. The resolution of this clock is set using the system property {@code org.omegazero.proxy.clock.resolution} (in milliseconds, default {@code 10}), which is
+ * also the maximum amount of time the returned values may lag behind the system clock.
+ *
+ * @since 3.12.1
+ */
+public final class CachedClock {
+
+	/**
+	 * The update interval of this clock in milliseconds.
+	 */
+	public static final long RESOLUTION = Math.max(PropertyUtil.getLong("org.omegazero.proxy.clock.resolution", 10), 1);
+
+	private static final DateTimeFormatter DATE_HEADER_FORMATTER = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss z", Locale.ENGLISH).withZone(ZoneId.of("GMT"));
+
+	private static volatile DateValue date = new DateValue(System.currentTimeMillis() / 1000);
+	private static volatile long millis = System.currentTimeMillis();
+
+	static{
+		Thread thread = new Thread(CachedClock::run, "CachedClockThread");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private CachedClock(){
+	}
+
+
+	private static void run(){
+		while(true){
+			try{
+				Thread.sleep(RESOLUTION);
+			}catch(InterruptedException e){
+				return;
+			}
+			long now = System.currentTimeMillis();
+			millis = now;
+			if(now / 1000 != date.second)
+				date = new DateValue(now / 1000);
+		}
+	}
+
+
+	/**
+	 * Returns the current time in milliseconds since the UNIX epoch, as last read from {@link System#currentTimeMillis()} by this clock.
+	 *
+	 * @return The current time in milliseconds
+	 */
+	public static long currentTimeMillis(){
+		return millis;
+	}
+
+	/**
+	 * Returns the current time formatted for use in the <i>Date</i> HTTP header.
+	 *
+	 * @return The date string
+	 */
+	public static String dateString(){
+		return date.string;
+	}
+
+
+	private static class DateValue {
+
+		private final long second;
+		private final String string;
+
+		public DateValue(long second){
+			this.second = second;
+			this.string = DATE_HEADER_FORMATTER.format(Instant.ofEpochSecond(second));
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A thread-safe cache with a maximum number of entries, which evicts the least recently used entries when full.
+ * <p>
+ * The cache is split into independently locked segments to reduce contention. Each segment holds an equal share of the capacity and evicts its own least recently used
+ * entry, which means the eviction order is only approximately least recently used across the entire cache. {@code null} keys and values are not permitted.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ * @since 3.12.1
+ */
+public class ConcurrentLRUCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+
+
+	private final int capacity;
+	private final Segment<K, V>[] segments;
+
+	/**
+	 * Creates a new {@code ConcurrentLRUCache}.
+	 *
+	 * @param capacity The maximum number of entries
+	 * @throws IllegalArgumentException If <b>capacity</b> is negative
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentLRUCache(int capacity){
+		if(capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		this.capacity = capacity;
+		int segmentCount = 1;
+		while(segmentCount < MAX_SEGMENTS && segmentCount * 2 * 8 <= capacity)
+			segmentCount *= 2;
+		this.segments = new Segment[segmentCount];
+		for(int i = 0; i < segmentCount; i++)
+			this.segments[i] = new Segment<>(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+	}
+
+
+	private Segment<K, V> segmentFor(Object key){
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return this.segments[h & (this.segments.length - 1)];
+	}
+
+	/**
+	 * Returns the value associated with the given key and marks the entry as recently used.
+	 *
+	 * @param key The key
+	 * @return The value, or {@code null} if there is no entry for the key
+	 */
+	public V get(K key){
+		Segment<K, V> segment = this.segmentFor(key);
+		synchronized(segment){
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * Associates the given value with the given key, possibly evicting the least recently used entry.
+	 *
+	 * @param key The key
+	 * @param value The value
+	 * @return The previous value associated with the key, or {@code null} if there was none
+	 */
+	public V put(K key, V value){
+		Objects.requireNonNull(value);
+		Segment<K, V> segment = this.segmentFor(key);
+		synchronized(segment){
+			return segment.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes the entry with the given key.
+	 *
+	 * @param key The key
+	 * @return The removed value, or {@code null} if there was no entry for the key
+	 */
+	public V remove(K key){
+		Segment<K, V> segment = this.segmentFor(key);
+		synchronized(segment){
+			return segment.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear(){
+		for(Segment<K, V> segment : this.segments){
+			synchronized(segment){
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the keys of all entries, without marking the entries as recently used.
+	 *
+	 * @return The keys
+	 */
+	public List<K> keys(){
+		List<K> keys = new ArrayList<>();
+		for(Segment<K, V> segment : this.segments){
+			synchronized(segment){
+				keys.addAll(segment.keySet());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the current number of entries.
+	 *
+	 * @return The number of entries
+	 */
+	public int size(){
+		int size = 0;
+		for(Segment<K, V> segment : this.segments){
+			synchronized(segment){
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the maximum number of entries of this cache.
+	 *
+	 * @return The capacity
+	 */
+	public int getCapacity(){
+		return this.capacity;
+	}
+
+
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		public Segment(int capacity){
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest){
+			return super.size() > this.capacity;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of host name expressions, which finds all expressions matching a host name at once.
+ * <p>
+ * Expressions have the same syntax as in {@link ProxyUtil#hostMatches(String, String)}: the wildcard character '<code>*</code>' matches any characters, including
+ * '<code>.</code>' (dot). Unlike {@code hostMatches}, the wildcard character always matches at least one character, and there are no unhandled edge cases.
+ * <p>
+ * Expressions are compiled when the set is created: expressions without a wildcard character are stored in a hash table, expressions consisting of a wildcard character
+ * followed by a dot and labels without wildcard characters (for example, {@code *.example.com}) are stored in a trie of their labels in reverse order, and only the
+ * remaining expressions are matched individually. The time required to find matching expressions is therefore proportional to the length of the host name,
+ * regardless of the number of exact and label wildcard expressions.
+ *
+ * @since 3.12.1
+ */
+public class HostPatternSet {
+
+	private final String[] expressions;
+	private final Map<String, Integer> exact = new HashMap<>();
+	private final SuffixNode suffixRoot = new SuffixNode();
+	private final List<GlobExpression> others = new ArrayList<>();
+
+	/**
+	 * Creates a new {@code HostPatternSet} containing the given expressions. Duplicate expressions are ignored.
+	 *
+	 * @param expressions The host name expressions
+	 */
+	public HostPatternSet(Collection<String> expressions) {
+		List<String> list = new ArrayList<>(expressions.size());
+		for(String expr : expressions){
+			if(this.contains(expr))
+				continue;
+			int index = list.size();
+			list.add(expr);
+			int wildcard = expr.indexOf('*');
+			if(wildcard < 0)
+				this.exact.put(expr, index);
+			else if(isLabelWildcard(expr))
+				this.suffixRoot.add(expr, index);
+			else
+				this.others.add(new GlobExpression(expr, index));
+		}
+		this.expressions = list.toArray(new String[list.size()]);
+		this.suffixRoot.freeze();
+	}
+
+
+	/**
+	 * Returns {@code true} if the only wildcard character of the given expression is the first character and followed by a dot, or the expression is only a wildcard
+	 * character.
+	 */
+	private static boolean isLabelWildcard(String expr) {
+		return expr.equals("*") || expr.length() > 2 && expr.startsWith("*.") && expr.indexOf('*', 1) < 0;
+	}
+
+	private boolean contains(String expr) {
+		for(GlobExpression g : this.others){
+			if(g.expr.equals(expr))
+				return true;
+		}
+		return this.exact.containsKey(expr) || this.suffixRoot.find(expr) != null;
+	}
+
+
+	/**
+	 * Returns the first expression, in the order passed to the constructor, matching the given host name.
+	 *
+	 * @param hostname The host name
+	 * @return The first matching expression, or {@code null} if no expression matches
+	 */
+	public String firstMatch(String hostname) {
+		int first = Integer.MAX_VALUE;
+		Integer exactIndex = this.exact.get(hostname);
+		if(exactIndex != null)
+			first = exactIndex;
+		SuffixNode node = this.suffixRoot;
+		if(node.index >= 0 && node.index < first && hostname.length() > 0)
+			first = node.index;
+		int end = hostname.length();
+		int hash = 0;
+		for(int i = end - 1; i > 0; i--){
+			char c = hostname.charAt(i);
+			if(c != '.'){
+				hash = 31 * hash + c;
+				continue;
+			}
+			node = node.getChild(hash, hostname, i + 1, end - i - 1);
+			if(node == null)
+				break;
+			if(node.index >= 0 && node.index < first)
+				first = node.index;
+			end = i;
+			hash = 0;
+		}
+		for(GlobExpression g : this.others){
+			if(g.index < first && g.matches(hostname))
+				first = g.index;
+		}
+		return first != Integer.MAX_VALUE ? this.expressions[first] : null;
+	}
+
+	/**
+	 * Returns all expressions matching the given host name, in the order passed to the constructor.
+	 *
+	 * @param hostname The host name
+	 * @return The list of matching expressions
+	 */
+	public List<String> matches(String hostname) {
+		int[] indices = new int[4];
+		int count = 0;
+		Integer exactIndex = this.exact.get(hostname);
+		if(exactIndex != null)
+			indices[count++] = exactIndex;
+		SuffixNode node = this.suffixRoot;
+		if(node.index >= 0 && hostname.length() > 0)
+			indices[count++] = node.index;
+		int end = hostname.length();
+		int hash = 0;
+		for(int i = end - 1; i > 0; i--){
+			char c = hostname.charAt(i);
+			if(c != '.'){
+				hash = 31 * hash + c;
+				continue;
+			}
+			node = node.getChild(hash, hostname, i + 1, end - i - 1);
+			if(node == null)
+				break;
+			if(node.index >= 0){
+				if(count == indices.length)
+					indices = Arrays.copyOf(indices, count * 2);
+				indices[count++] = node.index;
+			}
+			end = i;
+			hash = 0;
+		}
+		for(GlobExpression g : this.others){
+			if(g.matches(hostname)){
+				if(count == indices.length)
+					indices = Arrays.copyOf(indices, count * 2);
+				indices[count++] = g.index;
+			}
+		}
+		if(count == 0)
+			return Collections.emptyList();
+		Arrays.sort(indices, 0, count);
+		List<String> result = new ArrayList<>(count);
+		for(int i = 0; i < count; i++)
+			result.add(this.expressions[indices[i]]);
+		return result;
+	}
+
+	/**
+	 * Returns {@code true} if any expression matches the given host name.
+	 *
+	 * @param hostname The host name
+	 * @return {@code true} if any expression matches
+	 */
+	public boolean matchesAny(String hostname) {
+		return this.firstMatch(hostname) != null;
+	}
+
+	/**
+	 * Returns the number of distinct expressions in this set.
+	 *
+	 * @return The number of expressions
+	 */
+	public int size() {
+		return this.expressions.length;
+	}
+
+
+	/**
+	 * Computes the hash of a label, iterating over the characters in reverse order like the lookup methods.
+	 */
+	private static int labelHash(String label) {
+		int hash = 0;
+		for(int i = label.length() - 1; i >= 0; i--)
+			hash = 31 * hash + label.charAt(i);
+		return hash;
+	}
+
+
+	private static class SuffixNode {
+
+		private static final int[] EMPTY_HASHES = new int[0];
+		private static final String[] EMPTY_LABELS = new String[0];
+		private static final SuffixNode[] EMPTY_NODES = new SuffixNode[0];
+
+		private Map<String, SuffixNode> building = new HashMap<>();
+
+		// sorted by hash
+		private int[] hashes = EMPTY_HASHES;
+		private String[] labels = EMPTY_LABELS;
+		private SuffixNode[] children = EMPTY_NODES;
+
+		private int index = -1;
+
+		public void add(String expr, int index) {
+			this.getNode(expr, true).index = index;
+		}
+
+		/**
+		 * Returns the node of the given label wildcard expression, if it was added.
+		 */
+		public SuffixNode find(String expr) {
+			if(!isLabelWildcard(expr))
+				return null;
+			SuffixNode node = this.getNode(expr, false);
+			return node != null && node.index >= 0 ? node : null;
+		}
+
+		private SuffixNode getNode(String expr, boolean create) {
+			SuffixNode node = this;
+			int end = expr.length();
+			for(int i = end - 1; i >= 1 && node != null; i--){
+				if(expr.charAt(i) != '.')
+					continue;
+				String label = expr.substring(i + 1, end);
+				node = create ? node.building.computeIfAbsent(label, (l) -> new SuffixNode()) : node.building.get(label);
+				end = i;
+			}
+			return node;
+		}
+
+		public void freeze() {
+			int count = this.building.size();
+			if(count > 0){
+				List<Map.Entry<String, SuffixNode>> entries = new ArrayList<>(this.building.entrySet());
+				entries.sort((a, b) -> Integer.compare(labelHash(a.getKey()), labelHash(b.getKey())));
+				this.hashes = new int[count];
+				this.labels = new String[count];
+				this.children = new SuffixNode[count];
+				for(int i = 0; i < count; i++){
+					this.hashes[i] = labelHash(entries.get(i).getKey());
+					this.labels[i] = entries.get(i).getKey();
+					this.children[i] = entries.get(i).getValue();
+					this.children[i].freeze();
+				}
+			}
+			this.building = null;
+		}
+
+		public SuffixNode getChild(int hash, String str, int offset, int length) {
+			int low = 0;
+			int high = this.hashes.length;
+			while(low < high){
+				int mid = (low + high) >>> 1;
+				if(this.hashes[mid] < hash)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			for(int i = low; i < this.hashes.length && this.hashes[i] == hash; i++){
+				String label = this.labels[i];
+				if(label.length() == length && str.regionMatches(offset, label, 0, length))
+					return this.children[i];
+			}
+			return null;
+		}
+	}
+
+	private static class GlobExpression {
+
+		private final String expr;
+		private final int index;
+		// the parts between wildcard characters; the first and last part may be empty
+		private final String[] parts;
+
+		public GlobExpression(String expr, int index) {
+			this.expr = expr;
+			this.index = index;
+			this.parts = expr.split("\\*", -1);
+		}
+
+		public boolean matches(String hostname) {
+			String first = this.parts[0];
+			String last = this.parts[this.parts.length - 1];
+			if(!hostname.startsWith(first) || !hostname.endsWith(last))
+				return false;
+			int pos = first.length();
+			int end = hostname.length() - last.length();
+			// each wildcard character matches at least one character; placing every part as far left as possible leaves the most characters for the following parts
+			for(int i = 1; i < this.parts.length - 1; i++){
+				String part = this.parts[i];
+				int found = hostname.indexOf(part, pos + 1);
+				if(found < 0 || found + part.length() > end)
+					return false;
+				pos = found + part.length();
+			}
+			return end - pos >= 1;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations, for estimating percentiles of latencies. The unit of recorded values is chosen by the user of the histogram.
+ * <p>
+ * Values are counted in logarithmic buckets, each subdivided into linear sub-buckets, so recording a value and computing a percentile take constant time and space. The
+ * relative width of a bucket, and therefore the relative error of a percentile, is at most {@code 2^-subBucketBits}. To prefer recent values, all counts may be halved
+ * each time a given number of values were recorded.
+ *
+ * @since 3.12.1
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of recorded values after which all counts are halved, in histograms created using {@link #LatencyHistogram()}.
+	 */
+	public static final int DECAY_INTERVAL = 4096;
+
+
+	private final int subBits;
+	private final int subCount;
+	private final int decayInterval;
+
+	private final AtomicLongArray counts;
+	private final AtomicLong recorded = new AtomicLong();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Creates a new, empty {@code LatencyHistogram} with a relative error of at most 12.5%, whose counts are halved each time {@link #DECAY_INTERVAL} values were
+	 * recorded.
+	 */
+	public LatencyHistogram() {
+		this(3, DECAY_INTERVAL);
+	}
+
+	/**
+	 * Creates a new, empty {@code LatencyHistogram}.
+	 *
+	 * @param subBucketBits The base 2 logarithm of the number of sub-buckets of each bucket, between {@code 1} and {@code 16}
+	 * @param decayInterval The number of recorded values after which all counts are halved, or {@code 0} to never halve counts
+	 * @throws IllegalArgumentException If an argument is out of range
+	 */
+	public LatencyHistogram(int subBucketBits, int decayInterval) {
+		if(subBucketBits < 1 || subBucketBits > 16)
+			throw new IllegalArgumentException("subBucketBits must be between 1 and 16");
+		if(decayInterval < 0)
+			throw new IllegalArgumentException("decayInterval must not be negative");
+		this.subBits = subBucketBits;
+		this.subCount = 1 << subBucketBits;
+		this.decayInterval = decayInterval;
+		this.counts = new AtomicLongArray((64 - subBucketBits) * this.subCount);
+	}
+
+
+	/**
+	 * Records the given duration.
+	 *
+	 * @param value The duration. Negative values are recorded as {@code 0}
+	 */
+	public void record(long value) {
+		if(value < 0)
+			value = 0;
+		this.counts.incrementAndGet(this.index(value));
+		this.sum.add(value);
+		long m;
+		while(value > (m = this.max.get()) && !this.max.compareAndSet(m, value))
+			;
+		long n = this.recorded.incrementAndGet();
+		if(this.decayInterval > 0 && n % this.decayInterval == 0){
+			// concurrently recorded values may not be halved, which is insignificant
+			for(int i = 0; i < this.counts.length(); i++){
+				long c;
+				do{
+					c = this.counts.get(i);
+				}while(c > 0 && !this.counts.compareAndSet(i, c, c >> 1));
+			}
+		}
+	}
+
+	/**
+	 * Adds all values recorded in the given histogram to this histogram.
+	 *
+	 * @param other The other histogram
+	 * @throws IllegalArgumentException If the other histogram has a different number of sub-buckets
+	 */
+	public void add(LatencyHistogram other) {
+		if(other.subBits != this.subBits)
+			throw new IllegalArgumentException("Histograms have different precision");
+		for(int i = 0; i < this.counts.length(); i++)
+			this.counts.addAndGet(i, other.counts.get(i));
+		this.recorded.addAndGet(other.recorded.get());
+		this.sum.add(other.sum.sum());
+		this.max.accumulateAndGet(other.max.get(), Math::max);
+	}
+
+	/**
+	 * Returns an estimate of the given percentile of recorded durations. The returned value is the upper bound of the bucket containing the percentile, but at most the
+	 * {@linkplain #getMax() maximum}.
+	 *
+	 * @param percentile The percentile, between {@code 0} and {@code 100}
+	 * @return The estimated percentile, or {@code -1} if no values were recorded
+	 */
+	public long getPercentile(double percentile) {
+		int buckets = this.counts.length();
+		long[] snapshot = new long[buckets];
+		long total = 0;
+		for(int i = 0; i < buckets; i++){
+			snapshot[i] = this.counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0)
+			return -1;
+		long target = Math.max((long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100), 1);
+		long sum = 0;
+		for(int i = 0; i < buckets; i++){
+			sum += snapshot[i];
+			if(sum >= target)
+				return Math.min(this.upperBound(i), this.max.get());
+		}
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the total number of values recorded by this histogram, including values whose counts have decayed.
+	 *
+	 * @return The number of recorded values
+	 */
+	public long getRecordedCount() {
+		return this.recorded.get();
+	}
+
+	/**
+	 * Returns the largest value recorded by this histogram.
+	 *
+	 * @return The largest value, or {@code 0} if no values were recorded
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the mean of all values recorded by this histogram, including values whose counts have decayed.
+	 *
+	 * @return The mean, or {@code 0} if no values were recorded
+	 */
+	public double getMean() {
+		long n = this.recorded.get();
+		return n > 0 ? (double) this.sum.sum() / n : 0;
+	}
+
+
+	private int index(long value) {
+		if(value < this.subCount)
+			return (int) value;
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - this.subBits)) & (this.subCount - 1);
+		return (exp - this.subBits + 1) * this.subCount + sub;
+	}
+
+	private long upperBound(int index) {
+		if(index < this.subCount)
+			return index;
+		int exp = index / this.subCount + this.subBits - 1;
+		int sub = index % this.subCount;
+		long width = 1L << (exp - this.subBits);
+		// overflows to Long.MAX_VALUE for the last bucket
+		return (this.subCount + sub + 1) * width - 1;
+	}
+}
@@ -14,6 +14,7 @@ package org.omegazero.proxy.util;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Collection;
 
 import org.omegazero.common.util.PropertyUtil;
 import org.omegazero.net.client.params.ConnectionParameters;
@@ -21,6 +22,7 @@ import org.omegazero.net.client.params.TLSConnectionParameters;
 import org.omegazero.net.socket.SocketConnection;
 import org.omegazero.proxy.core.Proxy;
 import org.omegazero.proxy.net.UpstreamServer;
+import org.omegazero.proxy.net.UpstreamTLSSessionCache;
 
 public class ProxyUtil {
 
@@ -76,6 +78,7 @@ public class ProxyUtil {
 	 * @return <code>true</code> if the given hostname matches the expression
 	 * @implNote This function currently cannot handle certain edge cases, for example: expr = <code>a.n*n.a</code> and hostname = <code>a.nnnn.a</code> returns <code>false</code>,
 	 * even though it should return <code>true</code>. Given that such a hostname expression is quite unlikely to be used in actual configurations, this is fine for now.
+	 * @see #compileHostExpressions(Collection)
 	 */
 	public static boolean hostMatches(String expr, String hostname) {
 		int exprlen = expr.length();
@@ -118,6 +121,19 @@ public class ProxyUtil {
 	}
 
 
+	/**
+	 * Compiles the given host name expressions into a {@link HostPatternSet}, which finds the expressions matching a host name in time proportional to the length of the host
+	 * name, instead of calling {@link #hostMatches(String, String)} for every expression.
+	 * 
+	 * @param exprs The host name expressions
+	 * @return The compiled expressions
+	 * @since 3.12.1
+	 */
+	public static HostPatternSet compileHostExpressions(Collection<String> exprs) {
+		return new HostPatternSet(exprs);
+	}
+
+
 	/**
 	 * Checks if the <b>writeStream</b> (the connection where data is being written to) is connected (or about to be) and is buffering write calls
 	 * ({@link SocketConnection#isWritable()} returns <code>false</code>). If that is the case, reads from the <b>readStream</b> will be blocked using
@@ -200,6 +216,11 @@ public class ProxyUtil {
 		}else
 			throw new IOException("Upstream server " + remoteAddress + " neither has a plain nor a secure port set");
 
-		return proxy.connection(type, params, downstreamConnection);
+		UpstreamServer prevUpstream = UpstreamTLSSessionCache.setCurrentUpstream(userver);
+		try{
+			return proxy.connection(type, params, downstreamConnection);
+		}finally{
+			UpstreamTLSSessionCache.setCurrentUpstream(prevUpstream);
+		}
 	}
 }
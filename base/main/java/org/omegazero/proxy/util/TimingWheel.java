@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.omegazero.common.logging.Logger;
+
+/**
+ * A hashed timing wheel for large numbers of short-lived timeouts, most of which are canceled before they expire, such as request and response timeouts.
+ * <p>
+ * Time is divided into ticks of a fixed duration. A timeout is stored in the bucket of the tick it expires in, modulo the number of buckets, in a doubly linked list,
+ * so scheduling and canceling a timeout take constant time regardless of the number of pending timeouts. Timeouts further in the future than one rotation of the wheel
+ * remain in their bucket until the tick they expire in. Timeouts expire at most one tick after their delay elapsed.
+ * <p>
+ * To reduce lock contention between threads scheduling timeouts, the wheel is split into a number of shards, each with its own buckets and lock. The shard of a
+ * timeout is selected by the scheduling thread, so each worker thread usually uses its own shard. All shards are advanced by a single daemon thread, which also runs the
+ * tasks of expired timeouts. Tasks should therefore complete quickly or pass any longer work to a different thread.
+ *
+ * @since 3.12.1
+ */
+public class TimingWheel {
+
+	private static final Logger logger = Logger.create();
+
+	private static final int STATE_PENDING = 0;
+	private static final int STATE_CANCELED = 1;
+	private static final int STATE_EXPIRED = 2;
+
+
+	private final long tickNanos;
+	private final int mask;
+	private final Shard[] shards;
+	private final long startTime = System.nanoTime();
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a new {@code TimingWheel} and starts its thread.
+	 *
+	 * @param name The name of the thread
+	 * @param tickDuration The duration of a tick in milliseconds
+	 * @param wheelSize The number of buckets per shard. Rounded up to the next power of two
+	 * @param shardCount The number of shards
+	 */
+	public TimingWheel(String name, long tickDuration, int wheelSize, int shardCount) {
+		if(tickDuration <= 0 || wheelSize <= 0 || shardCount <= 0)
+			throw new IllegalArgumentException("Invalid timing wheel parameters");
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		int size = Integer.highestOneBit(Math.min(wheelSize, 1 << 30));
+		if(size < wheelSize)
+			size <<= 1;
+		this.mask = size - 1;
+		this.shards = new Shard[shardCount];
+		for(int i = 0; i < shardCount; i++)
+			this.shards[i] = new Shard(size);
+		this.thread = new Thread(this::run, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+
+	/**
+	 * Schedules the given task to run after the given delay.
+	 *
+	 * @param task The task
+	 * @param delay The delay in milliseconds
+	 * @return The {@link Timeout}, which may be used to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+		Objects.requireNonNull(task);
+		Shard shard = this.shards.length == 1 ? this.shards[0] : this.shards[(Thread.currentThread().hashCode() & 0x7fffffff) % this.shards.length];
+		long deadline = (System.nanoTime() - this.startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)) + this.tickNanos - 1) / this.tickNanos;
+		Timeout timeout = new Timeout(shard, task);
+		shard.add(timeout, deadline);
+		return timeout;
+	}
+
+	/**
+	 * Returns the number of timeouts which were neither canceled nor expired yet.
+	 *
+	 * @return The number of pending timeouts
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		for(Shard shard : this.shards){
+			synchronized(shard){
+				count += shard.size;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Stops the thread of this {@code TimingWheel}. Pending timeouts will not expire.
+	 */
+	public void close() {
+		this.running = false;
+		LockSupport.unpark(this.thread);
+	}
+
+
+	private void run() {
+		long tick = 0;
+		while(this.running){
+			long wait;
+			while(this.running && (wait = this.startTime + (tick + 1) * this.tickNanos - System.nanoTime()) > 0)
+				LockSupport.parkNanos(this, wait);
+			if(!this.running)
+				break;
+			// if the thread fell behind, all elapsed ticks are processed at once
+			tick = Math.max(tick + 1, (System.nanoTime() - this.startTime) / this.tickNanos);
+			for(Shard shard : this.shards){
+				Timeout expired = shard.advance(tick);
+				while(expired != null){
+					Timeout next = expired.next;
+					expired.next = null;
+					try{
+						expired.task.run();
+					}catch(Throwable e){
+						logger.error("Error in timeout task: ", e);
+					}
+					expired = next;
+				}
+			}
+		}
+	}
+
+
+	private class Shard {
+
+		private final Timeout[] buckets;
+		// all timeouts expiring in this tick or earlier were removed from the buckets
+		private long processedTick = 0;
+		private int size = 0;
+
+		public Shard(int size) {
+			this.buckets = new Timeout[size];
+		}
+
+
+		public synchronized void add(Timeout timeout, long deadline) {
+			if(deadline <= this.processedTick)
+				deadline = this.processedTick + 1;
+			timeout.deadline = deadline;
+			int bucket = (int) deadline & TimingWheel.this.mask;
+			Timeout head = this.buckets[bucket];
+			timeout.next = head;
+			if(head != null)
+				head.prev = timeout;
+			this.buckets[bucket] = timeout;
+			this.size++;
+		}
+
+		public synchronized boolean cancel(Timeout timeout) {
+			if(timeout.state != STATE_PENDING)
+				return false;
+			timeout.state = STATE_CANCELED;
+			this.unlink(timeout);
+			return true;
+		}
+
+		private void unlink(Timeout timeout) {
+			if(timeout.prev != null)
+				timeout.prev.next = timeout.next;
+			else
+				this.buckets[(int) timeout.deadline & TimingWheel.this.mask] = timeout.next;
+			if(timeout.next != null)
+				timeout.next.prev = timeout.prev;
+			timeout.prev = null;
+			timeout.next = null;
+			this.size--;
+		}
+
+		/**
+		 * Removes all timeouts expiring in the given tick or earlier and returns them as a list linked by {@link Timeout#next}.
+		 */
+		public synchronized Timeout advance(long tick) {
+			Timeout expired = null;
+			long from = Math.max(this.processedTick + 1, tick - TimingWheel.this.mask);
+			for(long t = from; t <= tick; t++){
+				Timeout timeout = this.buckets[(int) t & TimingWheel.this.mask];
+				while(timeout != null){
+					Timeout next = timeout.next;
+					if(timeout.deadline <= tick){
+						timeout.state = STATE_EXPIRED;
+						this.unlink(timeout);
+						timeout.next = expired;
+						expired = timeout;
+					}
+					timeout = next;
+				}
+			}
+			this.processedTick = tick;
+			return expired;
+		}
+	}
+
+
+	/**
+	 * A task scheduled in a {@link TimingWheel}.
+	 *
+	 * @since 3.12.1
+	 */
+	public static final class Timeout {
+
+		private final Shard shard;
+		private final Runnable task;
+
+		// guarded by the lock of the shard
+		private long deadline;
+		private Timeout prev;
+		private Timeout next;
+		private int state = STATE_PENDING;
+
+		private Timeout(Shard shard, Runnable task) {
+			this.shard = shard;
+			this.task = task;
+		}
+
+
+		/**
+		 * Cancels this timeout, if it has not expired yet.
+		 *
+		 * @return {@code true} if this timeout was canceled, {@code false} if it was already canceled or expired
+		 */
+		public boolean cancel() {
+			return this.shard.cancel(this);
+		}
+
+		/**
+		 * Returns {@code true} if this timeout was canceled.
+		 *
+		 * @return {@code true} if this timeout was canceled
+		 */
+		public boolean isCanceled() {
+			synchronized(this.shard){
+				return this.state == STATE_CANCELED;
+			}
+		}
+
+		/**
+		 * Returns {@code true} if this timeout expired and its task was run or is about to run.
+		 *
+		 * @return {@code true} if this timeout expired
+		 */
+		public boolean isExpired() {
+			synchronized(this.shard){
+				return this.state == STATE_EXPIRED;
+			}
+		}
+	}
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the {@link OCSPStaplingRefresher} against a local OCSP responder, using a certificate authority and OCSP responses generated by the test.
+ */
+public class OCSPStaplingRefresherTest {
+
+	static{
+		// read once by the JDK TLS implementation
+		System.setProperty("jdk.tls.server.enableStatusRequestExtension", "true");
+	}
+
+	private static final String ALIAS = "leaf";
+
+
+	private HttpServer responder;
+	private final AtomicInteger responderRequests = new AtomicInteger();
+	private X509Certificate caCert;
+	private X509Certificate[] chain;
+	private PrivateKey leafKey;
+	private OCSPStaplingRefresher refresher;
+	private SSLContext serverContext;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		this.responder = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		String uri = "http://127.0.0.1:" + this.responder.getAddress().getPort() + "/";
+
+		KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+		rsa.initialize(2048);
+		KeyPair caKeys = rsa.generateKeyPair();
+		KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+		ec.initialize(256);
+		KeyPair leafKeys = ec.generateKeyPair();
+		this.leafKey = leafKeys.getPrivate();
+
+		byte[] caName = name("Test CA");
+		byte[] caExtensions = seq(seq(oid("2.5.29.19"), der(0x01, new byte[] { (byte) 0xff }), octetString(seq(der(0x01, new byte[] { (byte) 0xff })))));
+		this.caCert = certificate(BigInteger.ONE, caName, caName, caKeys.getPublic(), caExtensions, caKeys.getPrivate());
+		byte[] aia = seq(seq(oid("1.3.6.1.5.5.7.48.1"), der(0x86, uri.getBytes(StandardCharsets.US_ASCII))));
+		byte[] leafExtensions = seq(seq(oid("1.3.6.1.5.5.7.1.1"), octetString(aia)));
+		BigInteger leafSerial = BigInteger.valueOf(2);
+		X509Certificate leafCert = certificate(leafSerial, caName, name("localhost"), leafKeys.getPublic(), leafExtensions, caKeys.getPrivate());
+		this.chain = new X509Certificate[] { leafCert, this.caCert };
+
+		byte[] response = ocspResponse(caName, caKeys, leafSerial);
+		this.responder.createContext("/", (exchange) -> {
+			this.responderRequests.incrementAndGet();
+			try(InputStream in = exchange.getRequestBody()){
+				in.readAllBytes();
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/ocsp-response");
+			exchange.sendResponseHeaders(200, response.length);
+			try(OutputStream out = exchange.getResponseBody()){
+				out.write(response);
+			}
+		});
+		this.responder.start();
+
+		TestKeyManager keyManager = new TestKeyManager();
+		this.serverContext = SSLContext.getInstance("TLS");
+		this.serverContext.init(new KeyManager[] { keyManager }, null, new SecureRandom());
+		this.refresher = new OCSPStaplingRefresher(this.serverContext, keyManager);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.refresher.close();
+		this.responder.stop(0);
+	}
+
+
+	@Test
+	public void testRefreshStaplesWithoutResponderInHandshake() throws Exception {
+		this.refresher.refresh(Collections.singletonList(ALIAS));
+		this.awaitRefreshes(1);
+		assertEquals(1, this.refresher.getStapledCount());
+		assertEquals(0, this.refresher.getFailedCount());
+		assertEquals(1, this.responderRequests.get());
+		assertNotEquals(0, this.refresher.getLastRefreshTime());
+
+		List<byte[]> responses = this.clientHandshake();
+		assertEquals(1, responses.size());
+		assertTrue(responses.get(0).length > 0);
+		// the response was taken from the cache
+		assertEquals(1, this.responderRequests.get());
+	}
+
+	@Test
+	public void testWarm() throws Exception {
+		this.refresher.warm(ALIAS);
+		this.awaitRefreshes(1);
+		assertEquals(1, this.refresher.getStapledCount());
+		assertEquals(1, this.responderRequests.get());
+
+		// unknown aliases are skipped
+		this.refresher.warm("unknown");
+		this.refresher.warm(ALIAS);
+		this.awaitRefreshes(2);
+		assertEquals(2, this.refresher.getStapledCount());
+		assertEquals(0, this.refresher.getUnstapledCount() + this.refresher.getFailedCount());
+	}
+
+	@Test
+	public void testResponderUnavailable() throws Exception {
+		this.responder.stop(0);
+		this.refresher.refresh(Collections.singletonList(ALIAS));
+		this.awaitRefreshes(1);
+		assertEquals(0, this.refresher.getStapledCount());
+		assertEquals(1, this.refresher.getUnstapledCount());
+
+		// handshakes continue without a stapled response
+		List<byte[]> responses = this.clientHandshake();
+		assertTrue(responses.isEmpty() || responses.get(0).length == 0);
+	}
+
+
+	private void awaitRefreshes(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(this.refresher.getStapledCount() + this.refresher.getUnstapledCount() + this.refresher.getFailedCount() < count){
+			assertTrue(System.currentTimeMillis() < deadline, "refresh did not complete");
+			Thread.sleep(10);
+		}
+	}
+
+	private List<byte[]> clientHandshake() throws GeneralSecurityException, IOException {
+		KeyStore trustStore = KeyStore.getInstance("PKCS12");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry("ca", this.caCert);
+		TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		tmf.init(trustStore);
+		SSLContext clientContext = SSLContext.getInstance("TLS");
+		clientContext.init(null, tmf.getTrustManagers(), null);
+
+		SSLEngine client = clientContext.createSSLEngine("localhost", 443);
+		client.setUseClientMode(true);
+		SSLEngine server = this.serverContext.createSSLEngine();
+		server.setUseClientMode(false);
+		handshake(client, server);
+		return ((ExtendedSSLSession) client.getSession()).getStatusResponses();
+	}
+
+	private static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+		ByteBuffer toServer = ByteBuffer.allocate(client.getSession().getPacketBufferSize());
+		ByteBuffer toClient = ByteBuffer.allocate(server.getSession().getPacketBufferSize());
+		ByteBuffer app = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+		client.beginHandshake();
+		server.beginHandshake();
+		for(int i = 0; i < 64; i++){
+			boolean clientDone = step(client, toClient, toServer, app);
+			boolean serverDone = step(server, toServer, toClient, app);
+			if(clientDone && serverDone)
+				return;
+		}
+		fail("handshake did not complete");
+	}
+
+	private static boolean step(SSLEngine engine, ByteBuffer in, ByteBuffer out, ByteBuffer app) throws SSLException {
+		while(true){
+			SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+			if(status == SSLEngineResult.HandshakeStatus.NEED_TASK){
+				Runnable task;
+				while((task = engine.getDelegatedTask()) != null)
+					task.run();
+			}else if(status == SSLEngineResult.HandshakeStatus.NEED_WRAP){
+				if(engine.wrap(ByteBuffer.allocate(0), out).getStatus() != SSLEngineResult.Status.OK)
+					return false;
+			}else if(status == SSLEngineResult.HandshakeStatus.NEED_UNWRAP){
+				in.flip();
+				SSLEngineResult result = engine.unwrap(in, app);
+				in.compact();
+				app.clear();
+				if(result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+					return false;
+			}else
+				return true;
+		}
+	}
+
+
+	private static X509Certificate certificate(BigInteger serial, byte[] issuer, byte[] subject, PublicKey key, byte[] extensions, PrivateKey signingKey)
+			throws GeneralSecurityException {
+		long now = System.currentTimeMillis();
+		byte[] validity = seq(der(0x17, utcTime(new Date(now - 3600000L))), der(0x17, utcTime(new Date(now + 86400000L))));
+		byte[] tbs = seq(der(0xa0, integer(BigInteger.valueOf(2))), integer(serial), SHA256_WITH_RSA, issuer, validity, subject, key.getEncoded(), der(0xa3, extensions));
+		byte[] encoded = seq(tbs, SHA256_WITH_RSA, bitString(sign(tbs, signingKey)));
+		return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(encoded));
+	}
+
+	private static byte[] ocspResponse(byte[] issuerName, KeyPair issuerKeys, BigInteger serial) throws GeneralSecurityException {
+		long now = System.currentTimeMillis();
+		MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+		byte[] nameHash = sha1.digest(issuerName);
+		byte[] keyHash = sha1.digest(subjectPublicKey(issuerKeys.getPublic().getEncoded()));
+		byte[] certId = seq(seq(oid("1.3.14.3.2.26"), der(0x05, new byte[0])), octetString(nameHash), octetString(keyHash), integer(serial));
+		byte[] singleResponse = seq(certId, der(0x80, new byte[0]), der(0x18, generalizedTime(new Date(now - 60000L))),
+				der(0xa0, der(0x18, generalizedTime(new Date(now + 3600000L)))));
+		byte[] responseData = seq(der(0xa1, issuerName), der(0x18, generalizedTime(new Date(now))), seq(singleResponse));
+		byte[] basicResponse = seq(responseData, SHA256_WITH_RSA, bitString(sign(responseData, issuerKeys.getPrivate())));
+		return seq(der(0x0a, new byte[] { 0 }), der(0xa0, seq(oid("1.3.6.1.5.5.7.48.1.1"), octetString(basicResponse))));
+	}
+
+	private static byte[] sign(byte[] data, PrivateKey key) throws GeneralSecurityException {
+		Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initSign(key);
+		signature.update(data);
+		return signature.sign();
+	}
+
+	/**
+	 * Returns the contents of the BIT STRING in an encoded {@code SubjectPublicKeyInfo}, without the unused bits byte.
+	 */
+	private static byte[] subjectPublicKey(byte[] spki) {
+		int[] pos = { 0 };
+		readHeader(spki, pos); // SubjectPublicKeyInfo
+		int algLen = readHeader(spki, pos);
+		pos[0] += algLen;
+		int keyLen = readHeader(spki, pos);
+		return Arrays.copyOfRange(spki, pos[0] + 1, pos[0] + keyLen);
+	}
+
+	private static int readHeader(byte[] data, int[] pos) {
+		pos[0]++;
+		int len = data[pos[0]++] & 0xff;
+		if(len >= 0x80){
+			int n = len & 0x7f;
+			len = 0;
+			for(int i = 0; i < n; i++)
+				len = (len << 8) | (data[pos[0]++] & 0xff);
+		}
+		return len;
+	}
+
+
+	private static final byte[] SHA256_WITH_RSA = seq(oid("1.2.840.113549.1.1.11"), der(0x05, new byte[0]));
+
+	private static byte[] name(String commonName) {
+		return seq(der(0x31, seq(oid("2.5.4.3"), der(0x0c, commonName.getBytes(StandardCharsets.UTF_8)))));
+	}
+
+	private static byte[] utcTime(Date date) {
+		return formatTime("yyMMddHHmmss'Z'", date);
+	}
+
+	private static byte[] generalizedTime(Date date) {
+		return formatTime("yyyyMMddHHmmss'Z'", date);
+	}
+
+	private static byte[] formatTime(String pattern, Date date) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(date).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] oid(String oid) {
+		String[] parts = oid.split("\\.");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(Integer.parseInt(parts[0]) * 40 + Integer.parseInt(parts[1]));
+		for(int i = 2; i < parts.length; i++){
+			long v = Long.parseLong(parts[i]);
+			int shift = 0;
+			while((v >> (shift + 7)) != 0)
+				shift += 7;
+			for(; shift > 0; shift -= 7)
+				out.write((int) (0x80 | ((v >> shift) & 0x7f)));
+			out.write((int) (v & 0x7f));
+		}
+		return der(0x06, out.toByteArray());
+	}
+
+	private static byte[] integer(BigInteger value) {
+		return der(0x02, value.toByteArray());
+	}
+
+	private static byte[] octetString(byte[] value) {
+		return der(0x04, value);
+	}
+
+	private static byte[] bitString(byte[] value) {
+		byte[] content = new byte[value.length + 1];
+		System.arraycopy(value, 0, content, 1, value.length);
+		return der(0x03, content);
+	}
+
+	private static byte[] seq(byte[]... elements) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for(byte[] e : elements)
+			out.writeBytes(e);
+		return der(0x30, out.toByteArray());
+	}
+
+	private static byte[] der(int tag, byte[] content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(tag);
+		int len = content.length;
+		if(len < 0x80){
+			out.write(len);
+		}else{
+			int n = len > 0xffff ? 3 : len > 0xff ? 2 : 1;
+			out.write(0x80 | n);
+			for(int i = n - 1; i >= 0; i--)
+				out.write(len >> (i * 8));
+		}
+		out.writeBytes(content);
+		return out.toByteArray();
+	}
+
+
+	private class TestKeyManager extends X509ExtendedKeyManager {
+
+		@Override
+		public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+			String alias = OCSPStaplingRefresherTest.this.refresher != null ? OCSPStaplingRefresherTest.this.refresher.getRefreshAlias(engine) : null;
+			if(alias == null)
+				alias = ALIAS;
+			return keyType.equals("EC") && this.getPrivateKey(alias) != null ? alias : null;
+		}
+
+		@Override
+		public X509Certificate[] getCertificateChain(String alias) {
+			return ALIAS.equals(alias) ? OCSPStaplingRefresherTest.this.chain : null;
+		}
+
+		@Override
+		public PrivateKey getPrivateKey(String alias) {
+			return ALIAS.equals(alias) ? OCSPStaplingRefresherTest.this.leafKey : null;
+		}
+
+		@Override
+		public String[] getClientAliases(String keyType, Principal[] issuers) {
+			return null;
+		}
+
+		@Override
+		public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+			return null;
+		}
+
+		@Override
+		public String[] getServerAliases(String keyType, Principal[] issuers) {
+			return null;
+		}
+
+		@Override
+		public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class RoutingTableTest {
+
+	private static UpstreamServer server(int port) {
+		return new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, port, -1);
+	}
+
+
+	@Test
+	public void testEmpty() {
+		RoutingTable table = new RoutingTable(Collections.emptyList());
+		assertTrue(table.isEmpty());
+		assertNull(table.select("example.com", "/", "GET"));
+		assertNull(table.route(null, null, "GET"));
+	}
+
+	@Test
+	public void testHostPrecedence() {
+		UpstreamServer exact = server(1), pattern = server(2), any = server(3);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route(null, null, null, any), new RoutingTable.Route("*.example.com", null, null, pattern),
+				new RoutingTable.Route("www.example.com", null, null, exact)));
+		assertEquals(3, table.size());
+		assertSame(exact, table.route("www.example.com", "/", "GET"));
+		assertSame(pattern, table.route("a.example.com", "/", "GET"));
+		assertSame(any, table.route("example.com", "/", "GET"));
+		assertSame(any, table.route(null, "/", "GET"));
+	}
+
+	@Test
+	public void testPatternFallthrough() {
+		UpstreamServer api = server(1), wildcard = server(2), any = server(3);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route("*.example.com", "/api", null, api),
+				new RoutingTable.Route("*.com", null, null, wildcard), new RoutingTable.Route(null, null, null, any)));
+		assertSame(api, table.route("a.example.com", "/api/x", "GET"));
+		// the first matching expression has no route for this path, so the next one is used
+		assertSame(wildcard, table.route("a.example.com", "/other", "GET"));
+		assertSame(any, table.route("a.example.org", "/other", "GET"));
+	}
+
+	@Test
+	public void testAuthorityNormalization() {
+		UpstreamServer s = server(1), v6 = server(2);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route("Example.COM", null, null, s), new RoutingTable.Route("[::1]", null, null, v6)));
+		assertSame(s, table.route("example.com:8080", "/", "GET"));
+		assertSame(s, table.route("EXAMPLE.com", "/", "GET"));
+		assertSame(v6, table.route("[::1]:443", "/", "GET"));
+		assertSame(v6, table.route("[::1]", "/", "GET"));
+		assertNull(table.route("example.org", "/", "GET"));
+	}
+
+	@Test
+	public void testPathPrefix() {
+		UpstreamServer root = server(1), api = server(2), apiv2 = server(3);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route(null, "/", null, root), new RoutingTable.Route(null, "/api", null, api),
+				new RoutingTable.Route(null, "/api/v2/", null, apiv2)));
+		assertSame(root, table.route(null, "/", "GET"));
+		assertSame(api, table.route(null, "/api", "GET"));
+		assertSame(api, table.route(null, "/api/", "GET"));
+		assertSame(api, table.route(null, "/api?x=1", "GET"));
+		assertSame(api, table.route(null, "/api/v1/users", "GET"));
+		assertSame(apiv2, table.route(null, "/api/v2/users", "GET"));
+		assertSame(api, table.route(null, "/api/v2", "GET"));
+		// prefixes only match at path segment boundaries
+		assertSame(root, table.route(null, "/apifoo", "GET"));
+		assertSame(root, table.route(null, "/ap", "GET"));
+		// the query string is not part of the path
+		assertSame(root, table.route(null, "/?/api", "GET"));
+		assertNull(table.route(null, "", "GET"));
+	}
+
+	@Test
+	public void testMethod() {
+		UpstreamServer any = server(1), post = server(2), rootPost = server(3);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route(null, "/upload", null, any), new RoutingTable.Route(null, "/upload", "POST", post),
+				new RoutingTable.Route(null, null, "POST", rootPost)));
+		assertSame(any, table.route(null, "/upload", "GET"));
+		assertSame(post, table.route(null, "/upload/file", "POST"));
+		assertSame(rootPost, table.route(null, "/other", "POST"));
+		assertNull(table.route(null, "/other", "GET"));
+	}
+
+	@Test
+	public void testDuplicateRoute() {
+		UpstreamServer first = server(1), second = server(2);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route("example.com", "/a", null, first), new RoutingTable.Route("example.com", "/a", null, second)));
+		assertSame(second, table.route("example.com", "/a", "GET"));
+	}
+
+	@Test
+	public void testSharedPrefixSplit() {
+		UpstreamServer a = server(1), ab = server(2), ac = server(3);
+		RoutingTable table = new RoutingTable(Arrays.asList(new RoutingTable.Route(null, "/abcd", null, ab), new RoutingTable.Route(null, "/ab", null, a),
+				new RoutingTable.Route(null, "/abce", null, ac)));
+		assertSame(ab, table.route(null, "/abcd/x", "GET"));
+		assertSame(ac, table.route(null, "/abce", "GET"));
+		assertSame(a, table.route(null, "/ab/abcd", "GET"));
+		assertNull(table.route(null, "/abc", "GET"));
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.omegazero.net.client.NetClientManager;
+import org.omegazero.net.client.params.ConnectionParameters;
+import org.omegazero.net.common.NetworkApplicationBuilder;
+
+/**
+ * Runs health checks against a local stand-in backend, which responds to every request with a configurable response.
+ */
+public class UpstreamHealthCheckerTest {
+
+	private ServerSocket backend;
+	private volatile String backendResponse;
+	private final List<String> backendRequests = new CopyOnWriteArrayList<>();
+	private final List<Boolean> connectTls = new CopyOnWriteArrayList<>();
+
+	private NetClientManager clientManager;
+	private UpstreamHealthChecker checker;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		this.backend = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread backendThread = new Thread(this::runBackend, "HealthCheckBackend");
+		backendThread.setDaemon(true);
+		backendThread.start();
+
+		this.clientManager = NetworkApplicationBuilder.newClientManager("nio").build();
+		this.clientManager.init();
+		Thread clientThread = new Thread(() -> {
+			try{
+				this.clientManager.start();
+			}catch(Exception e){
+				e.printStackTrace();
+			}
+		}, "HealthCheckClient");
+		clientThread.setDaemon(true);
+		clientThread.start();
+
+		// the stand-in backend only speaks plaintext, so TLS checks connect to it in plaintext as well and only the requested mode is recorded
+		this.checker = new UpstreamHealthChecker(null, (userver, tls) -> {
+			this.connectTls.add(tls);
+			int port = tls ? userver.getSecurePort() : userver.getPlainPort();
+			return this.clientManager.connection(new ConnectionParameters(new InetSocketAddress(userver.getAddress(), port),
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)));
+		});
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		this.checker.close();
+		this.clientManager.close();
+		this.backend.close();
+	}
+
+
+	@Test
+	public void testExpectedStatus() throws Exception {
+		this.backendResponse = "HTTP/1.1 204 No Content\r\ncontent-length: 0\r\n\r\n";
+		assertTrue(this.check(this.plainServer(), healthCheck(0, null)));
+		assertEquals(1, this.backendRequests.size());
+		String request = this.backendRequests.get(0);
+		assertTrue(request.startsWith("GET /health HTTP/1.1\r\n"), request);
+		assertTrue(request.contains("\r\nhost: backend.test\r\n"), request);
+
+		assertFalse(this.check(this.plainServer(), healthCheck(200, null)));
+		assertTrue(this.check(this.plainServer(), healthCheck(204, null)));
+	}
+
+	@Test
+	public void testUnexpectedStatus() throws Exception {
+		this.backendResponse = "HTTP/1.1 503 Service Unavailable\r\ncontent-length: 0\r\n\r\n";
+		assertFalse(this.check(this.plainServer(), healthCheck(0, null)));
+		assertTrue(this.check(this.plainServer(), healthCheck(503, null)));
+
+		this.backendResponse = "not http\r\n";
+		assertFalse(this.check(this.plainServer(), healthCheck(0, null)));
+	}
+
+	@Test
+	public void testNoResponse() throws Exception {
+		this.backendResponse = null;
+		long start = System.nanoTime();
+		assertFalse(this.check(this.plainServer(), healthCheck(0, null)));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	public void testConnectionRefused() throws Exception {
+		int port;
+		try(ServerSocket s = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())){
+			port = s.getLocalPort();
+		}
+		assertFalse(this.check(new UpstreamServer(InetAddress.getLoopbackAddress(), port, -1), healthCheck(0, null)));
+	}
+
+	@Test
+	public void testScheme() throws Exception {
+		this.backendResponse = "HTTP/1.1 200 OK\r\ncontent-length: 0\r\n\r\n";
+		int port = this.backend.getLocalPort();
+		UpstreamServer tlsOnly = new UpstreamServer(InetAddress.getLoopbackAddress(), -1, port);
+		UpstreamServer both = new UpstreamServer(InetAddress.getLoopbackAddress(), port, port);
+
+		// TLS is used by default if there is no plaintext port
+		assertTrue(this.check(tlsOnly, healthCheck(0, null)));
+		assertTrue(this.check(both, healthCheck(0, null)));
+		assertTrue(this.check(both, healthCheck(0, "https")));
+		assertTrue(this.check(both, healthCheck(0, "http")));
+		assertEquals(List.of(true, false, true, false), this.connectTls);
+
+		// no port for the scheme
+		assertFalse(this.check(tlsOnly, healthCheck(0, "http")));
+		assertEquals(4, this.connectTls.size());
+
+		assertThrows(IllegalArgumentException.class, () -> healthCheck(0, "ftp"));
+	}
+
+
+	private boolean check(UpstreamServer userver, UpstreamHealthChecker.HealthCheck healthCheck) throws Exception {
+		return this.checker.check(userver, healthCheck).get(5, TimeUnit.SECONDS);
+	}
+
+	private UpstreamServer plainServer() {
+		return new UpstreamServer(InetAddress.getLoopbackAddress(), this.backend.getLocalPort(), -1);
+	}
+
+	private static UpstreamHealthChecker.HealthCheck healthCheck(int expectedStatus, String scheme) {
+		return new UpstreamHealthChecker.HealthCheck(10, 200, "/health", "backend.test", expectedStatus, 1, 1, scheme);
+	}
+
+	private void runBackend() {
+		while(!this.backend.isClosed()){
+			try(Socket s = this.backend.accept()){
+				InputStream in = s.getInputStream();
+				ByteArrayOutputStream request = new ByteArrayOutputStream();
+				int b;
+				while((b = in.read()) >= 0){
+					request.write(b);
+					if(request.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n"))
+						break;
+				}
+				this.backendRequests.add(request.toString(StandardCharsets.ISO_8859_1));
+				String response = this.backendResponse;
+				if(response != null)
+					s.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+				else
+					in.read(); // wait until the client gives up
+			}catch(IOException e){
+				// closed
+			}
+		}
+	}
+}
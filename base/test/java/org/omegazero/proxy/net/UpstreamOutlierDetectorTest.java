@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.omegazero.proxy.util.CachedClock;
+
+public class UpstreamOutlierDetectorTest {
+
+	private static long remainingEjectionSeconds(UpstreamServer userver) {
+		return Math.round((userver.getEjectedUntil() - CachedClock.currentTimeMillis()) / 1000.0);
+	}
+
+	private static void endEjection(UpstreamServer userver) {
+		userver.setEjectedUntil(CachedClock.currentTimeMillis() - 1);
+		assertFalse(userver.isEjected());
+	}
+
+
+	@Test
+	public void testDisabled() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		assertFalse(detector.isEnabled());
+		for(int i = 0; i < 100; i++)
+			detector.record(userver, false);
+		assertFalse(userver.isEjected());
+		assertEquals(0, detector.getEjectionCount());
+	}
+
+	@Test
+	public void testConsecutiveFailures() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(3, 0, 1, 10, 30, 300);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		detector.record(userver, false);
+		detector.record(userver, false);
+		detector.record(userver, true);
+		detector.record(userver, false);
+		detector.record(userver, false);
+		assertFalse(userver.isEjected());
+		detector.record(userver, false);
+		assertTrue(userver.isEjected());
+		assertFalse(userver.isAvailable());
+		assertEquals(30, remainingEjectionSeconds(userver));
+		assertEquals(1, detector.getEjectionCount());
+	}
+
+	@Test
+	public void testErrorRate() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(0, 50, 10, 10, 30, 300);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		for(int i = 0; i < 4; i++){
+			detector.record(userver, true);
+			detector.record(userver, false);
+		}
+		// 4 of 8 requests failed, but fewer than the minimum number of requests
+		assertFalse(userver.isEjected());
+		detector.record(userver, true);
+		assertFalse(userver.isEjected());
+		detector.record(userver, false);
+		assertTrue(userver.isEjected());
+	}
+
+	@Test
+	public void testEjectionBackoff() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(1, 0, 1, 10, 10, 35);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		detector.record(userver, false);
+		assertEquals(10, remainingEjectionSeconds(userver));
+
+		// a failed trial request after the ejection ends doubles the ejection time, up to the maximum
+		long[] expected = { 20, 35, 35 };
+		for(long e : expected){
+			endEjection(userver);
+			assertEquals(UpstreamOutlierDetector.Admission.TRIAL, detector.admit(userver));
+			detector.record(userver, false, true);
+			assertTrue(userver.isEjected());
+			assertEquals(e, remainingEjectionSeconds(userver));
+		}
+		assertEquals(4, detector.getEjectionCount());
+
+		// a successful trial request resets the ejection time
+		endEjection(userver);
+		assertEquals(UpstreamOutlierDetector.Admission.TRIAL, detector.admit(userver));
+		detector.record(userver, true, true);
+		detector.record(userver, false);
+		assertEquals(10, remainingEjectionSeconds(userver));
+	}
+
+	@Test
+	public void testHalfOpen() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(1, 0, 1, 10, 10, 300);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		assertEquals(UpstreamOutlierDetector.Admission.ADMITTED, detector.admit(userver));
+		detector.record(userver, false);
+		assertEquals(UpstreamOutlierDetector.Admission.REJECTED, detector.admit(userver));
+
+		// only a single trial request is admitted after the ejection ends
+		endEjection(userver);
+		assertEquals(UpstreamOutlierDetector.Admission.TRIAL, detector.admit(userver));
+		assertEquals(UpstreamOutlierDetector.Admission.REJECTED, detector.admit(userver));
+		assertFalse(userver.isAvailable());
+		detector.record(userver, true, true);
+		assertTrue(userver.isAvailable());
+		assertEquals(UpstreamOutlierDetector.Admission.ADMITTED, detector.admit(userver));
+		assertEquals(UpstreamOutlierDetector.Admission.ADMITTED, detector.admit(userver));
+
+		// a failed trial request ejects the upstream server again
+		detector.record(userver, false);
+		endEjection(userver);
+		assertEquals(UpstreamOutlierDetector.Admission.TRIAL, detector.admit(userver));
+		detector.record(userver, false, true);
+		assertTrue(userver.isEjected());
+		assertEquals(20, remainingEjectionSeconds(userver));
+		assertEquals(3, detector.getEjectionCount());
+	}
+
+	@Test
+	public void testTrialOutcomeOnly() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(1, 0, 1, 10, 10, 300);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		detector.record(userver, false);
+		endEjection(userver);
+		assertEquals(UpstreamOutlierDetector.Admission.TRIAL, detector.admit(userver));
+
+		// outcomes of requests started before the ejection neither end nor renew it while the trial request is running
+		detector.record(userver, true);
+		assertTrue(userver.isEjected());
+		detector.record(userver, false);
+		assertEquals(10, remainingEjectionSeconds(userver));
+		assertEquals(1, detector.getEjectionCount());
+
+		detector.record(userver, true, true);
+		assertFalse(userver.isEjected());
+		assertEquals(UpstreamOutlierDetector.Admission.ADMITTED, detector.admit(userver));
+	}
+
+	@Test
+	public void testFailuresWhileEjected() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(1, 0, 1, 10, 10, 300);
+		UpstreamServer userver = new UpstreamServer(UpstreamServer.LOCALHOST_IPV4, 80, -1);
+		detector.record(userver, false);
+		// failures of requests started before the ejection do not extend it
+		detector.record(userver, false);
+		detector.record(userver, false);
+		assertEquals(10, remainingEjectionSeconds(userver));
+		assertEquals(1, detector.getEjectionCount());
+	}
+
+	@Test
+	public void testVirtualServer() {
+		UpstreamOutlierDetector detector = new UpstreamOutlierDetector();
+		detector.configure(1, 0, 1, 10, 10, 300);
+		UpstreamServer userver = new UpstreamServer();
+		detector.record(userver, false);
+		assertFalse(userver.isEjected());
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UpstreamServerAddressTest {
+
+	private static final InetAddress FIRST = address("upstream.test", 1);
+	private static final InetAddress SECOND = address("upstream.test", 2);
+
+	private static InetAddress address(String hostname, int last) {
+		try{
+			return InetAddress.getByAddress(hostname, new byte[] { 127, 0, 0, (byte) last });
+		}catch(UnknownHostException e){
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void await(BooleanSupplier condition, UpstreamServer userver) throws InterruptedException {
+		long deadline = System.nanoTime() + 5000000000L;
+		while(!condition.getAsBoolean()){
+			assertTrue(System.nanoTime() < deadline, "timed out");
+			userver.getAddress();
+			Thread.sleep(10);
+		}
+	}
+
+
+	private AddressResolver previous;
+	private AddressResolver resolver;
+	private final List<String> queries = new CopyOnWriteArrayList<>();
+	private volatile InetAddress result;
+	private volatile long lastQueryTime;
+
+	@BeforeEach
+	public void setUp() {
+		this.previous = AddressResolver.getDefault();
+		this.resolver = new AddressResolver((hostname) -> {
+			this.lastQueryTime = System.currentTimeMillis();
+			this.queries.add(hostname);
+			InetAddress r = this.result;
+			if(r == null)
+				throw new UnknownHostException(hostname);
+			return r;
+		}, 1);
+		AddressResolver.setDefault(this.resolver);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		AddressResolver.setDefault(this.previous);
+		this.resolver.close();
+	}
+
+
+	@Test
+	public void testRefreshAhead() throws InterruptedException {
+		this.result = SECOND;
+		long start = System.currentTimeMillis();
+		UpstreamServer userver = new UpstreamServer(FIRST, 1, 80, -1, null);
+		assertSame(FIRST, userver.getAddress());
+		assertTrue(this.queries.isEmpty());
+
+		await(() -> userver.getAddress() == SECOND, userver);
+		long elapsed = this.lastQueryTime - start;
+		// the address is re-resolved before its TTL of 1 second expires (addressRefreshAhead is 20% by default)
+		assertTrue(elapsed >= 1000 * (100 - UpstreamServer.addressRefreshAhead) / 100 - 50, "refreshed after " + elapsed + "ms");
+		assertTrue(elapsed < 1000, "refreshed after " + elapsed + "ms");
+		assertEquals(1, this.queries.size());
+		assertEquals("upstream.test", this.queries.get(0));
+		assertEquals(1, this.resolver.getResolutionCount());
+		assertEquals(0, this.resolver.getFailureCount());
+	}
+
+	@Test
+	public void testNegativeTTL() throws InterruptedException {
+		this.result = null;
+		UpstreamServer userver = new UpstreamServer(FIRST, 1, 80, -1, null);
+		await(() -> this.resolver.getFailureCount() == 1, userver);
+		assertEquals(1, this.resolver.getResolutionCount());
+		// the last resolved address is used if re-resolution fails
+		assertSame(FIRST, userver.getAddress());
+
+		// the next attempt is made after the negative TTL, which is the TTL by default
+		long failed = System.currentTimeMillis();
+		this.result = SECOND;
+		await(() -> userver.getAddress() == SECOND, userver);
+		long elapsed = System.currentTimeMillis() - failed;
+		if(UpstreamServer.addressNegativeTTL < 0)
+			assertTrue(elapsed >= 900, "retried after " + elapsed + "ms");
+		assertEquals(2, this.resolver.getResolutionCount());
+		assertEquals(1, this.resolver.getFailureCount());
+		assertEquals(0, this.resolver.getPendingCount());
+	}
+
+	@Test
+	public void testLiteralAddress() throws InterruptedException, UnknownHostException {
+		InetAddress literal = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+		this.result = SECOND;
+		UpstreamServer userver = new UpstreamServer(literal, 1, 80, -1, null);
+		await(() -> userver.getAddress() == SECOND, userver);
+		// the literal is re-resolved without a reverse lookup of the address
+		assertEquals("127.0.0.1", this.queries.get(0));
+	}
+
+	@Test
+	public void testIdentity() throws InterruptedException {
+		this.result = SECOND;
+		UpstreamServer userver = new UpstreamServer(FIRST, 1, 80, -1, null);
+		UpstreamServer other = new UpstreamServer(address("upstream.test", 3), 1, 80, -1, null);
+		int hash = userver.hashCode();
+		Map<UpstreamServer, String> map = new HashMap<>();
+		map.put(userver, "value");
+		await(() -> userver.getAddress() == SECOND, userver);
+		// a re-resolved address does not change the identity of the upstream server, which is used as a map key
+		assertEquals(hash, userver.hashCode());
+		assertEquals("value", map.get(userver));
+		assertEquals(userver, other);
+
+		// addresses which are not re-resolved are compared by address
+		assertNotEquals(new UpstreamServer(FIRST, -1, 80, -1, null), new UpstreamServer(SECOND, -1, 80, -1, null));
+		assertEquals(new UpstreamServer(FIRST, -1, 80, -1, null), new UpstreamServer(address("other.test", 1), -1, 80, -1, null));
+	}
+
+	@Test
+	public void testNoTTL() throws InterruptedException {
+		this.result = SECOND;
+		UpstreamServer userver = new UpstreamServer(FIRST, -1, 80, -1, null);
+		Thread.sleep(100);
+		assertSame(FIRST, userver.getAddress());
+		assertTrue(this.queries.isEmpty());
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class HostPatternSetTest {
+
+
+	@Test
+	public void testExact() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("example.com", "www.example.com"));
+		assertEquals("example.com", set.firstMatch("example.com"));
+		assertEquals("www.example.com", set.firstMatch("www.example.com"));
+		assertNull(set.firstMatch("example.org"));
+		assertNull(set.firstMatch("xexample.com"));
+		assertNull(set.firstMatch(""));
+	}
+
+	@Test
+	public void testLabelWildcard() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("*.example.com"));
+		assertEquals("*.example.com", set.firstMatch("www.example.com"));
+		assertEquals("*.example.com", set.firstMatch("a.b.example.com"));
+		// the wildcard character matches at least one character
+		assertNull(set.firstMatch("example.com"));
+		assertNull(set.firstMatch(".example.com"));
+		assertNull(set.firstMatch("wwwexample.com"));
+		assertNull(set.firstMatch("www.example.com.evil"));
+	}
+
+	@Test
+	public void testWildcardOnly() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("*"));
+		assertEquals("*", set.firstMatch("example.com"));
+		assertEquals("*", set.firstMatch("a"));
+		assertNull(set.firstMatch(""));
+	}
+
+	@Test
+	public void testGlob() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("www.*.com", "*x*", "a*"));
+		assertEquals("www.*.com", set.firstMatch("www.example.com"));
+		assertNull(new HostPatternSet(Arrays.asList("www.*.com")).firstMatch("www..com"));
+		assertEquals("*x*", set.firstMatch("axb"));
+		assertNull(new HostPatternSet(Arrays.asList("*x*")).firstMatch("xb"));
+		assertNull(new HostPatternSet(Arrays.asList("*x*")).firstMatch("ax"));
+		assertEquals("a*", set.firstMatch("ab"));
+		assertNull(set.firstMatch("a"));
+		// parts must not overlap
+		assertNull(new HostPatternSet(Arrays.asList("ab*ba")).firstMatch("aba"));
+		assertEquals("ab*ba", new HostPatternSet(Arrays.asList("ab*ba")).firstMatch("abxba"));
+	}
+
+	@Test
+	public void testOrder() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("*.com", "*.example.com", "www.example.com", "*"));
+		assertEquals("*.com", set.firstMatch("www.example.com"));
+		assertEquals(Arrays.asList("*.com", "*.example.com", "www.example.com", "*"), set.matches("www.example.com"));
+		assertEquals(Arrays.asList("*.com", "*"), set.matches("example.com"));
+		assertEquals(Arrays.asList("*"), set.matches("example.org"));
+		assertEquals(Collections.emptyList(), set.matches(""));
+
+		set = new HostPatternSet(Arrays.asList("www.example.com", "w*", "*.example.com"));
+		assertEquals("www.example.com", set.firstMatch("www.example.com"));
+		assertEquals(Arrays.asList("www.example.com", "w*", "*.example.com"), set.matches("www.example.com"));
+		assertEquals(Arrays.asList("*.example.com"), set.matches("a.example.com"));
+	}
+
+	@Test
+	public void testDuplicates() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("*.example.com", "a*", "example.com", "*.example.com", "a*", "example.com"));
+		assertEquals(3, set.size());
+		assertEquals(Arrays.asList("*.example.com", "a*"), set.matches("a.example.com"));
+	}
+
+	@Test
+	public void testManyMatches() {
+		HostPatternSet set = new HostPatternSet(Arrays.asList("*", "*.e", "*.d.e", "*.c.d.e", "*.b.c.d.e", "a.b.c.d.e", "a*"));
+		assertEquals(Arrays.asList("*", "*.e", "*.d.e", "*.c.d.e", "*.b.c.d.e", "a.b.c.d.e", "a*"), set.matches("a.b.c.d.e"));
+		assertTrue(set.matchesAny("x"));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(-1, h.getPercentile(50));
+		assertEquals(0, h.getRecordedCount());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getMean(), 0);
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram h = new LatencyHistogram(7, 0);
+		for(int i = 1; i <= 1000; i++)
+			h.record(i * 1000L);
+		assertEquals(1000, h.getRecordedCount());
+		assertEquals(1000000, h.getMax());
+		assertEquals(500500, h.getMean(), 0.001);
+		assertWithin(500000, h.getPercentile(50), 0.01);
+		assertWithin(990000, h.getPercentile(99), 0.01);
+		assertEquals(1000000, h.getPercentile(100));
+		assertWithin(1000, h.getPercentile(0), 0.01);
+	}
+
+	@Test
+	public void testLargeValues() {
+		LatencyHistogram h = new LatencyHistogram(7, 0);
+		h.record(Long.MAX_VALUE);
+		h.record(-5);
+		assertEquals(0, h.getPercentile(50));
+		assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+	}
+
+	@Test
+	public void testDecay() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i = 0; i < LatencyHistogram.DECAY_INTERVAL; i++)
+			h.record(1000);
+		for(int i = 0; i < LatencyHistogram.DECAY_INTERVAL; i++)
+			h.record(10);
+		// the older values were halved twice, the newer ones once
+		assertWithin(10, h.getPercentile(50), 0.125);
+		assertWithin(1000, h.getPercentile(90), 0.125);
+		assertEquals(2 * LatencyHistogram.DECAY_INTERVAL, h.getRecordedCount());
+	}
+
+	@Test
+	public void testAdd() {
+		LatencyHistogram a = new LatencyHistogram(7, 0);
+		LatencyHistogram b = new LatencyHistogram(7, 0);
+		for(int i = 0; i < 10; i++){
+			a.record(100);
+			b.record(300);
+		}
+		a.add(b);
+		assertEquals(20, a.getRecordedCount());
+		assertEquals(200, a.getMean(), 0.001);
+		assertEquals(300, a.getMax());
+		assertWithin(100, a.getPercentile(50), 0.01);
+		assertEquals(300, a.getPercentile(51));
+		assertThrows(IllegalArgumentException.class, () -> a.add(new LatencyHistogram()));
+	}
+
+
+	private static void assertWithin(long expected, long actual, double relativeError) {
+		assertTrue(actual >= expected && actual <= expected * (1 + relativeError), "Expected " + expected + " but got " + actual);
+	}
+}
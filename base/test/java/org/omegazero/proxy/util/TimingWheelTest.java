@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+	private TimingWheel wheel;
+
+	@BeforeEach
+	public void setUp() {
+		// a small wheel, so that some timeouts are longer than one rotation
+		this.wheel = new TimingWheel("TimingWheelTest", 5, 8, 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.wheel.close();
+	}
+
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		TimingWheel.Timeout timeout = this.wheel.schedule(latch::countDown, 50);
+		assertEquals(1, this.wheel.getPendingCount());
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.isCanceled());
+		assertFalse(timeout.cancel());
+		assertEquals(0, this.wheel.getPendingCount());
+	}
+
+	@Test
+	public void testExpiryAfterMultipleRotations() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		// 8 buckets of 5ms are one rotation every 40ms
+		this.wheel.schedule(latch::countDown, 130);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(130));
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		TimingWheel.Timeout timeout = this.wheel.schedule(runs::incrementAndGet, 20);
+		assertTrue(timeout.cancel());
+		assertTrue(timeout.isCanceled());
+		assertFalse(timeout.isExpired());
+		assertFalse(timeout.cancel());
+		assertEquals(0, this.wheel.getPendingCount());
+
+		CountDownLatch latch = new CountDownLatch(1);
+		this.wheel.schedule(latch::countDown, 60);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, runs.get());
+	}
+
+	@Test
+	public void testCancelInSameBucket() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[5];
+		for(int i = 0; i < timeouts.length; i++)
+			timeouts[i] = this.wheel.schedule(runs::incrementAndGet, 30);
+		// unlink from the head, the middle and the tail of the bucket list
+		assertTrue(timeouts[4].cancel());
+		assertTrue(timeouts[2].cancel());
+		assertTrue(timeouts[0].cancel());
+		assertEquals(2, this.wheel.getPendingCount());
+
+		CountDownLatch latch = new CountDownLatch(1);
+		this.wheel.schedule(latch::countDown, 60);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, runs.get());
+		assertTrue(timeouts[1].isExpired());
+		assertTrue(timeouts[3].isExpired());
+	}
+
+	@Test
+	public void testOrder() throws InterruptedException {
+		int[] order = new int[3];
+		AtomicInteger index = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(3);
+		this.wheel.schedule(() -> {
+			order[index.getAndIncrement()] = 3;
+			latch.countDown();
+		}, 90);
+		this.wheel.schedule(() -> {
+			order[index.getAndIncrement()] = 1;
+			latch.countDown();
+		}, 10);
+		this.wheel.schedule(() -> {
+			order[index.getAndIncrement()] = 2;
+			latch.countDown();
+		}, 50);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertArrayEquals(new int[] { 1, 2, 3 }, order);
+	}
+
+	@Test
+	public void testTaskException() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		this.wheel.schedule(() -> {
+			throw new RuntimeException("test");
+		}, 5);
+		this.wheel.schedule(latch::countDown, 20);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testInvalidParameters() {
+		assertThrows(IllegalArgumentException.class, () -> new TimingWheel("x", 0, 8, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TimingWheel("x", 5, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TimingWheel("x", 5, 8, 0));
+	}
+}
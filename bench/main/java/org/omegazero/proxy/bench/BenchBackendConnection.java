@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.omegazero.common.logging.Logger;
+import org.omegazero.net.socket.SocketConnection;
+
+/**
+ * A minimal HTTP/1.1 server for a single connection to the benchmark backend.
+ * <p>
+ * Every request is answered with status 200 and a response body consisting of zero bytes. The number of bytes is the last path segment of the request path (for
+ * example, {@code /bench/4096} returns 4096 bytes), or 0 if it is not a number. Request bodies with a {@code Content-Length} or chunked transfer encoding are read and
+ * discarded.
+ *
+ * @since 3.12.1
+ */
+public class BenchBackendConnection {
+
+	private static final Logger logger = Logger.create();
+
+	private static final int MAX_HEAD_SIZE = 16384;
+	private static final int MAX_RESPONSE_SIZE = 64 * 1024 * 1024;
+
+	private static final Map<Integer, byte[]> responseCache = new ConcurrentHashMap<>();
+
+	private static final int STATE_HEAD = 0;
+	private static final int STATE_BODY = 1;
+	private static final int STATE_CHUNK_SIZE = 2;
+	private static final int STATE_CHUNK_DATA = 3;
+	private static final int STATE_CHUNK_DATA_END = 4;
+	private static final int STATE_TRAILERS = 5;
+
+	private final SocketConnection connection;
+
+	private final byte[] lineBuf = new byte[MAX_HEAD_SIZE];
+	private int lineLen = 0;
+	private int headSize = 0;
+	private boolean requestLine = true;
+
+	private int state = STATE_HEAD;
+	private long remaining;
+	private int responseSize;
+	private boolean chunked;
+	private boolean close;
+
+	/**
+	 * Creates a new {@code BenchBackendConnection} and starts serving requests on the given connection.
+	 *
+	 * @param connection The connection
+	 */
+	public BenchBackendConnection(SocketConnection connection){
+		this.connection = connection;
+		connection.on("data", this::receive);
+		connection.on("error", (Throwable e) -> {
+			logger.warn("Benchmark backend connection error: ", e.toString());
+		});
+	}
+
+
+	private void receive(byte[] data){
+		int i = 0;
+		while(i < data.length){
+			if(this.state == STATE_BODY || this.state == STATE_CHUNK_DATA){
+				int n = (int) Math.min(this.remaining, data.length - i);
+				i += n;
+				this.remaining -= n;
+				if(this.remaining == 0){
+					if(this.state == STATE_BODY)
+						this.requestComplete();
+					else
+						this.state = STATE_CHUNK_DATA_END;
+				}
+				continue;
+			}
+			byte b = data[i++];
+			if(b == '\r')
+				continue;
+			if(b != '\n'){
+				if(this.lineLen >= this.lineBuf.length || ++this.headSize > MAX_HEAD_SIZE){
+					logger.warn("Benchmark backend received oversized request head, closing connection");
+					this.connection.destroy();
+					return;
+				}
+				this.lineBuf[this.lineLen++] = b;
+				continue;
+			}
+			String line = new String(this.lineBuf, 0, this.lineLen, StandardCharsets.ISO_8859_1);
+			this.lineLen = 0;
+			if(!this.processLine(line))
+				return;
+		}
+	}
+
+	private boolean processLine(String line){
+		switch(this.state){
+			case STATE_HEAD:
+				if(this.requestLine){
+					if(line.isEmpty()) // tolerate empty lines between requests
+						return true;
+					String[] parts = line.split(" ");
+					if(parts.length != 3){
+						this.connection.destroy();
+						return false;
+					}
+					this.responseSize = parseResponseSize(parts[1]);
+					this.remaining = 0;
+					this.chunked = false;
+					this.close = false;
+					this.requestLine = false;
+				}else if(line.isEmpty()){
+					this.requestLine = true;
+					this.headSize = 0;
+					if(this.chunked)
+						this.state = STATE_CHUNK_SIZE;
+					else if(this.remaining > 0)
+						this.state = STATE_BODY;
+					else
+						this.requestComplete();
+				}else{
+					int sep = line.indexOf(':');
+					if(sep < 0)
+						return true;
+					String name = line.substring(0, sep).trim().toLowerCase();
+					String value = line.substring(sep + 1).trim().toLowerCase();
+					if(name.equals("content-length"))
+						this.remaining = Long.parseLong(value);
+					else if(name.equals("transfer-encoding"))
+						this.chunked = value.endsWith("chunked");
+					else if(name.equals("connection"))
+						this.close = value.equals("close");
+				}
+				break;
+			case STATE_CHUNK_SIZE:{
+				int ext = line.indexOf(';');
+				long size = Long.parseLong((ext >= 0 ? line.substring(0, ext) : line).trim(), 16);
+				if(size == 0){
+					this.state = STATE_TRAILERS;
+				}else{
+					this.remaining = size;
+					this.state = STATE_CHUNK_DATA;
+				}
+				break;
+			}
+			case STATE_CHUNK_DATA_END:
+				this.state = STATE_CHUNK_SIZE;
+				break;
+			case STATE_TRAILERS:
+				if(line.isEmpty())
+					this.requestComplete();
+				break;
+		}
+		return true;
+	}
+
+	private void requestComplete(){
+		this.state = STATE_HEAD;
+		this.connection.write(getResponse(this.responseSize, this.close));
+		if(this.close)
+			this.connection.close();
+	}
+
+
+	private static int parseResponseSize(String path){
+		int q = path.indexOf('?');
+		if(q >= 0)
+			path = path.substring(0, q);
+		String segment = path.substring(path.lastIndexOf('/') + 1);
+		try{
+			return Math.min(Math.max(Integer.parseInt(segment), 0), MAX_RESPONSE_SIZE);
+		}catch(NumberFormatException e){
+			return 0;
+		}
+	}
+
+	private static byte[] getResponse(int size, boolean close){
+		// negative keys are used for responses with "connection: close"
+		return responseCache.computeIfAbsent(close ? -size - 1 : size, (k) -> {
+			byte[] head = ("HTTP/1.1 200 OK\r\ncontent-type: application/octet-stream\r\ncontent-length: " + size + "\r\n" + (close ? "connection: close\r\n" : "") + "\r\n")
+					.getBytes(StandardCharsets.ISO_8859_1);
+			byte[] res = new byte[head.length + size];
+			System.arraycopy(head, 0, res, 0, head.length);
+			return res;
+		});
+	}
+}
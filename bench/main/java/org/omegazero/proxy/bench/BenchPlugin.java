@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.util.Collections;
+
+import org.omegazero.common.config.ConfigurationOption;
+import org.omegazero.common.eventbus.EventBusSubscriber;
+import org.omegazero.common.eventbus.SubscribeEvent;
+import org.omegazero.common.logging.Logger;
+import org.omegazero.net.socket.SocketConnection;
+import org.omegazero.proxy.core.Proxy;
+import org.omegazero.proxy.http.ProxyHTTPRequest;
+import org.omegazero.proxy.net.LoopbackUpstreamServer;
+import org.omegazero.proxy.net.UpstreamServer;
+
+/**
+ * Proxy plugin used by {@link ProxyBenchmark}, which forwards all requests to a {@link LoopbackUpstreamServer} served by {@link BenchBackendConnection}s.
+ *
+ * @since 3.12.1
+ */
+@EventBusSubscriber
+public class BenchPlugin {
+
+	private static final Logger logger = Logger.create();
+
+	@ConfigurationOption
+	private boolean enable = true;
+
+	private LoopbackUpstreamServer backend;
+
+
+	@SubscribeEvent
+	public void onPostInit(){
+		if(!this.enable)
+			return;
+		this.backend = new LoopbackUpstreamServer(Collections.singleton("HTTP/1.1"));
+		this.backend.init();
+		this.backend.getServer().setConnectionCallback((connection) -> {
+			new BenchBackendConnection(connection);
+		});
+		logger.info("Benchmark backend initialized: ", this.backend);
+	}
+
+	@SubscribeEvent
+	public UpstreamServer onHTTPRequestSelectServer(SocketConnection downstreamConnection, ProxyHTTPRequest request){
+		return this.backend;
+	}
+
+	@SubscribeEvent
+	public void onShutdown(){
+		if(this.backend == null)
+			return;
+		try{
+			this.backend.close();
+		}catch(java.io.IOException e){
+			logger.warn("Error while closing benchmark backend: ", e);
+		}
+	}
+
+
+	/**
+	 * Returns {@code true} if the proxy instance in this JVM is running with this plugin loaded.
+	 *
+	 * @return {@code true} if this plugin is active
+	 */
+	static boolean isLoaded(){
+		Proxy proxy = Proxy.getInstance();
+		return proxy != null && proxy.isPluginLoaded("bench");
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link LoadClient} sending HTTP/1.1 requests over a plaintext TCP connection.
+ *
+ * @since 3.12.1
+ */
+public class HTTP1LoadClient implements LoadClient {
+
+	private final InetSocketAddress address;
+	private final byte[] skipBuf = new byte[16384];
+	private final StringBuilder lineBuf = new StringBuilder();
+
+	private Socket socket;
+	private InputStream in;
+	private OutputStream out;
+
+	/**
+	 * Creates a new {@code HTTP1LoadClient}.
+	 *
+	 * @param address The address of the proxy
+	 */
+	public HTTP1LoadClient(InetSocketAddress address){
+		this.address = address;
+	}
+
+
+	@Override
+	public void request(String path, byte[] body, boolean keepAlive) throws IOException {
+		if(this.socket == null){
+			this.socket = new Socket();
+			this.socket.setTcpNoDelay(true);
+			this.socket.connect(this.address, 5000);
+			this.socket.setSoTimeout(30000);
+			this.in = new BufferedInputStream(this.socket.getInputStream(), 16384);
+			this.out = new BufferedOutputStream(this.socket.getOutputStream(), 16384);
+		}
+
+		StringBuilder head = new StringBuilder(128);
+		head.append(body.length > 0 ? "POST " : "GET ").append(path).append(" HTTP/1.1\r\nhost: bench\r\n");
+		if(body.length > 0)
+			head.append("content-length: ").append(body.length).append("\r\n");
+		if(!keepAlive)
+			head.append("connection: close\r\n");
+		head.append("\r\n");
+		this.out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+		this.out.write(body);
+		this.out.flush();
+
+		String statusLine = this.readLine();
+		if(!statusLine.startsWith("HTTP/1.1 200 "))
+			throw new IOException("Unexpected response status: " + statusLine);
+		long contentLength = -1;
+		boolean chunked = false;
+		boolean close = !keepAlive;
+		String line;
+		while(!(line = this.readLine()).isEmpty()){
+			int sep = line.indexOf(':');
+			if(sep < 0)
+				continue;
+			String name = line.substring(0, sep).trim().toLowerCase();
+			String value = line.substring(sep + 1).trim().toLowerCase();
+			if(name.equals("content-length"))
+				contentLength = Long.parseLong(value);
+			else if(name.equals("transfer-encoding"))
+				chunked = value.endsWith("chunked");
+			else if(name.equals("connection") && value.equals("close"))
+				close = true;
+		}
+		if(chunked){
+			long size;
+			while((size = Long.parseLong(this.readLine().split(";")[0].trim(), 16)) > 0){
+				this.skip(size);
+				this.readLine();
+			}
+			while(!this.readLine().isEmpty());
+		}else if(contentLength >= 0)
+			this.skip(contentLength);
+		else
+			close = true;
+
+		if(close)
+			this.close();
+	}
+
+	@Override
+	public void close(){
+		if(this.socket == null)
+			return;
+		try{
+			this.socket.close();
+		}catch(IOException e){
+			// ignore
+		}
+		this.socket = null;
+	}
+
+
+	private String readLine() throws IOException {
+		this.lineBuf.setLength(0);
+		int b;
+		while((b = this.in.read()) != '\n'){
+			if(b < 0)
+				throw new EOFException("Connection closed");
+			if(b != '\r')
+				this.lineBuf.append((char) b);
+		}
+		return this.lineBuf.toString();
+	}
+
+	private void skip(long n) throws IOException {
+		while(n > 0){
+			int r = this.in.read(this.skipBuf, 0, (int) Math.min(n, this.skipBuf.length));
+			if(r < 0)
+				throw new EOFException("Connection closed");
+			n -= r;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * A {@link LoadClient} sending HTTP/2 requests over TLS using a shared {@link HttpClient}. Multiple {@code HTTP2LoadClient}s using the same {@code HttpClient}
+ * multiplex their requests over the same connection.
+ *
+ * @since 3.12.1
+ */
+public class HTTP2LoadClient implements LoadClient {
+
+	private final HttpClient client;
+	private final String baseUri;
+
+	/**
+	 * Creates a new {@code HTTP2LoadClient}.
+	 *
+	 * @param client The {@code HttpClient}, created using {@link #createHttpClient(java.util.concurrent.Executor)}
+	 * @param host The host name or address of the proxy
+	 * @param port The TLS port of the proxy
+	 */
+	public HTTP2LoadClient(HttpClient client, String host, int port){
+		this.client = client;
+		this.baseUri = "https://" + host + ":" + port;
+	}
+
+
+	@Override
+	public void request(String path, byte[] body, boolean keepAlive) throws IOException {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(this.baseUri + path));
+		if(body.length > 0)
+			builder.POST(HttpRequest.BodyPublishers.ofByteArray(body));
+		else
+			builder.GET();
+		HttpResponse<Void> response;
+		try{
+			response = this.client.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		}
+		if(response.version() != HttpClient.Version.HTTP_2)
+			throw new IOException("HTTP/2 was not negotiated");
+		if(response.statusCode() != 200)
+			throw new IOException("Unexpected response status: " + response.statusCode());
+	}
+
+	@Override
+	public void close(){
+	}
+
+
+	/**
+	 * Creates a new {@code HttpClient} for HTTP/2 requests, which trusts all server certificates.
+	 *
+	 * @param executor The executor for asynchronous tasks of the client
+	 * @return The new {@code HttpClient}
+	 * @throws GeneralSecurityException If the TLS context could not be created
+	 */
+	public static HttpClient createHttpClient(java.util.concurrent.Executor executor) throws GeneralSecurityException {
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, new TrustManager[] { new X509TrustManager(){
+
+			@Override
+			public void checkClientTrusted(X509Certificate[] chain, String authType){
+			}
+
+			@Override
+			public void checkServerTrusted(X509Certificate[] chain, String authType){
+			}
+
+			@Override
+			public X509Certificate[] getAcceptedIssuers(){
+				return new X509Certificate[0];
+			}
+		} }, null);
+		return HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).sslContext(sslContext).executor(executor).build();
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A client used by a single load generating thread of {@link ProxyBenchmark} to send requests to the proxy.
+ *
+ * @since 3.12.1
+ */
+public interface LoadClient extends Closeable {
+
+	/**
+	 * Sends a request and waits until the complete response was received.
+	 *
+	 * @param path The request path
+	 * @param body The request body. If empty, a {@code GET} request is sent, otherwise a {@code POST} request
+	 * @param keepAlive Whether the connection should be reused for the next request. Ignored by clients using multiplexed connections
+	 * @throws IOException If an IO error occurs or the response status is not 200
+	 */
+	public void request(String path, byte[] body, boolean keepAlive) throws IOException;
+
+	/**
+	 * Closes the current connection of this client, if any. A new connection is created on the next request.
+	 */
+	@Override
+	public void close();
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.omegazero.common.runtime.ApplicationWrapper;
+import org.omegazero.proxy.core.Proxy;
+import org.omegazero.proxy.core.ProxyMain;
+import org.omegazero.proxy.core.State;
+import org.omegazero.proxy.util.LatencyHistogram;
+
+/**
+ * End-to-end benchmark of the proxy.
+ * <p>
+ * This class starts a {@link Proxy} instance in the current JVM with the plugins in the configured plugin directory, which must include the <i>http1</i>, <i>http2</i>
+ * and <i>bench</i> ({@link BenchPlugin}) plugins. All requests are served by a {@link org.omegazero.proxy.net.LoopbackUpstreamServer}, so that the results are not
+ * affected by a real upstream server. A configurable number of threads then send requests to the proxy in a closed loop, and the throughput, latency distribution and
+ * allocation rate of the proxy are reported. See {@code .docs/bench.md} for a list of options.
+ *
+ * @since 3.12.1
+ */
+public class ProxyBenchmark {
+
+	private static final String THREAD_PREFIX = "bench-";
+	// latencies are reported with a relative error of less than 1%
+	private static final int HISTOGRAM_SUB_BUCKET_BITS = 7;
+
+	private final Map<String, String> options;
+
+	private final int durationSec;
+	private final int warmupSec;
+	private final int concurrency;
+	private final double h2Ratio;
+	private final double keepAliveRatio;
+	private final int[] requestBodySizes;
+	private final int[] responseSizes;
+	private final int h2Connections;
+
+	private volatile boolean running = true;
+	private volatile boolean measuring = false;
+	private final AtomicLong errors = new AtomicLong();
+
+	private ProxyBenchmark(Map<String, String> options){
+		this.options = options;
+		this.durationSec = Integer.parseInt(this.opt("duration", "30"));
+		this.warmupSec = Integer.parseInt(this.opt("warmup", "5"));
+		this.concurrency = Integer.parseInt(this.opt("concurrency", "64"));
+		this.h2Ratio = Double.parseDouble(this.opt("h2Ratio", "0"));
+		this.keepAliveRatio = Double.parseDouble(this.opt("keepAliveRatio", "1"));
+		this.requestBodySizes = parseIntList(this.opt("requestBodySizes", "0"));
+		this.responseSizes = parseIntList(this.opt("responseSizes", "1024"));
+		this.h2Connections = Integer.parseInt(this.opt("h2Connections", "1"));
+		if(this.h2Ratio > 0 && (this.opt("tlsKey", null) == null || this.opt("tlsCert", null) == null))
+			throw new IllegalArgumentException("HTTP/2 requests require a TLS key and certificate (options 'tlsKey' and 'tlsCert')");
+	}
+
+
+	private String opt(String key, String def){
+		return this.options.getOrDefault(key, def);
+	}
+
+	private String createProxyConfig(int port, int tlsPort){
+		JSONObject config = new JSONObject();
+		config.put("bindAddresses", new JSONArray().put("127.0.0.1"));
+		config.put("portsPlain", new JSONArray().put(port));
+		JSONArray portsTls = new JSONArray();
+		if(tlsPort > 0){
+			portsTls.put(tlsPort);
+			JSONObject tlsAuth = new JSONObject();
+			tlsAuth.put("key", this.opt("tlsKey", null));
+			tlsAuth.put("cert", this.opt("tlsCert", null));
+			config.put("tlsAuth", tlsAuth);
+		}
+		config.put("portsTls", portsTls);
+		JSONObject engineConfig = new JSONObject();
+		engineConfig.put("enableHeaders", Boolean.parseBoolean(this.opt("enableHeaders", "true")));
+		engineConfig.put("disableDefaultRequestLog", true);
+		config.put("defaultEngineConfig", engineConfig);
+		return config.toString();
+	}
+
+	private void startProxy(int port, int tlsPort) throws IOException {
+		ProxyMain.main(new String[] { "--config", this.createProxyConfig(port, tlsPort), "--pluginDir", this.opt("pluginDir", "bin/bench-plugins"), "--logFile", "null",
+				"--logLevel", this.opt("logLevel", "warn") });
+		long deadline = System.currentTimeMillis() + 30000;
+		while(Proxy.getInstance() == null || Proxy.getInstance().getState() != State.RUNNING){
+			if(System.currentTimeMillis() > deadline || (Proxy.getInstance() != null && Proxy.getInstance().getState().value() > State.RUNNING.value()))
+				throw new IOException("Proxy failed to start");
+			try{
+				Thread.sleep(50);
+			}catch(InterruptedException e){
+				throw new IOException(e);
+			}
+		}
+		if(!BenchPlugin.isLoaded())
+			throw new IOException("The 'bench' plugin is not loaded, check the plugin directory");
+		// the proxy renames the thread it was started in
+		Thread.currentThread().setName(THREAD_PREFIX + "main");
+	}
+
+	private void run() throws Exception {
+		int port = freePort();
+		int tlsPort = this.h2Ratio > 0 ? freePort() : 0;
+		this.startProxy(port, tlsPort);
+
+		AtomicInteger httpClientThreadCounter = new AtomicInteger();
+		ExecutorService httpClientExecutor = Executors.newCachedThreadPool((r) -> {
+			Thread t = new Thread(r, THREAD_PREFIX + "httpclient-" + httpClientThreadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		HttpClient[] httpClients = new HttpClient[Math.max(this.h2Connections, 1)];
+		if(tlsPort > 0){
+			for(int i = 0; i < httpClients.length; i++)
+				httpClients[i] = HTTP2LoadClient.createHttpClient(httpClientExecutor);
+		}
+
+		int h2Workers = (int) Math.round(this.concurrency * this.h2Ratio);
+		List<Thread> threads = new ArrayList<>();
+		List<LatencyHistogram> histograms = new ArrayList<>();
+		InetSocketAddress plainAddress = new InetSocketAddress("127.0.0.1", port);
+		for(int i = 0; i < this.concurrency; i++){
+			LoadClient client = i < h2Workers ? new HTTP2LoadClient(httpClients[i % httpClients.length], "127.0.0.1", tlsPort) : new HTTP1LoadClient(plainAddress);
+			LatencyHistogram histogram = new LatencyHistogram(HISTOGRAM_SUB_BUCKET_BITS, 0);
+			histograms.add(histogram);
+			Thread t = new Thread(() -> this.runWorker(client, histogram), THREAD_PREFIX + "client-" + i);
+			t.setDaemon(true);
+			threads.add(t);
+		}
+
+		System.out.println("Warming up for " + this.warmupSec + "s with " + this.concurrency + " connections (" + h2Workers + " HTTP/2)");
+		for(Thread t : threads)
+			t.start();
+		Thread.sleep(this.warmupSec * 1000L);
+
+		System.out.println("Measuring for " + this.durationSec + "s");
+		long errorsStart = this.errors.get();
+		Map<Long, Long> allocStart = proxyThreadAllocations();
+		long start = System.nanoTime();
+		this.measuring = true;
+		Thread.sleep(this.durationSec * 1000L);
+		this.measuring = false;
+		long end = System.nanoTime();
+		Map<Long, Long> allocEnd = proxyThreadAllocations();
+		long errorCount = this.errors.get() - errorsStart;
+
+		this.running = false;
+		for(Thread t : threads)
+			t.join(35000);
+		httpClientExecutor.shutdownNow();
+
+		LatencyHistogram total = new LatencyHistogram(HISTOGRAM_SUB_BUCKET_BITS, 0);
+		for(LatencyHistogram h : histograms)
+			total.add(h);
+		long allocated = 0;
+		for(Map.Entry<Long, Long> e : allocEnd.entrySet())
+			allocated += e.getValue() - allocStart.getOrDefault(e.getKey(), 0L);
+
+		double seconds = (end - start) / 1e9;
+		long count = total.getRecordedCount();
+		System.out.println();
+		System.out.printf("requests        %d%n", count);
+		System.out.printf("errors          %d%n", errorCount);
+		System.out.printf("throughput      %.1f req/s%n", count / seconds);
+		System.out.printf("latency mean    %.3f ms%n", total.getMean() / 1e6);
+		System.out.printf("latency p50     %.3f ms%n", total.getPercentile(50) / 1e6);
+		System.out.printf("latency p99     %.3f ms%n", total.getPercentile(99) / 1e6);
+		System.out.printf("latency p99.9   %.3f ms%n", total.getPercentile(99.9) / 1e6);
+		System.out.printf("latency max     %.3f ms%n", total.getMax() / 1e6);
+		if(allocated > 0 && count > 0)
+			System.out.printf("allocation      %d B/req (%.1f MB/s)%n", allocated / count, allocated / seconds / 1e6);
+		else
+			System.out.println("allocation      (not available)");
+	}
+
+	private void runWorker(LoadClient client, LatencyHistogram histogram){
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Map<Integer, byte[]> bodies = new HashMap<>();
+		while(this.running){
+			int responseSize = this.responseSizes[random.nextInt(this.responseSizes.length)];
+			byte[] body = bodies.computeIfAbsent(this.requestBodySizes[random.nextInt(this.requestBodySizes.length)], byte[]::new);
+			boolean keepAlive = random.nextDouble() < this.keepAliveRatio;
+			long t0 = System.nanoTime();
+			try{
+				client.request("/bench/" + responseSize, body, keepAlive);
+				long t = System.nanoTime() - t0;
+				if(this.measuring)
+					histogram.record(t);
+			}catch(IOException e){
+				this.errors.incrementAndGet();
+				client.close();
+			}
+		}
+		client.close();
+	}
+
+
+	/**
+	 * Returns the number of bytes allocated by each live thread not created by this benchmark.
+	 */
+	private static Map<Long, Long> proxyThreadAllocations(){
+		Map<Long, Long> map = new HashMap<>();
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+			return map;
+		com.sun.management.ThreadMXBean sbean = (com.sun.management.ThreadMXBean) bean;
+		if(!sbean.isThreadAllocatedMemorySupported() || !sbean.isThreadAllocatedMemoryEnabled())
+			return map;
+		long[] ids = sbean.getAllThreadIds();
+		java.lang.management.ThreadInfo[] infos = sbean.getThreadInfo(ids);
+		long[] bytes = sbean.getThreadAllocatedBytes(ids);
+		for(int i = 0; i < ids.length; i++){
+			if(infos[i] == null || bytes[i] < 0 || infos[i].getThreadName().startsWith(THREAD_PREFIX) || infos[i].getThreadName().startsWith("HttpClient-"))
+				continue;
+			map.put(ids[i], bytes[i]);
+		}
+		return map;
+	}
+
+	private static int freePort() throws IOException {
+		try(ServerSocket s = new ServerSocket(0)){
+			return s.getLocalPort();
+		}
+	}
+
+	private static int[] parseIntList(String str){
+		String[] parts = str.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for(int i = 0; i < args.length; i++){
+			if(!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Invalid argument: " + args[i]);
+			options.put(args[i].substring(2), args[++i]);
+		}
+		// the proxy is accessed by address, which never matches the name in the certificate
+		System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+
+		int status = 0;
+		try{
+			new ProxyBenchmark(options).run();
+		}catch(Exception e){
+			e.printStackTrace();
+			status = 1;
+		}finally{
+			ApplicationWrapper.shutdown();
+		}
+		System.exit(status);
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench.micro;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal microbenchmark runner.
+ * <p>
+ * Each benchmark is an {@link Operation} which is called repeatedly in a loop by the thread calling {@link #run()}. For every benchmark, a number of warmup iterations is
+ * run first, followed by the measurement iterations, each of which runs the operation for a fixed amount of time. The mean time per operation, its standard deviation
+ * over all measurement iterations and the number of bytes allocated per operation are then printed.
+ * <p>
+ * The return value of every operation is consumed such that the JIT compiler cannot eliminate the operation as dead code. Benchmarks may also be run while additional
+ * threads run the same operation concurrently, to measure the effect of contention on shared state.
+ *
+ * @since 3.12.1
+ */
+public class MicroBenchmarkRunner {
+
+	private final List<Benchmark> benchmarks = new ArrayList<>();
+
+	private final int warmupIterations;
+	private final int iterations;
+	private final long iterationTimeNs;
+	private final Pattern filter;
+
+	private volatile Object sentinel = new Object();
+	private int sinkHits = 0;
+
+	private volatile boolean backgroundRunning;
+
+	/**
+	 * Creates a new {@code MicroBenchmarkRunner}.
+	 *
+	 * @param warmupIterations The number of warmup iterations per benchmark
+	 * @param iterations The number of measurement iterations per benchmark
+	 * @param iterationTimeMs The duration of each iteration in milliseconds
+	 * @param filter A regular expression a benchmark name must contain to be run, or {@code null} to run all benchmarks
+	 */
+	public MicroBenchmarkRunner(int warmupIterations, int iterations, int iterationTimeMs, String filter){
+		if(iterations <= 0 || iterationTimeMs <= 0)
+			throw new IllegalArgumentException("Number of iterations and iteration time must be positive");
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationTimeNs = iterationTimeMs * 1000000L;
+		this.filter = filter != null ? Pattern.compile(filter) : null;
+	}
+
+
+	/**
+	 * Adds a benchmark.
+	 *
+	 * @param name The name of the benchmark
+	 * @param op The operation to measure
+	 */
+	public void add(String name, Operation op){
+		this.add(name, 1, op);
+	}
+
+	/**
+	 * Adds a benchmark which runs the operation in the given number of threads concurrently. The time per operation is only measured in the thread calling
+	 * {@link #run()}, so the operation must be thread-safe if <b>threads</b> is greater than 1.
+	 *
+	 * @param name The name of the benchmark
+	 * @param threads The total number of threads running the operation
+	 * @param op The operation to measure
+	 */
+	public void add(String name, int threads, Operation op){
+		if(threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		if(this.filter == null || this.filter.matcher(name).find())
+			this.benchmarks.add(new Benchmark(threads > 1 ? name + " (threads=" + threads + ")" : name, threads, op));
+	}
+
+	/**
+	 * Runs all added benchmarks and prints the results to {@code System.out}.
+	 *
+	 * @throws Exception If an operation throws an exception
+	 */
+	public void run() throws Exception {
+		int nameLen = 9;
+		for(Benchmark b : this.benchmarks)
+			nameLen = Math.max(nameLen, b.name.length());
+		String format = "%-" + nameLen + "s  %12s  %10s  %10s%n";
+		System.out.println("Running " + this.benchmarks.size() + " benchmarks (" + this.warmupIterations + " warmup and " + this.iterations + " measurement iterations of "
+				+ (this.iterationTimeNs / 1000000) + "ms each)");
+		System.out.printf(format, "Benchmark", "ns/op", "error", "B/op");
+		for(Benchmark b : this.benchmarks){
+			Result r = this.runBenchmark(b);
+			System.out.printf(format, b.name, String.format("%.2f", r.mean), String.format("+- %.2f", r.stddev), r.allocated >= 0 ? String.format("%.1f", r.allocated) : "-");
+		}
+	}
+
+
+	private Result runBenchmark(Benchmark b) throws Exception {
+		List<Thread> background = new ArrayList<>();
+		this.backgroundRunning = true;
+		for(int i = 1; i < b.threads; i++){
+			Thread t = new Thread(() -> {
+				try{
+					while(this.backgroundRunning)
+						this.consume(b.op.run());
+				}catch(Exception e){
+					throw new RuntimeException(e);
+				}
+			}, "bench-micro-" + i);
+			t.setDaemon(true);
+			t.start();
+			background.add(t);
+		}
+		try{
+			for(int i = 0; i < this.warmupIterations; i++)
+				this.runIteration(b.op);
+			double[] times = new double[this.iterations];
+			long totalOps = 0;
+			long alloc0 = currentThreadAllocatedBytes();
+			for(int i = 0; i < this.iterations; i++){
+				long[] res = this.runIteration(b.op);
+				times[i] = (double) res[1] / res[0];
+				totalOps += res[0];
+			}
+			long alloc1 = currentThreadAllocatedBytes();
+
+			double mean = 0;
+			for(double t : times)
+				mean += t;
+			mean /= times.length;
+			double var = 0;
+			for(double t : times)
+				var += (t - mean) * (t - mean);
+			double stddev = times.length > 1 ? Math.sqrt(var / (times.length - 1)) : 0;
+			return new Result(mean, stddev, alloc0 >= 0 && alloc1 >= 0 ? (double) (alloc1 - alloc0) / totalOps : -1);
+		}finally{
+			this.backgroundRunning = false;
+			for(Thread t : background)
+				t.join();
+		}
+	}
+
+	/**
+	 * Runs the operation for the configured iteration time. The time is only checked after a batch of operations, which grows until a batch takes at least 1/100th of the
+	 * iteration time, to keep the overhead of reading the clock low.
+	 *
+	 * @return An array containing the number of operations and the elapsed time in nanoseconds
+	 */
+	private long[] runIteration(Operation op) throws Exception {
+		long batch = 1;
+		long ops = 0;
+		long start = System.nanoTime();
+		long now = start;
+		while(now - start < this.iterationTimeNs){
+			long batchStart = now;
+			for(long i = 0; i < batch; i++)
+				this.consume(op.run());
+			ops += batch;
+			now = System.nanoTime();
+			if(now - batchStart < this.iterationTimeNs / 100)
+				batch <<= 1;
+		}
+		return new long[] { ops, now - start };
+	}
+
+	private void consume(Object result){
+		// the volatile read prevents the JIT compiler from proving that this comparison is always false
+		if(result == this.sentinel)
+			this.sinkHits++;
+	}
+
+
+	@SuppressWarnings("deprecation") // Thread.getId() is deprecated since Java 19, but its replacement does not exist in Java 11
+	private static long currentThreadAllocatedBytes(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean sbean = (com.sun.management.ThreadMXBean) bean;
+		if(!sbean.isThreadAllocatedMemorySupported() || !sbean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return sbean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+
+	/**
+	 * An operation to benchmark.
+	 */
+	@FunctionalInterface
+	public static interface Operation {
+
+		/**
+		 * Runs the operation once.
+		 *
+		 * @return The result of the operation, which is consumed by the runner. May be {@code null}
+		 * @throws Exception If an error occurs
+		 */
+		public Object run() throws Exception;
+	}
+
+	private static class Benchmark {
+
+		private final String name;
+		private final int threads;
+		private final Operation op;
+
+		public Benchmark(String name, int threads, Operation op){
+			this.name = name;
+			this.threads = threads;
+			this.op = op;
+		}
+	}
+
+	private static class Result {
+
+		private final double mean;
+		private final double stddev;
+		private final double allocated;
+
+		public Result(double mean, double stddev, double allocated){
+			this.mean = mean;
+			this.stddev = stddev;
+			this.allocated = allocated;
+		}
+	}
+}
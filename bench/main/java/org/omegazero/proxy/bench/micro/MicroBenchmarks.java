@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.bench.micro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.omegazero.net.socket.SocketConnection;
+import org.omegazero.proxy.core.CoreMicroBenchmarks;
+import org.omegazero.proxy.core.Proxy;
+import org.omegazero.proxy.core.ProxyRegistry;
+import org.omegazero.proxy.http.HTTPCommon;
+import org.omegazero.proxy.http.HTTPErrdoc;
+import org.omegazero.proxy.util.FeatureSet;
+import org.omegazero.proxy.util.ProxyUtil;
+
+/**
+ * Microbenchmarks of utility methods called for every request or TLS handshake, run using a {@link MicroBenchmarkRunner}. See {@code .docs/bench.md} for a list of
+ * options.
+ * <p>
+ * The benchmarks create a {@link Proxy} instance which is never initialized, and must therefore run in a separate JVM.
+ *
+ * @since 3.12.1
+ */
+public final class MicroBenchmarks {
+
+	private static final String ERRDOC_LOCATION = "/org/omegazero/proxy/resources/errdoc.html";
+
+	private MicroBenchmarks(){
+	}
+
+
+	private static void addBenchmarks(MicroBenchmarkRunner runner, Map<String, String> options) throws Exception {
+		runner.add("ProxyUtil.hostMatches[exact]", () -> ProxyUtil.hostMatches("www.example.com", "www.example.com"));
+		runner.add("ProxyUtil.hostMatches[wildcard]", () -> ProxyUtil.hostMatches("*.example.com", "static.cdn.example.com"));
+		runner.add("ProxyUtil.hostMatches[mismatch]", () -> ProxyUtil.hostMatches("*.example.com", "static.cdn.example.org"));
+
+		SocketConnection connection = createConnection(new InetSocketAddress(InetAddress.getByName("192.0.2.10"), 51234));
+		InetAddress addr4 = InetAddress.getByName("192.0.2.10");
+		InetAddress addr6 = InetAddress.getByName("2001:db8::10");
+		runner.add("HTTPCommon.requestId", () -> HTTPCommon.requestId(connection));
+		runner.add("HTTPCommon.hstrFromInetAddress[IPv4]", () -> HTTPCommon.hstrFromInetAddress(addr4));
+		runner.add("HTTPCommon.hstrFromInetAddress[IPv6]", () -> HTTPCommon.hstrFromInetAddress(addr6));
+		runner.add("HTTPCommon.dateString", HTTPCommon::dateString);
+
+		HTTPErrdoc htmlErrdoc = HTTPErrdoc.fromString(readResource(ERRDOC_LOCATION));
+		htmlErrdoc.setServername("omz-proxy-bench");
+		HTTPErrdoc jsonErrdoc = HTTPErrdoc.fromString(
+				"{\"status\":${status},\"title\":\"${title}\",\"message\":\"${message}\",\"requestId\":\"${requestid}\",\"client\":\"${clientaddress}\"}", "application/json");
+		String requestId = HTTPCommon.requestId(connection);
+		runner.add("HTTPErrdoc.generate[html]", () -> htmlErrdoc.generate(502, "Bad Gateway", HTTPCommon.MSG_UPSTREAM_CONNECT_FAILED, requestId, "192.0.2.10"));
+		runner.add("HTTPErrdoc.generate[json]", () -> jsonErrdoc.generate(502, "Bad Gateway", HTTPCommon.MSG_UPSTREAM_CONNECT_FAILED, requestId, "192.0.2.10"));
+
+		Proxy proxy = CoreMicroBenchmarks.createProxy();
+		ProxyRegistry registry = proxy.getRegistry();
+		registry.setErrdoc("text/html", htmlErrdoc);
+		registry.setErrdoc("application/json", jsonErrdoc);
+		registry.setErrdoc("text/plain", HTTPErrdoc.fromString("${status} ${title}: ${message}", "text/plain"));
+		runner.add("ProxyRegistry.getErrdocForAccept[browser]",
+				() -> registry.getErrdocForAccept("text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8"));
+		runner.add("ProxyRegistry.getErrdocForAccept[api]", () -> registry.getErrdocForAccept("application/json"));
+		runner.add("ProxyRegistry.getErrdocForAccept[none]", () -> registry.getErrdocForAccept(null));
+
+		FeatureSet featureSet = new FeatureSet();
+		featureSet.addList("tcp.server,tls.server,tcp.client,tls.client,http.engine.*,proxy.plugin.*");
+		runner.add("FeatureSet.containsFeature[exact]", () -> featureSet.containsFeature("tls.client"));
+		runner.add("FeatureSet.containsFeature[wildcard]", () -> featureSet.containsFeature("http.engine.http2.push"));
+		runner.add("FeatureSet.containsFeature[missing]", () -> featureSet.containsFeature("quic.server.experimental"));
+
+		CoreMicroBenchmarks.register(runner, proxy, parseIntList(options.getOrDefault("sniNames", "10,1000,10000")),
+				parseIntList(options.getOrDefault("subscribers", "0,1,8,64")), connection);
+	}
+
+	/**
+	 * Creates a {@link SocketConnection} which only returns the given remote address.
+	 */
+	private static SocketConnection createConnection(InetSocketAddress remoteAddress){
+		return (SocketConnection) java.lang.reflect.Proxy.newProxyInstance(SocketConnection.class.getClassLoader(), new Class<?>[] { SocketConnection.class },
+				(proxy, method, args) -> {
+					switch(method.getName()){
+						case "getRemoteAddress":
+						case "getApparentRemoteAddress":
+							return remoteAddress;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						case "toString":
+							return "BenchConnection[" + remoteAddress + "]";
+						default:
+							if(method.getReturnType() == boolean.class)
+								return false;
+							else if(method.getReturnType() == long.class)
+								return 0L;
+							return null;
+					}
+				});
+	}
+
+	private static String readResource(String name) throws IOException {
+		try(InputStream in = MicroBenchmarks.class.getResourceAsStream(name)){
+			if(in == null)
+				throw new IOException("Resource " + name + " not found");
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static int[] parseIntList(String str){
+		String[] parts = str.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for(int i = 0; i < args.length; i++){
+			if(!args[i].startsWith("--") || i + 1 >= args.length)
+				throw new IllegalArgumentException("Invalid argument: " + args[i]);
+			options.put(args[i].substring(2), args[++i]);
+		}
+
+		MicroBenchmarkRunner runner = new MicroBenchmarkRunner(Integer.parseInt(options.getOrDefault("warmupIterations", "5")),
+				Integer.parseInt(options.getOrDefault("iterations", "10")), Integer.parseInt(options.getOrDefault("iterationTime", "1000")), options.get("filter"));
+		addBenchmarks(runner, options);
+		runner.run();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains the end-to-end benchmark harness of the proxy.
+ */
+package org.omegazero.proxy.bench;
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.core;
+
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+
+import org.omegazero.common.eventbus.EventBus;
+import org.omegazero.common.eventbus.EventBusSubscriber;
+import org.omegazero.common.eventbus.SubscribeEvent;
+import org.omegazero.net.socket.SocketConnection;
+import org.omegazero.proxy.bench.micro.MicroBenchmarkRunner;
+import org.omegazero.proxy.config.ProxyConfiguration;
+
+/**
+ * Microbenchmarks of classes in {@code org.omegazero.proxy.core} which require package access.
+ *
+ * @since 3.12.1
+ */
+public final class CoreMicroBenchmarks {
+
+	private CoreMicroBenchmarks(){
+	}
+
+
+	/**
+	 * Creates the {@code Proxy} instance to pass to {@link #register(MicroBenchmarkRunner, Proxy, int[], int[], SocketConnection)}. The instance is not initialized and has
+	 * an empty configuration.
+	 *
+	 * @return The {@code Proxy} instance
+	 * @throws Exception If the configuration could not be loaded
+	 */
+	public static Proxy createProxy() throws Exception {
+		ProxyConfiguration config = new ProxyConfiguration("{}");
+		config.load();
+		return new Proxy(config, new EventBus());
+	}
+
+	/**
+	 * Adds the benchmarks of this class to the given runner.
+	 *
+	 * @param runner The runner
+	 * @param proxy The {@code Proxy} instance created using {@link #createProxy()}
+	 * @param sniNameCounts The numbers of SNI names in the TLS configuration to run the key manager benchmarks with
+	 * @param subscriberCounts The numbers of event subscribers to run the event benchmarks with
+	 * @param connection The connection passed as an event argument
+	 * @throws Exception If an error occurs during setup
+	 */
+	public static void register(MicroBenchmarkRunner runner, Proxy proxy, int[] sniNameCounts, int[] subscriberCounts, SocketConnection connection) throws Exception {
+		ProxyConfiguration config = proxy.getConfig();
+
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+		kpg.initialize(256);
+		Map.Entry<PrivateKey, X509Certificate[]> tlsEntry = new AbstractMap.SimpleImmutableEntry<>(kpg.generateKeyPair().getPrivate(), new X509Certificate[0]);
+		for(int count : sniNameCounts){
+			Map<String, Map.Entry<PrivateKey, X509Certificate[]>> tlsAuthData = config.getTlsAuthData();
+			tlsAuthData.clear();
+			for(int i = 0; i < count; i++)
+				tlsAuthData.put("site" + i + ".example.com", tlsEntry);
+			tlsAuthData.put(ProxyConfiguration.TLS_AUTH_DEFAULT_NAME, tlsEntry);
+			ProxyKeyManager km = new ProxyKeyManager(proxy);
+			String name = "site" + (count / 2) + ".example.com";
+			List<SNIServerName> exact = Collections.singletonList(new SNIHostName(name));
+			List<SNIServerName> subdomain = Collections.singletonList(new SNIHostName("www." + name));
+			List<SNIServerName> unknown = Collections.singletonList(new SNIHostName("www.unknown.example.org"));
+			String prefix = "ProxyKeyManager.selectServerAlias[names=" + count + ",";
+			runner.add(prefix + "exact]", () -> km.selectServerAlias(exact, "EC"));
+			runner.add(prefix + "subdomain]", () -> km.selectServerAlias(subdomain, "EC"));
+			runner.add(prefix + "unknown]", () -> km.selectServerAlias(unknown, "EC"));
+			runner.add(prefix + "exact]", 4, () -> km.selectServerAlias(exact, "EC"));
+		}
+
+		for(int count : subscriberCounts){
+			EventBus eventBus = new EventBus();
+			String[] events = new String[] { ProxyEvents.UPSTREAM_CONNECTION.getMethodName() };
+			for(int i = 0; i < count; i++)
+				eventBus.register(new Subscriber(), events);
+			runner.add("ProxyEvents.runEvent[subscribers=" + count + "]", () -> ProxyEvents.runEvent(eventBus, ProxyEvents.UPSTREAM_CONNECTION, connection));
+		}
+	}
+
+
+	@EventBusSubscriber
+	public static class Subscriber {
+
+		private int count;
+
+		@SubscribeEvent
+		public void onUpstreamConnection(SocketConnection connection){
+			this.count++;
+		}
+	}
+}
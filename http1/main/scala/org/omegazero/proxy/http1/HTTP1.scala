@@ -21,7 +21,7 @@ object HTTP1 {
 }
 
 class HTTP1(downstreamConnection: SocketConnection, proxy: Proxy, config: HTTPEngineConfig)
-		extends AbstractHTTPEngine(downstreamConnection, proxy, config, new ProxyHTTP1Server(downstreamConnection, config)) {
+		extends AbstractHTTPEngine(downstreamConnection, proxy, config, new ProxyHTTP1Server(downstreamConnection, config, proxy.getTimingWheel())) {
 
 	this.httpServer.asInstanceOf[ProxyHTTP1Server].onError = this.respondError(_, _, _);
 
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.http1;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.omegazero.http.common.{HTTPMessage, HTTPResponse, InvalidHTTPMessageException};
+
+object HTTP1BodyDecoder {
+
+	private final val MAX_LINE_LENGTH = 8192;
+	private final val MAX_CHUNK_SIZE_DIGITS = 15;
+
+	private final val EMPTY = new Array[Byte](0);
+
+	private final val STATE_FIXED = 0;
+	private final val STATE_UNTIL_CLOSE = 1;
+	private final val STATE_CHUNK_SIZE = 2;
+	private final val STATE_CHUNK_EXT = 3;
+	private final val STATE_CHUNK_DATA = 4;
+	private final val STATE_CHUNK_DATA_END = 5;
+	private final val STATE_TRAILER = 6;
+	private final val STATE_ENDED = 7;
+
+
+	/**
+	 * Returns the given region of <b>data</b>, which is <b>data</b> itself if the region spans the entire array.
+	 */
+	def slice(data: Array[Byte], offset: Int, length: Int): Array[Byte] =
+		if offset == 0 && length == data.length then data else Arrays.copyOfRange(data, offset, offset + length);
+
+	private def parseContentLength(value: String): Long = {
+		if(value.isEmpty() || value.length() > 18)
+			throw new InvalidHTTPMessageException("Invalid Content-Length", true);
+		var n = 0L;
+		for(c <- value){
+			if(c < '0' || c > '9')
+				throw new InvalidHTTPMessageException("Invalid Content-Length", true);
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	private def hexValue(b: Byte): Int = {
+		if(b >= '0' && b <= '9')
+			return b - '0';
+		else if(b >= 'a' && b <= 'f')
+			return b - 'a' + 10;
+		else if(b >= 'A' && b <= 'F')
+			return b - 'A' + 10;
+		else
+			return -1;
+	}
+}
+
+/**
+ * Decodes the body of a HTTP/1 message with a fixed length, chunked transfer encoding, or (for responses) a body delimited by the end of the connection.
+ * <p>
+ * Received data is passed to this decoder as a region of the received byte array, which allows the caller to pass the data following a message header without copying it
+ * first. Data is passed to <b>onData</b> without copying if the body data spans an entire received array, otherwise only the body data is copied once. The end of the
+ * body is signaled by calling <b>onData</b> with an empty array.
+ *
+ * @since 3.12.1
+ */
+class HTTP1BodyDecoder(msg: HTTPMessage, private val onData: Consumer[Array[Byte]]) {
+
+	private var state = HTTP1BodyDecoder.STATE_FIXED;
+	private var remaining = 0L;
+	private var lineLength = 0;
+
+	if(msg.isInstanceOf[HTTPResponse] && !msg.asInstanceOf[HTTPResponse].hasResponseBody(msg.asInstanceOf[HTTPResponse].getOther())){
+		this.remaining = 0;
+	}else if(msg.isChunkedTransfer()){
+		this.state = HTTP1BodyDecoder.STATE_CHUNK_SIZE;
+	}else{
+		var contentLength = msg.getHeader("content-length");
+		if(contentLength != null)
+			this.remaining = HTTP1BodyDecoder.parseContentLength(contentLength);
+		else if(msg.isInstanceOf[HTTPResponse])
+			this.state = HTTP1BodyDecoder.STATE_UNTIL_CLOSE;
+	}
+
+
+	/**
+	 * Processes the given region of a received byte array.
+	 *
+	 * @param data The received data
+	 * @param offset The index in <b>data</b> where the body data starts
+	 * @param length The number of bytes to process
+	 * @return The number of bytes belonging to the message body. If this is less than <b>length</b>, the body has ended and the remaining bytes belong to the next message
+	 * @throws InvalidHTTPMessageException If the chunked body is malformed
+	 */
+	def addData(data: Array[Byte], offset: Int, length: Int): Int = {
+		val end = offset + length;
+		var i = offset;
+		while(this.state != HTTP1BodyDecoder.STATE_ENDED){
+			if(this.state == HTTP1BodyDecoder.STATE_FIXED || this.state == HTTP1BodyDecoder.STATE_CHUNK_DATA){
+				var n = Math.min(this.remaining, end - i).toInt;
+				if(n > 0){
+					this.onData.accept(HTTP1BodyDecoder.slice(data, i, n));
+					i += n;
+					this.remaining -= n;
+				}
+				if(this.remaining > 0)
+					return i - offset;
+				if(this.state == HTTP1BodyDecoder.STATE_FIXED)
+					this.finish();
+				else
+					this.state = HTTP1BodyDecoder.STATE_CHUNK_DATA_END;
+			}else if(this.state == HTTP1BodyDecoder.STATE_UNTIL_CLOSE){
+				if(i < end)
+					this.onData.accept(HTTP1BodyDecoder.slice(data, i, end - i));
+				return length;
+			}else{
+				if(i >= end)
+					return i - offset;
+				this.processLineByte(data(i));
+				i += 1;
+			}
+		}
+		return i - offset;
+	}
+
+	private def processLineByte(b: Byte): Unit = {
+		this.state match {
+			case HTTP1BodyDecoder.STATE_CHUNK_SIZE => {
+				var v = HTTP1BodyDecoder.hexValue(b);
+				if(v >= 0){
+					this.lineLength += 1;
+					if(this.lineLength > HTTP1BodyDecoder.MAX_CHUNK_SIZE_DIGITS)
+						throw new InvalidHTTPMessageException("Chunk size too large", true);
+					this.remaining = (this.remaining << 4) | v;
+				}else if(this.lineLength == 0){
+					throw new InvalidHTTPMessageException("Invalid chunk size", true);
+				}else if(b == '\n'){
+					this.chunkSizeComplete();
+				}else if(b == ';' || b == ' ' || b == '\t' || b == '\r'){
+					this.state = HTTP1BodyDecoder.STATE_CHUNK_EXT;
+				}else
+					throw new InvalidHTTPMessageException("Invalid chunk size", true);
+			}
+			case HTTP1BodyDecoder.STATE_CHUNK_EXT => {
+				if(b == '\n')
+					this.chunkSizeComplete();
+				else{
+					this.lineLength += 1;
+					if(this.lineLength > HTTP1BodyDecoder.MAX_LINE_LENGTH)
+						throw new InvalidHTTPMessageException("Chunk extension too long", true);
+				}
+			}
+			case HTTP1BodyDecoder.STATE_CHUNK_DATA_END => {
+				if(b == '\n'){
+					this.state = HTTP1BodyDecoder.STATE_CHUNK_SIZE;
+					this.lineLength = 0;
+				}else if(b != '\r')
+					throw new InvalidHTTPMessageException("Missing line terminator after chunk data", true);
+			}
+			case HTTP1BodyDecoder.STATE_TRAILER => {
+				if(b == '\n'){
+					if(this.lineLength == 0)
+						this.finish();
+					this.lineLength = 0;
+				}else if(b != '\r'){
+					this.lineLength += 1;
+					if(this.lineLength > HTTP1BodyDecoder.MAX_LINE_LENGTH)
+						throw new InvalidHTTPMessageException("Trailer line too long", true);
+				}
+			}
+		}
+	}
+
+	private def chunkSizeComplete(): Unit = {
+		this.lineLength = 0;
+		if(this.remaining == 0)
+			this.state = HTTP1BodyDecoder.STATE_TRAILER;
+		else
+			this.state = HTTP1BodyDecoder.STATE_CHUNK_DATA;
+	}
+
+	private def finish(): Unit = {
+		this.state = HTTP1BodyDecoder.STATE_ENDED;
+		this.onData.accept(HTTP1BodyDecoder.EMPTY);
+	}
+
+
+	/**
+	 * Ends the message body, even if not all data was received. If the body has not ended yet, <b>onData</b> is called with an empty array.
+	 */
+	def end(): Unit = {
+		if(this.state != HTTP1BodyDecoder.STATE_ENDED)
+			this.finish();
+	}
+
+	/**
+	 * Returns {@code true} if the end of the message body was reached or {@link #end()} was called.
+	 *
+	 * @return {@code true} if the body has ended
+	 */
+	def hasEnded(): Boolean = this.state == HTTP1BodyDecoder.STATE_ENDED;
+
+	/**
+	 * Returns {@code true} if the message body is delimited by the end of the connection, meaning the body is complete when the connection is closed.
+	 *
+	 * @return {@code true} if the body ends when the connection is closed
+	 */
+	def isDelimitedByClose(): Boolean = this.state == HTTP1BodyDecoder.STATE_UNTIL_CLOSE;
+}
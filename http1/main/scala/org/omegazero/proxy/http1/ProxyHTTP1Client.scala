@@ -7,17 +7,17 @@
 package org.omegazero.proxy.http1;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
 import org.omegazero.common.logging.Logger;
 import org.omegazero.net.socket.SocketConnection;
 import org.omegazero.http.common.{HTTPRequest, HTTPRequestData, HTTPResponse, HTTPResponseData, InvalidHTTPMessageException, MessageStreamClosedException};
-import org.omegazero.http.h1.{HTTP1MessageTransmitter, HTTP1ResponseReceiver, HTTP1Util, MessageBodyDechunker};
+import org.omegazero.http.h1.{HTTP1MessageTransmitter, HTTP1ResponseReceiver, HTTP1Util};
 import org.omegazero.http.netutil.SocketConnectionWritable;
 import org.omegazero.http.util.{AbstractHTTPClientStream, HTTPClient, HTTPClientStream, HTTPServer, WritableSocket};
 import org.omegazero.proxy.config.HTTPEngineConfig;
+import org.omegazero.proxy.http.UpstreamConnectionCloseHandler;
 import org.omegazero.proxy.net.UpstreamServer;
 
 object ProxyHTTP1Client {
@@ -26,10 +26,10 @@ object ProxyHTTP1Client {
 
 	final val EMPTY_CHUNK = Array[Byte]('0', 0xd, 0xa, 0xd, 0xa);
 
-	final val ATTACHMENT_KEY_DECHUNKER = "_impl_dechunker";
+	final val ATTACHMENT_KEY_BODY_DECODER = "_impl_bodyDecoder";
 }
 
-class ProxyHTTP1Client(private val connection: SocketConnection, private val userver: UpstreamServer, private val config: HTTPEngineConfig, server: HTTPServer) extends HTTPClient {
+class ProxyHTTP1Client(private val connection: SocketConnection, private val userver: UpstreamServer, private val config: HTTPEngineConfig, server: HTTPServer) extends HTTPClient with UpstreamConnectionCloseHandler {
 
 	private val logger = ProxyHTTP1Client.logger;
 
@@ -47,6 +47,15 @@ class ProxyHTTP1Client(private val connection: SocketConnection, private val use
 	});
 
 
+	override def connectionClosed(): Unit = {
+		// a response without Content-Length or chunked encoding is complete when the server closes the connection
+		if(this.currentRequestStream != null && this.currentRequestStream.getResponse() != null){
+			var bodyDecoder = this.currentRequestStream.getResponse().getAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_BODY_DECODER).asInstanceOf[HTTP1BodyDecoder];
+			if(bodyDecoder != null && bodyDecoder.isDelimitedByClose())
+				bodyDecoder.end();
+		}
+	}
+
 	override def receive(data: Array[Byte]): Unit = {
 		this.processResponseData(data);
 	}
@@ -75,15 +84,14 @@ class ProxyHTTP1Client(private val connection: SocketConnection, private val use
 
 
 	private def processResponseData(data: Array[Byte]): Unit = {
-		var remainingData = data;
 		if(this.currentRequestStream == null){
-			logger.debug(this.remoteName, " Received unexpected data on connection");
-			this.close();
+			this.receivedUnexpectedData();
 			return;
 		}
 
+		var offset = 0;
 		if(this.currentRequestStream.getResponse() == null){
-			var offset = this.responseReceiver.receive(remainingData, 0);
+			offset = this.responseReceiver.receive(data, 0);
 			if(offset < 0)
 				return;
 
@@ -96,24 +104,30 @@ class ProxyHTTP1Client(private val connection: SocketConnection, private val use
 			}
 
 			response.setOther(this.currentRequestStream.getRequest());
-			var dechunker = new MessageBodyDechunker(response, (resdata) => {
+			var bodyDecoder = new HTTP1BodyDecoder(response, (resdata) => {
 				var last = resdata.length == 0;
 				this.currentRequestStream.callOnResponseData(new HTTPResponseData(response, last, resdata));
 				if(last){
 					this.currentRequestStream.callOnResponseEnded(null);
-					response.setAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_DECHUNKER, null);
+					response.setAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_BODY_DECODER, null);
 					this.currentRequestStream = null;
 					if("close".equals(response.getHeader("connection")))
 						this.connection.close();
 				}
 			});
-			response.setAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_DECHUNKER, dechunker);
+			response.setAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_BODY_DECODER, bodyDecoder);
 
 			this.currentRequestStream.responseReceived(response);
-
-			remainingData = Arrays.copyOfRange(remainingData, offset, remainingData.length);
 		}
-		this.currentRequestStream.getResponse().getAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_DECHUNKER).asInstanceOf[MessageBodyDechunker].addData(remainingData);
+		var bodyDecoder = this.currentRequestStream.getResponse().getAttachment(ProxyHTTP1Client.ATTACHMENT_KEY_BODY_DECODER).asInstanceOf[HTTP1BodyDecoder];
+		var consumed = bodyDecoder.addData(data, offset, data.length - offset);
+		if(offset + consumed < data.length)
+			this.receivedUnexpectedData();
+	}
+
+	private def receivedUnexpectedData(): Unit = {
+		logger.debug(this.remoteName, " Received unexpected data on connection");
+		this.close();
 	}
 
 
@@ -6,21 +6,19 @@
  */
 package org.omegazero.proxy.http1;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.{ArrayDeque, ArrayList, Collection};
 import java.util.function.Consumer;
 
-import org.omegazero.common.event.Tasks;
 import org.omegazero.common.logging.Logger;
 import org.omegazero.net.common.NetCommon;
-import org.omegazero.net.socket.SocketConnection;
+import org.omegazero.net.socket.{AbstractSocketConnection, SocketConnection};
 import org.omegazero.http.common.{HTTPRequest, HTTPRequestData, HTTPResponse, HTTPResponseData, InvalidHTTPMessageException, MessageStreamClosedException};
-import org.omegazero.http.h1.{HTTP1MessageTransmitter, HTTP1RequestReceiver, HTTP1Util, MessageBodyDechunker};
+import org.omegazero.http.h1.{HTTP1MessageTransmitter, HTTP1RequestReceiver, HTTP1Util};
 import org.omegazero.http.netutil.SocketConnectionWritable;
 import org.omegazero.http.util.{AbstractHTTPServerStream, HTTPServer, HTTPServerStream, HTTPStatus, WritableSocket};
 import org.omegazero.proxy.config.HTTPEngineConfig;
 import org.omegazero.proxy.http.HTTPCommon;
+import org.omegazero.proxy.util.TimingWheel;
 
 object ProxyHTTP1Server {
 
@@ -28,29 +26,50 @@ object ProxyHTTP1Server {
 
 	private final val EMPTY_CHUNK = Array[Byte]('0', 0xd, 0xa, 0xd, 0xa);
 
-	private final val ATTACHMENT_KEY_DECHUNKER = "_impl_dechunker";
+	private final val ATTACHMENT_KEY_BODY_DECODER = "_impl_bodyDecoder";
+	private final val ATTACHMENT_KEY_STREAM = "_impl_stream";
 }
 
-class ProxyHTTP1Server(private val connection: SocketConnection, private val config: HTTPEngineConfig) extends HTTPServer {
+/**
+ * HTTP/1.1 server implementation supporting request pipelining.
+ * <p>
+ * Requests sent by the client before the response to a previous request was received are processed in order. By default, a pipelined request is only parsed and
+ * forwarded after the response to the previous request was sent, and the data is held in the meantime, with reading from the connection paused. If the engine option
+ * {@code maxConcurrentPipelinedRequests} is greater than 1, up to that number of requests are forwarded concurrently. Responses which are not next in line are then
+ * buffered until all previous responses were sent, and reading from the upstream server is paused if the buffered data exceeds {@code maxPipelineBufferSize} bytes.
+ */
+class ProxyHTTP1Server(private val connection: SocketConnection, private val config: HTTPEngineConfig, private val timingWheel: TimingWheel) extends HTTPServer {
 
 	private val logger = ProxyHTTP1Server.logger;
 
 	private val connectionWS: WritableSocket = new SocketConnectionWritable(this.connection);
 	private val remoteName = this.connectionWS.getRemoteName();
 
+	private val maxConcurrentRequests = Math.max(this.config.optInt("maxConcurrentPipelinedRequests", 1), 1);
+	private val maxPipelineBufferSize = this.config.optInt("maxPipelineBufferSize", 1048576);
+
 	private var onNewRequest: Consumer[HTTPServerStream] = null;
 	var onError: (HTTPRequest, Int, String) => Unit = null;
 
 	private val transmitter = new HTTP1MessageTransmitter(this.connectionWS);
 	private val requestReceiver = new HTTP1RequestReceiver(this.config.getMaxHeaderSize(), this.connection.isInstanceOf[org.omegazero.net.socket.TLSConnection]);
 
-	private var currentRequestTimeoutRef: Object = null;
-	private var currentRequestStream: IncomingRequestStream = null;
-	private def currentRequestOrNull = if this.currentRequestStream != null then this.currentRequestStream.getRequest() else null;
+	private var currentRequestTimeout: TimingWheel.Timeout = null;
+	// all active request streams in the order the requests were received; the first one is the stream currently sending a response
+	private val requestStreams = new ArrayDeque[IncomingRequestStream]();
+	// the stream of the request currently being received, null while waiting for the next request
+	private var receivingStream: IncomingRequestStream = null;
+	private def receivingRequestOrNull = if this.receivingStream != null then this.receivingStream.getRequest() else null;
+	// received data of pipelined requests which were not processed yet, because the maximum number of concurrent requests is reached
+	private var pendingData: Array[Byte] = null;
+	// set if no more data is read from the client, and the connection is closed after all responses were sent
+	private var inputClosed = false;
+	private var closingResponse: HTTPResponseData = null;
 
 	this.connection.on("writable", () => {
-		if(this.currentRequestStream != null)
-			this.currentRequestStream.callOnWritable();
+		var stream = this.respondingStream;
+		if(stream != null)
+			stream.callOnWritable();
 	});
 
 
@@ -61,13 +80,18 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 			case e: InvalidHTTPMessageException => {
 				if(logger.debug())
 					logger.debug(this.remoteName, " HTTP error: ", if NetCommon.PRINT_STACK_TRACES then e else e.toString());
-				this.onError(this.currentRequestOrNull, HTTPStatus.STATUS_BAD_REQUEST, if e.isMsgUserVisible() then e.getMessage() else HTTPCommon.MSG_BAD_REQUEST);
-				if(this.currentRequestStream != null)
-					this.currentRequestStream.callOnError(e);
+				// the start of the next request cannot be determined reliably anymore
+				this.inputClosed = true;
+				this.pendingData = null;
+				var stream = this.receivingStream;
+				this.onError(this.receivingRequestOrNull, HTTPStatus.STATUS_BAD_REQUEST, if e.isMsgUserVisible() then e.getMessage() else HTTPCommon.MSG_BAD_REQUEST);
+				if(stream != null)
+					stream.callOnError(e);
+				this.closeIfDone();
 			}
 			case e: Exception => {
-				if(this.currentRequestStream != null && !this.currentRequestStream.isClosed()){
-					this.onError(this.currentRequestOrNull, HTTPStatus.STATUS_INTERNAL_SERVER_ERROR, HTTPCommon.MSG_SERVER_ERROR);
+				if(this.receivingStream != null && !this.receivingStream.isClosed()){
+					this.onError(this.receivingRequestOrNull, HTTPStatus.STATUS_INTERNAL_SERVER_ERROR, HTTPCommon.MSG_SERVER_ERROR);
 					logger.error(this.remoteName, " Error processing packet: ", e);
 				}else
 					throw e;
@@ -79,23 +103,29 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 	
 	override def close(): Unit = {
 		this.connection.destroy();
-		if(this.currentRequestStream != null)
-			this.currentRequestStream.close();
+		for(stream <- this.activeStreams())
+			stream.close();
 	}
 
 
 	override def onNewRequest(callback: Consumer[HTTPServerStream]): Unit = this.onNewRequest = callback;
 
-	override def getActiveRequests(): Collection[HTTPServerStream] =
-		if this.currentRequestStream != null then Collections.singleton(this.currentRequestStream) else Collections.emptySet();
+	override def getActiveRequests(): Collection[HTTPServerStream] = new ArrayList[HTTPServerStream](this.activeStreams());
 
 
 	override def respond(request: HTTPRequest, responsedata: HTTPResponseData): Unit = {
 		if(request != null && request.hasResponse())
 			return;
-		if(request != this.currentRequestOrNull)
-			throw new IllegalArgumentException("Can only respond to the current request");
-		Tasks.I.clear(this.currentRequestTimeoutRef);
+		var stream: IncomingRequestStream = null;
+		if(request != null){
+			stream = request.getAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_STREAM).asInstanceOf[IncomingRequestStream];
+			if(stream == null || stream.isClosed())
+				throw new IllegalArgumentException("Can only respond to an active request of this connection");
+		}
+		if(request == null && this.currentRequestTimeout != null){
+			this.currentRequestTimeout.cancel();
+			this.currentRequestTimeout = null;
+		}
 
 		var response = responsedata.getHttpMessage();
 		if(!HTTPCommon.setRequestResponse(request, response))
@@ -112,82 +142,118 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 		var data = HTTPCommon.prepareHTTPResponse(request, response, responsedata.getData());
 		if(request != null){
 			request.synchronized {
-				if(this.currentRequestStream.requestEnded){ // request incl data fully received
-					this.currentRequestStream.startResponse(response);
-					this.currentRequestStream.sendResponseData(data, true);
+				if(stream.requestEnded){ // request incl data fully received
+					stream.startResponse(response);
+					stream.sendResponseData(data, true);
 				}else
-					this.currentRequestStream.pendingResponse = new HTTPResponseData(response, data);
+					stream.pendingResponse = new HTTPResponseData(response, data);
 			}
+		}else if(this.respondingStream != null){
+			// responses to earlier pipelined requests are still in progress; this response is sent after them
+			this.inputClosed = true;
+			this.pendingData = null;
+			this.closingResponse = new HTTPResponseData(response, data);
 		}else{
 			if(this.writeHTTPMsg(response))
 				this.connection.write(data);
-			// currentRequestStream is already empty
 		}
 	}
 
 	override def respond(request: HTTPRequest, status: Int, data: Array[Byte], headers: String*): Unit = throw new UnsupportedOperationException();
 
 
-	private def processData(data: Array[Byte]): Unit = {
-		var remainingData = data;
-		if(this.currentRequestStream == null){
-			if(this.currentRequestTimeoutRef == null)
-				this.currentRequestTimeoutRef = Tasks.I.timeout(this.handleRequestTimeout _, this.config.getRequestTimeout()).daemon();
-			var offset = this.requestReceiver.receive(remainingData, 0);
-			if(offset < 0)
-				return;
+	private def activeStreams(): Array[IncomingRequestStream] = this.requestStreams.synchronized {
+		this.requestStreams.toArray(new Array[IncomingRequestStream](0));
+	}
 
-			Tasks.I.clear(this.currentRequestTimeoutRef);
+	private def respondingStream: IncomingRequestStream = this.requestStreams.synchronized {
+		this.requestStreams.peekFirst();
+	}
 
-			var request: HTTPRequest = this.requestReceiver.get(new org.omegazero.proxy.http.ProxyHTTPRequest(_, _, _, _, _, _));
-			this.requestReceiver.reset();
+	private def canStartRequest: Boolean = this.requestStreams.synchronized {
+		this.requestStreams.size() < this.maxConcurrentRequests;
+	}
 
-			if(request.getAuthority() == null)
-				throw new InvalidHTTPMessageException("Missing Host header", true);
+	private def processData(data0: Array[Byte]): Unit = {
+		if(this.inputClosed)
+			return;
+		var data = data0;
+		if(this.pendingData != null){ // reading was resumed by a request stream while data is still pending
+			data = new Array[Byte](this.pendingData.length + data0.length);
+			System.arraycopy(this.pendingData, 0, data, 0, this.pendingData.length);
+			System.arraycopy(data0, 0, data, this.pendingData.length, data0.length);
+			this.pendingData = null;
+		}
+		var offset = 0;
+		while(true){
+			if(this.receivingStream == null){
+				if(offset >= data.length)
+					return;
+				if(!this.canStartRequest){
+					this.pendingData = HTTP1BodyDecoder.slice(data, offset, data.length - offset);
+					scala.util.control.Exception.ignoring(classOf[Exception]){ this.connection.setReadBlock(true); }
+					return;
+				}
+				if(this.currentRequestTimeout == null)
+					this.currentRequestTimeout = this.timingWheel.schedule(() => this.handleRequestTimeout(), this.config.getRequestTimeout());
+				offset = this.requestReceiver.receive(data, offset);
+				if(offset < 0)
+					return;
 
-			var reqstream = new IncomingRequestStream(request);
-			reqstream.setReceiveData(true);
-			this.currentRequestStream = reqstream;
+				this.currentRequestTimeout.cancel();
+				this.currentRequestTimeout = null;
 
-			var dechunker = new MessageBodyDechunker(request, (reqdata) => {
-				var last = reqdata.length == 0;
-				reqstream.callOnRequestData(new HTTPRequestData(request, last, reqdata));
-				if(last){
-					reqstream.callOnRequestEnded(null);
-					request.setAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_DECHUNKER, null);
-					if(reqstream.pendingResponse != null){
-						reqstream.startResponse(reqstream.pendingResponse.getHttpMessage());
-						reqstream.sendResponseData(reqstream.pendingResponse.getData(), true);
-					}
-				}
-			});
-			request.setAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_DECHUNKER, dechunker);
+				var request: HTTPRequest = this.requestReceiver.get(new org.omegazero.proxy.http.ProxyHTTPRequest(_, _, _, _, _, _));
+				this.requestReceiver.reset();
 
-			this.onNewRequest.accept(reqstream);
+				if(request.getAuthority() == null)
+					throw new InvalidHTTPMessageException("Missing Host header", true);
 
-			remainingData = Arrays.copyOfRange(remainingData, offset, remainingData.length);
-		}
-		if(this.currentRequestStream.requestEnded){
-			if(logger.debug())
-				logger.debug(this.remoteName, " Received data after request ended");
-			this.close();
-			return;
-		}
-		var dechunker = this.currentRequestOrNull.getAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_DECHUNKER).asInstanceOf[MessageBodyDechunker];
-		try{
-			dechunker.addData(remainingData);
-		}catch{
-			case e: Exception => {
-				dechunker.end();
-				throw e;
+				var reqstream = new IncomingRequestStream(request);
+				request.setAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_STREAM, reqstream);
+				this.requestStreams.synchronized {
+					this.requestStreams.addLast(reqstream);
+				}
+				this.receivingStream = reqstream;
+				reqstream.setReceiveData(true);
+
+				var bodyDecoder = new HTTP1BodyDecoder(request, (reqdata) => {
+					var last = reqdata.length == 0;
+					reqstream.callOnRequestData(new HTTPRequestData(request, last, reqdata));
+					if(last){
+						if(this.receivingStream eq reqstream)
+							this.receivingStream = null;
+						reqstream.callOnRequestEnded(null);
+						request.setAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_BODY_DECODER, null);
+						if(reqstream.pendingResponse != null){
+							reqstream.startResponse(reqstream.pendingResponse.getHttpMessage());
+							reqstream.sendResponseData(reqstream.pendingResponse.getData(), true);
+						}
+					}
+				});
+				request.setAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_BODY_DECODER, bodyDecoder);
+
+				this.onNewRequest.accept(reqstream);
+			}
+			var stream = this.receivingStream;
+			var bodyDecoder = stream.getRequest().getAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_BODY_DECODER).asInstanceOf[HTTP1BodyDecoder];
+			try{
+				offset += bodyDecoder.addData(data, offset, data.length - offset);
+			}catch{
+				case e: Exception => {
+					bodyDecoder.end();
+					throw e;
+				}
 			}
+			if(!stream.requestEnded || this.inputClosed)
+				return;
 		}
 	}
 
 	private def handleRequestTimeout(): Unit = {
 		logger.debug(this.remoteName, " Request timeout");
 		try{
-			assert(this.currentRequestStream == null);
+			assert(this.receivingStream == null);
 			this.onError(null, HTTPStatus.STATUS_REQUEST_TIMEOUT, HTTPCommon.MSG_REQUEST_TIMEOUT);
 			this.requestReceiver.reset();
 		}catch{
@@ -198,6 +264,48 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 		}
 	}
 
+	/**
+	 * Called after the response of the first stream in the queue was fully sent. Starts sending the buffered response of the next stream, and continues processing pending
+	 * pipelined requests.
+	 */
+	private def responseCompleted(stream: IncomingRequestStream): Unit = {
+		var next: IncomingRequestStream = null;
+		this.requestStreams.synchronized {
+			if(this.requestStreams.peekFirst() eq stream)
+				this.requestStreams.pollFirst();
+			else
+				this.requestStreams.remove(stream);
+			next = this.requestStreams.peekFirst();
+		}
+		if(next != null){
+			next.flushBufferedResponse();
+			return;
+		}
+		if(this.closeIfDone())
+			return;
+		if(this.pendingData != null){
+			var data = this.pendingData;
+			this.pendingData = null;
+			scala.util.control.Exception.ignoring(classOf[Exception]){ this.connection.setReadBlock(false); }
+			this.connection match {
+				case c: AbstractSocketConnection => c.getWorker().accept(() => this.receive(data));
+				case _ => this.receive(data);
+			}
+		}
+	}
+
+	private def closeIfDone(): Boolean = {
+		if(!this.inputClosed || this.respondingStream != null)
+			return false;
+		if(this.closingResponse != null){
+			if(this.writeHTTPMsg(this.closingResponse.getHttpMessage()))
+				this.connection.write(this.closingResponse.getData());
+			this.closingResponse = null;
+		}
+		this.connection.close();
+		return true;
+	}
+
 
 	private def writeHTTPMsg(msg: HTTPResponse): Boolean = {
 		if(this.connection.isConnected() && !this.connection.isWritable()){
@@ -215,14 +323,27 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 		private var chunkedTransfer = false;
 
 		var pendingResponse: HTTPResponseData = null;
-		def requestEnded = !this.request.hasAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_DECHUNKER);
+		def requestEnded = !this.request.hasAttachment(ProxyHTTP1Server.ATTACHMENT_KEY_BODY_DECODER);
+
+		// response head and data written before this stream is the first in the queue
+		private var bufferedResponse: ArrayList[AnyRef] = null;
+		private var bufferedResponseSize = 0L;
+		private var bufferedResponseEnded = false;
+		private var bufferFull = false;
+
+		private def isResponding = ProxyHTTP1Server.this.respondingStream eq this;
 
 		override def close(reason: MessageStreamClosedException.CloseReason): Unit = {
 			ProxyHTTP1Server.this.connection.destroy();
 			this.closed = true;
 		}
 
-		override def setReceiveData(receiveData: Boolean): Unit = scala.util.control.Exception.ignoring(classOf[Exception]){ ProxyHTTP1Server.this.connection.setReadBlock(!receiveData); }
+		override def setReceiveData(receiveData: Boolean): Unit = {
+			var server = ProxyHTTP1Server.this;
+			// reading is controlled by the stream currently receiving a request, and stays paused while pipelined data is pending
+			if((server.receivingStream eq this) || (receiveData && server.receivingStream == null && server.pendingData == null))
+				scala.util.control.Exception.ignoring(classOf[Exception]){ server.connection.setReadBlock(!receiveData); }
+		}
 
 		override def startResponse(response: HTTPResponse): Unit = {
 			if(!this.requestEnded)
@@ -232,25 +353,70 @@ class ProxyHTTP1Server(private val connection: SocketConnection, private val con
 				this.chunkedTransfer = true;
 			}
 			response.setHttpVersion(HTTP1.VERSION_NAME);
-			ProxyHTTP1Server.this.writeHTTPMsg(response);
+			if(this.isResponding)
+				ProxyHTTP1Server.this.writeHTTPMsg(response);
+			else
+				this.buffer(response, 0);
 		}
 
 		override def sendResponseData(data: Array[Byte], last: Boolean): Boolean = {
 			if(!this.requestEnded)
 				throw new IllegalStateException("Cannot send response data before request ended");
-			if(data.length > 0){
-				if(this.chunkedTransfer)
-					ProxyHTTP1Server.this.connection.write(HTTP1Util.toChunk(data));
-				else
-					ProxyHTTP1Server.this.connection.write(data);
+			var wdata = data;
+			if(data.length > 0 && this.chunkedTransfer)
+				wdata = HTTP1Util.toChunk(data);
+			if(!this.isResponding){
+				if(data.length > 0)
+					this.buffer(wdata, wdata.length);
+				if(last){
+					if(this.chunkedTransfer)
+						this.buffer(ProxyHTTP1Server.EMPTY_CHUNK, 0);
+					this.bufferedResponseEnded = true;
+				}
+				this.bufferFull = this.bufferedResponseSize >= ProxyHTTP1Server.this.maxPipelineBufferSize;
+				return !this.bufferFull;
 			}
+			if(data.length > 0)
+				ProxyHTTP1Server.this.connection.write(wdata);
 			if(last){
 				if(this.chunkedTransfer)
 					ProxyHTTP1Server.this.connection.write(ProxyHTTP1Server.EMPTY_CHUNK);
 				this.closed = true;
-				ProxyHTTP1Server.this.currentRequestStream = null;
+				ProxyHTTP1Server.this.responseCompleted(this);
 			}
 			return ProxyHTTP1Server.this.connection.isWritable();
 		}
+
+		private def buffer(element: AnyRef, size: Int): Unit = {
+			if(this.bufferedResponse == null)
+				this.bufferedResponse = new ArrayList[AnyRef]();
+			this.bufferedResponse.add(element);
+			this.bufferedResponseSize += size;
+		}
+
+		/**
+		 * Writes the buffered response of this stream, after it became the first stream in the queue.
+		 */
+		def flushBufferedResponse(): Unit = {
+			if(this.bufferedResponse != null){
+				var elements = this.bufferedResponse;
+				this.bufferedResponse = null;
+				this.bufferedResponseSize = 0;
+				var it = elements.iterator();
+				while(it.hasNext()){
+					it.next() match {
+						case response: HTTPResponse => ProxyHTTP1Server.this.writeHTTPMsg(response);
+						case data: Array[Byte] => ProxyHTTP1Server.this.connection.write(data);
+					}
+				}
+			}
+			if(this.bufferedResponseEnded){
+				this.closed = true;
+				ProxyHTTP1Server.this.responseCompleted(this);
+			}else if(this.bufferFull){
+				this.bufferFull = false;
+				this.callOnWritable();
+			}
+		}
 	}
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 Wilton Arthur Poth
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+ * If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package org.omegazero.proxy.http1;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.omegazero.http.common.HTTPHeaderContainer;
+import org.omegazero.http.common.HTTPMessage;
+import org.omegazero.http.common.InvalidHTTPMessageException;
+import org.omegazero.proxy.http.ProxyHTTPRequest;
+import org.omegazero.proxy.http.ProxyHTTPResponse;
+
+public class HTTP1BodyDecoderTest {
+
+	private static ProxyHTTPRequest request(String method) {
+		return new ProxyHTTPRequest(method, "http", "example.com", "/", "HTTP/1.1", new HTTPHeaderContainer());
+	}
+
+	private static ProxyHTTPResponse response(int status, String method) {
+		ProxyHTTPResponse response = new ProxyHTTPResponse(status, "HTTP/1.1", new HTTPHeaderContainer());
+		response.setOther(request(method));
+		return response;
+	}
+
+	private static <T extends HTTPMessage> T chunked(T msg) {
+		msg.setHeader("transfer-encoding", "chunked");
+		msg.setChunkedTransfer(true);
+		return msg;
+	}
+
+	private static byte[] bytes(String str) {
+		return str.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+
+	@Test
+	public void testFixedLength() {
+		ProxyHTTPRequest request = request("POST");
+		request.setHeader("content-length", "5");
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(request, c::accept);
+		byte[] data = bytes("HEADhelloNEXT");
+		assertEquals(5, decoder.addData(data, 4, data.length - 4));
+		assertTrue(decoder.hasEnded());
+		assertEquals("hello", c.body());
+		assertTrue(c.ended);
+	}
+
+	@Test
+	public void testFixedLengthSplit() {
+		ProxyHTTPRequest request = request("POST");
+		request.setHeader("content-length", "10");
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(request, c::accept);
+		assertEquals(3, decoder.addData(bytes("012"), 0, 3));
+		assertFalse(decoder.hasEnded());
+		byte[] data = bytes("3456789");
+		assertEquals(7, decoder.addData(data, 0, 7));
+		assertTrue(decoder.hasEnded());
+		// data spanning an entire array is passed without copying
+		assertSame(data, c.chunks.get(1));
+		assertEquals("0123456789", c.body());
+	}
+
+	@Test
+	public void testNoBody() {
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(request("GET"), c::accept);
+		assertEquals(0, decoder.addData(bytes("GET / HTTP/1.1"), 0, 14));
+		assertTrue(decoder.hasEnded());
+		assertTrue(c.ended);
+
+		c = new Collector();
+		decoder = new HTTP1BodyDecoder(response(204, "GET"), c::accept);
+		assertEquals(0, decoder.addData(new byte[0], 0, 0));
+		assertTrue(c.ended);
+
+		ProxyHTTPResponse head = response(200, "HEAD");
+		head.setHeader("content-length", "100");
+		c = new Collector();
+		decoder = new HTTP1BodyDecoder(head, c::accept);
+		assertEquals(0, decoder.addData(bytes("x"), 0, 1));
+		assertTrue(c.ended);
+	}
+
+	@Test
+	public void testInvalidContentLength() {
+		for(String value : new String[] { "", "-1", "1a", "0x10", "1234567890123456789" }){
+			ProxyHTTPRequest request = request("POST");
+			request.setHeader("content-length", value);
+			assertThrows(InvalidHTTPMessageException.class, () -> new HTTP1BodyDecoder(request, (d) -> {}), value);
+		}
+	}
+
+	@Test
+	public void testUntilClose() {
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(response(200, "GET"), c::accept);
+		assertTrue(decoder.isDelimitedByClose());
+		assertEquals(5, decoder.addData(bytes("hello"), 0, 5));
+		assertEquals(6, decoder.addData(bytes(" world"), 0, 6));
+		assertFalse(c.ended);
+		decoder.end();
+		assertTrue(c.ended);
+		assertTrue(decoder.hasEnded());
+		assertFalse(decoder.isDelimitedByClose());
+		assertEquals("hello world", c.body());
+		decoder.end();
+		assertEquals(1, c.endCount);
+	}
+
+	@Test
+	public void testChunked() {
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(chunked(request("POST")), c::accept);
+		byte[] data = bytes("5\r\nhello\r\n6;ext=1\r\n world\r\n0\r\n\r\nNEXT");
+		assertEquals(data.length - 4, decoder.addData(data, 0, data.length));
+		assertTrue(decoder.hasEnded());
+		assertEquals("hello world", c.body());
+		assertEquals(1, c.endCount);
+	}
+
+	@Test
+	public void testChunkedEveryBoundary() {
+		byte[] data = bytes("a\r\n0123456789\r\n1F\r\n0123456789012345678901234567890\n0;x\r\nTrailer: value\r\n\r\n");
+		String expected = "01234567890123456789012345678901234567890";
+		// split the data at every possible position, so that every state continues in the next call
+		for(int split = 0; split <= data.length; split++){
+			Collector c = new Collector();
+			HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(chunked(request("POST")), c::accept);
+			int consumed = decoder.addData(data, 0, split);
+			consumed += decoder.addData(data, split, data.length - split);
+			assertEquals(data.length, consumed, "split at " + split);
+			assertTrue(decoder.hasEnded(), "split at " + split);
+			assertEquals(expected, c.body(), "split at " + split);
+			assertEquals(1, c.endCount, "split at " + split);
+		}
+		// pass the data one byte at a time
+		Collector c = new Collector();
+		HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(chunked(request("POST")), c::accept);
+		for(int i = 0; i < data.length; i++)
+			assertEquals(1, decoder.addData(data, i, 1));
+		assertEquals(expected, c.body());
+	}
+
+	@Test
+	public void testChunkedInvalid() {
+		for(String body : new String[] { "x\r\n", "\r\n", "5\r\nhelloX", "1000000000000000\r\n", "5 x" }){
+			HTTP1BodyDecoder decoder = new HTTP1BodyDecoder(chunked(request("POST")), (d) -> {});
+			byte[] data = bytes(body);
+			if(body.equals("5 x")){
+				// anything after a chunk size is treated as an extension
+				assertEquals(3, decoder.addData(data, 0, data.length));
+				continue;
+			}
+			assertThrows(InvalidHTTPMessageException.class, () -> decoder.addData(data, 0, data.length), body);
+		}
+	}
+
+
+	private static class Collector {
+
+		private final List<byte[]> chunks = new ArrayList<>();
+		private boolean ended;
+		private int endCount;
+
+		public void accept(byte[] data) {
+			assertFalse(this.ended, "data after end of body");
+			if(data.length == 0){
+				this.ended = true;
+				this.endCount++;
+			}else
+				this.chunks.add(data);
+		}
+
+		public String body() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			for(byte[] b : this.chunks)
+				out.write(b, 0, b.length);
+			return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+		}
+	}
+}
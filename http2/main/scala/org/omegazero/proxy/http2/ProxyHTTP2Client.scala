@@ -42,9 +42,11 @@ class ProxyHTTP2Client(private val dsConnection: SocketConnection, private val u
 	private val remoteName = this.connection.getRemoteName();
 
 	private var requestStreams = new java.util.concurrent.ConcurrentHashMap[Int, OutgoingRequestStream]();
-	private var enablePush = true;
+	// no downstream server means this client is shared by multiple client connections and may be used by multiple threads
+	private val shared = server == null;
+	private var enablePush = !this.shared;
 
-	this.dsConnection.on("writable", super.handleConnectionWindowUpdate _);
+	this.dsConnection.on("writable", () => this.locked(super.handleConnectionWindowUpdate()));
 
 	super.start();
 	// set a max table size value to be able to send requests before receiving a SETTINGS frame from the server
@@ -57,7 +59,7 @@ class ProxyHTTP2Client(private val dsConnection: SocketConnection, private val u
 	}
 
 
-	override def receive(data: Array[Byte]): Unit = {
+	override def receive(data: Array[Byte]): Unit = this.locked {
 		super.processData(data);
 	}
 
@@ -68,18 +70,23 @@ class ProxyHTTP2Client(private val dsConnection: SocketConnection, private val u
 	}
 
 
-	override def setServerPushEnabled(enabled: Boolean): Unit = {
-		this.enablePush = enabled;
-		this.settings.set(SETTINGS_ENABLE_PUSH, if enabled then 1 else 0);
+	override def setServerPushEnabled(enabled: Boolean): Unit = this.locked {
+		// pushed responses cannot be attributed to a single client connection if this client is shared
+		this.enablePush = enabled && !this.shared;
+		this.settings.set(SETTINGS_ENABLE_PUSH, if this.enablePush then 1 else 0);
 		super.getControlStream().writeSettings(this.settings, SETTINGS_ENABLE_PUSH);
 	}
 
 
-	override def newRequest(request: HTTPRequest): HTTPClientStream = {
+	override def newRequest(request: HTTPRequest): HTTPClientStream = this.locked {
+		this.newRequest0(request);
+	}
+
+	private def newRequest0(request: HTTPRequest): HTTPClientStream = {
 		if(this.dsConnection.hasDisconnected())
 			return null;
 		var ustream = super.createRequestStream();
-		if(ustream == null)
+		if(ustream == null) // SETTINGS_MAX_CONCURRENT_STREAMS reached
 			return null;
 		if(logger.debug())
 			logger.debug(this.remoteName, " Created new client request stream ", ustream.getStreamId(), " for request ", request.getAttachment(HTTPCommon.ATTACHMENT_KEY_REQUEST_ID));
@@ -105,6 +112,14 @@ class ProxyHTTP2Client(private val dsConnection: SocketConnection, private val u
 	override def getMaxConcurrentRequestCount(): Int = super.getControlStream().getRemoteSettings().get(SETTINGS_MAX_CONCURRENT_STREAMS);
 
 
+	private def locked[T](f: => T): T = {
+		if(this.shared)
+			this.synchronized { f }
+		else
+			f
+	}
+
+
 	private def prepareStream(request: HTTPRequest, ustream: MessageStream): OutgoingRequestStream = {
 		HTTP2Common.initMessageStream(ustream);
 
@@ -146,28 +161,28 @@ class ProxyHTTP2Client(private val dsConnection: SocketConnection, private val u
 
 		private[http2] def hasServerPushHandler: Boolean = this.onServerPush != null;
 
-		override def close(reason: MessageStreamClosedException.CloseReason): Unit = {
+		override def close(reason: MessageStreamClosedException.CloseReason): Unit = ProxyHTTP2Client.this.locked {
 			this.ustream.rst(HTTP2Common.closeReasonToHttp2Status(reason));
 		}
 
 		override def isClosed(): Boolean = this.ustream.isClosed();
 
-		override def setReceiveData(receiveData: Boolean): Unit = this.ustream.setReceiveData(receiveData);
+		override def setReceiveData(receiveData: Boolean): Unit = ProxyHTTP2Client.this.locked(this.ustream.setReceiveData(receiveData));
 
-		override def startRequest(): Unit = {
+		override def startRequest(): Unit = ProxyHTTP2Client.this.locked {
 			this.request.setHttpVersion(HTTP2.VERSION_NAME);
 			HTTP2Common.deleteHttp1Headers(this.request);
 			this.ustream.sendHTTPMessage(this.request, false);
 		}
 
-		override def sendRequestData(data: Array[Byte], last: Boolean): Boolean = {
+		override def sendRequestData(data: Array[Byte], last: Boolean): Boolean = ProxyHTTP2Client.this.locked {
 			if(data.length != 0 || last)
-				return this.ustream.sendData(data, last);
+				this.ustream.sendData(data, last);
 			else
-				return true;
+				true;
 		}
 
-		override def endRequest(trailers: HTTPMessageTrailers): Unit = {
+		override def endRequest(trailers: HTTPMessageTrailers): Unit = ProxyHTTP2Client.this.locked {
 			if(trailers != null)
 				this.ustream.sendTrailers(trailers);
 			else